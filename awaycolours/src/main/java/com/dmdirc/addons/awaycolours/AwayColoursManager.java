@@ -25,31 +25,55 @@ import com.dmdirc.events.ChannelUserBackEvent;
 import com.dmdirc.events.DisplayProperty;
 import com.dmdirc.events.eventbus.EventBus;
 import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.interfaces.GroupChat;
 import com.dmdirc.plugins.PluginDomain;
 import com.dmdirc.ui.messages.ColourManager;
 import com.dmdirc.util.colours.Colour;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import javax.inject.Inject;
+import javax.inject.Named;
 
 import net.engio.mbassy.listener.Handler;
 
 /**
  * Adds away colours to DMDirc.
+ *
+ * <p>Changes are applied to users immediately, but channels' client lists are only refreshed
+ * once per refresh delay, so a burst of away changes (such as a WHO sweep) results in a single
+ * refresh of each affected channel.
  */
 public class AwayColoursManager {
 
     private final EventBus eventBus;
     private final ConfigBinder binder;
     private final ColourManager colourManager;
+    /** Executor used to refresh channels. */
+    private final ScheduledExecutorService executorService;
+    /** Channels with users whose colours have changed since they were last refreshed. */
+    private final Set<GroupChat> pendingChannels = ConcurrentHashMap.newKeySet();
+    /** Whether a refresh of the pending channels has been scheduled. */
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
     private Colour colour = Colour.BLACK;
+    /** Delay, in milliseconds, before refreshing changed channels. */
+    private int refreshDelay;
 
     @Inject
     public AwayColoursManager(final EventBus eventBus,
             @GlobalConfig final AggregateConfigProvider config,
             @PluginDomain(AwayColoursPlugin.class) final String domain,
-            @GlobalConfig final ColourManager colourManager) {
+            @GlobalConfig final ColourManager colourManager,
+            @Named("awaycolours") final ScheduledExecutorService executorService) {
         this.eventBus = eventBus;
         this.colourManager = colourManager;
+        this.executorService = executorService;
         binder = config.getBinder().withDefaultDomain(domain);
     }
 
@@ -61,6 +85,8 @@ public class AwayColoursManager {
     public void unload() {
         eventBus.unsubscribe(this);
         binder.unbind(this);
+        executorService.shutdown();
+        refreshPendingChannels();
     }
 
     @ConfigBinding(key = "colour")
@@ -68,15 +94,45 @@ public class AwayColoursManager {
         this.colour = colourManager.getColourFromString(colour, Colour.GRAY);
     }
 
+    @ConfigBinding(key = "refreshdelay")
+    public void handleRefreshDelay(final int refreshDelay) {
+        this.refreshDelay = refreshDelay;
+    }
+
     @Handler
     public void handleAwayEvent(final ChannelUserAwayEvent event) {
         event.getUser().setDisplayProperty(DisplayProperty.FOREGROUND_COLOUR, colour);
-        event.getChannel().refreshClients();
+        scheduleRefresh(event.getChannel());
     }
 
     @Handler
     public void handleBackEvent(final ChannelUserBackEvent event) {
         event.getUser().removeDisplayProperty(DisplayProperty.FOREGROUND_COLOUR);
-        event.getChannel().refreshClients();
+        scheduleRefresh(event.getChannel());
+    }
+
+    /**
+     * Marks the given channel as needing a refresh, and schedules the pending channels to be
+     * refreshed if they aren't already.
+     *
+     * @param channel The channel whose users have changed
+     */
+    private void scheduleRefresh(final GroupChat channel) {
+        pendingChannels.add(channel);
+        if (refreshScheduled.compareAndSet(false, true)) {
+            executorService.schedule(this::refreshPendingChannels, refreshDelay,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Refreshes the clients of each channel that has changed since the last refresh.
+     */
+    private void refreshPendingChannels() {
+        // Clear the flag first, so changes made while refreshing schedule another refresh.
+        refreshScheduled.set(false);
+        final Collection<GroupChat> channels = new ArrayList<>(pendingChannels);
+        pendingChannels.removeAll(channels);
+        channels.forEach(GroupChat::refreshClients);
     }
 }
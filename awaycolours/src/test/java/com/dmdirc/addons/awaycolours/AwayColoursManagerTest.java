@@ -28,13 +28,22 @@ import com.dmdirc.config.provider.AggregateConfigProvider;
 import com.dmdirc.ui.messages.ColourManager;
 import com.dmdirc.util.colours.Colour;
 
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -49,6 +58,8 @@ public class AwayColoursManagerTest {
     @Mock private GroupChatUser user;
     @Mock private Channel channel;
     @Mock private ColourManager colourManager;
+    @Mock private ScheduledExecutorService executorService;
+    @Captor private ArgumentCaptor<Runnable> runnableCaptor;
     private AwayColoursManager instance;
     private String red;
     private Colour redColour;
@@ -69,7 +80,8 @@ public class AwayColoursManagerTest {
         when(binder.withDefaultDomain(anyString())).thenReturn(binder);
         when(colourManager.getColourFromString(red, Colour.GRAY)).thenReturn(redColour);
         when(colourManager.getColourFromString(black, Colour.GRAY)).thenReturn(blackColour);
-        instance = new AwayColoursManager(eventBus, config, "test", colourManager);
+        instance = new AwayColoursManager(eventBus, config, "test", colourManager,
+                executorService);
     }
 
     @Test
@@ -82,6 +94,7 @@ public class AwayColoursManagerTest {
     public void testUnload() throws Exception {
         instance.unload();
         verify(eventBus).unsubscribe(instance);
+        verify(executorService).shutdown();
     }
 
     @Test
@@ -106,4 +119,37 @@ public class AwayColoursManagerTest {
         instance.handleAwayEvent(awayEvent);
         verify(user).setDisplayProperty(DisplayProperty.FOREGROUND_COLOUR, redColour);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRefreshesAreCoalesced() throws Exception {
+        instance.handleRefreshDelay(250);
+        instance.handleAwayEvent(awayEvent);
+        instance.handleBackEvent(backEvent);
+        instance.handleAwayEvent(awayEvent);
+        verify(executorService).schedule(runnableCaptor.capture(), anyLong(),
+                any(TimeUnit.class));
+        verify(channel, never()).refreshClients();
+        runnableCaptor.getValue().run();
+        verify(channel).refreshClients();
+    }
+
+    @Test
+    public void testRefreshesAfterPreviousRefresh() throws Exception {
+        instance.handleAwayEvent(awayEvent);
+        verify(executorService).schedule(runnableCaptor.capture(), anyLong(),
+                any(TimeUnit.class));
+        runnableCaptor.getValue().run();
+        instance.handleBackEvent(backEvent);
+        verify(executorService, times(2)).schedule(runnableCaptor.capture(), anyLong(),
+                any(TimeUnit.class));
+        runnableCaptor.getValue().run();
+        verify(channel, times(2)).refreshClients();
+    }
+
+    @Test
+    public void testUnloadRefreshesPendingChannels() throws Exception {
+        instance.handleAwayEvent(awayEvent);
+        instance.unload();
+        verify(channel).refreshClients();
+    }
+}
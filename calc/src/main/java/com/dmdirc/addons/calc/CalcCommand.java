@@ -40,6 +40,8 @@ public class CalcCommand extends BaseCommand {
     public static final CommandInfo INFO = new BaseCommandInfo("calc",
             "calc [--showexpr] <expr> - evaluate mathematical expression",
             CommandType.TYPE_GLOBAL);
+    /** Recently compiled expressions. */
+    private final ExpressionCache cache = new ExpressionCache();
 
     /**
      * Creates a new instance of this command.
@@ -64,10 +66,7 @@ public class CalcCommand extends BaseCommand {
             }
 
             final String input = args.getArgumentsAsString(offset);
-            final Lexer lexer = new Lexer(input);
-            final Parser parser = new Parser(lexer);
-            final Evaluator evaluator = new Evaluator(parser.parse());
-            final Number result = evaluator.evaluate();
+            final double result = cache.get(input).evaluate();
             showOutput(origin, args.isSilent(), (showexpr ? input + " = " : "") + result);
         } catch (ParseException ex) {
             showError(origin, args.isSilent(), "Unable to parse expression: " + ex.getMessage());
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.calc;
+
+/**
+ * A mathematical expression compiled into a flat program that operates on a stack of primitive
+ * doubles.
+ */
+public final class CompiledExpression {
+
+    /** Pushes the next constant onto the stack. */
+    static final byte PUSH = 0;
+    /** Replaces the top two values with their sum. */
+    static final byte ADD = 1;
+    /** Replaces the top two values with their difference. */
+    static final byte SUBTRACT = 2;
+    /** Replaces the top two values with their product. */
+    static final byte MULTIPLY = 3;
+    /** Replaces the top two values with their quotient. */
+    static final byte DIVIDE = 4;
+    /** Replaces the top two values with the remainder of their division. */
+    static final byte MODULO = 5;
+    /** Replaces the top two values with the first raised to the power of the second. */
+    static final byte POWER = 6;
+
+    /** The instructions to execute. */
+    private final byte[] program;
+    /** The constants pushed by {@link #PUSH} instructions, in order. */
+    private final double[] constants;
+    /** The maximum depth the stack reaches. */
+    private final int maxStack;
+
+    CompiledExpression(final byte[] program, final double[] constants, final int maxStack) {
+        this.program = program;
+        this.constants = constants;
+        this.maxStack = maxStack;
+    }
+
+    /**
+     * Evaluates this expression.
+     *
+     * @return The numeric result of the expression
+     */
+    public double evaluate() {
+        final double[] stack = new double[maxStack];
+        int top = -1;
+        int constant = 0;
+        for (byte instruction : program) {
+            if (instruction == PUSH) {
+                stack[++top] = constants[constant++];
+                continue;
+            }
+            final double right = stack[top--];
+            final double left = stack[top];
+            switch (instruction) {
+                case ADD:
+                    stack[top] = left + right;
+                    break;
+                case SUBTRACT:
+                    stack[top] = left - right;
+                    break;
+                case MULTIPLY:
+                    stack[top] = left * right;
+                    break;
+                case DIVIDE:
+                    stack[top] = left / right;
+                    break;
+                case MODULO:
+                    stack[top] = left % right;
+                    break;
+                case POWER:
+                    stack[top] = Math.pow(left, right);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown instruction: " + instruction);
+            }
+        }
+        return stack[0];
+    }
+
+}
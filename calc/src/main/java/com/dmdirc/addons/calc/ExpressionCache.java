@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.calc;
+
+import java.text.ParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small least-recently-used cache of compiled expressions, keyed on their input.
+ */
+public class ExpressionCache {
+
+    /** The default maximum number of expressions to cache. */
+    public static final int DEFAULT_SIZE = 64;
+    /** The cached expressions, in access order. */
+    private final Map<String, CompiledExpression> expressions;
+
+    /**
+     * Creates a new cache holding up to {@link #DEFAULT_SIZE} expressions.
+     */
+    public ExpressionCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maximumSize The maximum number of expressions to cache
+     */
+    public ExpressionCache(final int maximumSize) {
+        expressions = new LinkedHashMap<String, CompiledExpression>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, CompiledExpression> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Gets the compiled form of the specified expression, compiling it if it isn't cached.
+     *
+     * @param input The expression to compile
+     *
+     * @return The compiled expression
+     *
+     * @throws ParseException If the expression is not valid
+     */
+    public synchronized CompiledExpression get(final String input) throws ParseException {
+        CompiledExpression expression = expressions.get(input);
+        if (expression == null) {
+            expression = ExpressionCompiler.compile(input);
+            expressions.put(input, expression);
+        }
+        return expression;
+    }
+
+    /**
+     * Gets the number of expressions currently cached.
+     *
+     * @return The number of cached expressions
+     */
+    public synchronized int size() {
+        return expressions.size();
+    }
+
+}
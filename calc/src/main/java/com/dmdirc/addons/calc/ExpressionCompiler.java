@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.calc;
+
+import java.text.ParseException;
+import java.util.Arrays;
+
+/**
+ * Compiles a mathematical expression into a {@link CompiledExpression} in a single pass over the
+ * input, without building a token list or tree.
+ *
+ * <p>The grammar and operator precedences match those of the {@link Lexer} and {@link Parser}:
+ * whitespace is ignored, signs may only prefix numbers at the start of an expression or bracket,
+ * a bracket directly after a number or bracket implies multiplication, and every binary operator
+ * has its own precedence level as given by {@link TokenType#getPrecedence()}.
+ */
+public final class ExpressionCompiler {
+
+    /** The expression being compiled. */
+    private final String input;
+    /** The index of the next character to read. */
+    private int position;
+    /** The offset of the next character, ignoring whitespace, for error reporting. */
+    private int offset;
+    /** The type of the last token read. */
+    private TokenType previous = TokenType.START;
+    /** The number of brackets currently open. */
+    private int depth;
+    /** The instructions generated so far. */
+    private byte[] program = new byte[16];
+    /** The number of instructions generated so far. */
+    private int programLength;
+    /** The constants generated so far. */
+    private double[] constants = new double[8];
+    /** The number of constants generated so far. */
+    private int constantsLength;
+    /** The current stack depth of the generated program. */
+    private int stack;
+    /** The maximum stack depth of the generated program. */
+    private int maxStack;
+
+    private ExpressionCompiler(final String input) {
+        this.input = input;
+    }
+
+    /**
+     * Compiles the specified expression.
+     *
+     * @param input The expression to compile
+     *
+     * @return The compiled expression
+     *
+     * @throws ParseException If the expression is not valid
+     */
+    public static CompiledExpression compile(final String input) throws ParseException {
+        final ExpressionCompiler compiler = new ExpressionCompiler(input);
+        compiler.parseExpression(0);
+        if (compiler.peek() == ')') {
+            throw new ParseException("Couldn't find matching opening bracket", compiler.offset);
+        }
+        return new CompiledExpression(Arrays.copyOf(compiler.program, compiler.programLength),
+                Arrays.copyOf(compiler.constants, compiler.constantsLength),
+                compiler.maxStack);
+    }
+
+    /**
+     * Parses an operand followed by any binary operators with at least the given precedence.
+     *
+     * @param minPrecedence The lowest precedence of operator to consume
+     *
+     * @throws ParseException If the expression is not valid
+     */
+    private void parseExpression(final int minPrecedence) throws ParseException {
+        parseOperand();
+        while (true) {
+            final TokenType operator = peekOperator();
+            if (operator == null || operator.getPrecedence() < minPrecedence) {
+                return;
+            }
+            if (operator != TokenType.OP_MULT || peek() != '(') {
+                // Implied multiplication doesn't consume anything.
+                next();
+            }
+            previous = operator;
+            parseExpression(operator.getPrecedence() + 1);
+            emit(operator);
+        }
+    }
+
+    /**
+     * Parses a number, signed number or bracketed expression.
+     *
+     * @throws ParseException If the expression is not valid
+     */
+    private void parseOperand() throws ParseException {
+        final int c = peek();
+        if (c == '(') {
+            next();
+            previous = TokenType.BRACKET_OPEN;
+            depth++;
+            parseExpression(0);
+            if (peek() != ')') {
+                throw new ParseException("Couldn't find matching closing bracket", offset);
+            }
+            next();
+            depth--;
+            previous = TokenType.BRACKET_CLOSE;
+        } else if ((c == '+' || c == '-') && (previous == TokenType.START
+                || previous == TokenType.BRACKET_OPEN)) {
+            next();
+            previous = c == '+' ? TokenType.MOD_POSITIVE : TokenType.MOD_NEGATIVE;
+            if (!isDigit(peek())) {
+                throw unexpected();
+            }
+            final double value = parseNumber();
+            push(c == '+' ? value : -value);
+        } else if (isDigit(c)) {
+            push(parseNumber());
+        } else {
+            throw unexpected();
+        }
+    }
+
+    /**
+     * Parses an unsigned integer or decimal number.
+     *
+     * @return The value of the number
+     */
+    private double parseNumber() {
+        final StringBuilder number = new StringBuilder();
+        while (isDigit(peek())) {
+            number.append((char) next());
+        }
+        previous = TokenType.NUMBER_INT;
+        if (peek() == '.') {
+            final int mark = position;
+            final int markOffset = offset;
+            next();
+            if (isDigit(peek())) {
+                number.append('.');
+                while (isDigit(peek())) {
+                    number.append((char) next());
+                }
+                previous = TokenType.NUMBER_FLOAT;
+            } else {
+                // A trailing point isn't part of the number, and will be reported as illegal.
+                position = mark;
+                offset = markOffset;
+            }
+        }
+        return Double.parseDouble(number.toString());
+    }
+
+    /**
+     * Determines which binary operator, if any, follows the current operand.
+     *
+     * @return The type of operator, or null if the operand ends the expression or bracket
+     *
+     * @throws ParseException If the next character can't follow an operand
+     */
+    private TokenType peekOperator() throws ParseException {
+        switch (peek()) {
+            case '+':
+                return TokenType.OP_PLUS;
+            case '-':
+                return TokenType.OP_MINUS;
+            case '*':
+            case '(':
+                return TokenType.OP_MULT;
+            case '/':
+                return TokenType.OP_DIVIDE;
+            case '%':
+                return TokenType.OP_MOD;
+            case '^':
+                return TokenType.OP_POWER;
+            case ')':
+                if (depth == 0) {
+                    throw new ParseException("Couldn't find matching opening bracket", offset);
+                }
+                return null;
+            case -1:
+                return null;
+            default:
+                throw unexpected();
+        }
+    }
+
+    private void emit(final TokenType operator) {
+        switch (operator) {
+            case OP_PLUS:
+                addInstruction(CompiledExpression.ADD);
+                break;
+            case OP_MINUS:
+                addInstruction(CompiledExpression.SUBTRACT);
+                break;
+            case OP_MULT:
+                addInstruction(CompiledExpression.MULTIPLY);
+                break;
+            case OP_DIVIDE:
+                addInstruction(CompiledExpression.DIVIDE);
+                break;
+            case OP_MOD:
+                addInstruction(CompiledExpression.MODULO);
+                break;
+            case OP_POWER:
+                addInstruction(CompiledExpression.POWER);
+                break;
+            default:
+                throw new IllegalArgumentException("Not a binary operator: " + operator);
+        }
+        stack--;
+    }
+
+    private void push(final double value) {
+        if (constantsLength == constants.length) {
+            constants = Arrays.copyOf(constants, constantsLength * 2);
+        }
+        constants[constantsLength++] = value;
+        addInstruction(CompiledExpression.PUSH);
+        maxStack = Math.max(maxStack, ++stack);
+    }
+
+    private void addInstruction(final byte instruction) {
+        if (programLength == program.length) {
+            program = Arrays.copyOf(program, programLength * 2);
+        }
+        program[programLength++] = instruction;
+    }
+
+    private ParseException unexpected() {
+        return new ParseException("No legal token found at offset " + offset
+                + ". Expecting one of: " + Arrays.toString(previous.getFollowers().toArray()),
+                offset);
+    }
+
+    /**
+     * Gets the next non-whitespace character without consuming it.
+     *
+     * @return The next character, or -1 at the end of the input
+     */
+    private int peek() {
+        while (position < input.length() && isWhitespace(input.charAt(position))) {
+            position++;
+        }
+        return position < input.length() ? input.charAt(position) : -1;
+    }
+
+    /**
+     * Consumes the next non-whitespace character.
+     *
+     * @return The consumed character, or -1 at the end of the input
+     */
+    private int next() {
+        final int c = peek();
+        if (c != -1) {
+            position++;
+            offset++;
+        }
+        return c;
+    }
+
+    private static boolean isDigit(final int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+}
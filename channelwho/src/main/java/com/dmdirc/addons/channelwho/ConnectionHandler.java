@@ -19,6 +19,13 @@ package com.dmdirc.addons.channelwho;
 
 import com.dmdirc.config.binding.ConfigBinder;
 import com.dmdirc.config.binding.ConfigBinding;
+import com.dmdirc.events.ChannelActionEvent;
+import com.dmdirc.events.ChannelJoinEvent;
+import com.dmdirc.events.ChannelKickEvent;
+import com.dmdirc.events.ChannelMessageEvent;
+import com.dmdirc.events.ChannelNickChangeEvent;
+import com.dmdirc.events.ChannelPartEvent;
+import com.dmdirc.events.ChannelQuitEvent;
 import com.dmdirc.events.ChannelUserAwayEvent;
 import com.dmdirc.events.DisplayProperty;
 import com.dmdirc.events.ServerNumericEvent;
@@ -32,7 +39,15 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -42,6 +57,12 @@ import net.engio.mbassy.listener.Handler;
 /**
  * Responsible for managing timers and settings required to who any {@link GroupChat}s on a
  * {@link Connection} as specified by the user.
+ *
+ * <p>Rather than sending a WHO to every channel at once, each interval the channels that are due
+ * are queued and sent one at a time, spread evenly across the interval. Channels with recent
+ * messages are sent first, and channels whose membership hasn't changed are skipped for up to
+ * {@code whoidleskip} intervals. If the server takes longer to reply than the gap between
+ * requests, the gap is widened to match.
  */
 public class ConnectionHandler {
 
@@ -51,7 +72,25 @@ public class ConnectionHandler {
     private final String domain;
     private final ScheduledExecutorService executorService;
     private final ConfigBinder configBinder;
+    /** WHO state for each channel on the connection. */
+    private final Map<GroupChat, ChannelState> channelStates = new ConcurrentHashMap<>();
+    /** Send times, in nanoseconds, of WHO requests that haven't been answered, by channel name. */
+    private final Map<String, Long> outstanding = new ConcurrentHashMap<>();
+    /** Channels waiting to be sent a WHO in the current interval. */
+    private final Deque<GroupChat> pending = new ArrayDeque<>();
     private ScheduledFuture<?> future;
+    /** The future for the next queued WHO, if one is scheduled. */
+    private ScheduledFuture<?> sendFuture;
+    /** Whether queued WHOs are currently being sent. */
+    private boolean sending;
+    /** Interval, in milliseconds, between each channel being considered for a WHO. */
+    private int interval;
+    /** Gap, in milliseconds, between WHOs to spread the current queue across the interval. */
+    private long spacing;
+    /** Smoothed time, in nanoseconds, the server takes to answer a WHO. */
+    private volatile long latency;
+    /** Number of intervals a channel whose membership hasn't changed can be skipped for. */
+    private int idleSkip;
 
     public ConnectionHandler(
             final AggregateConfigProvider config,
@@ -79,15 +118,72 @@ public class ConnectionHandler {
         if (future != null) {
             future.cancel(false);
         }
+        synchronized (pending) {
+            pending.clear();
+            if (sendFuture != null) {
+                sendFuture.cancel(false);
+            }
+        }
     }
 
     @VisibleForTesting
     void checkWho() {
-        connection.getGroupChatManager().getChannels().forEach(channel -> {
-            if (channel.getWindowModel().getConfigManager().getOptionBool(domain, "sendwho")) {
-                channel.requestUsersInfo();
+        final Collection<GroupChat> channels = connection.getGroupChatManager().getChannels();
+        channelStates.keySet().retainAll(channels);
+
+        final List<GroupChat> due = new ArrayList<>();
+        channels.forEach(channel -> {
+            if (channel.getWindowModel().getConfigManager().getOptionBool(domain, "sendwho")
+                    && channelStates.computeIfAbsent(channel, c -> new ChannelState())
+                            .isDue(idleSkip)) {
+                due.add(channel);
             }
         });
+        due.sort(Comparator.comparing(channel -> channelStates.get(channel).getPriority()));
+
+        final boolean start;
+        synchronized (pending) {
+            // Anything left over from the last interval is still due, so is included again.
+            pending.clear();
+            pending.addAll(due);
+            spacing = due.isEmpty() ? 0 : interval / due.size();
+            start = !sending && !due.isEmpty();
+            sending |= start;
+        }
+        if (start) {
+            sendNext();
+        }
+    }
+
+    /**
+     * Sends a WHO to the next queued channel, and schedules the one after it.
+     */
+    private void sendNext() {
+        final GroupChat channel;
+        synchronized (pending) {
+            channel = pending.poll();
+            if (channel == null) {
+                sending = false;
+                return;
+            }
+        }
+
+        final ChannelState state = channelStates.get(channel);
+        if (state != null) {
+            state.sent();
+        }
+        outstanding.put(channel.getName(), System.nanoTime());
+        channel.requestUsersInfo();
+
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                sending = false;
+            } else {
+                sendFuture = executorService.schedule(this::sendNext,
+                        Math.max(spacing, TimeUnit.NANOSECONDS.toMillis(latency)),
+                        TimeUnit.MILLISECONDS);
+            }
+        }
     }
 
     @VisibleForTesting
@@ -96,10 +192,66 @@ public class ConnectionHandler {
         if (future != null) {
             future.cancel(false);
         }
+        interval = value;
         future = executorService.scheduleAtFixedRate(this::checkWho, value, value,
                 TimeUnit.MILLISECONDS);
     }
 
+    @VisibleForTesting
+    @ConfigBinding(key="whoidleskip")
+    void handleWhoIdleSkip(final int value) {
+        idleSkip = value;
+    }
+
+    @Handler
+    void handleJoin(final ChannelJoinEvent event) {
+        markChanged(event.getChannel());
+    }
+
+    @Handler
+    void handlePart(final ChannelPartEvent event) {
+        markChanged(event.getChannel());
+    }
+
+    @Handler
+    void handleQuit(final ChannelQuitEvent event) {
+        markChanged(event.getChannel());
+    }
+
+    @Handler
+    void handleKick(final ChannelKickEvent event) {
+        markChanged(event.getChannel());
+    }
+
+    @Handler
+    void handleNickChange(final ChannelNickChangeEvent event) {
+        markChanged(event.getChannel());
+    }
+
+    @Handler
+    void handleMessage(final ChannelMessageEvent event) {
+        markActive(event.getChannel());
+    }
+
+    @Handler
+    void handleAction(final ChannelActionEvent event) {
+        markActive(event.getChannel());
+    }
+
+    private void markChanged(final GroupChat channel) {
+        final ChannelState state = channelStates.get(channel);
+        if (state != null) {
+            state.changed = true;
+        }
+    }
+
+    private void markActive(final GroupChat channel) {
+        final ChannelState state = channelStates.get(channel);
+        if (state != null) {
+            state.active = true;
+        }
+    }
+
     @VisibleForTesting
     @Handler
     void handleAwayEvent(final ChannelUserAwayEvent event) {
@@ -123,6 +275,57 @@ public class ConnectionHandler {
             final String reason = event.getArgs()[4];
             users.removeAll(nickname).forEach(u -> eventBus.publishAsync(
                 new ChannelUserAwayEvent(u.getGroupChat(), u, Optional.ofNullable(reason))));
+        } else if (event.getConnection().equals(connection) && event.getNumeric() == 315) {
+            final Long sent = outstanding.remove(event.getArgs()[3]);
+            if (sent != null) {
+                final long sample = System.nanoTime() - sent;
+                latency = latency == 0 ? sample : (latency * 7 + sample) / 8;
+            }
+        }
+    }
+
+    /**
+     * Tracks what has happened in a channel since it was last sent a WHO.
+     */
+    private static class ChannelState {
+
+        /** Whether the channel's membership has changed. */
+        private volatile boolean changed = true;
+        /** Whether there have been messages in the channel. */
+        private volatile boolean active;
+        /** The number of consecutive intervals the channel has been skipped for. */
+        private int skipped;
+
+        /**
+         * Determines whether the channel should be sent a WHO this interval.
+         *
+         * @param idleSkip The number of intervals an unchanged channel can be skipped for
+         *
+         * @return True if the channel should be sent a WHO, false if it has been skipped
+         */
+        boolean isDue(final int idleSkip) {
+            if (changed || active || skipped >= idleSkip) {
+                return true;
+            }
+            skipped++;
+            return false;
+        }
+
+        /**
+         * Gets the order in which the channel should be sent a WHO, lowest first.
+         *
+         * @return 0 for active channels, 1 for changed channels, 2 otherwise
+         */
+        int getPriority() {
+            return active ? 0 : changed ? 1 : 2;
         }
+
+        /** Records that the channel has been sent a WHO. */
+        void sent() {
+            changed = false;
+            active = false;
+            skipped = 0;
+        }
+
     }
 }
@@ -18,6 +18,7 @@
 package com.dmdirc.addons.channelwho;
 
 import com.dmdirc.config.binding.ConfigBinder;
+import com.dmdirc.events.ChannelJoinEvent;
 import com.dmdirc.events.ChannelUserAwayEvent;
 import com.dmdirc.events.DisplayProperty;
 import com.dmdirc.events.ServerNumericEvent;
@@ -52,6 +53,7 @@ import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -67,12 +69,15 @@ public class ConnectionHandlerTest {
     @Mock private ConnectionManager connectionManager;
     @Mock private Connection connection;
     @Mock private GroupChat groupChat;
+    @Mock private GroupChat groupChat2;
     @Mock private GroupChatUser groupChatUser;
     @Mock private User user;
     @Mock private GroupChatManager groupChatManager;
     @Mock private ServerNumericEvent serverNumericEvent;
     @Mock private ChannelUserAwayEvent channelUserAwayEvent;
+    @Mock private ChannelJoinEvent channelJoinEvent;
     @Captor private ArgumentCaptor<ChannelUserAwayEvent> eventArgumentCaptor;
+    @Captor private ArgumentCaptor<Runnable> runnableArgumentCaptor;
     private ConnectionHandler instance;
 
     @Before
@@ -87,6 +92,9 @@ public class ConnectionHandlerTest {
         when(groupChatManager.getChannels()).thenReturn(Lists.newArrayList(groupChat));
         when(groupChat.getWindowModel()).thenReturn(windowModel);
         when(groupChat.getConnection()).thenReturn(Optional.of(connection));
+        when(groupChat.getName()).thenReturn("#channel");
+        when(groupChat2.getWindowModel()).thenReturn(windowModel);
+        when(groupChat2.getName()).thenReturn("#channel2");
         when(configBinder.withDefaultDomain("domain")).thenReturn(configBinder);
         when(windowModel.getConfigManager()).thenReturn(config);
         when(groupChatUser.getNickname()).thenReturn("nickname");
@@ -144,6 +152,41 @@ public class ConnectionHandlerTest {
         verify(groupChat, never()).requestUsersInfo();
     }
 
+    @Test
+    public void testCheckWho_SpreadsRequests() throws Exception {
+        when(config.getOptionBool("domain", "sendwho")).thenReturn(true);
+        when(groupChatManager.getChannels()).thenReturn(Lists.newArrayList(groupChat, groupChat2));
+        instance.checkWho();
+        verify(groupChat).requestUsersInfo();
+        verify(groupChat2, never()).requestUsersInfo();
+        verify(scheduledExecutorService).schedule(runnableArgumentCaptor.capture(), eq(2L),
+                eq(TimeUnit.MILLISECONDS));
+        runnableArgumentCaptor.getValue().run();
+        verify(groupChat2).requestUsersInfo();
+    }
+
+    @Test
+    public void testCheckWho_SkipsUnchangedChannels() throws Exception {
+        when(config.getOptionBool("domain", "sendwho")).thenReturn(true);
+        instance.handleWhoIdleSkip(1);
+        instance.checkWho();
+        instance.checkWho();
+        verify(groupChat).requestUsersInfo();
+        instance.checkWho();
+        verify(groupChat, times(2)).requestUsersInfo();
+    }
+
+    @Test
+    public void testCheckWho_DoesNotSkipChangedChannels() throws Exception {
+        when(config.getOptionBool("domain", "sendwho")).thenReturn(true);
+        when(channelJoinEvent.getChannel()).thenReturn(groupChat);
+        instance.handleWhoIdleSkip(1);
+        instance.checkWho();
+        instance.handleJoin(channelJoinEvent);
+        instance.checkWho();
+        verify(groupChat, times(2)).requestUsersInfo();
+    }
+
     @Test
     public void testHandleAwayEvent_WithReason() throws Exception {
         when(channelUserAwayEvent.getReason()).thenReturn(Optional.of("reason"));
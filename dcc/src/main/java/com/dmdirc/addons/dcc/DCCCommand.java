@@ -214,6 +214,10 @@ public class DCCCommand extends BaseCommand implements IntelligentCommand {
                             "send.blocksize"));
             send.setTurbo(origin.getConfigManager().getOptionBool(
                     myPlugin.getDomain(), "send.forceturbo"));
+            send.setZeroCopy(origin.getConfigManager().getOptionBool(
+                    myPlugin.getDomain(), "send.zerocopy"));
+            send.setAckWindow(origin.getConfigManager().getOptionInt(
+                    myPlugin.getDomain(), "send.ackwindow"));
             send.setType(DCCTransfer.TransferType.SEND);
 
             eventBus.publish(new DccSendRequestEvent(connection, target, selectedFile.
@@ -22,6 +22,7 @@ import com.dmdirc.addons.dcc.events.DccChatStartingEvent;
 import com.dmdirc.addons.dcc.events.DccSendRequestEvent;
 import com.dmdirc.addons.dcc.io.DCC;
 import com.dmdirc.addons.dcc.io.DCCChat;
+import com.dmdirc.addons.dcc.io.DCCReactor;
 import com.dmdirc.addons.dcc.io.DCCTransfer;
 import com.dmdirc.addons.dcc.kde.KFileChooser;
 import com.dmdirc.addons.dcc.ui.PlaceholderPanel;
@@ -66,8 +67,10 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Supplier;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.swing.JComponent;
 import javax.swing.JFileChooser;
@@ -104,6 +107,8 @@ public class DCCManager {
     private final EventBus eventBus;
     /** Plugin info. */
     private final PluginInfo pluginInfo;
+    /** Executor used to publish the progress of transfers. */
+    private final ScheduledExecutorService progressExecutor;
 
     /**
      * Creates a new instance of this plugin.
@@ -122,7 +127,8 @@ public class DCCManager {
             final EventBus eventBus,
             final GlobalCommandParser commandParser,
             @Directory(DirectoryType.BASE) final String baseDirectory,
-            final BackBufferFactory backBufferFactory) {
+            final BackBufferFactory backBufferFactory,
+            @Named("dcc") final ScheduledExecutorService progressExecutor) {
         this.mainWindow = mainWindow;
         this.windowManager = windowManager;
         this.commandController = commandController;
@@ -132,6 +138,7 @@ public class DCCManager {
         this.config = globalConfig;
         this.eventBus = eventBus;
         this.backBufferFactory = backBufferFactory;
+        this.progressExecutor = progressExecutor;
 
         windowFactory.registerImplementation(new ComponentFrameWindowProvider(
                 "com.dmdirc.addons.dcc.ui.PlaceholderPanel", componentFrameFactory,
@@ -198,6 +205,16 @@ public class DCCManager {
                 "If you have problems with reverse dcc receive resume,"
                         + " try toggling this.", manager.getConfigManager(),
                 manager.getIdentity()));
+        sending.addSetting(new PreferencesSetting(PreferencesType.BOOLEAN,
+                pluginInfo.getDomain(), "send.zerocopy", "Use zero-copy sends",
+                "Send files straight from disk to the network without "
+                        + "waiting for each block to be acknowledged.",
+                manager.getConfigManager(), manager.getIdentity()));
+        sending.addSetting(new PreferencesSetting(PreferencesType.INTEGER,
+                pluginInfo.getDomain(), "send.ackwindow", "Acknowledgement window",
+                "Maximum number of bytes to send ahead of the receiver's "
+                        + "acknowledgements when using zero-copy sends.",
+                manager.getConfigManager(), manager.getIdentity()));
         general.addSetting(new PreferencesSetting(PreferencesType.INTEGER,
                 pluginInfo.getDomain(), "send.blocksize", "Blocksize to use for DCC",
                 "Change the block size for send/receive, this can "
@@ -724,6 +741,17 @@ public class DCCManager {
         if (container != null) {
             container.close();
         }
+        DCCReactor.shutdown();
+        progressExecutor.shutdown();
+    }
+
+    /**
+     * Gets the executor used to periodically publish the progress of transfers.
+     *
+     * @return The progress executor
+     */
+    public ScheduledExecutorService getProgressExecutor() {
+        return progressExecutor;
     }
 
     /**
@@ -26,15 +26,21 @@ import com.dmdirc.addons.dcc.io.DCC;
 import com.dmdirc.addons.dcc.io.DCCTransfer;
 import com.dmdirc.interfaces.Connection;
 import com.dmdirc.events.eventbus.EventBus;
+import com.dmdirc.config.binding.ConfigBinder;
+import com.dmdirc.config.binding.ConfigBinding;
 import com.dmdirc.config.provider.AggregateConfigProvider;
 import com.dmdirc.parser.events.SocketCloseEvent;
 import com.dmdirc.parser.interfaces.Parser;
 import com.dmdirc.ui.messages.BackBufferFactory;
+import com.dmdirc.util.collections.ListenerList;
 
 import java.awt.Desktop;
 import java.io.File;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 import javax.swing.JOptionPane;
@@ -47,6 +53,10 @@ import net.engio.mbassy.listener.Handler;
 public class TransferContainer extends FrameContainer implements
         DCCTransferHandler {
 
+    /** How often progress is published, in milliseconds. */
+    private static final long PROGRESS_INTERVAL = 200;
+    /** Number of progress samples the transfer speed is averaged over. */
+    private static final int SPEED_SAMPLES = 25;
     /** The dcc plugin that owns this frame */
     protected final DCCManager plugin;
     /** Config manager. */
@@ -58,7 +68,28 @@ public class TransferContainer extends FrameContainer implements
     /** Other Nickname */
     private final String otherNickname;
     /** Total data transferred */
-    private volatile long transferCount = 0;
+    private final AtomicLong transferCount = new AtomicLong();
+    /** Data transferred since progress was last published. */
+    private final AtomicLong unpublishedBytes = new AtomicLong();
+    /** Times at which progress samples were taken. */
+    private final long[] sampleTimes = new long[SPEED_SAMPLES + 1];
+    /** Amount of data transferred at each progress sample. */
+    private final long[] sampleCounts = new long[SPEED_SAMPLES + 1];
+    /** Index of the next progress sample to write. */
+    private int sampleIndex;
+    /** Number of progress samples taken. */
+    private int sampleCount;
+    /** Transfer speed over the most recent progress samples. */
+    private volatile double bytesPerSecond;
+    /** Scheduled task that publishes progress while the transfer is active. */
+    private ScheduledFuture<?> progressFuture;
+    /** Handlers to notify of progress. */
+    private final ListenerList handlers = new ListenerList();
+    /** Config binder used for our settings. */
+    private final ConfigBinder configBinder;
+    /** Whether to show the percentage complete in the window title. */
+    @ConfigBinding(key = "general.percentageInTitle")
+    private volatile boolean percentageInTitle;
     /** Time Started */
     private long timeStarted = 0;
     /** Plugin that this send belongs to. */
@@ -101,6 +132,8 @@ public class TransferContainer extends FrameContainer implements
 
         otherNickname = targetNick;
         this.eventBus = eventBus;
+        configBinder = config.getBinder().withDefaultDomain(plugin.getDomain());
+        configBinder.bind(this, TransferContainer.class);
         initBackBuffer();
     }
 
@@ -132,38 +165,77 @@ public class TransferContainer extends FrameContainer implements
     }
 
     /**
-     * Called when data is sent/received
+     * Adds a handler to be notified when this transfer opens or closes, and periodically with its
+     * progress while it is active.
+     *
+     * @param handler The handler to add
+     */
+    public void addHandler(final DCCTransferHandler handler) {
+        handlers.add(DCCTransferHandler.class, handler);
+    }
+
+    /**
+     * Called when data is sent/received. Progress is only counted here, and is published to
+     * handlers and the title by {@link #publishProgress()}.
      *
      * @param dcc   The DCCSend that this message is from
      * @param bytes The number of new bytes that were transferred
      */
     @Override
     public void dataTransferred(final DCCTransfer dcc, final int bytes) {
-        final double percent;
-        synchronized (this) {
-            transferCount += bytes;
-            percent = getPercent();
-        }
-
-        final boolean percentageInTitle = config.getOptionBool(
-                plugin.getDomain(), "general.percentageInTitle");
+        transferCount.addAndGet(bytes);
+        unpublishedBytes.addAndGet(bytes);
+    }
 
-        if (percentageInTitle) {
-            final StringBuilder title = new StringBuilder();
-            if (dcc.isListenSocket()) {
-                title.append('*');
+    /**
+     * Publishes the progress made since the last call, and updates the transfer speed.
+     */
+    private synchronized void publishProgress() {
+        final long bytes = unpublishedBytes.getAndSet(0);
+        final int published = (int) Math.min(bytes, Integer.MAX_VALUE);
+        addSpeedSample(System.currentTimeMillis(), transferCount.get());
+
+        if (bytes > 0) {
+            if (percentageInTitle) {
+                final StringBuilder title = new StringBuilder();
+                if (dcc.isListenSocket()) {
+                    title.append('*');
+                }
+                title.append(dcc.getType() == DCCTransfer.TransferType.SEND
+                        ? "Sending: " : "Receiving: ");
+                title.append(otherNickname);
+                title.append(" (")
+                        .append((long) Math.floor(getPercent()))
+                        .append("%)");
+                setName(title.toString());
+                setTitle(title.toString());
             }
-            title.append(dcc.getType() == DCCTransfer.TransferType.SEND
-                    ? "Sending: " : "Receiving: ");
-            title.append(otherNickname);
-            title.append(" (")
-                    .append(String.format("%.0f", Math.floor(percent)))
-                    .append("%)");
-            setName(title.toString());
-            setTitle(title.toString());
+
+            eventBus.publish(new DccSendDatatransferedEvent(this, published));
         }
 
-        eventBus.publish(new DccSendDatatransferedEvent(this, bytes));
+        for (DCCTransferHandler handler : handlers.get(DCCTransferHandler.class)) {
+            handler.dataTransferred(dcc, published);
+        }
+    }
+
+    /**
+     * Records a progress sample, and recalculates the transfer speed over the window of recent
+     * samples.
+     *
+     * @param time  The time the sample was taken
+     * @param count The total amount of data transferred at that time
+     */
+    private void addSpeedSample(final long time, final long count) {
+        sampleTimes[sampleIndex] = time;
+        sampleCounts[sampleIndex] = count;
+        sampleCount = Math.min(sampleCount + 1, sampleTimes.length);
+        final int oldest = sampleCount < sampleTimes.length ? 0
+                : (sampleIndex + 1) % sampleTimes.length;
+        sampleIndex = (sampleIndex + 1) % sampleTimes.length;
+
+        final long elapsed = time - sampleTimes[oldest];
+        bytesPerSecond = elapsed > 0 ? (count - sampleCounts[oldest]) * 1000.0 / elapsed : 0;
     }
 
     /**
@@ -173,22 +245,18 @@ public class TransferContainer extends FrameContainer implements
      * @return The percentage of this transfer that has been completed
      */
     public double getPercent() {
-        return 100.00 / dcc.getFileSize() * (transferCount
+        return 100.00 / dcc.getFileSize() * (transferCount.get()
                 + dcc.getFileStart());
     }
 
     /**
-     * Retrieves the current transfer speed of this transfer.
+     * Retrieves the current transfer speed of this transfer, averaged over the last few seconds.
      *
      * @since 0.6.4
      * @return The speed of this transfer in Bytes/Sec
      */
     public double getBytesPerSecond() {
-        final long time = getElapsedTime();
-
-        synchronized (this) {
-            return time > 0 ? (double) transferCount / time : transferCount;
-        }
+        return bytesPerSecond;
     }
 
     /**
@@ -199,12 +267,8 @@ public class TransferContainer extends FrameContainer implements
      */
     public double getRemainingTime() {
         final double bytesPerSecond = getBytesPerSecond();
-        final long remainingBytes;
-
-        synchronized (this) {
-            remainingBytes = dcc.getFileSize() - dcc.getFileStart()
-                    - transferCount;
-        }
+        final long remainingBytes = dcc.getFileSize() - dcc.getFileStart()
+                - transferCount.get();
 
         return bytesPerSecond > 0 ? remainingBytes / bytesPerSecond : 1;
     }
@@ -236,7 +300,7 @@ public class TransferContainer extends FrameContainer implements
      * @return True if the transfer is complete, false otherwise
      */
     public boolean isComplete() {
-        return transferCount == dcc.getFileSize() - dcc.getFileStart();
+        return transferCount.get() == dcc.getFileSize() - dcc.getFileStart();
     }
 
     /**
@@ -256,18 +320,21 @@ public class TransferContainer extends FrameContainer implements
      */
     @Override
     public void socketClosed(final DCCTransfer dcc) {
+        stopProgress();
+        publishProgress();
         eventBus.publish(new DccSendSocketclosedEvent(this));
         if (!windowClosing) {
-            synchronized (this) {
-                if (transferCount == dcc.getFileSize() - dcc.getFileStart()) {
-                    setIcon(dcc.getType() == DCCTransfer.TransferType.SEND
-                            ? "dcc-send-done" : "dcc-receive-done");
-                } else {
-                    setIcon(dcc.getType() == DCCTransfer.TransferType.SEND
-                            ? "dcc-send-failed" : "dcc-receive-failed");
-                }
+            if (isComplete()) {
+                setIcon(dcc.getType() == DCCTransfer.TransferType.SEND
+                        ? "dcc-send-done" : "dcc-receive-done");
+            } else {
+                setIcon(dcc.getType() == DCCTransfer.TransferType.SEND
+                        ? "dcc-send-failed" : "dcc-receive-failed");
             }
         }
+        for (DCCTransferHandler handler : handlers.get(DCCTransferHandler.class)) {
+            handler.socketClosed(dcc);
+        }
     }
 
     /**
@@ -281,6 +348,33 @@ public class TransferContainer extends FrameContainer implements
         timeStarted = System.currentTimeMillis();
         setIcon(dcc.getType() == DCCTransfer.TransferType.SEND
                 ? "dcc-send-active" : "dcc-receive-active");
+        startProgress();
+        for (DCCTransferHandler handler : handlers.get(DCCTransferHandler.class)) {
+            handler.socketOpened(dcc);
+        }
+    }
+
+    /**
+     * Starts periodically publishing progress, replacing any previous schedule.
+     */
+    private synchronized void startProgress() {
+        stopProgress();
+        sampleIndex = 0;
+        sampleCount = 0;
+        bytesPerSecond = 0;
+        addSpeedSample(timeStarted, transferCount.get());
+        progressFuture = plugin.getProgressExecutor().scheduleAtFixedRate(this::publishProgress,
+                PROGRESS_INTERVAL, PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops periodically publishing progress.
+     */
+    private synchronized void stopProgress() {
+        if (progressFuture != null) {
+            progressFuture.cancel(false);
+            progressFuture = null;
+        }
     }
 
     /**
@@ -290,9 +384,8 @@ public class TransferContainer extends FrameContainer implements
      * @return True if the transfer could be resent, false otherwise
      */
     public boolean resend() {
-        synchronized (this) {
-            transferCount = 0;
-        }
+        transferCount.set(0);
+        unpublishedBytes.set(0);
         dcc.reset();
 
         if (connection != null && connection.getState() == ServerState.CONNECTED) {
@@ -334,6 +427,8 @@ public class TransferContainer extends FrameContainer implements
     @Override
     public void close() {
         windowClosing = true;
+        stopProgress();
+        configBinder.unbind(this);
 
         super.close();
 
@@ -17,71 +17,67 @@
 
 package com.dmdirc.addons.dcc.io;
 
+import com.dmdirc.util.io.StreamUtils;
+
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
 /**
  * This class manages the socket and low-level I/O functionality for all types of DCC. Subclasses
  * process the data received by this class.
+ * <p>
+ * Sockets are non-blocking and are driven by the shared {@link DCCReactor}, rather than each DCC
+ * having its own thread. The {@link #handleRead()} and {@link #handleWrite()} callbacks, and the
+ * {@link #socketOpened()} callback for listen sockets, are called on the reactor thread and must
+ * not block.
  */
-public abstract class DCC implements Runnable {
+public abstract class DCC {
 
     /** Address. */
     protected long address = 0;
     /** Port. */
     protected int port = 0;
-    /** Socket used to communicate with. */
-    protected Socket socket;
-    /** The Thread in use for this. */
-    private volatile Thread myThread;
-    /** Are we already running? */
-    protected final AtomicBoolean running = new AtomicBoolean();
+    /** Channel used to communicate with, or null if not connected. */
+    protected volatile SocketChannel channel;
     /** Are we a listen socket? */
     protected boolean listen = false;
-    /**
-     * The current socket in use if this is a listen socket. This reference may be changed if and
-     * only if exactly one permit from the {@link #serverSocketSem} and {@link #serverListeningSem}
-     * semaphores is held by the thread doing the modification.
-     */
-    private ServerSocket serverSocket;
-    /**
-     * Semaphore to control write access to ServerSocket. If an object acquires a permit from the
-     * {@link #serverSocketSem}, then {@link #serverSocket} is <em>guaranteed</em> not to be
-     * externally modified until that permit is released, <em>unless</em> the object also acquires a
-     * permit from the {@link #serverListeningSem}.
-     */
-    private final Semaphore serverSocketSem = new Semaphore(1);
-    /**
-     * Semaphore used when we're blocking waiting for connections. If an object acquires a permit
-     * from the {@link #serverListeningSem}, then it is <em>guaranteed</em> that the {@link #run()}
-     * method is blocking waiting for incoming connections. In addition, it is <em>guaranteed</em>
-     * that the {@link #run()} method is holding the {@link #serverSocketSem} permit, and it will
-     * continue holding that permit until it can reacquire the {@link #serverListeningSem} permit.
-     */
-    private final Semaphore serverListeningSem = new Semaphore(0);
+    /** The channel we are listening on, if this is a listen socket that has not yet connected. */
+    private volatile ServerSocketChannel serverChannel;
+    /** The reactor driving this DCC, or null if it has not been registered with one. */
+    private volatile DCCReactor reactor;
+    /** The key registering our current channel with the reactor. */
+    private volatile SelectionKey key;
+    /** Whether we want to be told when the channel can be written to. */
+    private volatile boolean writeInterest;
 
     /**
      * Connect this dcc.
      */
     public void connect() {
+        reactor = DCCReactor.getInstance();
+        if (listen) {
+            final ServerSocketChannel server = serverChannel;
+            address = 0;
+            port = server.socket().getLocalPort();
+            reactor.register(server, SelectionKey.OP_ACCEPT, this);
+            return;
+        }
+
         try {
-            if (listen) {
-                address = 0;
-                port = serverSocket.getLocalPort();
-            } else {
-                socket = new Socket(longToIP(address), port);
-                socketOpened();
-            }
+            final SocketChannel newChannel = SocketChannel.open(
+                    new InetSocketAddress(longToIP(address), port));
+            newChannel.configureBlocking(false);
+            channel = newChannel;
         } catch (IOException ioe) {
             socketClosed();
             return;
         }
 
-        myThread = new Thread(this, "DCC-Thread-" + getHost());
-        myThread.start();
+        socketOpened();
+        register();
     }
 
     /**
@@ -90,9 +86,7 @@ public abstract class DCC implements Runnable {
      * @throws IOException If the listen socket can't be created
      */
     public void listen() throws IOException {
-        serverSocketSem.acquireUninterruptibly();
-        serverSocket = new ServerSocket(0, 1);
-        serverSocketSem.release();
+        serverChannel = openServerChannel(0);
 
         listen = true;
         connect();
@@ -111,18 +105,15 @@ public abstract class DCC implements Runnable {
 
         for (int i = startPort; i <= endPort; ++i) {
             try {
-                serverSocketSem.acquireUninterruptibly();
-                serverSocket = new ServerSocket(i, 1);
+                serverChannel = openServerChannel(i);
                 // Found a socket we can use!
                 break;
             } catch (IOException | SecurityException ioe) {
                 // Try next socket.
-            } finally {
-                serverSocketSem.release();
             }
         }
 
-        if (serverSocket == null) {
+        if (serverChannel == null) {
             throw new IOException("No available sockets in range " + startPort + ":" + endPort);
         } else {
             connect();
@@ -130,88 +121,181 @@ public abstract class DCC implements Runnable {
     }
 
     /**
-     * This handles the socket to keep it out of the main thread
+     * Opens a non-blocking server channel listening on the given port.
+     *
+     * @param localPort Port to listen on, or 0 for any free port
+     *
+     * @return A new server channel
+     *
+     * @throws IOException If the channel can't be opened
+     */
+    private static ServerSocketChannel openServerChannel(final int localPort) throws IOException {
+        final ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(localPort), 1);
+            server.configureBlocking(false);
+        } catch (IOException | SecurityException ex) {
+            StreamUtils.close(server);
+            throw ex;
+        }
+        return server;
+    }
+
+    /**
+     * Registers our connected channel with the reactor.
      */
-    @Override
-    public void run() {
-        if (running.getAndSet(true)) {
+    private void register() {
+        final SocketChannel current = channel;
+        if (current != null) {
+            reactor.register(current, getInterestOps(writeInterest), this);
+        }
+    }
+
+    /**
+     * Called by the reactor when our channel is registered.
+     *
+     * @param key The key registering the channel
+     */
+    void setKey(final SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Called by the reactor when our channel is ready.
+     *
+     * @param readyKey The key that is ready
+     */
+    void processKey(final SelectionKey readyKey) {
+        if (readyKey.isAcceptable()) {
+            accept();
             return;
         }
 
-        // handleSocket is implemented by sub classes, and should return false
-        // when the socket is closed.
-        final Thread thisThread = Thread.currentThread();
+        try {
+            boolean open = true;
+            if (readyKey.isReadable()) {
+                open = handleRead();
+            }
+            if (open && readyKey.isValid() && readyKey.isWritable()) {
+                open = handleWrite();
+            }
+            if (!open) {
+                close();
+            }
+        } catch (IOException ex) {
+            close();
+        }
+    }
 
-        while (myThread == thisThread) {
-            serverSocketSem.acquireUninterruptibly();
+    /**
+     * Accepts an incoming connection on our listen socket.
+     */
+    private void accept() {
+        final ServerSocketChannel server = serverChannel;
+        if (server == null) {
+            return;
+        }
 
-            if (serverSocket == null) {
-                serverSocketSem.release();
+        final SocketChannel accepted;
+        try {
+            accepted = server.accept();
+            if (accepted == null) {
+                return;
+            }
+            accepted.configureBlocking(false);
+        } catch (IOException ioe) {
+            if (closeServerChannel()) {
+                socketClosed();
+            }
+            return;
+        }
 
-                if (!handleSocket()) {
-                    close();
-                    break;
-                }
-            } else {
-                try {
-                    serverListeningSem.release();
-                    socket = serverSocket.accept();
-                    serverSocket.close();
-                    socketOpened();
-                } catch (IOException ioe) {
-                    socketClosed();
-                    break;
-                } finally {
-                    serverListeningSem.acquireUninterruptibly();
-                    serverSocket = null;
-                    serverSocketSem.release();
-                }
+        final boolean claimed;
+        synchronized (this) {
+            claimed = serverChannel == server;
+            if (claimed) {
+                serverChannel = null;
+                channel = accepted;
             }
+        }
+        StreamUtils.close(server);
 
-            // Yield to reduce CPU usage.
-            Thread.yield();
+        if (!claimed) {
+            // We were closed while accepting, and close() has already reported it.
+            StreamUtils.close(accepted);
+            return;
         }
-        // Socket closed
 
-        running.set(false);
+        socketOpened();
+        register();
     }
 
     /**
-     * Called to close the socket
+     * Sets whether we want {@link #handleWrite()} to be called when the channel can be written to.
+     * May be called from any thread.
+     *
+     * @param interested True to be told when the channel is writable, false otherwise
+     */
+    protected void setWriteInterest(final boolean interested) {
+        writeInterest = interested;
+        final DCCReactor currentReactor = reactor;
+        if (currentReactor != null) {
+            currentReactor.execute(() -> {
+                final SelectionKey currentKey = key;
+                if (currentKey != null && currentKey.isValid()
+                        && currentKey.channel() == channel) {
+                    currentKey.interestOps(getInterestOps(interested));
+                }
+            });
+        }
+    }
+
+    private static int getInterestOps(final boolean interested) {
+        return SelectionKey.OP_READ | (interested ? SelectionKey.OP_WRITE : 0);
+    }
+
+    /**
+     * Called to close the socket. {@link #socketClosed()} is called once if we were connected or
+     * still listening.
      */
     public void close() {
-        boolean haveSLS = false;
+        final boolean listening = closeServerChannel();
 
-        while (!serverSocketSem.tryAcquire() && !(haveSLS = serverListeningSem.tryAcquire())) {
-            Thread.yield();
+        final SocketChannel current;
+        synchronized (this) {
+            current = channel;
+            channel = null;
         }
 
-        if (serverSocket != null) {
-            try {
-                if (!serverSocket.isClosed()) {
-                    serverSocket.close();
-                }
-            } catch (IOException ioe) {
-            }
-            serverSocket = null;
+        if (current != null) {
+            StreamUtils.close(current);
+        }
+        if (current != null || listening) {
+            socketClosed();
         }
 
-        if (haveSLS) {
-            serverListeningSem.release();
-        } else {
-            serverSocketSem.release();
+        final DCCReactor currentReactor = reactor;
+        if (currentReactor != null) {
+            currentReactor.wakeup();
         }
+    }
 
-        if (socket != null) {
-            try {
-                if (!socket.isClosed()) {
-                    socket.close();
-                }
-            } catch (IOException ioe) {
-            }
-            socketClosed();
-            socket = null;
+    /**
+     * Closes our listen socket, if we have one.
+     *
+     * @return True if this call closed the listen socket, false if there was none to close
+     */
+    private boolean closeServerChannel() {
+        final ServerSocketChannel server;
+        synchronized (this) {
+            server = serverChannel;
+            serverChannel = null;
+        }
+        if (server == null) {
+            return false;
         }
+        StreamUtils.close(server);
+        return true;
     }
 
     /**
@@ -221,7 +305,7 @@ public abstract class DCC implements Runnable {
     }
 
     /**
-     * Called when the socket is closed, before the thread terminates.
+     * Called when the socket is closed.
      */
     protected void socketClosed() {
     }
@@ -236,18 +320,33 @@ public abstract class DCC implements Runnable {
     }
 
     /**
-     * Called periodically to read or write data to this DCC's socket. Implementations should
-     * attempt to send or receive one unit of data (for example one block of binary data, or one
-     * line of ASCII data) each time this method is called.
+     * Called on the reactor thread when the channel has data available. Implementations should
+     * read whatever is available without blocking.
      * <p>
      * The return value of this method is used to determine whether the DCC has been completed. If
-     * the method returns <code>false</code>, the DCC is assumed to have finished (i.e., the socket
-     * has closed), and the method will not be called again. A return value of <code>true</code>
-     * will cause the method to be recalled.
+     * the method returns <code>false</code>, the DCC is assumed to have finished and the socket
+     * is closed.
+     *
+     * @return false when the socket should be closed, true otherwise.
+     *
+     * @throws IOException If the channel could not be read, which closes the socket
+     */
+    protected abstract boolean handleRead() throws IOException;
+
+    /**
+     * Called on the reactor thread when the channel can be written to, if write interest has been
+     * requested with {@link #setWriteInterest(boolean)}. Implementations should write whatever
+     * they can without blocking, and remove their write interest once they have nothing left to
+     * write.
      *
-     * @return false when socket is closed, true will cause the method to be called again.
+     * @return false when the socket should be closed, true otherwise.
+     *
+     * @throws IOException If the channel could not be written to, which closes the socket
      */
-    protected abstract boolean handleSocket();
+    protected boolean handleWrite() throws IOException {
+        setWriteInterest(false);
+        return true;
+    }
 
     /**
      * Set the address to connect to for this DCC
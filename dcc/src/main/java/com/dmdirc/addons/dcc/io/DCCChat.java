@@ -19,22 +19,29 @@ package com.dmdirc.addons.dcc.io;
 
 import com.dmdirc.addons.dcc.DCCChatHandler;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * This class handles a DCC Chat
  */
 public class DCCChat extends DCC {
 
+    /** Charset used to encode and decode lines. */
+    private static final Charset CHARSET = Charset.defaultCharset();
     /** The handler for this DCCChat. */
     private DCCChatHandler handler = null;
-    /** Used to send data out the socket. */
-    private PrintWriter out;
-    /** Used to read data from the socket. */
-    private BufferedReader in;
+    /** Buffer used to read data from the socket. */
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(4096);
+    /** The partial line read so far. */
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream();
+    /** Data waiting to be sent out the socket. */
+    private final Queue<ByteBuffer> pendingWrites = new ConcurrentLinkedQueue<>();
     /** Are we active? */
     private boolean active = false;
 
@@ -50,21 +57,15 @@ public class DCCChat extends DCC {
     @Override
     protected void socketOpened() {
         active = true;
-        try {
-            out = new PrintWriter(socket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            if (handler != null) {
-                handler.socketOpened(this);
-            }
-        } catch (IOException ioe) {
-            socketClosed();
+        if (handler != null) {
+            handler.socketOpened(this);
         }
     }
 
     @Override
     protected void socketClosed() {
-        out = null;
-        in = null;
+        pendingWrites.clear();
+        lineBuffer.reset();
         if (handler != null) {
             handler.socketClosed(this);
         }
@@ -72,29 +73,69 @@ public class DCCChat extends DCC {
     }
 
     @Override
-    protected boolean handleSocket() {
-        if (out == null || in == null) {
+    protected boolean handleRead() throws IOException {
+        final SocketChannel current = channel;
+        if (current == null) {
             return false;
         }
-        final String inLine;
-        try {
-            inLine = in.readLine();
-            if (inLine == null) {
-                return false;
-            } else {
-                if (handler != null) {
-                    handler.handleChatMessage(this, inLine);
+
+        int bytesRead;
+        while ((bytesRead = current.read(readBuffer)) > 0) {
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                final byte data = readBuffer.get();
+                if (data == '\n') {
+                    handleLine();
+                } else {
+                    lineBuffer.write(data);
                 }
-                return true;
             }
-        } catch (IOException e) {
+            readBuffer.clear();
+        }
+        return bytesRead == 0;
+    }
+
+    /**
+     * Passes the line that has been read to the handler.
+     */
+    private void handleLine() {
+        final byte[] data = lineBuffer.toByteArray();
+        lineBuffer.reset();
+        final int length = data.length > 0 && data[data.length - 1] == '\r'
+                ? data.length - 1 : data.length;
+        if (handler != null) {
+            handler.handleChatMessage(this, new String(data, 0, length, CHARSET));
+        }
+    }
+
+    @Override
+    protected boolean handleWrite() throws IOException {
+        final SocketChannel current = channel;
+        if (current == null) {
             return false;
         }
+
+        ByteBuffer buffer;
+        while ((buffer = pendingWrites.peek()) != null) {
+            current.write(buffer);
+            if (buffer.hasRemaining()) {
+                // Socket is full, wait until it's writable again.
+                return true;
+            }
+            pendingWrites.poll();
+        }
+
+        setWriteInterest(false);
+        if (!pendingWrites.isEmpty()) {
+            // A line was queued after we emptied the queue.
+            setWriteInterest(true);
+        }
+        return true;
     }
 
     @Override
     public boolean isWriteable() {
-        return out != null;
+        return channel != null;
     }
 
     /**
@@ -103,8 +144,9 @@ public class DCCChat extends DCC {
      * @param line The line to be sent
      */
     public void sendLine(final String line) {
-        if (out != null) {
-            out.printf("%s\r\n", line);
+        if (channel != null) {
+            pendingWrites.add(ByteBuffer.wrap((line + "\r\n").getBytes(CHARSET)));
+            setWriteInterest(true);
         }
     }
 
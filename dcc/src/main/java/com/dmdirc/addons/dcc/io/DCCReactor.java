@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.dmdirc.addons.dcc.io;
+
+import com.dmdirc.util.io.StreamUtils;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Drives the sockets of every DCC from a single thread using a {@link Selector}. The number of
+ * threads used for DCCs does not depend on the number of chats and transfers, and idle DCCs use no
+ * CPU as the thread only wakes when a socket is ready.
+ */
+public final class DCCReactor implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DCCReactor.class);
+    /** The shared reactor, or null if none has been started. */
+    private static DCCReactor instance;
+    /** Tasks waiting to be run on the reactor thread. */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    /** Selector used to wait for socket activity. */
+    private final Selector selector;
+    /** The reactor thread. */
+    private final Thread thread;
+    /** Whether the reactor should keep running. */
+    private volatile boolean running = true;
+
+    /**
+     * Creates a new reactor and starts its thread.
+     */
+    private DCCReactor() {
+        try {
+            selector = Selector.open();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to open DCC selector", ex);
+        }
+        thread = new Thread(this, "DCC-Reactor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets the shared reactor, starting it if required.
+     *
+     * @return The shared reactor
+     */
+    public static synchronized DCCReactor getInstance() {
+        if (instance == null || !instance.running) {
+            instance = new DCCReactor();
+        }
+        return instance;
+    }
+
+    /**
+     * Stops the shared reactor, if it is running, and closes any DCCs still registered with it.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            final DCCReactor reactor = instance;
+            reactor.execute(() -> reactor.running = false);
+            instance = null;
+        }
+    }
+
+    /**
+     * Runs the given task on the reactor thread. If called from the reactor thread the task is run
+     * immediately, otherwise it is queued and the reactor is woken up.
+     *
+     * @param task The task to run
+     */
+    public void execute(final Runnable task) {
+        if (Thread.currentThread() == thread) {
+            task.run();
+        } else {
+            tasks.add(task);
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Wakes the reactor so that it notices channels that have been closed from other threads.
+     */
+    public void wakeup() {
+        selector.wakeup();
+    }
+
+    /**
+     * Registers a channel with the reactor. Once registered, the DCC will be notified on the
+     * reactor thread whenever the channel is ready for one of the given operations.
+     *
+     * @param channel The non-blocking channel to register
+     * @param ops     The operations the DCC is interested in
+     * @param dcc     The DCC that owns the channel
+     */
+    void register(final SelectableChannel channel, final int ops, final DCC dcc) {
+        execute(() -> {
+            try {
+                dcc.setKey(channel.register(selector, ops, dcc));
+            } catch (ClosedChannelException ex) {
+                // The DCC was closed before it could be registered, nothing to do.
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException ex) {
+                LOG.warn("DCC selector failed, closing all DCCs", ex);
+                break;
+            }
+
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+
+            final Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                final SelectionKey key = iterator.next();
+                iterator.remove();
+                process(key);
+            }
+        }
+
+        running = false;
+        for (SelectionKey key : selector.keys()) {
+            ((DCC) key.attachment()).close();
+        }
+        StreamUtils.close(selector);
+    }
+
+    /**
+     * Passes a ready key to the DCC that owns it, closing the DCC if it fails.
+     *
+     * @param key The key that is ready
+     */
+    private void process(final SelectionKey key) {
+        final DCC dcc = (DCC) key.attachment();
+        try {
+            if (key.isValid()) {
+                dcc.processKey(key);
+            }
+        } catch (CancelledKeyException ex) {
+            // Closed by another thread while being processed.
+        } catch (RuntimeException ex) {
+            LOG.warn("Unexpected error handling DCC with {}", dcc.getHost(), ex);
+            dcc.close();
+        }
+    }
+
+}
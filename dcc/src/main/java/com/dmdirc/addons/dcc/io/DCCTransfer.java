@@ -22,12 +22,14 @@ import com.dmdirc.util.collections.ListenerList;
 import com.dmdirc.util.io.StreamUtils;
 
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -38,6 +40,8 @@ public class DCCTransfer extends DCC {
 
     /** List of active sends. */
     private static final List<DCCTransfer> TRANSFERS = new ArrayList<>();
+    /** Maximum number of bytes to hand to the socket in one zero-copy transfer. */
+    private static final int MAX_TRANSFER_CHUNK = 4 * 1024 * 1024;
 
     /** File Transfer Types. */
     public enum TransferType {
@@ -49,22 +53,28 @@ public class DCCTransfer extends DCC {
     private TransferType transferType = TransferType.RECEIVE;
     /** The handlers for this DCCSend. */
     private final ListenerList handlers = new ListenerList();
-    /** Used to send data out the socket. */
-    private DataOutputStream out;
-    /** Used to read data from the socket. */
-    private DataInputStream in;
+    /** Buffer used to move data between the socket and the file. */
+    private final ByteBuffer buffer;
+    /** Buffer for the acknowledgement being sent or received. */
+    private final ByteBuffer ackBuffer = ByteBuffer.allocate(4);
     /** File we are using. */
     private File transferFile;
     /** Used to write data to the file. */
-    private DataOutputStream fileOut;
+    private FileChannel fileOut;
     /** Used to read data from the file. */
     private DataInputStream fileIn;
+    /** Channel of the file being sent. */
+    private FileChannel fileChannel;
     /** Where are we starting from? */
     private int startpos;
     /** How big is this file? */
     private long size = -1;
     /** How much of this file have we read so far? */
     private long readSize;
+    /** How much of the file has been acknowledged by the receiver, when sending. */
+    private long acked;
+    /** How much of the file we have acknowledged, when receiving. */
+    private long ackedSize;
     /** What is the name of the file? */
     private String filename = "";
     /** What is the token for this send? */
@@ -73,6 +83,10 @@ public class DCCTransfer extends DCC {
     private final int blockSize;
     /** Is this a turbo dcc? */
     private boolean turbo = false;
+    /** Should sends use zero-copy channel transfers? */
+    private boolean zeroCopy = false;
+    /** Maximum number of unacknowledged bytes when sending without turbo. */
+    private int ackWindow = 4 * 1024 * 1024;
     private boolean active = false;
 
     /** Creates a new instance of DCCTransfer with a default block size. */
@@ -87,6 +101,7 @@ public class DCCTransfer extends DCC {
      */
     public DCCTransfer(final int blockSize) {
         this.blockSize = blockSize;
+        this.buffer = ByteBuffer.allocate(Math.max(blockSize, 1));
         synchronized (TRANSFERS) {
             TRANSFERS.add(this);
         }
@@ -134,9 +149,12 @@ public class DCCTransfer extends DCC {
         if (transferType == TransferType.SEND) {
             transferFile = new File(filename);
             try {
-                fileIn = new DataInputStream(new FileInputStream(transferFile.getAbsolutePath()));
+                final FileInputStream stream = new FileInputStream(transferFile.getAbsolutePath());
+                fileIn = new DataInputStream(stream);
+                fileChannel = stream.getChannel();
             } catch (FileNotFoundException | SecurityException e) {
                 fileIn = null;
+                fileChannel = null;
             }
         }
     }
@@ -195,6 +213,36 @@ public class DCCTransfer extends DCC {
         return turbo;
     }
 
+    /**
+     * Set zero-copy mode on/off. Zero-copy sends transfer the file straight from disk to the
+     * socket, and do not wait for each block to be acknowledged before sending the next. Only
+     * relevant when sending.
+     *
+     * @param zeroCopy True to use zero-copy sends, else false
+     */
+    public void setZeroCopy(final boolean zeroCopy) {
+        this.zeroCopy = zeroCopy;
+    }
+
+    /**
+     * Is zero-copy mode on/off. Only relevant when sending.
+     *
+     * @return True for zero-copy sends, else false
+     */
+    public boolean isZeroCopy() {
+        return zeroCopy;
+    }
+
+    /**
+     * Set the maximum number of bytes that may be sent but not yet acknowledged when using
+     * zero-copy sends without turbo mode.
+     *
+     * @param ackWindow Maximum number of unacknowledged bytes
+     */
+    public void setAckWindow(final int ackWindow) {
+        this.ackWindow = Math.max(ackWindow, blockSize);
+    }
+
     /**
      * Set the Token for this send
      *
@@ -308,31 +356,36 @@ public class DCCTransfer extends DCC {
 
     @Override
     protected void socketOpened() {
-        try {
-            active = true;
-            transferFile = new File(filename);
-            if (transferType == TransferType.RECEIVE) {
-                fileOut = new DataOutputStream(new FileOutputStream(
-                        transferFile.getAbsolutePath(), startpos > 0));
+        active = true;
+        transferFile = new File(filename);
+        ackBuffer.clear();
+        if (transferType == TransferType.RECEIVE) {
+            // Nothing to acknowledge yet.
+            ackBuffer.flip();
+            try {
+                fileOut = new FileOutputStream(transferFile.getAbsolutePath(), startpos > 0)
+                        .getChannel();
+            } catch (IOException | SecurityException ex) {
+                close();
+                return;
             }
-            out = new DataOutputStream(socket.getOutputStream());
-            in = new DataInputStream(socket.getInputStream());
+        } else {
+            acked = readSize;
+            setWriteInterest(true);
+        }
 
-            for (DCCTransferHandler handler : handlers.get(DCCTransferHandler.class)) {
-                handler.socketOpened(this);
-            }
-        } catch (IOException ioe) {
-            socketClosed();
+        for (DCCTransferHandler handler : handlers.get(DCCTransferHandler.class)) {
+            handler.socketOpened(this);
         }
     }
 
     @Override
     protected void socketClosed() {
-        // Try to close both, even if one fails.
-        StreamUtils.close(out);
-        StreamUtils.close(in);
-        out = null;
-        in = null;
+        StreamUtils.close(fileOut);
+        fileOut = null;
+        if (transferType == TransferType.SEND) {
+            StreamUtils.close(fileIn);
+        }
 
         for (DCCTransferHandler handler : handlers.get(DCCTransferHandler.class)) {
             handler.socketClosed(this);
@@ -349,120 +402,205 @@ public class DCCTransfer extends DCC {
     }
 
     @Override
-    protected boolean handleSocket() {
-        if (out == null || in == null) {
+    protected boolean handleRead() throws IOException {
+        final SocketChannel current = channel;
+        if (current == null) {
+            return false;
+        }
+        if (transferType == TransferType.RECEIVE) {
+            return handleReceive(current);
+        } else {
+            return handleAcks(current);
+        }
+    }
+
+    @Override
+    protected boolean handleWrite() throws IOException {
+        final SocketChannel current = channel;
+        if (current == null) {
             return false;
         }
         if (transferType == TransferType.RECEIVE) {
-            return handleReceive();
+            return handleAckWrite(current);
+        } else {
+            return handleSend(current);
+        }
+    }
+
+    /**
+     * Handle incoming data as a RECEIVE.
+     *
+     * @param current The channel to read from
+     *
+     * @return false when socket is closed (or should be closed), true otherwise.
+     *
+     * @throws IOException If the socket or file can't be used
+     */
+    private boolean handleReceive(final SocketChannel current) throws IOException {
+        buffer.clear();
+        final int bytesRead = current.read(buffer);
+        if (bytesRead < 0) {
+            return false;
+        } else if (bytesRead == 0) {
+            return true;
+        }
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fileOut.write(buffer);
+        }
+        readSize += bytesRead;
+
+        for (DCCTransferHandler handler : handlers.get(DCCTransferHandler.class)) {
+            handler.dataTransferred(this, bytesRead);
+        }
+
+        if (!turbo) {
+            writeAck(current);
+        }
+
+        // Once everything has been received, close as soon as the last ack has gone out.
+        return readSize != size || ackBuffer.hasRemaining();
+    }
+
+    /**
+     * Sends an acknowledgement of everything received so far, unless a previous acknowledgement
+     * is still being written.
+     *
+     * @param current The channel to write to
+     *
+     * @throws IOException If the socket can't be written to
+     */
+    private void writeAck(final SocketChannel current) throws IOException {
+        if (!ackBuffer.hasRemaining()) {
+            ackBuffer.clear();
+            ackBuffer.putInt((int) readSize);
+            ackBuffer.flip();
+            ackedSize = readSize;
+        }
+        current.write(ackBuffer);
+        setWriteInterest(ackBuffer.hasRemaining());
+    }
+
+    /**
+     * Finishes writing acknowledgements that didn't fit in the socket buffer when they were sent.
+     *
+     * @param current The channel to write to
+     *
+     * @return false when socket should be closed, true otherwise.
+     *
+     * @throws IOException If the socket can't be written to
+     */
+    private boolean handleAckWrite(final SocketChannel current) throws IOException {
+        current.write(ackBuffer);
+        if (!ackBuffer.hasRemaining() && ackedSize < readSize) {
+            // More data arrived while the last ack was waiting.
+            writeAck(current);
         } else {
-            return handleSend();
+            setWriteInterest(ackBuffer.hasRemaining());
         }
+        return readSize != size || ackBuffer.hasRemaining();
     }
 
     /**
-     * Handle the socket as a RECEIVE.
+     * Handle the socket as a SEND, sending as much of the file as the ack window and the socket
+     * allow. Zero-copy sends use {@link FileChannel#transferTo} to move data from the file to the
+     * socket without copying it through the heap, and may have up to the ack window of data
+     * unacknowledged. Other sends copy one block at a time, and without turbo mode wait for each
+     * block to be acknowledged before sending the next.
+     *
+     * @param current The channel to write to
+     *
+     * @return false when socket is closed (or should be closed), true otherwise.
      *
-     * @return false when socket is closed (or should be closed), true will cause the method to be
-     *         called again.
+     * @throws IOException If the socket or file can't be used
      */
-    protected boolean handleReceive() {
-        try {
-            final byte[] data = new byte[blockSize];
-            final int bytesRead = in.read(data);
-            readSize += bytesRead;
-
-            if (bytesRead > 0) {
-                for (DCCTransferHandler handler : handlers.get(DCCTransferHandler.class)) {
-                    handler.dataTransferred(this, bytesRead);
-                }
-                fileOut.write(data, 0, bytesRead);
-
-                if (!turbo) {
-                    // Send ack
-                    out.writeInt((int) readSize);
-                    out.flush();
-                }
-
-                if (readSize == size) {
-                    fileOut.close();
-
-                    if (turbo) {
-                        in.close();
-                    }
-
-                    return false;
-                } else {
-                    return true;
-                }
-            } else if (bytesRead < 0) {
-                fileOut.close();
+    private boolean handleSend(final SocketChannel current) throws IOException {
+        final long window = getSendWindow();
+        if (readSize >= size || readSize - acked >= window) {
+            // Nothing more to send until acks arrive.
+            setWriteInterest(false);
+            return true;
+        }
+
+        final long count = Math.min(size - readSize, window - (readSize - acked));
+        final long sent;
+        if (zeroCopy) {
+            sent = fileChannel.transferTo(readSize, Math.min(count, MAX_TRANSFER_CHUNK), current);
+        } else {
+            buffer.clear();
+            buffer.limit((int) Math.min(count, buffer.capacity()));
+            if (fileChannel.read(buffer, readSize) < 0) {
+                // The file is shorter than we said it was.
                 return false;
             }
-        } catch (IOException e) {
-            return false;
+            buffer.flip();
+            sent = current.write(buffer);
+        }
+
+        if (sent > 0) {
+            readSize += sent;
+            for (DCCTransferHandler handler : handlers.get(DCCTransferHandler.class)) {
+                handler.dataTransferred(this, (int) sent);
+            }
         }
-        return false;
+        return true;
     }
 
     /**
-     * Handle the socket as a SEND.
+     * Handle incoming acknowledgements as a SEND.
+     *
+     * @param current The channel to read from
      *
-     * @return false when socket is closed (or should be closed), true will cause the method to be
-     *         called again.
+     * @return false when socket is closed (or should be closed), true otherwise.
+     *
+     * @throws IOException If the socket can't be read
      */
-    protected boolean handleSend() {
-        try {
-            final byte[] data = new byte[blockSize];
-            final int bytesRead = fileIn.read(data);
-            readSize += bytesRead;
-
-            if (bytesRead > 0) {
-                for (DCCTransferHandler handler : handlers.get(DCCTransferHandler.class)) {
-                    handler.dataTransferred(this, bytesRead);
-                }
-                out.write(data, 0, bytesRead);
-                out.flush();
-
-                // Wait for acknowledgement packet.
-                if (!turbo) {
-                    int bytesReceived;
-                    do {
-                        bytesReceived = in.readInt();
-                    } while (readSize - bytesReceived > 0);
-                }
-
-                if (readSize == size) {
-                    fileIn.close();
-
-                    // Process all the ack packets that may have been sent.
-                    // In true turbo dcc mode, none will have been sent and the socket
-                    // will just close, in fast-dcc mode all the acks will be here,
-                    // So keep reading acks until the socket closes (IOException) or we
-                    // have received all the acks.
-                    if (turbo) {
-                        int ack;
-                        do {
-                            try {
-                                ack = in.readInt();
-                            } catch (IOException e) {
-                                break;
-                            }
-                        } while (ack > 0 && readSize - ack > 0);
-                    }
-
-                    return false;
-                }
-
-                return true;
-            } else if (bytesRead < 0) {
-                fileIn.close();
-                return true;
+    private boolean handleAcks(final SocketChannel current) throws IOException {
+        int bytesRead;
+        while ((bytesRead = current.read(ackBuffer)) > 0) {
+            if (!ackBuffer.hasRemaining()) {
+                ackBuffer.flip();
+                acked = getAckedPosition(ackBuffer.getInt());
+                ackBuffer.clear();
             }
-        } catch (IOException e) {
+        }
+
+        if (bytesRead < 0 || readSize == size && acked >= size) {
+            // The receiver has everything, or has given up.
             return false;
         }
-        return false;
+
+        if (readSize < size && readSize - acked < getSendWindow()) {
+            setWriteInterest(true);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the maximum number of bytes that may be sent but not yet acknowledged.
+     *
+     * @return The size of the send window
+     */
+    private long getSendWindow() {
+        if (turbo) {
+            return Long.MAX_VALUE;
+        }
+        return zeroCopy ? ackWindow : blockSize;
+    }
+
+    /**
+     * Converts an acknowledgement from the receiver into a file position. Acknowledgements only
+     * contain the low 32 bits of the position, so for files over 4GiB the high bits are taken from
+     * the amount of data that has been sent.
+     *
+     * @param ack The acknowledgement sent by the receiver
+     *
+     * @return The position in the file that has been acknowledged
+     */
+    private long getAckedPosition(final int ack) {
+        final long position = (readSize & ~0xFFFFFFFFL) | (ack & 0xFFFFFFFFL);
+        return position > readSize ? position - 0x100000000L : position;
     }
 
     /**
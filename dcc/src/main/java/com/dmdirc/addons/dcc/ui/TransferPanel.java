@@ -92,7 +92,7 @@ public class TransferPanel extends JPanel implements ActionListener,
         this.errorBus = errorBus;
         dcc = transferContainer.getDCC();
 
-        dcc.addHandler(this);
+        transferContainer.addHandler(this);
         transferContainer.getConnection()
                 .flatMap(Connection::getParser)
                 .map(Parser::getCallbackManager)
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.dns;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Caches the results of DNS queries until they expire, evicting the least recently used results
+ * once the cache is full.
+ */
+final class DNSCache {
+
+    /** Cached results, in order of least to most recently used. */
+    private final Map<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** Maximum number of results to hold. */
+    private int maximumSize;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maximumSize Maximum number of results to hold
+     */
+    DNSCache(final int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Gets the cached results for a query, if they haven't expired.
+     *
+     * @param query The query to look up
+     * @param now   The current time, in milliseconds
+     *
+     * @return The cached results, which may be empty if the query failed, or an empty optional if
+     *         there are no cached results
+     */
+    synchronized Optional<List<String>> get(final String query, final long now) {
+        final CacheEntry entry = entries.get(query);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.expires <= now) {
+            entries.remove(query);
+            return Optional.empty();
+        }
+        return Optional.of(entry.results);
+    }
+
+    /**
+     * Caches the results for a query.
+     *
+     * @param query   The query the results are for
+     * @param results The results of the query, or an empty list if it failed
+     * @param expires The time, in milliseconds, the results expire
+     */
+    synchronized void put(final String query, final List<String> results, final long expires) {
+        entries.put(query, new CacheEntry(results, expires));
+        trim();
+    }
+
+    /**
+     * Sets the maximum number of results to hold, evicting results if there are too many.
+     *
+     * @param maximumSize Maximum number of results to hold
+     */
+    synchronized void setMaximumSize(final int maximumSize) {
+        this.maximumSize = maximumSize;
+        trim();
+    }
+
+    /**
+     * Gets the number of results currently held.
+     *
+     * @return The number of cached results
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    private void trim() {
+        final Iterator<CacheEntry> iterator = entries.values().iterator();
+        while (entries.size() > Math.max(0, maximumSize) && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * The results of a single query.
+     */
+    private static final class CacheEntry {
+
+        /** The results of the query. */
+        private final List<String> results;
+        /** The time, in milliseconds, the results expire. */
+        private final long expires;
+
+        CacheEntry(final List<String> results, final long expires) {
+            this.results = results;
+            this.expires = expires;
+        }
+
+    }
+
+}
@@ -29,12 +29,9 @@ import com.google.common.net.InetAddresses;
 
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Performs DNS lookups for nicknames, hostnames or IPs.
@@ -45,15 +42,19 @@ public class DNSCommand extends BaseCommand {
     public static final CommandInfo INFO = new BaseCommandInfo("dns",
             "dns <IP|hostname> - Performs DNS lookup of the specified ip/hostname/nickname",
             CommandType.TYPE_GLOBAL);
+    /** The resolver to perform lookups with. */
+    private final DNSResolver resolver;
 
     /**
      * Creates a new instance of this command.
      *
      * @param controller The controller to use for command information.
+     * @param resolver   The resolver to perform lookups with.
      */
     @Inject
-    public DNSCommand(final CommandController controller) {
+    public DNSCommand(final CommandController controller, final DNSResolver resolver) {
         super(controller);
+        this.resolver = resolver;
     }
 
     @Override
@@ -64,50 +65,45 @@ public class DNSCommand extends BaseCommand {
             return;
         }
 
-        showOutput(origin, args.isSilent(), "Resolving: " + args.getArguments()[0]);
-        new Timer("DNS Command Timer").schedule(new TimerTask() {
-
-            @Override
-            public void run() {
-                resolve(origin, args.isSilent(), args.getArguments()[0]);
+        final String query = args.getArguments()[0];
+        showOutput(origin, args.isSilent(), "Resolving: " + query);
+        resolver.resolve(query).whenComplete((results, ex) -> {
+            if (ex == null) {
+                showResults(origin, args.isSilent(), query, results);
+            } else {
+                showError(origin, args.isSilent(), "Unable to resolve " + query + ": "
+                        + getReason(ex));
             }
-        }, 0);
-    }
-
-    private void resolve(@Nonnull final WindowModel origin, final boolean isSilent,
-            final String arg) {
-        try {
-            final InetAddress address = InetAddresses.forString(arg);
-            showOutput(origin, isSilent, "Resolved: "
-                    + arg + ": " + address.getCanonicalHostName());
-        } catch (IllegalArgumentException ex) {
-            showOutput(origin, isSilent, "Resolved: "
-                    + arg + ": " + getIPs(arg));
-        }
+        });
     }
 
     /**
-     * Returns the IP(s) for a hostname.
+     * Describes why a lookup failed.
      *
-     * @param hostname Hostname to resolve.
+     * @param ex The exception the lookup failed with
      *
-     * @return Resolved IP(s)
+     * @return A description of the failure to show the user
      */
-    private String getIPs(final String hostname) {
-        final Collection<String> results = new ArrayList<>();
-
-        try {
-            final InetAddress[] ips = InetAddress.getAllByName(hostname);
-
-            for (InetAddress ip : ips) {
-                results.add(ip.getHostAddress());
-            }
-
-        } catch (UnknownHostException ex) {
-            return "[]";
+    private static String getReason(final Throwable ex) {
+        final Throwable cause = ex instanceof CompletionException && ex.getCause() != null
+                ? ex.getCause() : ex;
+        if (cause instanceof RejectedExecutionException) {
+            return "too many lookups in progress";
         }
+        return cause.getMessage() == null ? cause.getClass().getSimpleName()
+                : cause.getMessage();
+    }
 
-        return results.toString();
+    private void showResults(@Nonnull final WindowModel origin, final boolean isSilent,
+            final String query, final List<String> results) {
+        if (InetAddresses.isInetAddress(query)) {
+            showOutput(origin, isSilent, "Resolved: "
+                    + query + ": " + (results.isEmpty() ? query : results.get(0)));
+        } else if (results.isEmpty()) {
+            showError(origin, isSilent, "Unable to resolve " + query + ": unknown host");
+        } else {
+            showOutput(origin, isSilent, "Resolved: " + query + ": " + results);
+        }
     }
 
 }
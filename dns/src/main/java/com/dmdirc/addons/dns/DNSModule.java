@@ -18,10 +18,55 @@
 package com.dmdirc.addons.dns;
 
 import com.dmdirc.ClientModule;
+import com.dmdirc.plugins.PluginDomain;
+import com.dmdirc.plugins.PluginInfo;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Named;
 
 import dagger.Module;
+import dagger.Provides;
 
-@Module(injects = DNSCommand.class, addsTo = ClientModule.class)
+@Module(injects = {DNSCommand.class, DNSResolver.class}, addsTo = ClientModule.class)
 public class DNSModule {
 
+    /** Number of lookups that may run at once. */
+    private static final int LOOKUP_THREADS = 4;
+    /** Number of lookups that may be waiting to run. */
+    private static final int LOOKUP_QUEUE_SIZE = 64;
+    private final PluginInfo pluginInfo;
+
+    public DNSModule(final PluginInfo pluginInfo) {
+        this.pluginInfo = pluginInfo;
+    }
+
+    @Provides
+    @PluginDomain(DNSPlugin.class)
+    public String getSettingsDomain() {
+        return pluginInfo.getDomain();
+    }
+
+    @Provides
+    public HostResolver getHostResolver(final SystemHostResolver resolver) {
+        return resolver;
+    }
+
+    @Provides
+    @Named("dns")
+    public ExecutorService getExecutorService() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(LOOKUP_THREADS,
+                LOOKUP_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(LOOKUP_QUEUE_SIZE),
+                new ThreadFactoryBuilder().setNameFormat("DNS Resolver %d").setDaemon(true)
+                        .build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
 }
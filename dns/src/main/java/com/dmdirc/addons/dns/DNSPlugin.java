@@ -27,11 +27,27 @@ import dagger.ObjectGraph;
  */
 public final class DNSPlugin extends BaseCommandPlugin {
 
+    /** The resolver used for lookups. */
+    private DNSResolver resolver;
+
     @Override
     public void load(final PluginInfo pluginInfo, final ObjectGraph graph) {
         super.load(pluginInfo, graph);
 
-        setObjectGraph(graph.plus(new DNSModule()));
+        setObjectGraph(graph.plus(new DNSModule(pluginInfo)));
         registerCommand(DNSCommand.class, DNSCommand.INFO);
+        resolver = getObjectGraph().get(DNSResolver.class);
+    }
+
+    @Override
+    public void onLoad() {
+        super.onLoad();
+        resolver.load();
+    }
+
+    @Override
+    public void onUnload() {
+        super.onUnload();
+        resolver.unload();
     }
 }
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.dns;
+
+import com.dmdirc.config.GlobalConfig;
+import com.dmdirc.config.binding.ConfigBinder;
+import com.dmdirc.config.binding.ConfigBinding;
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.events.ChannelJoinEvent;
+import com.dmdirc.events.ServerNumericEvent;
+import com.dmdirc.events.eventbus.EventBus;
+import com.dmdirc.plugins.PluginDomain;
+
+import com.google.common.net.InetAddresses;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import net.engio.mbassy.listener.Handler;
+
+/**
+ * Resolves hostnames and addresses in the background, caching the results. Hosts seen when users
+ * join channels or are WHOISed are resolved ahead of time so later lookups are answered from the
+ * cache.
+ */
+@Singleton
+public class DNSResolver {
+
+    /** The maximum number of hosts that may be waiting to be resolved ahead of time. */
+    private static final int MAX_PREFETCH = 256;
+    /** The numeric for the user information line of a WHOIS reply. */
+    private static final int RPL_WHOISUSER = 311;
+    /** Performs the actual queries. */
+    private final HostResolver hostResolver;
+    /** Executor lookups are run on. */
+    private final ExecutorService executor;
+    /** Event bus to receive joins and WHOIS replies from. */
+    private final EventBus eventBus;
+    /** Binder for config settings. */
+    private final ConfigBinder configBinder;
+    /** Cached results of previous lookups. */
+    private final DNSCache cache = new DNSCache(0);
+    /** Lookups that are currently in progress. */
+    private final Map<String, CompletableFuture<List<String>>> pending = new ConcurrentHashMap<>();
+    /** Hosts waiting to be resolved ahead of time. */
+    private final Set<String> prefetchQueue = new LinkedHashSet<>();
+    /** Whether a task to resolve the prefetch queue has been submitted. */
+    private boolean prefetchScheduled;
+    /** How long, in seconds, successful lookups are cached for. */
+    private volatile int ttl;
+    /** How long, in seconds, failed lookups are cached for. */
+    private volatile int negativeTtl;
+    /** Whether to resolve hosts seen in joins and WHOIS replies ahead of time. */
+    private volatile boolean prefetch;
+
+    @Inject
+    public DNSResolver(
+            final HostResolver hostResolver,
+            @Named("dns") final ExecutorService executor,
+            final EventBus eventBus,
+            @GlobalConfig final AggregateConfigProvider config,
+            @PluginDomain(DNSPlugin.class) final String domain) {
+        this.hostResolver = hostResolver;
+        this.executor = executor;
+        this.eventBus = eventBus;
+        configBinder = config.getBinder().withDefaultDomain(domain);
+    }
+
+    public void load() {
+        configBinder.bind(this, DNSResolver.class);
+        eventBus.subscribe(this);
+    }
+
+    public void unload() {
+        eventBus.unsubscribe(this);
+        configBinder.unbind(this);
+        executor.shutdownNow();
+        cache.clear();
+    }
+
+    /**
+     * Resolves a hostname to its addresses, or an address to its hostname.
+     *
+     * @param query The hostname or address to resolve
+     *
+     * @return A future that completes with the resolved addresses or hostname, or an empty list
+     *         if the query could not be resolved
+     */
+    public CompletableFuture<List<String>> resolve(final String query) {
+        final String key = query.toLowerCase(Locale.ROOT);
+        final Optional<List<String>> cached = cache.get(key, System.currentTimeMillis());
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+
+        final CompletableFuture<List<String>> future = new CompletableFuture<>();
+        final CompletableFuture<List<String>> existing = pending.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> lookup(key, future));
+        } catch (RejectedExecutionException ex) {
+            pending.remove(key, future);
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Queues a host to be resolved ahead of time, if it isn't already cached.
+     *
+     * @param host The hostname or address to resolve
+     */
+    public void prefetch(final String host) {
+        final String key = host.toLowerCase(Locale.ROOT);
+        if (!prefetch || pending.containsKey(key)
+                || cache.get(key, System.currentTimeMillis()).isPresent()) {
+            return;
+        }
+
+        synchronized (prefetchQueue) {
+            if (prefetchQueue.size() >= MAX_PREFETCH || !prefetchQueue.add(key)
+                    || prefetchScheduled) {
+                return;
+            }
+            prefetchScheduled = true;
+        }
+        try {
+            executor.execute(this::resolvePrefetchQueue);
+        } catch (RejectedExecutionException ex) {
+            synchronized (prefetchQueue) {
+                prefetchQueue.clear();
+                prefetchScheduled = false;
+            }
+        }
+    }
+
+    @ConfigBinding(key = "cache.ttl")
+    void handleTtl(final int value) {
+        ttl = value;
+    }
+
+    @ConfigBinding(key = "cache.negativettl")
+    void handleNegativeTtl(final int value) {
+        negativeTtl = value;
+    }
+
+    @ConfigBinding(key = "cache.size")
+    void handleCacheSize(final int value) {
+        cache.setMaximumSize(value);
+    }
+
+    @ConfigBinding(key = "prefetch")
+    void handlePrefetch(final boolean value) {
+        prefetch = value;
+    }
+
+    @Handler
+    void handleChannelJoin(final ChannelJoinEvent event) {
+        event.getClient().getUser().getHostname().ifPresent(this::prefetch);
+    }
+
+    @Handler
+    void handleServerNumeric(final ServerNumericEvent event) {
+        if (event.getNumeric() == RPL_WHOISUSER && event.getArgs().length > 5) {
+            prefetch(event.getArgs()[5]);
+        }
+    }
+
+    /**
+     * Resolves hosts from the prefetch queue in batches until it is empty. Only one of these runs
+     * at a time, so prefetching never uses more than one of the executor's threads.
+     */
+    private void resolvePrefetchQueue() {
+        while (true) {
+            final List<String> batch;
+            synchronized (prefetchQueue) {
+                if (prefetchQueue.isEmpty()) {
+                    prefetchScheduled = false;
+                    return;
+                }
+                batch = new ArrayList<>(prefetchQueue);
+                prefetchQueue.clear();
+            }
+
+            for (String key : batch) {
+                if (cache.get(key, System.currentTimeMillis()).isPresent()) {
+                    continue;
+                }
+                final CompletableFuture<List<String>> future = new CompletableFuture<>();
+                if (pending.putIfAbsent(key, future) == null) {
+                    lookup(key, future);
+                }
+            }
+        }
+    }
+
+    /**
+     * Performs a lookup, caches the result and completes the given future with it.
+     *
+     * @param key    The normalised hostname or address to resolve
+     * @param future The future to complete
+     */
+    private void lookup(final String key, final CompletableFuture<List<String>> future) {
+        try {
+            final List<String> results = query(key);
+            final int lifetime = results.isEmpty() ? negativeTtl : ttl;
+            cache.put(key, results,
+                    System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(lifetime));
+            future.complete(results);
+        } catch (RuntimeException ex) {
+            future.completeExceptionally(ex);
+        } finally {
+            pending.remove(key, future);
+        }
+    }
+
+    private List<String> query(final String key) {
+        try {
+            if (InetAddresses.isInetAddress(key)) {
+                final String hostname = hostResolver.getHostname(key);
+                return hostname.equalsIgnoreCase(key) ? Collections.emptyList()
+                        : Collections.singletonList(hostname);
+            } else {
+                return Collections.unmodifiableList(
+                        new ArrayList<>(hostResolver.getAddresses(key)));
+            }
+        } catch (UnknownHostException ex) {
+            return Collections.emptyList();
+        }
+    }
+
+}
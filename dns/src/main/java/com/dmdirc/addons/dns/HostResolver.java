@@ -15,23 +15,36 @@
  * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 
-package com.dmdirc.addons.time;
+package com.dmdirc.addons.dns;
 
-import java.util.Timer;
-
-import javax.inject.Inject;
-import javax.inject.Singleton;
+import java.net.UnknownHostException;
+import java.util.List;
 
 /**
- * Factory to create {@link Timer}s.
+ * Performs the actual DNS queries for a {@link DNSResolver}.
  */
-@Singleton
-public class TimerFactory {
+public interface HostResolver {
+
+    /**
+     * Gets all of the addresses for a hostname.
+     *
+     * @param hostname The hostname to resolve
+     *
+     * @return The textual representation of each address
+     *
+     * @throws UnknownHostException If the hostname could not be resolved
+     */
+    List<String> getAddresses(String hostname) throws UnknownHostException;
 
-    @Inject
-    public TimerFactory() {}
+    /**
+     * Gets the hostname for an address.
+     *
+     * @param address The textual representation of the address
+     *
+     * @return The hostname, or the address itself if it has no hostname
+     *
+     * @throws UnknownHostException If the address could not be resolved
+     */
+    String getHostname(String address) throws UnknownHostException;
 
-    public Timer getTimer(final String name) {
-        return new Timer(name);
-    }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.dns;
+
+import com.google.common.net.InetAddresses;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+
+/**
+ * Resolves hosts using the system's resolver.
+ */
+public class SystemHostResolver implements HostResolver {
+
+    @Inject
+    public SystemHostResolver() {
+    }
+
+    @Override
+    public List<String> getAddresses(final String hostname) throws UnknownHostException {
+        final InetAddress[] ips = InetAddress.getAllByName(hostname);
+        final List<String> results = new ArrayList<>(ips.length);
+        for (InetAddress ip : ips) {
+            results.add(ip.getHostAddress());
+        }
+        return results;
+    }
+
+    @Override
+    public String getHostname(final String address) throws UnknownHostException {
+        try {
+            return InetAddresses.forString(address).getCanonicalHostName();
+        } catch (IllegalArgumentException ex) {
+            throw new UnknownHostException(address);
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.dns;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DNSCacheTest {
+
+    private final List<String> results = Collections.singletonList("127.0.0.1");
+    private DNSCache instance;
+
+    @Before
+    public void setUp() {
+        instance = new DNSCache(2);
+    }
+
+    @Test
+    public void testGetBeforeExpiry() {
+        instance.put("localhost", results, 1000);
+        assertEquals(Optional.of(results), instance.get("localhost", 999));
+    }
+
+    @Test
+    public void testGetAfterExpiry() {
+        instance.put("localhost", results, 1000);
+        assertFalse(instance.get("localhost", 1000).isPresent());
+        assertEquals(0, instance.size());
+    }
+
+    @Test
+    public void testNegativeResult() {
+        instance.put("invalid", Collections.emptyList(), 1000);
+        assertEquals(Optional.of(Collections.emptyList()), instance.get("invalid", 0));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        instance.put("one", results, 1000);
+        instance.put("two", results, 1000);
+        instance.get("one", 0);
+        instance.put("three", results, 1000);
+        assertTrue(instance.get("one", 0).isPresent());
+        assertFalse(instance.get("two", 0).isPresent());
+        assertTrue(instance.get("three", 0).isPresent());
+    }
+
+    @Test
+    public void testShrinkingEvicts() {
+        instance.put("one", results, 1000);
+        instance.put("two", results, 1000);
+        instance.setMaximumSize(1);
+        assertEquals(1, instance.size());
+        assertTrue(instance.get("two", 0).isPresent());
+    }
+
+}
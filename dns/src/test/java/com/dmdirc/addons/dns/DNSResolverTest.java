@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.dns;
+
+import com.dmdirc.config.binding.ConfigBinder;
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.events.ServerNumericEvent;
+import com.dmdirc.events.eventbus.EventBus;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DNSResolverTest {
+
+    @Mock private HostResolver hostResolver;
+    @Mock private EventBus eventBus;
+    @Mock private AggregateConfigProvider config;
+    @Mock private ConfigBinder configBinder;
+    @Mock private ServerNumericEvent serverNumericEvent;
+    private DNSResolver instance;
+
+    @Before
+    public void setUp() throws Exception {
+        when(config.getBinder()).thenReturn(configBinder);
+        when(configBinder.withDefaultDomain("domain")).thenReturn(configBinder);
+        when(hostResolver.getAddresses("example.com"))
+                .thenReturn(Arrays.asList("192.0.2.1", "192.0.2.2"));
+        when(hostResolver.getAddresses("invalid")).thenThrow(new UnknownHostException());
+        when(hostResolver.getHostname("192.0.2.1")).thenReturn("example.com");
+        when(hostResolver.getHostname("192.0.2.3")).thenReturn("192.0.2.3");
+        instance = new DNSResolver(hostResolver, MoreExecutors.newDirectExecutorService(),
+                eventBus, config, "domain");
+        instance.handleTtl(300);
+        instance.handleNegativeTtl(60);
+        instance.handleCacheSize(10);
+        instance.handlePrefetch(true);
+    }
+
+    @Test
+    public void testResolveHostname() throws Exception {
+        assertEquals(Arrays.asList("192.0.2.1", "192.0.2.2"),
+                instance.resolve("example.com").get());
+    }
+
+    @Test
+    public void testResolveAddress() throws Exception {
+        assertEquals(Collections.singletonList("example.com"),
+                instance.resolve("192.0.2.1").get());
+    }
+
+    @Test
+    public void testResolveAddressWithoutHostname() throws Exception {
+        assertEquals(Collections.emptyList(), instance.resolve("192.0.2.3").get());
+    }
+
+    @Test
+    public void testResolveUnknownHost() throws Exception {
+        assertEquals(Collections.emptyList(), instance.resolve("invalid").get());
+    }
+
+    @Test
+    public void testResultsAreCached() throws Exception {
+        instance.resolve("example.com").get();
+        instance.resolve("EXAMPLE.com").get();
+        verify(hostResolver, times(1)).getAddresses("example.com");
+    }
+
+    @Test
+    public void testFailuresAreCached() throws Exception {
+        instance.resolve("invalid").get();
+        instance.resolve("invalid").get();
+        verify(hostResolver, times(1)).getAddresses("invalid");
+    }
+
+    @Test
+    public void testNegativeTtlOfZeroDisablesNegativeCaching() throws Exception {
+        instance.handleNegativeTtl(0);
+        instance.resolve("invalid").get();
+        instance.resolve("invalid").get();
+        verify(hostResolver, times(2)).getAddresses("invalid");
+    }
+
+    @Test
+    public void testWhoisPrefetchesHost() throws Exception {
+        when(serverNumericEvent.getNumeric()).thenReturn(311);
+        when(serverNumericEvent.getArgs()).thenReturn(
+                new String[]{":server", "311", "me", "nick", "user", "example.com", "*", "Name"});
+        instance.handleServerNumeric(serverNumericEvent);
+        verify(hostResolver).getAddresses("example.com");
+        instance.resolve("example.com").get();
+        verify(hostResolver, times(1)).getAddresses("example.com");
+    }
+
+    @Test
+    public void testPrefetchDisabled() throws Exception {
+        instance.handlePrefetch(false);
+        instance.prefetch("example.com");
+        verify(hostResolver, never()).getAddresses(anyString());
+    }
+
+}
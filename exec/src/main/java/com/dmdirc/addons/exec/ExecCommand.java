@@ -26,8 +26,6 @@ import com.dmdirc.interfaces.CommandController;
 import com.dmdirc.interfaces.WindowModel;
 import com.dmdirc.util.CommandUtils;
 import com.dmdirc.util.LogUtils;
-import com.dmdirc.util.io.StreamUtils;
-import com.google.common.io.CharStreams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,8 +33,7 @@ import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.List;
+import java.util.Collection;
 
 /**
  * A command which allows users execute scripts.
@@ -46,12 +43,16 @@ public class ExecCommand extends BaseCommand {
     private static final Logger LOG = LoggerFactory.getLogger(ExecCommand.class);
     /** A command info object for this command. */
     public static final BaseCommandInfo INFO = new BaseCommandInfo("exec",
-            "exec <command> [<parameters>] - executes an external program "
-            + "and displays the output", CommandType.TYPE_GLOBAL);
+            "exec [-list|-kill <id>|<command> [<parameters>]] - executes an external "
+            + "program and displays the output, lists running programs, or stops a running "
+            + "program", CommandType.TYPE_GLOBAL);
+    /** The manager used to run programs. */
+    private final ExecManager manager;
 
     @Inject
-    public ExecCommand(final CommandController controller) {
+    public ExecCommand(final CommandController controller, final ExecManager manager) {
         super(controller);
+        this.manager = manager;
     }
 
     @Override
@@ -60,6 +61,14 @@ public class ExecCommand extends BaseCommand {
         final String[] commandArray = CommandUtils.parseArguments(
                 args.getArgumentsAsString());
 
+        if (commandArray.length > 0 && "-list".equals(commandArray[0])) {
+            doList(origin, args.isSilent());
+            return;
+        } else if (commandArray.length > 0 && "-kill".equals(commandArray[0])) {
+            doKill(origin, args.isSilent(), commandArray);
+            return;
+        }
+
         try {
             // This checks the command to execute has correct quotes
             // (if necessary). Without this /exec "command arg1 arg2 would error.
@@ -70,26 +79,39 @@ public class ExecCommand extends BaseCommand {
                 showError(origin, args.isSilent(),
                         "Could not execute: " + commandArray[0] + " does not exist.");
             } else {
-                final Process p = Runtime.getRuntime().exec(commandArray);
-                if (args.isSilent()) {
-                    StreamUtils.readStream(p.getInputStream());
-                    StreamUtils.readStream(p.getErrorStream());
-                } else {
-                    final List<String> execOutput = CharStreams.readLines(
-                            new InputStreamReader(p.getInputStream()));
-                    final List<String> errorOutput = CharStreams.readLines(
-                            new InputStreamReader(p.getErrorStream()));
-                    for (String line : execOutput) {
-                        showOutput(origin, args.isSilent(), line);
-                    }
-                    for (String line : errorOutput) {
-                        showError(origin, args.isSilent(), line);
-                    }
-                }
+                manager.execute(commandArray, args.isSilent(),
+                        lines -> showOutput(origin, args.isSilent(), String.join("\n", lines)),
+                        lines -> showError(origin, args.isSilent(), String.join("\n", lines)),
+                        message -> showOutput(origin, args.isSilent(), message));
             }
         } catch (IOException ex) {
             LOG.info(LogUtils.USER_ERROR, "Unable to run application: {}", ex.getMessage(), ex);
         }
     }
 
+    private void doList(final WindowModel origin, final boolean isSilent) {
+        final Collection<ExecProcess> processes = manager.getProcesses();
+        if (processes.isEmpty()) {
+            showError(origin, isSilent, "There are currently no running programs");
+        }
+        for (ExecProcess process : processes) {
+            showOutput(origin, isSilent, "Process " + process.getId() + ": "
+                    + process.getCommand());
+        }
+    }
+
+    private void doKill(final WindowModel origin, final boolean isSilent,
+            final String[] commandArray) {
+        final int id;
+        try {
+            id = Integer.parseInt(commandArray.length > 1 ? commandArray[1] : "");
+        } catch (NumberFormatException ex) {
+            showUsage(origin, isSilent, INFO.getName(), "-kill <id>");
+            return;
+        }
+        if (!manager.kill(id)) {
+            showError(origin, isSilent, "There is no running program with that ID");
+        }
+    }
+
 }
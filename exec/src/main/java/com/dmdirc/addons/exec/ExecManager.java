@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.exec;
+
+import com.dmdirc.config.GlobalConfig;
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.plugins.PluginDomain;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Starts and keeps track of processes run by the exec command.
+ */
+@Singleton
+public class ExecManager {
+
+    /** Processes that are currently running, by ID. */
+    private final Map<Integer, ExecProcess> processes = new ConcurrentSkipListMap<>();
+    /** The ID to give the next process. */
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    /** Executor that reads processes' output. */
+    private final ExecutorService workers;
+    /** Executor that publishes output and enforces timeouts. */
+    private final ScheduledExecutorService scheduler;
+    /** Global config to read settings from. */
+    private final AggregateConfigProvider globalConfig;
+    /** Plugin settings domain. */
+    private final String domain;
+
+    @Inject
+    public ExecManager(
+            @Named("exec") final ExecutorService workers,
+            @Named("exec") final ScheduledExecutorService scheduler,
+            @GlobalConfig final AggregateConfigProvider globalConfig,
+            @PluginDomain(ExecPlugin.class) final String domain) {
+        this.workers = workers;
+        this.scheduler = scheduler;
+        this.globalConfig = globalConfig;
+        this.domain = domain;
+    }
+
+    /**
+     * Starts a new process, passing its output on as it arrives.
+     *
+     * @param commandArray  The program to run and its arguments
+     * @param silent        Whether the process's output should be discarded
+     * @param outputHandler Receives batches of lines from standard output
+     * @param errorHandler  Receives batches of lines from standard error
+     * @param statusHandler Receives status messages about the process
+     *
+     * @return The ID of the new process
+     *
+     * @throws IOException If the process could not be started
+     */
+    public int execute(final String[] commandArray, final boolean silent,
+            final Consumer<List<String>> outputHandler,
+            final Consumer<List<String>> errorHandler,
+            final Consumer<String> statusHandler) throws IOException {
+        final Process process = Runtime.getRuntime().exec(commandArray);
+        final int id = nextId.getAndIncrement();
+        final ExecProcess execProcess = new ExecProcess(id, String.join(" ", commandArray),
+                process, silent, globalConfig.getOptionInt(domain, "output.maxlines"),
+                outputHandler, errorHandler, statusHandler);
+        processes.put(id, execProcess);
+        try {
+            execProcess.start(workers, scheduler, globalConfig.getOptionInt(domain, "timeout"),
+                    () -> processes.remove(id));
+        } catch (RejectedExecutionException ex) {
+            processes.remove(id);
+            throw new IOException("Too many processes are already running", ex);
+        }
+        return id;
+    }
+
+    /**
+     * Forcibly stops a running process.
+     *
+     * @param id The ID of the process to stop
+     *
+     * @return True if the process was found, false otherwise
+     */
+    public boolean kill(final int id) {
+        final ExecProcess process = processes.get(id);
+        if (process == null) {
+            return false;
+        }
+        process.stop("killed");
+        return true;
+    }
+
+    /**
+     * Gets all of the processes that are currently running.
+     *
+     * @return The running processes, ordered by ID
+     */
+    Collection<ExecProcess> getProcesses() {
+        return Collections.unmodifiableCollection(processes.values());
+    }
+
+    /**
+     * Stops all running processes and the executors used to manage them.
+     */
+    public void shutdown() {
+        processes.values().forEach(p -> p.stop("killed"));
+        workers.shutdown();
+        scheduler.shutdown();
+    }
+
+}
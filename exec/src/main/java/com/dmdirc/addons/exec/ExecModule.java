@@ -18,10 +18,53 @@
 package com.dmdirc.addons.exec;
 
 import com.dmdirc.ClientModule;
+import com.dmdirc.plugins.PluginDomain;
+import com.dmdirc.plugins.PluginInfo;
+import com.dmdirc.util.LoggingScheduledExecutorService;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Named;
 
 import dagger.Module;
+import dagger.Provides;
 
-@Module(injects = ExecCommand.class, addsTo = ClientModule.class)
+@Module(injects = {ExecCommand.class, ExecManager.class}, addsTo = ClientModule.class)
 public class ExecModule {
 
+    /** Maximum number of threads reading output; each running program uses two. */
+    private static final int MAX_WORKERS = 32;
+    private final PluginInfo pluginInfo;
+
+    public ExecModule(final PluginInfo pluginInfo) {
+        this.pluginInfo = pluginInfo;
+    }
+
+    @Provides
+    @PluginDomain(ExecPlugin.class)
+    public String getSettingsDomain() {
+        return pluginInfo.getDomain();
+    }
+
+    @Provides
+    @Named("exec")
+    public ExecutorService getWorkerExecutor() {
+        return new ThreadPoolExecutor(0, MAX_WORKERS, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("Exec Output %d").setDaemon(true)
+                        .build());
+    }
+
+    @Provides
+    @Named("exec")
+    public ScheduledExecutorService getScheduledExecutor() {
+        return new LoggingScheduledExecutorService(1, "Exec");
+    }
+
 }
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.exec;
+
+import com.dmdirc.util.io.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A process started by the exec command. Both of the process's output streams are read
+ * concurrently, and complete lines are passed on in batches at a fixed interval.
+ */
+class ExecProcess {
+
+    /** Interval, in milliseconds, between publishing batches of output. */
+    private static final long FLUSH_INTERVAL = 50;
+    /** Longest line that will be read before it is split. */
+    private static final int MAX_LINE_LENGTH = 4096;
+    /** The ID of this process. */
+    private final int id;
+    /** The command line that started this process. */
+    private final String command;
+    /** The running process. */
+    private final Process process;
+    /** Whether output should be discarded rather than shown. */
+    private final boolean silent;
+    /** The maximum number of lines to pass on before discarding output. */
+    private final int maxLines;
+    /** Receives batches of lines from the process's standard output. */
+    private final Consumer<List<String>> outputHandler;
+    /** Receives batches of lines from the process's standard error. */
+    private final Consumer<List<String>> errorHandler;
+    /** Receives status messages about the process. */
+    private final Consumer<String> statusHandler;
+    /** Lines read from standard output that haven't been passed on yet. */
+    private final List<String> pendingOutput = new ArrayList<>();
+    /** Lines read from standard error that haven't been passed on yet. */
+    private final List<String> pendingError = new ArrayList<>();
+    /** Number of streams that are still being read. */
+    private final AtomicInteger openStreams = new AtomicInteger(2);
+    /** Number of lines accepted so far, guarded by the pending lists' lock. */
+    private int lineCount;
+    /** Whether the output limit has been reported. */
+    private boolean limitReported;
+    /** Why the process was stopped early, if it was. */
+    private volatile String stopReason;
+    /** Task that periodically publishes output. */
+    private Future<?> flushTask;
+    /** Task that stops the process once it has run for too long. */
+    private Future<?> timeoutTask;
+
+    /**
+     * Creates a new exec process.
+     *
+     * @param id            The ID of this process
+     * @param command       The command line that started this process
+     * @param process       The running process
+     * @param silent        Whether output should be discarded rather than shown
+     * @param maxLines      The maximum number of lines to show before discarding output
+     * @param outputHandler Receives batches of lines from standard output
+     * @param errorHandler  Receives batches of lines from standard error
+     * @param statusHandler Receives status messages about the process
+     */
+    ExecProcess(final int id, final String command, final Process process, final boolean silent,
+            final int maxLines, final Consumer<List<String>> outputHandler,
+            final Consumer<List<String>> errorHandler, final Consumer<String> statusHandler) {
+        this.id = id;
+        this.command = command;
+        this.process = process;
+        this.silent = silent;
+        this.maxLines = maxLines;
+        this.outputHandler = outputHandler;
+        this.errorHandler = errorHandler;
+        this.statusHandler = statusHandler;
+    }
+
+    /**
+     * Starts reading the process's output.
+     *
+     * @param workers   Executor to read the output streams on
+     * @param scheduler Executor to publish output and enforce the timeout on
+     * @param timeout   Number of seconds the process may run for, or 0 for no limit
+     * @param onExit    Called once the process has exited and all output has been published
+     *
+     * @throws RejectedExecutionException If the output could not be read, in which case the
+     *                                    process is stopped
+     */
+    void start(final ExecutorService workers, final ScheduledExecutorService scheduler,
+            final int timeout, final Runnable onExit) {
+        synchronized (pendingOutput) {
+            flushTask = scheduler.scheduleAtFixedRate(this::flush, FLUSH_INTERVAL,
+                    FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+            if (timeout > 0) {
+                timeoutTask = scheduler.schedule(() -> stop("timed out after " + timeout + 's'),
+                        timeout, TimeUnit.SECONDS);
+            }
+        }
+        try {
+            workers.execute(() -> pump(process.getInputStream(), pendingOutput, onExit));
+            workers.execute(() -> pump(process.getErrorStream(), pendingError, onExit));
+        } catch (RejectedExecutionException ex) {
+            synchronized (pendingOutput) {
+                flushTask.cancel(false);
+                if (timeoutTask != null) {
+                    timeoutTask.cancel(false);
+                }
+            }
+            process.destroyForcibly();
+            throw ex;
+        }
+    }
+
+    /**
+     * Gets the ID of this process.
+     *
+     * @return This process's ID
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the command line that started this process.
+     *
+     * @return This process's command line
+     */
+    String getCommand() {
+        return command;
+    }
+
+    /**
+     * Forcibly stops this process.
+     *
+     * @param reason Why the process is being stopped
+     */
+    void stop(final String reason) {
+        if (stopReason == null) {
+            stopReason = reason;
+        }
+        process.destroyForcibly();
+    }
+
+    private void pump(final InputStream stream, final List<String> pending,
+            final Runnable onExit) {
+        final Reader reader = new InputStreamReader(stream);
+        try {
+            final char[] buffer = new char[MAX_LINE_LENGTH];
+            final StringBuilder line = new StringBuilder();
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    final char c = buffer[i];
+                    if (c == '\n') {
+                        addLine(pending, line);
+                    } else if (c != '\r') {
+                        line.append(c);
+                        if (line.length() >= MAX_LINE_LENGTH) {
+                            addLine(pending, line);
+                        }
+                    }
+                }
+            }
+            if (line.length() > 0) {
+                addLine(pending, line);
+            }
+        } catch (IOException ex) {
+            // The stream was closed because the process was stopped.
+        } finally {
+            StreamUtils.close(reader);
+            if (openStreams.decrementAndGet() == 0) {
+                finish(onExit);
+            }
+        }
+    }
+
+    private void addLine(final List<String> pending, final StringBuilder line) {
+        final String text = line.toString();
+        line.setLength(0);
+        if (silent) {
+            return;
+        }
+        synchronized (pendingOutput) {
+            if (lineCount < maxLines) {
+                lineCount++;
+                pending.add(text);
+            } else if (!limitReported) {
+                limitReported = true;
+                pending.add("Output limit of " + maxLines
+                        + " lines reached, further output discarded.");
+            }
+        }
+    }
+
+    private synchronized void flush() {
+        final List<String> output;
+        final List<String> error;
+        synchronized (pendingOutput) {
+            if (pendingOutput.isEmpty() && pendingError.isEmpty()) {
+                return;
+            }
+            output = new ArrayList<>(pendingOutput);
+            error = new ArrayList<>(pendingError);
+            pendingOutput.clear();
+            pendingError.clear();
+        }
+        if (!output.isEmpty()) {
+            outputHandler.accept(output);
+        }
+        if (!error.isEmpty()) {
+            errorHandler.accept(error);
+        }
+    }
+
+    private void finish(final Runnable onExit) {
+        try {
+            process.waitFor();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (pendingOutput) {
+            flushTask.cancel(false);
+            if (timeoutTask != null) {
+                timeoutTask.cancel(false);
+            }
+        }
+        flush();
+        if (stopReason != null && !silent) {
+            statusHandler.accept("Process " + id + " (" + command + ") " + stopReason + '.');
+        }
+        onExit.run();
+    }
+
+}
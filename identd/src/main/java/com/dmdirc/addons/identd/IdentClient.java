@@ -17,97 +17,118 @@
 
 package com.dmdirc.addons.identd;
 
-import com.dmdirc.config.provider.AggregateConfigProvider;
-import com.dmdirc.config.provider.ReadOnlyConfigProvider;
 import com.dmdirc.interfaces.Connection;
-import com.dmdirc.interfaces.ConnectionManager;
-import com.dmdirc.interfaces.User;
-import com.dmdirc.util.LogUtils;
-import com.dmdirc.util.io.StreamUtils;
-import com.dmdirc.util.system.SystemInfo;
-import java.io.BufferedReader;
+
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
 
 /**
- * The IdentClient responds to an ident request.
+ * The IdentClient responds to an ident request. Clients are driven by the {@link IdentdServer}'s
+ * selector, and never block.
  */
-public class IdentClient implements Runnable {
-
-    private static final Logger LOG = LoggerFactory.getLogger(IdentClient.class);
-    /** The IdentdServer that owns this Client. */
-    private final IdentdServer server;
-    /** The Socket that we are in charge of. */
-    private final Socket socket;
-    /** The Thread in use for this client. */
-    private volatile Thread thread;
-    /** Server manager. */
-    private final ConnectionManager connectionManager;
-    /** Global configuration to read settings from. */
-    private final AggregateConfigProvider config;
-    /** This plugin's settings domain. */
-    private final String domain;
-    /** System wrapper to use. */
-    private final SystemInfo systemInfo;
+public class IdentClient {
+
+    /** The longest request line that will be read. */
+    private static final int MAX_REQUEST_LENGTH = 1000;
+    /** The channel that we are in charge of. */
+    private final SocketChannel channel;
+    /** Map used to find the connection a request is for. */
+    private final LocalPortMap ports;
+    /** Policy used to answer requests. */
+    private final IdentPolicy policy;
+    /** The request read so far. */
+    private final ByteBuffer input = ByteBuffer.allocate(MAX_REQUEST_LENGTH);
+    /** The response to send, or null if the request hasn't been read yet. */
+    private ByteBuffer output;
+    /** The time this client last read or wrote any data. */
+    private long lastActive = System.currentTimeMillis();
 
     /**
      * Create the IdentClient.
      */
-    public IdentClient(final IdentdServer server, final Socket socket,
-            final ConnectionManager connectionManager, final AggregateConfigProvider config,
-            final String domain, final SystemInfo systemInfo) {
-        this.server = server;
-        this.socket = socket;
-        this.connectionManager = connectionManager;
-        this.config = config;
-        this.domain = domain;
-        this.systemInfo = systemInfo;
+    public IdentClient(final SocketChannel channel, final LocalPortMap ports,
+            final IdentPolicy policy) {
+        this.channel = channel;
+        this.ports = ports;
+        this.policy = policy;
     }
 
     /**
-     * Starts this ident client in a new thread.
+     * Reads as much of the request as is available. Once the request line has been read, the
+     * response is prepared and should be written with {@link #write()}.
+     *
+     * @return True if the response is ready to be written, false otherwise
+     *
+     * @throws IOException If the channel could not be read
      */
-    public void start() {
-        thread = new Thread(this);
-        thread.start();
+    public boolean read() throws IOException {
+        final int read = channel.read(input);
+        lastActive = System.currentTimeMillis();
+        final int end = findLineEnd();
+        if (end == -1 && read != -1 && input.hasRemaining()) {
+            return false;
+        }
+        if (end == -1 && input.position() == 0) {
+            // The other end closed the connection without sending a request.
+            channel.close();
+            return false;
+        }
+
+        final String line = new String(input.array(), 0, end == -1 ? input.position() : end,
+                StandardCharsets.ISO_8859_1);
+        output = ByteBuffer.wrap((getIdentResponse(line) + "\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        return true;
     }
 
     /**
-     * Process this connection.
+     * Writes as much of the response as possible.
+     *
+     * @return True if the whole response has been written, false otherwise
+     *
+     * @throws IOException If the channel could not be written to
      */
-    @Override
-    public void run() {
-        final Thread thisThread = Thread.currentThread();
-        try (PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
-            final String inputLine;
-            if ((inputLine = in.readLine()) != null) {
-                out.println(getIdentResponse(inputLine, config));
-            }
-        } catch (IOException e) {
-            if (thisThread == thread) {
-                LOG.error(LogUtils.USER_ERROR, "ClientSocket Error: {}", e.getMessage(), e);
+    public boolean write() throws IOException {
+        channel.write(output);
+        lastActive = System.currentTimeMillis();
+        return !output.hasRemaining();
+    }
+
+    /**
+     * Gets the time this client last read or wrote any data.
+     *
+     * @return The time of the last activity, in milliseconds since the epoch
+     */
+    public long getLastActive() {
+        return lastActive;
+    }
+
+    /**
+     * Finds the end of the request line read so far.
+     *
+     * @return The index of the first line terminator, or -1 if there isn't one yet
+     */
+    private int findLineEnd() {
+        final byte[] bytes = input.array();
+        for (int i = 0; i < input.position(); i++) {
+            if (bytes[i] == '\n' || bytes[i] == '\r') {
+                return i;
             }
-        } finally {
-            StreamUtils.close(socket);
-            server.delClient(this);
         }
+        return -1;
     }
 
     /**
      * Get the ident response for a given line. Complies with rfc1413
      * (http://www.faqs.org/rfcs/rfc1413.html)
      *
-     * @param input  Line to generate response for
-     * @param config The config manager to use for settings
+     * @param input Line to generate response for
      *
      * @return the ident response for the given line
      */
-    protected String getIdentResponse(final String input, final ReadOnlyConfigProvider config) {
+    protected String getIdentResponse(final String input) {
         final String unescapedInput = unescapeString(input);
         final String[] bits = unescapedInput.replaceAll("\\s+", "").split(",", 2);
         if (bits.length < 2) {
@@ -127,61 +148,17 @@ public class IdentClient implements Runnable {
             return String.format("%d , %d : ERROR : INVALID-PORT", myPort, theirPort);
         }
 
-        final Connection connection = getConnectionByPort(myPort);
-        if (!config.getOptionBool(domain, "advanced.alwaysOn") && (connection == null
-                || config.getOptionBool(domain, "advanced.isNoUser"))) {
+        final Connection connection = ports.get(myPort);
+        if (!policy.isAlwaysOn() && (connection == null || policy.isNoUser())) {
             return String.format("%d , %d : ERROR : NO-USER", myPort, theirPort);
         }
 
-        if (config.getOptionBool(domain, "advanced.isHiddenUser")) {
+        if (policy.isHiddenUser()) {
             return String.format("%d , %d : ERROR : HIDDEN-USER", myPort, theirPort);
         }
 
-        final String osName = systemInfo.getProperty("os.name").toLowerCase();
-        final String os;
-
-        final String customSystem = config.getOption(domain, "advanced.customSystem");
-        if (config.getOptionBool(domain, "advanced.useCustomSystem") && customSystem
-                != null && !customSystem.isEmpty() && customSystem.length() < 513) {
-            os = customSystem;
-        } else {
-            // Tad excessive maybe, but complete!
-            // Based on: http://mindprod.com/jgloss/properties.html
-            // and the SYSTEM NAMES section of rfc1340 (http://www.faqs.org/rfcs/rfc1340.html)
-            if (osName.startsWith("windows")) {
-                os = "WIN32";
-            } else if (osName.startsWith("mac")) {
-                os = "MACOS";
-            } else if (osName.startsWith("linux")) {
-                os = "UNIX";
-            } else if (osName.contains("bsd")) {
-                os = "UNIX-BSD";
-            } else if ("os/2".equals(osName)) {
-                os = "OS/2";
-            } else if (osName.contains("unix")) {
-                os = "UNIX";
-            } else if ("irix".equals(osName)) {
-                os = "IRIX";
-            } else {
-                os = "UNKNOWN";
-            }
-        }
-
-        final String customName = config.getOption(domain, "general.customName");
-        final String username;
-        if (config.getOptionBool(domain, "general.useCustomName") && customName
-                != null && !customName.isEmpty() && customName.length() < 513) {
-            username = customName;
-        } else if (connection != null && config.getOptionBool(domain, "general.useNickname")) {
-            username = connection.getLocalUser().map(User::getNickname).orElse("Unknown");
-        } else if (connection != null && config.getOptionBool(domain, "general.useUsername")) {
-            username = connection.getLocalUser().flatMap(User::getUsername).orElse("Unknown");
-        } else {
-            username = systemInfo.getProperty("user.name");
-        }
-
-        return String.format("%d , %d : USERID : %s : %s", myPort, theirPort, escapeString(os),
-                escapeString(username));
+        return String.format("%d , %d : USERID : %s : %s", myPort, theirPort,
+                escapeString(policy.getSystem()), escapeString(policy.getUsername(connection)));
     }
 
     /**
@@ -206,34 +183,4 @@ public class IdentClient implements Runnable {
         return str.replace("\\:", ":").replace("\\ ", " ").replace("\\,", ",").replace("\\\\", "\\");
     }
 
-    /**
-     * Close this IdentClient.
-     */
-    public void close() {
-        if (thread != null) {
-            final Thread tmpThread = thread;
-            thread = null;
-            if (tmpThread != null) {
-                tmpThread.interrupt();
-            }
-            StreamUtils.close(socket);
-        }
-    }
-
-    /**
-     * Retrieves the server that is bound to the specified local port.
-     *
-     * @param port Port to check for
-     *
-     * @return The server instance listening on the given port
-     */
-    protected Connection getConnectionByPort(final int port) {
-        for (Connection connection : connectionManager.getConnections()) {
-            if (connection.getParser().get().getLocalPort() == port) {
-                return connection;
-            }
-        }
-        return null;
-    }
-
 }
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.identd;
+
+import com.dmdirc.config.GlobalConfig;
+import com.dmdirc.config.binding.ConfigBinder;
+import com.dmdirc.config.binding.ConfigBinding;
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.interfaces.Connection;
+import com.dmdirc.interfaces.User;
+import com.dmdirc.plugins.PluginDomain;
+import com.dmdirc.util.system.SystemInfo;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Decides how ident requests are answered. Settings are kept up to date through config bindings,
+ * so answering a request doesn't need to read the config.
+ */
+@Singleton
+public class IdentPolicy {
+
+    /** Binder used to keep settings up to date. */
+    private final ConfigBinder binder;
+    /** The system type to report, based on the OS name. */
+    private final String systemType;
+    /** The name of the user running the client. */
+    private final String systemUsername;
+    /** Whether the server should always be running. */
+    private volatile boolean alwaysOn;
+    /** Whether to answer every request with NO-USER. */
+    private volatile boolean noUser;
+    /** Whether to answer every request with HIDDEN-USER. */
+    private volatile boolean hiddenUser;
+    /** Whether to report the custom system rather than the OS type. */
+    private volatile boolean useCustomSystem;
+    /** The custom system to report. */
+    private volatile String customSystem;
+    /** Whether to report the custom name rather than a user name. */
+    private volatile boolean useCustomName;
+    /** The custom name to report. */
+    private volatile String customName;
+    /** Whether to report the connection's nickname. */
+    private volatile boolean useNickname;
+    /** Whether to report the connection's username. */
+    private volatile boolean useUsername;
+
+    @Inject
+    public IdentPolicy(@GlobalConfig final AggregateConfigProvider config,
+            @PluginDomain(IdentdPlugin.class) final String domain,
+            final SystemInfo systemInfo) {
+        binder = config.getBinder().withDefaultDomain(domain);
+        final String osName = systemInfo.getProperty("os.name");
+        systemType = getSystemType(osName == null ? "" : osName.toLowerCase());
+        systemUsername = systemInfo.getProperty("user.name");
+    }
+
+    /**
+     * Starts keeping this policy up to date with the plugin's settings.
+     */
+    public void load() {
+        binder.bind(this, IdentPolicy.class);
+    }
+
+    /**
+     * Stops keeping this policy up to date with the plugin's settings.
+     */
+    public void unload() {
+        binder.unbind(this);
+    }
+
+    public boolean isAlwaysOn() {
+        return alwaysOn;
+    }
+
+    public boolean isNoUser() {
+        return noUser;
+    }
+
+    public boolean isHiddenUser() {
+        return hiddenUser;
+    }
+
+    /**
+     * Gets the system type to report.
+     *
+     * @return The custom system if it is enabled and valid, otherwise the OS type
+     */
+    public String getSystem() {
+        final String system = customSystem;
+        if (useCustomSystem && isValid(system)) {
+            return system;
+        }
+        return systemType;
+    }
+
+    /**
+     * Gets the user name to report for the given connection.
+     *
+     * @param connection The connection the request is for, or null if it isn't known
+     *
+     * @return The user name to report
+     */
+    public String getUsername(@Nullable final Connection connection) {
+        final String name = customName;
+        if (useCustomName && isValid(name)) {
+            return name;
+        } else if (connection != null && useNickname) {
+            return connection.getLocalUser().map(User::getNickname).orElse("Unknown");
+        } else if (connection != null && useUsername) {
+            return connection.getLocalUser().flatMap(User::getUsername).orElse("Unknown");
+        } else {
+            return systemUsername;
+        }
+    }
+
+    @ConfigBinding(key = "advanced.alwaysOn")
+    public void handleAlwaysOn(final boolean value) {
+        alwaysOn = value;
+    }
+
+    @ConfigBinding(key = "advanced.isNoUser")
+    public void handleNoUser(final boolean value) {
+        noUser = value;
+    }
+
+    @ConfigBinding(key = "advanced.isHiddenUser")
+    public void handleHiddenUser(final boolean value) {
+        hiddenUser = value;
+    }
+
+    @ConfigBinding(key = "advanced.useCustomSystem")
+    public void handleUseCustomSystem(final boolean value) {
+        useCustomSystem = value;
+    }
+
+    @ConfigBinding(key = "advanced.customSystem")
+    public void handleCustomSystem(final String value) {
+        customSystem = value;
+    }
+
+    @ConfigBinding(key = "general.useCustomName")
+    public void handleUseCustomName(final boolean value) {
+        useCustomName = value;
+    }
+
+    @ConfigBinding(key = "general.customName")
+    public void handleCustomName(final String value) {
+        customName = value;
+    }
+
+    @ConfigBinding(key = "general.useNickname")
+    public void handleUseNickname(final boolean value) {
+        useNickname = value;
+    }
+
+    @ConfigBinding(key = "general.useUsername")
+    public void handleUseUsername(final boolean value) {
+        useUsername = value;
+    }
+
+    /**
+     * Checks whether a custom value can be used in a response.
+     *
+     * @param value The value to check
+     *
+     * @return True if the value is non-empty and short enough to send
+     */
+    private static boolean isValid(final String value) {
+        return value != null && !value.isEmpty() && value.length() < 513;
+    }
+
+    /**
+     * Gets the system type to report for the given OS name.
+     *
+     * @param osName The lower-cased name of the OS
+     *
+     * @return The system type for the OS
+     */
+    private static String getSystemType(final String osName) {
+        // Tad excessive maybe, but complete!
+        // Based on: http://mindprod.com/jgloss/properties.html
+        // and the SYSTEM NAMES section of rfc1340 (http://www.faqs.org/rfcs/rfc1340.html)
+        if (osName.startsWith("windows")) {
+            return "WIN32";
+        } else if (osName.startsWith("mac")) {
+            return "MACOS";
+        } else if (osName.startsWith("linux")) {
+            return "UNIX";
+        } else if (osName.contains("bsd")) {
+            return "UNIX-BSD";
+        } else if ("os/2".equals(osName)) {
+            return "OS/2";
+        } else if (osName.contains("unix")) {
+            return "UNIX";
+        } else if ("irix".equals(osName)) {
+            return "IRIX";
+        } else {
+            return "UNKNOWN";
+        }
+    }
+
+}
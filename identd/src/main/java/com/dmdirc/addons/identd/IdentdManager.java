@@ -17,7 +17,6 @@
 
 package com.dmdirc.addons.identd;
 
-import com.dmdirc.config.GlobalConfig;
 import com.dmdirc.config.prefs.PluginPreferencesCategory;
 import com.dmdirc.config.prefs.PreferencesCategory;
 import com.dmdirc.config.prefs.PreferencesDialogModel;
@@ -27,14 +26,19 @@ import com.dmdirc.events.ClientPrefsOpenedEvent;
 import com.dmdirc.events.ServerConnectErrorEvent;
 import com.dmdirc.events.ServerConnectedEvent;
 import com.dmdirc.events.ServerConnectingEvent;
+import com.dmdirc.events.ServerDisconnectedEvent;
 import com.dmdirc.interfaces.Connection;
 import com.dmdirc.events.eventbus.EventBus;
-import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.parser.events.DataInEvent;
+import com.dmdirc.parser.events.DataOutEvent;
+import com.dmdirc.parser.interfaces.Parser;
 import com.dmdirc.plugins.PluginDomain;
 import com.dmdirc.plugins.PluginInfo;
 import com.dmdirc.util.validators.PortValidator;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.inject.Inject;
 import net.engio.mbassy.listener.Handler;
 
@@ -42,26 +46,31 @@ public class IdentdManager {
 
     /** List of all the connections that need ident replies. */
     private final List<Connection> connections;
-    /** Global config. */
-    private final AggregateConfigProvider config;
     /** This plugin's settings domain. */
     private final String domain;
     /** Ident server. */
     private final IdentdServer server;
+    /** Map of connections by local port. */
+    private final LocalPortMap ports;
+    /** Connections whose local port hasn't been added to {@link #ports} yet, by parser. */
+    private final Map<Parser, Connection> pendingPorts = new ConcurrentHashMap<>();
+    /** Policy used to answer requests. */
+    private final IdentPolicy policy;
     /** Event bus to subscribe to events on. */
     private final EventBus eventBus;
     private final PluginInfo pluginInfo;
 
     @Inject
-    public IdentdManager(@GlobalConfig final AggregateConfigProvider config,
-            @PluginDomain(IdentdPlugin.class) final String domain,
+    public IdentdManager(@PluginDomain(IdentdPlugin.class) final String domain,
             @PluginDomain(IdentdPlugin.class) final PluginInfo pluginInfo,
-            final IdentdServer server, final EventBus eventBus) {
+            final IdentdServer server, final LocalPortMap ports, final IdentPolicy policy,
+            final EventBus eventBus) {
         this.pluginInfo = pluginInfo;
         connections = new ArrayList<>();
-        this.config = config;
         this.domain = domain;
         this.server = server;
+        this.ports = ports;
+        this.policy = policy;
         this.eventBus = eventBus;
     }
 
@@ -69,9 +78,10 @@ public class IdentdManager {
      * Called when the plugin is loaded.
      */
     public void onLoad() {
+        policy.load();
         eventBus.subscribe(this);
 
-        if (config.getOptionBool(domain, "advanced.alwaysOn")) {
+        if (policy.isAlwaysOn()) {
             server.startServer();
         }
     }
@@ -82,7 +92,11 @@ public class IdentdManager {
     public void onUnload() {
         eventBus.unsubscribe(this);
         server.stopServer();
+        policy.unload();
         connections.clear();
+        pendingPorts.keySet().forEach(parser -> parser.getCallbackManager().unsubscribe(this));
+        pendingPorts.clear();
+        ports.clear();
     }
 
     @Handler
@@ -93,23 +107,68 @@ public class IdentdManager {
             }
             connections.add(event.getConnection());
         }
+
+        // The server will query us as soon as the socket is open, so listen to the parser to
+        // find out the local port as early as possible.
+        event.getConnection().getParser().ifPresent(parser -> {
+            pendingPorts.put(parser, event.getConnection());
+            parser.getCallbackManager().subscribe(this);
+        });
+    }
+
+    @Handler
+    public void handleDataOut(final DataOutEvent event) {
+        addPort(event.getParser());
+    }
+
+    @Handler
+    public void handleDataIn(final DataInEvent event) {
+        addPort(event.getParser());
     }
 
     @Handler
     public void handleServerConnected(final ServerConnectedEvent event) {
+        ports.add(event.getConnection());
         handleServerRemoved(event.getConnection());
     }
 
+    @Handler
+    public void handleServerDisconnected(final ServerDisconnectedEvent event) {
+        removePort(event.getConnection());
+    }
+
     @Handler
     public void handleServerConnectError(final ServerConnectErrorEvent event) {
+        removePort(event.getConnection());
         handleServerRemoved(event.getConnection());
     }
 
+    /**
+     * Adds the local port of the connection using the given parser, once its socket is open.
+     */
+    private void addPort(final Parser parser) {
+        final Connection connection = pendingPorts.remove(parser);
+        if (connection != null) {
+            parser.getCallbackManager().unsubscribe(this);
+            ports.add(connection);
+        }
+    }
+
+    private void removePort(final Connection connection) {
+        for (Map.Entry<Parser, Connection> entry : pendingPorts.entrySet()) {
+            if (entry.getValue().equals(connection)
+                    && pendingPorts.remove(entry.getKey(), connection)) {
+                entry.getKey().getCallbackManager().unsubscribe(this);
+            }
+        }
+        ports.remove(connection);
+    }
+
     private void handleServerRemoved(final Connection connection) {
         synchronized (connections) {
             connections.remove(connection);
 
-            if (connections.isEmpty() && !config.getOptionBool(domain, "advanced.alwaysOn")) {
+            if (connections.isEmpty() && !policy.isAlwaysOn()) {
                 server.stopServer();
             }
         }
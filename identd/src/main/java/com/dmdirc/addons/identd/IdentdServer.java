@@ -18,15 +18,16 @@
 package com.dmdirc.addons.identd;
 
 import com.dmdirc.config.GlobalConfig;
-import com.dmdirc.interfaces.ConnectionManager;
 import com.dmdirc.config.provider.AggregateConfigProvider;
 import com.dmdirc.plugins.PluginDomain;
-import com.dmdirc.util.system.SystemInfo;
+import com.dmdirc.util.io.StreamUtils;
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
 import javax.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,90 +35,122 @@ import org.slf4j.LoggerFactory;
 import static com.dmdirc.util.LogUtils.USER_ERROR;
 
 /**
- * The IdentdServer watches over the ident port when required
+ * The IdentdServer watches over the ident port when required. All clients are served by a single
+ * thread using a selector.
  */
-public final class IdentdServer implements Runnable {
+public final class IdentdServer {
 
     private static final Logger LOG = LoggerFactory.getLogger(IdentdServer.class);
+    /** How long, in milliseconds, a client may be idle before it is disconnected. */
+    private static final long CLIENT_TIMEOUT = 30000;
+    /** How long, in milliseconds, to wait for activity before checking for idle clients. */
+    private static final long SELECT_TIMEOUT = 1000;
+    /** How long, in milliseconds, to wait for the server thread to finish when stopping. */
+    private static final long STOP_TIMEOUT = 5000;
     /** The Thread in use for this server */
     private volatile Thread myThread;
-    /** The current socket in use for this server */
-    private ServerSocket serverSocket;
-    /** Arraylist of all the clients we have */
-    private final List<IdentClient> clientList = new ArrayList<>();
-    /** Server manager. */
-    private final ConnectionManager connectionManager;
+    /** The selector used by the current thread. */
+    private Selector selector;
+    /** The channel the current thread accepts clients from. */
+    private ServerSocketChannel serverChannel;
+    /** Map used to find the connection a request is for. */
+    private final LocalPortMap ports;
+    /** Policy used to answer requests. */
+    private final IdentPolicy policy;
     /** Have we failed to start this server previously? */
     private boolean failed;
     /** Global configuration to read plugin's from. */
     private final AggregateConfigProvider config;
     /** This plugin's config settings domain. */
     private final String domain;
-    /** System info wrapper to use for the ident client. */
-    private final SystemInfo systemInfo;
 
     /**
      * Create the IdentdServer.
      *
-     * @param connectionManager Server manager to iterate over servers
-     * @param config        Global config
-     * @param domain        This plugin's setting domain
+     * @param ports   Map used to find the connection a request is for
+     * @param policy  Policy used to answer requests
+     * @param config  Global config
+     * @param domain  This plugin's setting domain
      */
     @Inject
-    public IdentdServer(final ConnectionManager connectionManager,
+    public IdentdServer(final LocalPortMap ports, final IdentPolicy policy,
             @GlobalConfig final AggregateConfigProvider config,
-            @PluginDomain(IdentdPlugin.class) final String domain,
-            final SystemInfo systemInfo) {
-        this.connectionManager = connectionManager;
+            @PluginDomain(IdentdPlugin.class) final String domain) {
+        this.ports = ports;
+        this.policy = policy;
         this.config = config;
         this.domain = domain;
-        this.systemInfo = systemInfo;
     }
 
     /**
-     * Run this IdentdServer.
+     * Serves clients until this server is stopped.
+     *
+     * @param selector      The selector to wait on
+     * @param serverChannel The channel to accept clients from
      */
-    @Override
-    public void run() {
+    private void run(final Selector selector, final ServerSocketChannel serverChannel) {
         final Thread thisThread = Thread.currentThread();
-        while (myThread == thisThread) {
-            try {
-                final Socket clientSocket = serverSocket.accept();
-                final IdentClient client = new IdentClient(this, clientSocket, connectionManager,
-                        config, domain, systemInfo);
-                client.start();
-                addClient(client);
-            } catch (IOException e) {
-                if (myThread == thisThread) {
-                    LOG.error(USER_ERROR, "Accepting client failed: {}", e.getMessage(), e);
+        try {
+            while (myThread == thisThread) {
+                selector.select(SELECT_TIMEOUT);
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isAcceptable()) {
+                        acceptClient(selector, serverChannel);
+                    } else if (key.isValid()) {
+                        handleClient(key);
+                    }
                 }
+                closeIdleClients(selector);
             }
+        } catch (IOException e) {
+            if (myThread == thisThread) {
+                LOG.error(USER_ERROR, "Identd server failed: {}", e.getMessage(), e);
+                myThread = null;
+            }
+        } finally {
+            selector.keys().forEach(key -> StreamUtils.close(key.channel()));
+            StreamUtils.close(selector);
         }
     }
 
-    /**
-     * Add an IdentClient to the clientList
-     *
-     * @param client Client to add
-     */
-    public void addClient(final IdentClient client) {
-        synchronized (clientList) {
-            clientList.add(client);
+    private void acceptClient(final Selector selector, final ServerSocketChannel serverChannel) {
+        try {
+            final SocketChannel channel = serverChannel.accept();
+            if (channel != null) {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ,
+                        new IdentClient(channel, ports, policy));
+            }
+        } catch (IOException e) {
+            if (myThread == Thread.currentThread()) {
+                LOG.error(USER_ERROR, "Accepting client failed: {}", e.getMessage(), e);
+            }
         }
     }
 
-    /**
-     * Remove an IdentClient from the clientList
-     *
-     * @param client Client to remove
-     */
-    public void delClient(final IdentClient client) {
-        synchronized (clientList) {
-            for (int i = 0; i < clientList.size(); ++i) {
-                if (clientList.get(i) == client) {
-                    clientList.remove(i);
-                    break;
-                }
+    private void handleClient(final SelectionKey key) {
+        final IdentClient client = (IdentClient) key.attachment();
+        try {
+            if (key.isReadable() && client.read()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else if (key.isWritable() && client.write()) {
+                key.channel().close();
+            }
+        } catch (IOException e) {
+            LOG.error(USER_ERROR, "ClientSocket Error: {}", e.getMessage(), e);
+            StreamUtils.close(key.channel());
+        }
+    }
+
+    private void closeIdleClients(final Selector selector) {
+        final long cutoff = System.currentTimeMillis() - CLIENT_TIMEOUT;
+        for (SelectionKey key : selector.keys()) {
+            final Object client = key.attachment();
+            if (client instanceof IdentClient && ((IdentClient) client).getLastActive() < cutoff) {
+                StreamUtils.close(key.channel());
             }
         }
     }
@@ -134,14 +167,28 @@ public final class IdentdServer implements Runnable {
     /**
      * Start the ident server
      */
-    public void startServer() {
+    public synchronized void startServer() {
         if (!failed && myThread == null) {
+            Selector newSelector = null;
+            ServerSocketChannel newChannel = null;
             try {
                 final int identPort = config.getOptionInt(domain, "advanced.port");
-                serverSocket = new ServerSocket(identPort);
-                myThread = new Thread(this);
+                newSelector = Selector.open();
+                newChannel = ServerSocketChannel.open();
+                newChannel.bind(new InetSocketAddress(identPort));
+                newChannel.configureBlocking(false);
+                newChannel.register(newSelector, SelectionKey.OP_ACCEPT);
+
+                final Selector threadSelector = newSelector;
+                final ServerSocketChannel threadChannel = newChannel;
+                selector = newSelector;
+                serverChannel = newChannel;
+                myThread = new Thread(() -> run(threadSelector, threadChannel), "Identd server");
+                myThread.setDaemon(true);
                 myThread.start();
             } catch (IOException e) {
+                StreamUtils.close(newChannel);
+                StreamUtils.close(newSelector);
                 LOG.error(USER_ERROR, "Unable to start identd server: {}", e.getMessage(), e);
                 if ("Permission denied".equals(e.getMessage())) {
                     failed = true;
@@ -151,25 +198,23 @@ public final class IdentdServer implements Runnable {
     }
 
     /**
-     * Stop the ident server
+     * Stop the ident server. The ident port is released before this returns, so the server can be
+     * started again straight away.
      */
-    public void stopServer() {
-        if (myThread != null) {
-            final Thread tmpThread = myThread;
+    public synchronized void stopServer() {
+        final Thread thread = myThread;
+        if (thread != null) {
             myThread = null;
-            if (tmpThread != null) {
-                tmpThread.interrupt();
-            }
+            StreamUtils.close(serverChannel);
+            selector.wakeup();
             try {
-                serverSocket.close();
-            } catch (IOException e) {
-                LOG.info("Unable to close socket: {}", e.getMessage(), e);
-            }
-
-            synchronized (clientList) {
-                clientList.forEach(IdentClient::close);
-                clientList.clear();
+                // The server thread closes the selector and any clients once it notices.
+                thread.join(STOP_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+            serverChannel = null;
+            selector = null;
         }
     }
 
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.identd;
+
+import com.dmdirc.interfaces.Connection;
+import com.dmdirc.interfaces.ConnectionManager;
+import com.dmdirc.parser.interfaces.Parser;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Maps local ports to the connections using them.
+ */
+@Singleton
+public class LocalPortMap {
+
+    /** Server manager, used to find connections that haven't been added yet. */
+    private final ConnectionManager connectionManager;
+    /** Known connections, by local port. */
+    private final Map<Integer, Connection> connections = new ConcurrentHashMap<>();
+
+    @Inject
+    public LocalPortMap(final ConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    /**
+     * Adds a connection to the map, if it has a local port.
+     *
+     * @param connection The connection to add
+     */
+    public void add(final Connection connection) {
+        final int port = getLocalPort(connection);
+        if (port > 0) {
+            connections.put(port, connection);
+        }
+    }
+
+    /**
+     * Removes a connection from the map.
+     *
+     * @param connection The connection to remove
+     */
+    public void remove(final Connection connection) {
+        connections.values().removeIf(connection::equals);
+    }
+
+    /**
+     * Removes all connections from the map.
+     */
+    public void clear() {
+        connections.clear();
+    }
+
+    /**
+     * Retrieves the connection that is bound to the specified local port.
+     *
+     * @param port Port to check for
+     *
+     * @return The connection using the given port, or null if there isn't one
+     */
+    @Nullable
+    public Connection get(final int port) {
+        final Connection connection = connections.get(port);
+        if (connection != null && getLocalPort(connection) == port) {
+            return connection;
+        }
+
+        // Connections are added as soon as their socket is open, but a request may still beat
+        // that, so fall back to looking through all the connections.
+        connections.remove(port);
+        Connection result = null;
+        for (Connection candidate : connectionManager.getConnections()) {
+            add(candidate);
+            if (getLocalPort(candidate) == port) {
+                result = candidate;
+            }
+        }
+        return result;
+    }
+
+    private static int getLocalPort(final Connection connection) {
+        return connection.getParser().map(Parser::getLocalPort).orElse(-1);
+    }
+
+}
@@ -17,6 +17,7 @@
 
 package com.dmdirc.addons.identd;
 
+import com.dmdirc.config.binding.ConfigBinder;
 import com.dmdirc.interfaces.Connection;
 import com.dmdirc.interfaces.ConnectionManager;
 import com.dmdirc.interfaces.User;
@@ -36,11 +37,13 @@ import org.mockito.runners.MockitoJUnitRunner;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class IdentClientTest {
 
+    private static final String DOMAIN = "plugin-Identd";
     @Mock private AggregateConfigProvider acp;
     @Mock private ConnectionManager sm;
     @Mock private Connection connection;
@@ -48,6 +51,7 @@ public class IdentClientTest {
     @Mock private IRCClientInfo client;
     @Mock private User user;
     @Mock private AggregateConfigProvider config;
+    @Mock private ConfigBinder binder;
     @Mock private SystemInfo systemInfo;
 
     protected IdentClient getClient() {
@@ -63,13 +67,27 @@ public class IdentClientTest {
         when(client.getUsername()).thenReturn("username");
         when(user.getNickname()).thenReturn("nickname");
         when(user.getUsername()).thenReturn(Optional.of("username"));
-
-        return new IdentClient(null, null, sm, config, "plugin-Identd", systemInfo);
+        when(config.getBinder()).thenReturn(binder);
+        when(binder.withDefaultDomain(anyString())).thenReturn(binder);
+
+        // Apply the settings as the config binder would.
+        final IdentPolicy policy = new IdentPolicy(config, DOMAIN, systemInfo);
+        policy.handleAlwaysOn(acp.getOptionBool(DOMAIN, "advanced.alwaysOn"));
+        policy.handleNoUser(acp.getOptionBool(DOMAIN, "advanced.isNoUser"));
+        policy.handleHiddenUser(acp.getOptionBool(DOMAIN, "advanced.isHiddenUser"));
+        policy.handleUseCustomSystem(acp.getOptionBool(DOMAIN, "advanced.useCustomSystem"));
+        policy.handleCustomSystem(acp.getOption(DOMAIN, "advanced.customSystem"));
+        policy.handleUseCustomName(acp.getOptionBool(DOMAIN, "general.useCustomName"));
+        policy.handleCustomName(acp.getOption(DOMAIN, "general.customName"));
+        policy.handleUseNickname(acp.getOptionBool(DOMAIN, "general.useNickname"));
+        policy.handleUseUsername(acp.getOptionBool(DOMAIN, "general.useUsername"));
+
+        return new IdentClient(null, new LocalPortMap(sm), policy);
     }
 
     @Test
     public void testInvalidIdent() {
-        final String response = getClient().getIdentResponse("invalid request!", acp);
+        final String response = getClient().getIdentResponse("invalid request!");
 
         assertContains("Illegal requests must result in an ERROR response",
                 response, "ERROR");
@@ -77,7 +95,7 @@ public class IdentClientTest {
 
     @Test
     public void testQuoting() {
-        final String response = getClient().getIdentResponse("in\\valid:invalid", acp);
+        final String response = getClient().getIdentResponse("in\\valid:invalid");
 
         assertStartsWith("Special chars in illegal requests must be quoted",
                 response, "in\\\\valid\\:invalid");
@@ -85,7 +103,7 @@ public class IdentClientTest {
 
     @Test
     public void testQuoting2() {
-        final String response = getClient().getIdentResponse("in\\\\valid\\ inv\\:alid", acp);
+        final String response = getClient().getIdentResponse("in\\\\valid\\ inv\\:alid");
 
         assertStartsWith("Escaped characters in illegal requests shouldn't be doubly-escaped",
                 response, "in\\\\valid\\ inv\\:alid");
@@ -93,7 +111,7 @@ public class IdentClientTest {
 
     @Test
     public void testNonNumericPort() {
-        final String response = getClient().getIdentResponse("abc, def", acp);
+        final String response = getClient().getIdentResponse("abc, def");
 
         assertContains("Non-numeric ports must result in an ERROR response",
                 response, "ERROR");
@@ -102,7 +120,7 @@ public class IdentClientTest {
     }
 
     private void doPortTest(final String ports) {
-        final String response = getClient().getIdentResponse(ports, acp);
+        final String response = getClient().getIdentResponse(ports);
 
         assertContains("Illegal ports must result in an ERROR response",
                 response, "ERROR");
@@ -124,7 +142,7 @@ public class IdentClientTest {
     public void testAlwaysOn() {
         when(acp.getOptionBool("plugin-Identd", "advanced.alwaysOn")).thenReturn(false);
 
-        final String response = getClient().getIdentResponse("50, 50", acp);
+        final String response = getClient().getIdentResponse("50, 50");
         assertContains("Unknown port requests must return an ERROR response",
                 response, "ERROR");
         assertContains("Unknown port requests must return a NO-USER response",
@@ -136,7 +154,7 @@ public class IdentClientTest {
         when(acp.getOptionBool("plugin-Identd", "advanced.alwaysOn")).thenReturn(true);
         when(acp.getOptionBool("plugin-Identd", "advanced.isHiddenUser")).thenReturn(true);
 
-        final String response = getClient().getIdentResponse("50, 50", acp);
+        final String response = getClient().getIdentResponse("50, 50");
         assertContains("Hidden requests must return an ERROR response",
                 response, "ERROR");
         assertContains("Hidden requests must return a HIDDEN-USER response",
@@ -154,7 +172,7 @@ public class IdentClientTest {
         when(systemInfo.getProperty("user.name")).thenReturn("test");
         when(systemInfo.getProperty("os.name")).thenReturn("test");
 
-        final String response = getClient().getIdentResponse("50, 50", acp);
+        final String response = getClient().getIdentResponse("50, 50");
         assertContains("Special characters must be quoted in system names",
                 response, "a\\:b\\\\c\\,d");
     }
@@ -170,7 +188,7 @@ public class IdentClientTest {
         when(systemInfo.getProperty("user.name")).thenReturn("test");
         when(systemInfo.getProperty("os.name")).thenReturn("test");
 
-        final String response = getClient().getIdentResponse("50, 50", acp);
+        final String response = getClient().getIdentResponse("50, 50");
         assertContains("Special characters must be quoted in custom names",
                 response, "a\\:b\\\\c\\,d");
     }
@@ -186,7 +204,7 @@ public class IdentClientTest {
         when(systemInfo.getProperty("user.name")).thenReturn("test");
         when(systemInfo.getProperty("os.name")).thenReturn("test");
 
-        final String response = getClient().getIdentResponse("50, 60", acp);
+        final String response = getClient().getIdentResponse("50, 60");
         final String[] bits = response.split(":");
 
         assertTrue("Responses must include port pair",
@@ -204,7 +222,7 @@ public class IdentClientTest {
         when(systemInfo.getProperty("user.name")).thenReturn("test");
         when(systemInfo.getProperty("os.name")).thenReturn("windows");
 
-        final String response = getClient().getIdentResponse("50, 50", acp);
+        final String response = getClient().getIdentResponse("50, 50");
         assertEquals("50 , 50 : USERID : WIN32 : test", response);
     }
 
@@ -215,7 +233,7 @@ public class IdentClientTest {
         when(systemInfo.getProperty("user.name")).thenReturn("test");
         when(systemInfo.getProperty("os.name")).thenReturn("mac");
 
-        final String response = getClient().getIdentResponse("50, 50", acp);
+        final String response = getClient().getIdentResponse("50, 50");
         assertEquals("50 , 50 : USERID : MACOS : test", response);
     }
 
@@ -226,7 +244,7 @@ public class IdentClientTest {
         when(systemInfo.getProperty("user.name")).thenReturn("test");
         when(systemInfo.getProperty("os.name")).thenReturn("linux");
 
-        final String response = getClient().getIdentResponse("50, 50", acp);
+        final String response = getClient().getIdentResponse("50, 50");
         assertEquals("50 , 50 : USERID : UNIX : test", response);
     }
 
@@ -237,7 +255,7 @@ public class IdentClientTest {
         when(systemInfo.getProperty("user.name")).thenReturn("test");
         when(systemInfo.getProperty("os.name")).thenReturn("bsd");
 
-        final String response = getClient().getIdentResponse("50, 50", acp);
+        final String response = getClient().getIdentResponse("50, 50");
         assertEquals("50 , 50 : USERID : UNIX-BSD : test", response);
     }
 
@@ -248,7 +266,7 @@ public class IdentClientTest {
         when(systemInfo.getProperty("user.name")).thenReturn("test");
         when(systemInfo.getProperty("os.name")).thenReturn("os/2");
 
-        final String response = getClient().getIdentResponse("50, 50", acp);
+        final String response = getClient().getIdentResponse("50, 50");
         assertEquals("50 , 50 : USERID : OS/2 : test", response);
     }
 
@@ -259,7 +277,7 @@ public class IdentClientTest {
         when(systemInfo.getProperty("user.name")).thenReturn("test");
         when(systemInfo.getProperty("os.name")).thenReturn("unix");
 
-        final String response = getClient().getIdentResponse("50, 50", acp);
+        final String response = getClient().getIdentResponse("50, 50");
         assertEquals("50 , 50 : USERID : UNIX : test", response);
     }
 
@@ -270,7 +288,7 @@ public class IdentClientTest {
         when(systemInfo.getProperty("user.name")).thenReturn("test");
         when(systemInfo.getProperty("os.name")).thenReturn("irix");
 
-        final String response = getClient().getIdentResponse("50, 50", acp);
+        final String response = getClient().getIdentResponse("50, 50");
         assertEquals("50 , 50 : USERID : IRIX : test", response);
     }
 
@@ -281,7 +299,7 @@ public class IdentClientTest {
         when(systemInfo.getProperty("user.name")).thenReturn("test");
         when(systemInfo.getProperty("os.name")).thenReturn("test");
 
-        final String response = getClient().getIdentResponse("50, 50", acp);
+        final String response = getClient().getIdentResponse("50, 50");
         assertEquals("50 , 50 : USERID : UNKNOWN : test", response);
     }
 
@@ -293,7 +311,7 @@ public class IdentClientTest {
         when(systemInfo.getProperty("user.name")).thenReturn("test");
         when(systemInfo.getProperty("os.name")).thenReturn("test");
 
-        final String response = getClient().getIdentResponse("50, 50", acp);
+        final String response = getClient().getIdentResponse("50, 50");
         assertEquals("50 , 50 : USERID : UNKNOWN : name", response);
     }
 
@@ -303,7 +321,7 @@ public class IdentClientTest {
         when(systemInfo.getProperty("user.name")).thenReturn("test");
         when(systemInfo.getProperty("os.name")).thenReturn("test");
 
-        final String response = getClient().getIdentResponse("60, 50", acp);
+        final String response = getClient().getIdentResponse("60, 50");
         assertEquals("60 , 50 : USERID : UNKNOWN : nickname", response);
     }
 
@@ -313,7 +331,7 @@ public class IdentClientTest {
         when(systemInfo.getProperty("user.name")).thenReturn("test");
         when(systemInfo.getProperty("os.name")).thenReturn("test");
 
-        final String response = getClient().getIdentResponse("60, 50", acp);
+        final String response = getClient().getIdentResponse("60, 50");
         assertEquals("60 , 50 : USERID : UNKNOWN : username", response);
     }
 
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.identd;
+
+import com.dmdirc.config.provider.AggregateConfigProvider;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class IdentdServerTest {
+
+    private static final String DOMAIN = "plugin-Identd";
+    @Mock private AggregateConfigProvider config;
+    @Mock private LocalPortMap ports;
+    @Mock private IdentPolicy policy;
+    private IdentdServer server;
+    private int port;
+
+    @Before
+    public void setUp() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        when(config.getOptionInt(DOMAIN, "advanced.port")).thenReturn(port);
+        server = new IdentdServer(ports, policy, config, DOMAIN);
+    }
+
+    @After
+    public void tearDown() {
+        server.stopServer();
+    }
+
+    @Test
+    public void testStartAcceptsConnections() throws IOException {
+        server.startServer();
+        assertTrue(server.isRunning());
+        assertConnects();
+    }
+
+    @Test
+    public void testStopReleasesPort() throws IOException {
+        server.startServer();
+        server.stopServer();
+        assertFalse(server.isRunning());
+        try (ServerSocket socket = new ServerSocket(port)) {
+            assertTrue(socket.isBound());
+        }
+    }
+
+    @Test
+    public void testRestartOnSamePort() throws IOException {
+        server.startServer();
+        server.stopServer();
+        server.startServer();
+        assertTrue(server.isRunning());
+        assertConnects();
+    }
+
+    private void assertConnects() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            assertTrue(socket.isConnected());
+        }
+    }
+
+}
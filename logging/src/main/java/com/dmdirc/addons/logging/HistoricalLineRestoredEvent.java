@@ -21,27 +21,43 @@ import com.dmdirc.events.BaseDisplayableEvent;
 import com.dmdirc.interfaces.WindowModel;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
 
 /**
- * Event raised when a line from the log is restored into a window.
+ * Event raised when lines from the log are restored into a window. A single event is raised for
+ * each batch of lines, rather than one per line.
  */
 public class HistoricalLineRestoredEvent extends BaseDisplayableEvent {
 
-    private final String line;
+    private final List<String> lines;
 
     public HistoricalLineRestoredEvent(final LocalDateTime timestamp, final WindowModel source,
             final String line) {
         super(timestamp, source);
-        this.line = line;
+        this.lines = Collections.singletonList(line);
     }
 
     public HistoricalLineRestoredEvent(final WindowModel source, final String line) {
+        this(source, Collections.singletonList(line));
+    }
+
+    public HistoricalLineRestoredEvent(final WindowModel source, final List<String> lines) {
         super(source);
-        this.line = line;
+        this.lines = Collections.unmodifiableList(lines);
     }
 
+    /**
+     * Gets the restored lines, joined by newlines.
+     *
+     * @return The restored lines
+     */
     public String getLine() {
-        return line;
+        return String.join("\n", lines);
+    }
+
+    public List<String> getLines() {
+        return lines;
     }
 
 }
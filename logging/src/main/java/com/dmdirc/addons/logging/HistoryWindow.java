@@ -23,7 +23,6 @@ import com.dmdirc.events.eventbus.EventBus;
 import com.dmdirc.interfaces.WindowModel;
 import com.dmdirc.ui.core.components.WindowComponent;
 import com.dmdirc.ui.messages.BackBufferFactory;
-import com.dmdirc.util.io.ReverseFileReader;
 
 import com.google.common.annotations.VisibleForTesting;
 
@@ -75,11 +74,12 @@ public class HistoryWindow extends FrameContainer {
 
     @VisibleForTesting
     void outputLoggingBackBuffer(final int limit) {
-        try (final ReverseFileReader reader = new ReverseFileReader(logFile)) {
-            final List<String> lines = reader.getLines(Math.min(limit, numLines));
-            Collections.reverse(lines);
-            lines.forEach(l ->
-                    getEventBus().publishAsync(new HistoricalLineRestoredEvent(this, l)));
+        try {
+            final List<String> lines = LogTailReader.readLastLines(logFile,
+                    Math.min(limit, numLines));
+            if (!lines.isEmpty()) {
+                getEventBus().publishAsync(new HistoricalLineRestoredEvent(this, lines));
+            }
         } catch (IOException | SecurityException ex) {
             LOG.warn(USER_ERROR, "Unable to read log file.", ex);
         }
@@ -31,7 +31,9 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -43,28 +45,33 @@ import static com.dmdirc.util.LogUtils.USER_ERROR;
 
 /**
  * Facilitates finding a path for log files.
+ *
+ * <p>Resolved paths are cached by network and target until a relevant setting changes or the date
+ * directory rolls over, and each directory is only checked or created once in that time.
  */
 @Singleton
 public class LogFileLocator {
 
     private static final Logger LOG = LoggerFactory.getLogger(LogFileLocator.class);
+    /** How often to check whether the date directory has changed, in milliseconds. */
+    private static final long DATE_CHECK_INTERVAL = 1000;
+    /** Network used in the cache for targets without a connection. */
+    private static final String NO_NETWORK = "\0";
     private final Provider<String> directoryProvider;
+    /** Paths resolved for the current settings and date directory. */
+    private volatile PathCache cache = new PathCache("", 0);
 
     /** Whether to append a hash of the file name to the file name... */
-    @ConfigBinding(key = "advanced.filenamehash")
-    private boolean filenamehash;
+    private volatile boolean filenamehash;
 
     /** Whether to create a new folder for each network. */
-    @ConfigBinding(key = "general.networkfolders")
-    private boolean networkfolders;
+    private volatile boolean networkfolders;
 
     /** Whether to use date formats in file names. */
-    @ConfigBinding(key = "advanced.usedate")
-    private boolean usedate;
+    private volatile boolean usedate;
 
     /** Date format to use in file names if {@link #usedate} is true. */
-    @ConfigBinding(key = "advanced.usedateformat")
-    private String usedateformat;
+    private volatile String usedateformat;
 
     @Inject
     public LogFileLocator(
@@ -76,6 +83,69 @@ public class LogFileLocator {
         globalConfig.getBinder().withDefaultDomain(domain).bind(this, LogFileLocator.class);
     }
 
+    @ConfigBinding(key = "advanced.filenamehash")
+    void handleFilenameHash(final String value) {
+        filenamehash = Boolean.valueOf(value);
+        invalidate();
+    }
+
+    @ConfigBinding(key = "general.networkfolders")
+    void handleNetworkFolders(final String value) {
+        networkfolders = Boolean.valueOf(value);
+        invalidate();
+    }
+
+    @ConfigBinding(key = "advanced.usedate")
+    void handleUseDate(final String value) {
+        usedate = Boolean.valueOf(value);
+        invalidate();
+    }
+
+    @ConfigBinding(key = "advanced.usedateformat")
+    void handleUseDateFormat(final String value) {
+        usedateformat = value;
+        invalidate();
+    }
+
+    @ConfigBinding(key = "general.directory")
+    void handleDirectory(final String value) {
+        invalidate();
+    }
+
+    /**
+     * Discards all cached paths and directories.
+     */
+    private void invalidate() {
+        cache = new PathCache("", 0);
+    }
+
+    /**
+     * Gets the cache for the current date directory, replacing it if the date directory has
+     * changed since it was created.
+     *
+     * @return The current path cache
+     */
+    private PathCache getCache() {
+        final PathCache current = cache;
+        final long now = System.currentTimeMillis();
+        if (now < current.checkAfter) {
+            return current;
+        }
+
+        final String dateDir = usedate ? new SimpleDateFormat(usedateformat).format(new Date(now))
+                : "";
+        final PathCache updated = dateDir.equals(current.dateDir) && current.checkAfter > 0
+                ? new PathCache(current, now + DATE_CHECK_INTERVAL)
+                : new PathCache(dateDir, now + DATE_CHECK_INTERVAL);
+        // Only replace the cache we checked, in case the settings changed in the meantime.
+        synchronized (this) {
+            if (cache == current) {
+                cache = updated;
+            }
+            return cache;
+        }
+    }
+
     /**
      * Sanitises the log file directory.
      *
@@ -98,12 +168,21 @@ public class LogFileLocator {
      * @return the name of the log file to use for this object.
      */
     public String getLogFile(final GroupChat channel) {
+        final Optional<String> network = channel.getConnection().map(Connection::getNetwork);
+        final PathCache current = getCache();
+        final Map<String, String> paths = current.getPaths(network.orElse(NO_NETWORK));
+        final String path = paths.get(channel.getName());
+        if (path != null) {
+            return path;
+        }
+
         final StringBuffer directory = getLogDirectory();
         final StringBuffer file = new StringBuffer();
-        final Optional<String> network = channel.getConnection().map(Connection::getNetwork);
-        network.ifPresent(n -> addNetworkDir(directory, file, n));
+        network.ifPresent(n -> addNetworkDir(directory, file, n, current));
         file.append(sanitise(channel.getName().toLowerCase()));
-        return getPath(directory, file, channel.getName());
+        final String result = getPath(directory, file, channel.getName(), current);
+        paths.put(channel.getName(), result);
+        return result;
     }
 
     /**
@@ -114,11 +193,21 @@ public class LogFileLocator {
      * @return the name of the log file to use for this object.
      */
     public String getLogFile(final User user) {
+        final String network = user.getConnection().getNetwork();
+        final PathCache current = getCache();
+        final Map<String, String> paths = current.getPaths(network);
+        final String path = paths.get(user.getNickname());
+        if (path != null) {
+            return path;
+        }
+
         final StringBuffer directory = getLogDirectory();
         final StringBuffer file = new StringBuffer();
-        addNetworkDir(directory, file, user.getConnection().getNetwork());
+        addNetworkDir(directory, file, network, current);
         file.append(sanitise(user.getNickname().toLowerCase()));
-        return getPath(directory, file, user.getNickname());
+        final String result = getPath(directory, file, user.getNickname(), current);
+        paths.put(user.getNickname(), result);
+        return result;
     }
 
     /**
@@ -133,18 +222,25 @@ public class LogFileLocator {
      */
     public String getPath(final StringBuffer directory, final StringBuffer file,
             final String md5String) {
+        return getPath(directory, file, md5String, getCache());
+    }
+
+    private String getPath(final StringBuffer directory, final StringBuffer file,
+            final String md5String, final PathCache current) {
         if (usedate) {
-            final String dateFormat = usedateformat;
-            final String dateDir = new SimpleDateFormat(dateFormat).format(new Date());
-            directory.append(dateDir);
+            directory.append(current.dateDir);
             if (directory.charAt(directory.length() - 1) != File.separatorChar) {
                 directory.append(File.separatorChar);
             }
 
-            if (!new File(directory.toString()).exists()
-                    && !new File(directory.toString()).mkdirs()) {
-                LOG.info(USER_ERROR, "Unable to create data dirs");
-            }
+            current.directories.computeIfAbsent(directory.toString(), dir -> {
+                final File dateDir = new File(dir);
+                if (!dateDir.exists() && !dateDir.mkdirs()) {
+                    LOG.info(USER_ERROR, "Unable to create data dirs");
+                    return false;
+                }
+                return true;
+            });
         }
 
         if (filenamehash) {
@@ -166,32 +262,38 @@ public class LogFileLocator {
      */
     protected void addNetworkDir(final StringBuffer directory, final StringBuffer file,
             final String networkName) {
+        addNetworkDir(directory, file, networkName, getCache());
+    }
+
+    private void addNetworkDir(final StringBuffer directory, final StringBuffer file,
+            final String networkName, final PathCache current) {
         if (!networkfolders) {
             return;
         }
 
         final String network = sanitise(networkName.toLowerCase());
 
-        boolean prependNetwork = false;
-
         // Check dir exists
-        final File dir = new File(directory + network + System.getProperty(
-                "file.separator"));
-        if (dir.exists() && !dir.isDirectory()) {
-            LOG.info(USER_ERROR, "Unable to create networkfolders dir (file exists instead)");
-            // Prepend network name to file instead.
-            prependNetwork = true;
-        } else if (!dir.exists() && !dir.mkdirs()) {
-            LOG.info(USER_ERROR, "Unable to create networkfolders dir");
-            prependNetwork = true;
-        }
+        final boolean prependNetwork = !current.directories.computeIfAbsent(
+                directory + network + File.separator, path -> {
+            final File dir = new File(path);
+            if (dir.exists() && !dir.isDirectory()) {
+                LOG.info(USER_ERROR, "Unable to create networkfolders dir (file exists instead)");
+                // Prepend network name to file instead.
+                return false;
+            } else if (!dir.exists() && !dir.mkdirs()) {
+                LOG.info(USER_ERROR, "Unable to create networkfolders dir");
+                return false;
+            }
+            return true;
+        });
 
         if (prependNetwork) {
             file.insert(0, " -- ");
             file.insert(0, network);
         } else {
             directory.append(network);
-            directory.append(System.getProperty("file.separator"));
+            directory.append(File.separatorChar);
         }
     }
 
@@ -225,4 +327,38 @@ public class LogFileLocator {
         }
     }
 
+    /**
+     * Paths and directories resolved for a single date directory and set of settings.
+     */
+    private static class PathCache {
+
+        /** The date directory in use, or an empty string if dates aren't used. */
+        private final String dateDir;
+        /** Time after which the date directory should be checked again. */
+        private final long checkAfter;
+        /** Resolved paths, by network and then target name. */
+        private final Map<String, Map<String, String>> paths;
+        /** Directories that have been checked, and whether they are usable. */
+        private final Map<String, Boolean> directories;
+
+        PathCache(final String dateDir, final long checkAfter) {
+            this.dateDir = dateDir;
+            this.checkAfter = checkAfter;
+            this.paths = new ConcurrentHashMap<>();
+            this.directories = new ConcurrentHashMap<>();
+        }
+
+        PathCache(final PathCache previous, final long checkAfter) {
+            this.dateDir = previous.dateDir;
+            this.checkAfter = checkAfter;
+            this.paths = previous.paths;
+            this.directories = previous.directories;
+        }
+
+        Map<String, String> getPaths(final String network) {
+            return paths.computeIfAbsent(network, n -> new ConcurrentHashMap<>());
+        }
+
+    }
+
 }
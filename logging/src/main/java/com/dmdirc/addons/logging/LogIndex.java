@@ -0,0 +1,862 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.logging;
+
+import com.dmdirc.commandline.CommandLineOptionsModule.Directory;
+import com.dmdirc.config.GlobalConfig;
+import com.dmdirc.config.binding.ConfigBinder;
+import com.dmdirc.config.binding.ConfigBinding;
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.plugins.PluginDomain;
+import com.dmdirc.ui.messages.IRCControlCodes;
+import com.dmdirc.util.LoggingScheduledExecutorService;
+import com.dmdirc.util.io.StreamUtils;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.dmdirc.util.LogUtils.USER_ERROR;
+
+/**
+ * Maintains a full-text index of the log files on disk.
+ *
+ * <p>Files are indexed incrementally: each file's indexed length is tracked, and when a file is
+ * written to only the complete lines after that point are read. New postings are buffered in
+ * memory and written out as immutable {@link LogIndexSegment}s when enough have built up, when
+ * the logs go quiet, or at least every {@link #COMMIT_INTERVAL} milliseconds. The newest segments
+ * are merged once there are too many of them. The list of segments and the indexed length of each
+ * file are committed together, so after a crash any lines that weren't committed are simply
+ * indexed again.
+ *
+ * <p>All indexing and searching happens on a single thread, so none of the index state needs to
+ * be locked.
+ */
+@Singleton
+public class LogIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogIndex.class);
+    /** Name of the directory, inside the logs directory, that holds the index. */
+    private static final String INDEX_DIRECTORY = ".index";
+    /** Name of the file listing the committed segments and indexed files. */
+    private static final String FILES_NAME = "files.idx";
+    /** Prefix of segment file names. */
+    private static final String SEGMENT_PREFIX = "segment-";
+    /** Suffix of segment file names. */
+    private static final String SEGMENT_SUFFIX = ".seg";
+    /** Magic number at the start of the files list. */
+    private static final int FILES_MAGIC = 0x444d4c46;
+    /** Number of buffered postings after which a new segment is written. */
+    private static final int MAX_BUFFERED_POSTINGS = 500000;
+    /** Maximum time, in milliseconds, that indexed lines are left uncommitted. */
+    private static final long COMMIT_INTERVAL = 60000;
+    /** Number of segments after which they are merged into one. */
+    private static final int MAX_SEGMENTS = 8;
+    /** Shortest term that is indexed. */
+    private static final int MIN_TERM_LENGTH = 2;
+    /** Longest term that is indexed. */
+    private static final int MAX_TERM_LENGTH = 32;
+    /** Size of the buffer used to read log files. */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    /** Maximum number of bytes of a line shown in search results. */
+    private static final int MAX_LINE_LENGTH = 4096;
+    /** Time after a file was last changed that it stops being checked for new lines. */
+    private static final long SETTLE_TIME = 10000;
+    /** Orders matches from oldest to most recent. */
+    private static final Comparator<Match> MATCH_ORDER = Comparator.<Match>comparingInt(
+            m -> m.day).thenComparingLong(m -> m.key);
+    /** Binder used to bind config settings. */
+    private final ConfigBinder binder;
+    /** Provider of the logs directory. */
+    private final Provider<String> directoryProvider;
+    /** Files that have been written to recently, mapped to the time they were last changed. */
+    private final Map<String, Long> changedFiles = new ConcurrentHashMap<>();
+    /** Files known to the index, by ID. Only accessed from the index thread. */
+    private final List<IndexedFile> files = new ArrayList<>();
+    /** Live files known to the index, by path relative to the logs directory. */
+    private final Map<String, IndexedFile> filesByPath = new HashMap<>();
+    /** Committed segments, oldest first. Only accessed from the index thread. */
+    private final List<LogIndexSegment> segments = new ArrayList<>();
+    /** Postings that haven't been written to a segment yet. */
+    private final Map<String, LogIndexPostings> buffered = new HashMap<>();
+    /** Number of postings in {@link #buffered}. */
+    private int bufferedPostings;
+    /** Number to use for the next segment written. */
+    private int nextSegment;
+    /** Whether anything has changed since the index was last committed. */
+    private boolean dirty;
+    /** Time the index was last committed. */
+    private long lastCommit;
+    /** Directory containing the log files. */
+    private Path logDirectory;
+    /** Directory containing the index. */
+    private Path indexDirectory;
+    /** Whether the index has been opened successfully. */
+    private volatile boolean available;
+    /** Executor running all index operations, or null if not started. */
+    private volatile ScheduledExecutorService executor;
+    /** Whether the index is enabled. */
+    @ConfigBinding(key = "index.enabled")
+    private volatile boolean enabled;
+    /** Time, in milliseconds, between checking changed files for new lines. */
+    @ConfigBinding(key = "index.interval")
+    private volatile int interval;
+
+    @Inject
+    public LogIndex(
+            @GlobalConfig final AggregateConfigProvider globalConfig,
+            @PluginDomain(LoggingPlugin.class) final String domain,
+            @Directory(LoggingModule.LOGS_DIRECTORY) final Provider<String> directoryProvider) {
+        this.directoryProvider = directoryProvider;
+        binder = globalConfig.getBinder().withDefaultDomain(domain);
+    }
+
+    /**
+     * Opens the index, and starts indexing any log files that have changed since it was last
+     * used.
+     */
+    public void start() {
+        binder.bind(this, LogIndex.class);
+        if (!enabled) {
+            return;
+        }
+
+        final long delay = Math.max(100, interval);
+        executor = new LoggingScheduledExecutorService(1, "LoggingPlugin Indexer");
+        executor.execute(this::open);
+        executor.scheduleWithFixedDelay(this::update, delay, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops indexing, waiting until any outstanding changes have been committed to disk.
+     */
+    public void stop() {
+        binder.unbind(this);
+        final ScheduledExecutorService current = executor;
+        executor = null;
+        if (current == null) {
+            return;
+        }
+
+        current.execute(this::close);
+        current.shutdown();
+        try {
+            current.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Notes that a log file has been written to, so that it is checked for new lines.
+     *
+     * @param filename The name of the log file
+     */
+    public void fileChanged(final String filename) {
+        if (executor != null) {
+            changedFiles.put(filename, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Searches the index for lines containing all of the terms in the given query. The search
+     * runs in the background, and the callback is called on the index thread.
+     *
+     * @param query    The terms to search for
+     * @param limit    The maximum number of results, the most recent are returned
+     * @param callback The callback to pass results to, ordered by {@link
+     *                 LogSearchResult#GROUP_ORDER}
+     *
+     * @return True if the search was started, false if the index isn't available
+     */
+    public boolean search(final String query, final int limit,
+            final Consumer<List<LogSearchResult>> callback) {
+        final ScheduledExecutorService current = executor;
+        if (current == null) {
+            return false;
+        }
+
+        try {
+            current.execute(() -> {
+                update();
+                callback.accept(available ? doSearch(query, limit)
+                        : Collections.<LogSearchResult>emptyList());
+            });
+            return true;
+        } catch (RejectedExecutionException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Opens the index on disk, and queues all existing log files to be checked.
+     */
+    @VisibleForTesting
+    void open() {
+        try {
+            logDirectory = Paths.get(directoryProvider.get()).toAbsolutePath().normalize();
+            indexDirectory = logDirectory.resolve(INDEX_DIRECTORY);
+            Files.createDirectories(indexDirectory);
+
+            Set<Path> committed;
+            try {
+                committed = readFiles();
+            } catch (IOException ex) {
+                LOG.warn(USER_ERROR, "Unable to read log index, it will be rebuilt", ex);
+                reset();
+                committed = Collections.emptySet();
+            }
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(indexDirectory,
+                    SEGMENT_PREFIX + '*' + SEGMENT_SUFFIX)) {
+                for (Path path : stream) {
+                    if (!committed.contains(path)) {
+                        Files.deleteIfExists(path);
+                    }
+                }
+            }
+
+            try (Stream<Path> paths = Files.walk(logDirectory)) {
+                paths.filter(p -> !p.startsWith(indexDirectory))
+                        .filter(p -> p.toString().endsWith(".log"))
+                        .filter(Files::isRegularFile)
+                        .forEach(p -> changedFiles.putIfAbsent(p.toString(), 0L));
+            }
+            lastCommit = System.currentTimeMillis();
+            available = true;
+        } catch (IOException ex) {
+            LOG.warn(USER_ERROR, "Unable to open log index", ex);
+            reset();
+        }
+    }
+
+    /**
+     * Indexes any new lines in recently changed files, and commits them if enough postings have
+     * been buffered, no files are still changing, or the last commit was too long ago. Postings
+     * are also committed whenever too many build up while indexing, so memory use stays bounded
+     * however much there is to index.
+     */
+    @VisibleForTesting
+    void update() {
+        if (!available) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        for (Map.Entry<String, Long> entry : changedFiles.entrySet()) {
+            indexFile(Paths.get(entry.getKey()));
+            if (bufferedPostings >= MAX_BUFFERED_POSTINGS) {
+                flush();
+            }
+            // Lines may still be waiting in the writer, so keep checking for a while.
+            if (now - entry.getValue() > SETTLE_TIME) {
+                changedFiles.remove(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (bufferedPostings >= MAX_BUFFERED_POSTINGS || changedFiles.isEmpty()
+                || now - lastCommit >= COMMIT_INTERVAL) {
+            flush();
+        }
+    }
+
+    /**
+     * Commits any outstanding changes and closes the index.
+     */
+    @VisibleForTesting
+    void close() {
+        update();
+        flush();
+        segments.forEach(StreamUtils::close);
+        reset();
+    }
+
+    /**
+     * Indexes any complete lines added to the given file since it was last indexed. If too many
+     * postings build up part way through the file, the lines read so far are committed first.
+     *
+     * @param file The log file to index
+     */
+    private void indexFile(final Path file) {
+        final Path absolute = file.toAbsolutePath().normalize();
+        final String key = logDirectory.relativize(absolute).toString();
+        try (FileChannel channel = FileChannel.open(absolute, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            IndexedFile entry = filesByPath.get(key);
+            if (entry != null && size < entry.length) {
+                // The file has been replaced, forget about the old version.
+                entry.live = false;
+                entry = null;
+                dirty = true;
+            }
+            if (entry == null) {
+                entry = new IndexedFile(files.size(), key, 0, true);
+                files.add(entry);
+                filesByPath.put(key, entry);
+                dirty = true;
+            }
+            if (size == entry.length) {
+                return;
+            }
+
+            final int fallbackDay = (int) Files.getLastModifiedTime(absolute).toInstant()
+                    .atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+            final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            byte[] line = new byte[256];
+            int lineLength = 0;
+            long position = entry.length;
+            long lineStart = position;
+            while (channel.read(buffer, position) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    final byte current = buffer.get();
+                    position++;
+                    if (current == '\n') {
+                        indexLine(entry.id, lineStart, decode(line, lineLength), fallbackDay);
+                        lineStart = position;
+                        lineLength = 0;
+                    } else {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, line.length * 2);
+                        }
+                        line[lineLength++] = current;
+                    }
+                }
+                buffer.clear();
+
+                if (bufferedPostings >= MAX_BUFFERED_POSTINGS && lineStart != entry.length) {
+                    entry.length = lineStart;
+                    dirty = true;
+                    flush();
+                }
+            }
+            if (lineStart != entry.length) {
+                entry.length = lineStart;
+                dirty = true;
+            }
+        } catch (NoSuchFileException ex) {
+            // The file has been removed, results from it will be skipped when searching.
+        } catch (IOException ex) {
+            LOG.warn(USER_ERROR, "Unable to index log file {}", absolute, ex);
+        }
+    }
+
+    /**
+     * Adds postings for each term in the given line.
+     *
+     * @param file        The ID of the file the line is in
+     * @param offset      The offset of the start of the line
+     * @param line        The line to index
+     * @param fallbackDay The day to use if the line doesn't have a timestamp
+     */
+    private void indexLine(final int file, final long offset, final String line,
+            final int fallbackDay) {
+        final int day = getDay(line, fallbackDay);
+        final Set<String> terms = new HashSet<>();
+        tokenise(line, getTimestampLength(line), terms);
+        for (String term : terms) {
+            buffered.computeIfAbsent(term, t -> new LogIndexPostings()).add(file, offset, day);
+        }
+        bufferedPostings += terms.size();
+    }
+
+    /**
+     * Writes buffered postings to a new segment, merges segments if there are too many, and
+     * commits the result.
+     */
+    private void flush() {
+        if (!dirty && buffered.isEmpty()) {
+            return;
+        }
+
+        final List<LogIndexSegment> obsolete = new ArrayList<>();
+        try {
+            if (!buffered.isEmpty()) {
+                final Path path = getSegmentPath(nextSegment++);
+                LogIndexSegment.write(path, new TreeMap<>(buffered));
+                segments.add(LogIndexSegment.open(path));
+                buffered.clear();
+                bufferedPostings = 0;
+            }
+
+            if (segments.size() > MAX_SEGMENTS) {
+                // Merge the newest segments, stopping at an older one that is bigger than all of
+                // them together, so that big, old segments aren't rewritten every time.
+                int start = segments.size() - 2;
+                long total = segments.get(start).getSize() + segments.get(start + 1).getSize();
+                while (start > 0 && segments.get(start - 1).getSize() <= total) {
+                    start--;
+                    total += segments.get(start).getSize();
+                }
+                final List<LogIndexSegment> merging = segments.subList(start, segments.size());
+                final Path path = getSegmentPath(nextSegment++);
+                LogIndexSegment.merge(path, merging);
+                final LogIndexSegment merged = LogIndexSegment.open(path);
+                obsolete.addAll(merging);
+                merging.clear();
+                segments.add(merged);
+            }
+
+            writeFiles();
+            dirty = false;
+            lastCommit = System.currentTimeMillis();
+        } catch (IOException ex) {
+            LOG.warn(USER_ERROR, "Unable to write log index", ex);
+        }
+
+        for (LogIndexSegment segment : obsolete) {
+            StreamUtils.close(segment);
+            try {
+                Files.deleteIfExists(segment.getPath());
+            } catch (IOException ex) {
+                LOG.info("Unable to remove old log index segment {}", segment.getPath(), ex);
+            }
+        }
+    }
+
+    /**
+     * Reads the list of committed segments and indexed files, and opens the segments.
+     *
+     * @return The paths of the committed segments
+     *
+     * @throws IOException If the list or any of the segments could not be read
+     */
+    private Set<Path> readFiles() throws IOException {
+        final Path path = indexDirectory.resolve(FILES_NAME);
+        if (!Files.exists(path)) {
+            return Collections.emptySet();
+        }
+
+        final Set<Path> committed = new HashSet<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(path)))) {
+            if (in.readInt() != FILES_MAGIC) {
+                throw new IOException("Invalid log index: " + path);
+            }
+            nextSegment = in.readInt();
+            final int segmentCount = in.readInt();
+            for (int i = 0; i < segmentCount; i++) {
+                final Path segmentPath = indexDirectory.resolve(in.readUTF());
+                committed.add(segmentPath);
+                segments.add(LogIndexSegment.open(segmentPath));
+            }
+            final int fileCount = in.readInt();
+            for (int i = 0; i < fileCount; i++) {
+                final IndexedFile file = new IndexedFile(i, in.readUTF(), in.readLong(),
+                        in.readBoolean());
+                files.add(file);
+                if (file.live) {
+                    filesByPath.put(file.path, file);
+                }
+            }
+        }
+        return committed;
+    }
+
+    /**
+     * Commits the list of segments and indexed files.
+     *
+     * @throws IOException If the list could not be written
+     */
+    private void writeFiles() throws IOException {
+        final Path path = indexDirectory.resolve(FILES_NAME);
+        final Path temp = indexDirectory.resolve(FILES_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temp)))) {
+            out.writeInt(FILES_MAGIC);
+            out.writeInt(nextSegment);
+            out.writeInt(segments.size());
+            for (LogIndexSegment segment : segments) {
+                out.writeUTF(segment.getPath().getFileName().toString());
+            }
+            out.writeInt(files.size());
+            for (IndexedFile file : files) {
+                out.writeUTF(file.path);
+                out.writeLong(file.length);
+                out.writeBoolean(file.live);
+            }
+        }
+
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Forgets all in-memory index state.
+     */
+    private void reset() {
+        available = false;
+        segments.forEach(StreamUtils::close);
+        segments.clear();
+        files.clear();
+        filesByPath.clear();
+        buffered.clear();
+        bufferedPostings = 0;
+        dirty = false;
+    }
+
+    /**
+     * Finds the most recent lines containing every term in the query.
+     *
+     * <p>The postings of each term are stepped through together in key order, starting from the
+     * rarest term and skipping ahead in the others, so only the matching lines are kept. Postings
+     * are read from the segments a few kilobytes at a time, and skip data lets the cursors jump
+     * over whole blocks of postings without reading or decoding them.
+     *
+     * @param query The terms to search for
+     * @param limit The maximum number of results
+     *
+     * @return The matching lines, ordered by {@link LogSearchResult#GROUP_ORDER}
+     */
+    @VisibleForTesting
+    List<LogSearchResult> doSearch(final String query, final int limit) {
+        final Set<String> terms = new LinkedHashSet<>();
+        tokenise(query, 0, terms);
+        if (terms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        final List<String> ordered = new ArrayList<>(terms);
+        ordered.sort(Comparator.comparingLong(this::getPostingsSize));
+
+        // Keep the most recent matches, with the oldest at the head so it can be dropped.
+        final PriorityQueue<Match> recent = new PriorityQueue<>(limit + 1, MATCH_ORDER);
+        try {
+            final List<LogIndexPostings.Cursor> cursors = new ArrayList<>(ordered.size());
+            for (String term : ordered) {
+                cursors.add(getCursor(term));
+            }
+
+            final LogIndexPostings.Cursor rarest = cursors.get(0);
+            boolean more = rarest.next();
+            while (more) {
+                final long key = rarest.getKey();
+                long next = key;
+                for (int i = 1; i < cursors.size() && next == key; i++) {
+                    if (!cursors.get(i).advanceTo(key)) {
+                        return readResults(recent);
+                    }
+                    next = cursors.get(i).getKey();
+                }
+
+                if (next == key) {
+                    final int file = LogIndexPostings.getFile(key);
+                    if (file < files.size() && files.get(file).live) {
+                        recent.add(new Match(key, rarest.getDay()));
+                        if (recent.size() > limit) {
+                            recent.poll();
+                        }
+                    }
+                    more = rarest.next();
+                } else {
+                    more = rarest.advanceTo(next);
+                }
+            }
+        } catch (IOException ex) {
+            LOG.warn(USER_ERROR, "Unable to search log index", ex);
+            return Collections.emptyList();
+        }
+        return readResults(recent);
+    }
+
+    /**
+     * Reads the lines for the given matches from the log files.
+     *
+     * @param matches The matches to read
+     *
+     * @return The results, ordered by {@link LogSearchResult#GROUP_ORDER}
+     */
+    private List<LogSearchResult> readResults(final Collection<Match> matches) {
+        final List<LogSearchResult> results = new ArrayList<>(matches.size());
+        final Map<Integer, FileChannel> channels = new HashMap<>();
+        final ByteBuffer buffer = ByteBuffer.allocate(MAX_LINE_LENGTH);
+        try {
+            for (Match match : matches) {
+                final IndexedFile file = files.get(LogIndexPostings.getFile(match.key));
+                final long offset = LogIndexPostings.getOffset(match.key);
+                final FileChannel channel = channels.computeIfAbsent(file.id, id -> {
+                    try {
+                        return FileChannel.open(logDirectory.resolve(file.path),
+                                StandardOpenOption.READ);
+                    } catch (IOException ex) {
+                        return null;
+                    }
+                });
+                if (channel == null) {
+                    continue;
+                }
+
+                buffer.clear();
+                channel.read(buffer, offset);
+                buffer.flip();
+                int length = 0;
+                while (length < buffer.limit() && buffer.get(length) != '\n') {
+                    length++;
+                }
+                final String line = decode(buffer.array(), length);
+                final String[] description = describe(file.path);
+                results.add(new LogSearchResult(description[0], description[1],
+                        LocalDate.ofEpochDay(match.day), file.path, offset, line));
+            }
+        } catch (IOException ex) {
+            LOG.warn(USER_ERROR, "Unable to read search results", ex);
+        } finally {
+            channels.values().forEach(StreamUtils::close);
+        }
+
+        results.sort(LogSearchResult.GROUP_ORDER);
+        return results;
+    }
+
+    /**
+     * Gets a cursor over every posting of the given term, in key order.
+     */
+    private LogIndexPostings.Cursor getCursor(final String term) throws IOException {
+        final LogIndexPostings.Cursor cursor = new LogIndexPostings.Cursor();
+        for (LogIndexSegment segment : segments) {
+            segment.addPostings(term, cursor);
+        }
+        final LogIndexPostings postings = buffered.get(term);
+        if (postings != null) {
+            cursor.add(postings);
+        }
+        return cursor;
+    }
+
+    /**
+     * Gets the total size of the encoded postings for the given term.
+     */
+    private long getPostingsSize(final String term) {
+        long size = 0;
+        for (LogIndexSegment segment : segments) {
+            size += segment.getPostingsLength(term);
+        }
+        final LogIndexPostings postings = buffered.get(term);
+        return postings == null ? size : size + postings.getSize();
+    }
+
+    private Path getSegmentPath(final int number) {
+        return indexDirectory.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+    }
+
+    private static String decode(final byte[] line, final int length) {
+        final int end = length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+        return new String(line, 0, end, Charset.defaultCharset());
+    }
+
+    /**
+     * Works out the network and target of a log file from its path relative to the logs
+     * directory.
+     *
+     * @param path The relative path of the log file
+     *
+     * @return The network (or an empty string if unknown) and the target
+     */
+    private static String[] describe(final String path) {
+        final Path relative = Paths.get(path);
+        String network = relative.getNameCount() > 1 ? relative.getName(0).toString() : "";
+        String target = relative.getFileName().toString();
+        if (target.endsWith(".log")) {
+            target = target.substring(0, target.length() - 4);
+        }
+        // Remove any hash added by advanced.filenamehash
+        target = target.replaceFirst("\\.[0-9a-f]{16,32}$", "");
+        final int separator = target.indexOf(" -- ");
+        if (network.isEmpty() && separator != -1) {
+            network = target.substring(0, separator);
+            target = target.substring(separator + 4);
+        }
+        return new String[]{network, target};
+    }
+
+    /**
+     * Gets the day a line was written, from its timestamp.
+     *
+     * @param line     The line to check
+     * @param fallback The day to use if the line does not start with a timestamp
+     *
+     * @return The epoch day the line was written
+     */
+    private static int getDay(final String line, final int fallback) {
+        // Timestamps are formatted as [dd/MM/yyyy HH:mm:ss]
+        if (line.length() < 11 || line.charAt(0) != '[' || line.charAt(3) != '/'
+                || line.charAt(6) != '/') {
+            return fallback;
+        }
+        try {
+            return (int) LocalDate.of(Integer.parseInt(line.substring(7, 11)),
+                    Integer.parseInt(line.substring(4, 6)),
+                    Integer.parseInt(line.substring(1, 3))).toEpochDay();
+        } catch (NumberFormatException | DateTimeException ex) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Gets the length of the timestamp at the start of a line, so it can be left out of the
+     * index.
+     */
+    private static int getTimestampLength(final String line) {
+        if (line.isEmpty() || line.charAt(0) != '[') {
+            return 0;
+        }
+        final int end = line.indexOf(']');
+        return end == -1 || end > MAX_TERM_LENGTH ? 0 : end + 1;
+    }
+
+    /**
+     * Splits text into lower case terms, ignoring IRC colour codes.
+     *
+     * @param text  The text to split
+     * @param start The index to start from
+     * @param terms The set to add terms to
+     */
+    static void tokenise(final String text, final int start, final Set<String> terms) {
+        final StringBuilder term = new StringBuilder();
+        int index = start;
+        while (index < text.length()) {
+            final char current = text.charAt(index++);
+            if (current == IRCControlCodes.COLOUR) {
+                index = skipColour(text, index, 2, Character::isDigit);
+            } else if (current == IRCControlCodes.COLOUR_HEX) {
+                index = skipColour(text, index, 6, LogIndex::isHexDigit);
+            } else if (Character.isLetterOrDigit(current)) {
+                term.append(Character.toLowerCase(current));
+                continue;
+            }
+            addTerm(term, terms);
+        }
+        addTerm(term, terms);
+    }
+
+    private static void addTerm(final StringBuilder term, final Set<String> terms) {
+        if (term.length() >= MIN_TERM_LENGTH && term.length() <= MAX_TERM_LENGTH) {
+            terms.add(term.toString());
+        }
+        term.setLength(0);
+    }
+
+    private static int skipColour(final String text, final int start, final int length,
+            final IntPredicate valid) {
+        int index = skipChars(text, start, length, valid);
+        if (index > start && index + 1 < text.length() && text.charAt(index) == ','
+                && valid.test(text.charAt(index + 1))) {
+            index = skipChars(text, index + 1, length, valid);
+        }
+        return index;
+    }
+
+    private static int skipChars(final String text, final int start, final int length,
+            final IntPredicate valid) {
+        int index = start;
+        while (index < text.length() && index - start < length && valid.test(text.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isHexDigit(final int character) {
+        return Character.digit(character, 16) != -1;
+    }
+
+    /**
+     * A line matching a search.
+     */
+    private static class Match {
+
+        /** The key of the matching line. */
+        private final long key;
+        /** The epoch day the line was written. */
+        private final int day;
+
+        Match(final long key, final int day) {
+            this.key = key;
+            this.day = day;
+        }
+
+    }
+
+    /**
+     * A log file known to the index.
+     */
+    private static class IndexedFile {
+
+        /** The ID of this file, used in postings. */
+        private final int id;
+        /** Path of the file, relative to the logs directory. */
+        private final String path;
+        /** Number of bytes of the file that have been indexed. */
+        private long length;
+        /** Whether this is the current version of the file. */
+        private boolean live;
+
+        IndexedFile(final int id, final String path, final long length, final boolean live) {
+            this.id = id;
+            this.path = path;
+            this.length = length;
+            this.live = live;
+        }
+
+    }
+
+}
@@ -0,0 +1,469 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.logging;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * An encoded list of postings for a single term in the {@link LogIndex}.
+ *
+ * <p>Each posting identifies a line by the indexed file it is in and the byte offset of the start
+ * of the line, along with the day the line was written. Postings are stored as variable length
+ * integers, with offsets delta-encoded against the previous posting in the same file. Lists
+ * written to segments are sorted by {@link #getKey key}, so that several lists can be intersected
+ * by stepping through them together.
+ *
+ * <p>Postings are grouped into blocks of {@link #BLOCK_SIZE}, and the first posting in each block
+ * is encoded in full. The key and position of each block are kept as skip data, so a {@link
+ * Cursor} can jump straight to the block containing a key rather than decoding every posting
+ * before it.
+ */
+final class LogIndexPostings {
+
+    /** Number of postings in each block. */
+    private static final int BLOCK_SIZE = 128;
+    /** Number of bytes read from a segment at a time. */
+    private static final int READ_SIZE = 4096;
+    /** Encoded postings. */
+    private byte[] data = new byte[16];
+    /** Number of bytes of {@link #data} that are in use. */
+    private int size;
+    /** Number of postings in this list. */
+    private int count;
+    /** Key of the first posting in each block. */
+    private long[] blockKeys = new long[1];
+    /** Position in {@link #data} of the first posting in each block. */
+    private int[] blockPositions = new int[1];
+    /** File of the last posting added, or -1 if none. */
+    private int lastFile = -1;
+    /** Offset of the last posting added. */
+    private long lastOffset;
+    /** Whether the postings were added in key order. */
+    private boolean sorted = true;
+
+    /**
+     * Adds a posting to the end of this list.
+     *
+     * @param file   The ID of the file the line is in
+     * @param offset The byte offset of the start of the line
+     * @param day    The epoch day the line was written
+     */
+    void add(final int file, final long offset, final int day) {
+        if (count % BLOCK_SIZE == 0) {
+            final int block = count / BLOCK_SIZE;
+            if (block == blockKeys.length) {
+                blockKeys = Arrays.copyOf(blockKeys, block * 2);
+                blockPositions = Arrays.copyOf(blockPositions, block * 2);
+            }
+            blockKeys[block] = getKey(file, offset);
+            blockPositions[block] = size;
+        }
+
+        if (file == lastFile && offset >= lastOffset && count % BLOCK_SIZE != 0) {
+            writeVarLong(((offset - lastOffset) << 1) | 1);
+        } else {
+            sorted &= file > lastFile || file == lastFile && offset >= lastOffset;
+            writeVarLong((long) file << 1);
+            writeVarLong(offset);
+        }
+        writeVarLong(day);
+        lastFile = file;
+        lastOffset = offset;
+        count++;
+    }
+
+    /**
+     * Reorders the postings in this list by key, if they were not added in that order.
+     */
+    void sort() {
+        if (sorted) {
+            return;
+        }
+
+        final long[] keys = new long[count];
+        final int[] days = new int[count];
+        final int[] position = {0};
+        int file = -1;
+        long offset = 0;
+        for (int i = 0; i < count; i++) {
+            final long header = readVarLong(data, position);
+            if ((header & 1) == 1) {
+                offset += header >>> 1;
+            } else {
+                file = (int) (header >>> 1);
+                offset = readVarLong(data, position);
+            }
+            keys[i] = getKey(file, offset);
+            days[i] = (int) readVarLong(data, position);
+        }
+
+        final Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> keys[i]));
+
+        size = 0;
+        count = 0;
+        lastFile = -1;
+        lastOffset = 0;
+        sorted = true;
+        for (int index : order) {
+            add(getFile(keys[index]), getOffset(keys[index]), days[index]);
+        }
+    }
+
+    /**
+     * Gets the number of bytes used by the encoded postings.
+     *
+     * @return The encoded size of this list
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Sorts this list and writes it out, preceded by its skip data.
+     *
+     * @param out The stream to write to
+     *
+     * @return The number of bytes written
+     *
+     * @throws IOException If the postings could not be written
+     */
+    int writeTo(final DataOutputStream out) throws IOException {
+        sort();
+        final int blocks = getBlockCount();
+        out.writeInt(blocks);
+        for (int i = 0; i < blocks; i++) {
+            out.writeLong(blockKeys[i]);
+            out.writeInt(blockPositions[i]);
+        }
+        out.write(data, 0, size);
+        return getHeaderSize(blocks) + size;
+    }
+
+    private int getBlockCount() {
+        return (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    /**
+     * Gets the size of the skip data written before the postings.
+     *
+     * @param blocks The number of blocks in the list
+     *
+     * @return The size of the skip data, in bytes
+     */
+    static int getHeaderSize(final int blocks) {
+        return 4 + blocks * 12;
+    }
+
+    /**
+     * Gets the key identifying a line, which orders lines by file and then by offset.
+     *
+     * @param file   The ID of the file the line is in
+     * @param offset The byte offset of the start of the line
+     *
+     * @return The line's key
+     */
+    static long getKey(final int file, final long offset) {
+        return (long) file << 40 | offset;
+    }
+
+    /**
+     * Gets the file ID from a line's key.
+     *
+     * @param key The key of the line
+     *
+     * @return The ID of the file the line is in
+     */
+    static int getFile(final long key) {
+        return (int) (key >>> 40);
+    }
+
+    /**
+     * Gets the offset from a line's key.
+     *
+     * @param key The key of the line
+     *
+     * @return The byte offset of the start of the line
+     */
+    static long getOffset(final long key) {
+        return key & 0xFFFFFFFFFFL;
+    }
+
+    private void writeVarLong(final long value) {
+        if (size + 10 > data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            data[size++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        data[size++] = (byte) remaining;
+    }
+
+    private static long readVarLong(final byte[] data, final int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = data[position[0]++];
+            value |= (long) (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Steps through one or more sorted postings lists in key order, as if they were one list.
+     */
+    static final class Cursor {
+
+        /** Readers that have not been exhausted, other than the current one. */
+        private final PriorityQueue<Reader> readers = new PriorityQueue<>(
+                Comparator.comparingLong(Reader::getKey));
+        /** The reader positioned at the current posting, or null. */
+        private Reader current;
+
+        /**
+         * Adds an in-memory list of postings to this cursor, sorting it first if needed. The list
+         * must not be changed while the cursor is in use, and all lists must be added before the
+         * cursor is first moved.
+         *
+         * @param postings The postings to add
+         *
+         * @throws IOException Never, postings in memory are always available
+         */
+        void add(final LogIndexPostings postings) throws IOException {
+            postings.sort();
+            final int blocks = postings.getBlockCount();
+            add(new Reader(null, 0, ByteBuffer.wrap(postings.data, 0, postings.size),
+                    Arrays.copyOf(postings.blockKeys, blocks),
+                    Arrays.copyOf(postings.blockPositions, blocks), postings.size));
+        }
+
+        /**
+         * Adds a sorted list of postings stored in a file to this cursor. The postings are read
+         * from the file a block at a time as the cursor moves. All lists must be added before
+         * the cursor is first moved.
+         *
+         * @param channel        The channel to read postings from
+         * @param position       The position of the first posting in the channel
+         * @param length         The length of the encoded postings
+         * @param blockKeys      The key of the first posting in each block
+         * @param blockPositions The position of each block, relative to the first posting
+         *
+         * @throws IOException If the postings could not be read
+         */
+        void add(final FileChannel channel, final long position, final int length,
+                final long[] blockKeys, final int[] blockPositions) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.allocate(Math.min(length, READ_SIZE));
+            buffer.flip();
+            add(new Reader(channel, position, buffer, blockKeys, blockPositions, length));
+        }
+
+        private void add(final Reader reader) throws IOException {
+            if (reader.next()) {
+                readers.add(reader);
+            }
+        }
+
+        /**
+         * Moves to the next posting.
+         *
+         * @return True if there was another posting, false if the postings are exhausted
+         *
+         * @throws IOException If the postings could not be read
+         */
+        boolean next() throws IOException {
+            if (current != null && current.next()) {
+                readers.add(current);
+            }
+            current = readers.poll();
+            return current != null;
+        }
+
+        /**
+         * Moves to the first posting with a key greater than or equal to the given key, unless
+         * the cursor is already at one.
+         *
+         * @param key The key to move to
+         *
+         * @return True if there is such a posting, false if the postings are exhausted
+         *
+         * @throws IOException If the postings could not be read
+         */
+        boolean advanceTo(final long key) throws IOException {
+            if (current != null) {
+                if (current.getKey() >= key) {
+                    return true;
+                }
+                if (current.advanceTo(key)) {
+                    readers.add(current);
+                }
+            }
+            while (!readers.isEmpty() && readers.peek().getKey() < key) {
+                final Reader reader = readers.poll();
+                if (reader.advanceTo(key)) {
+                    readers.add(reader);
+                }
+            }
+            current = readers.poll();
+            return current != null;
+        }
+
+        /**
+         * Gets the key of the current posting.
+         *
+         * @return The current posting's key
+         */
+        long getKey() {
+            return current.getKey();
+        }
+
+        /**
+         * Gets the day of the current posting.
+         *
+         * @return The epoch day the current posting's line was written
+         */
+        int getDay() {
+            return current.day;
+        }
+
+    }
+
+    /** Decodes a single sorted list of postings, from memory or a file. */
+    private static final class Reader {
+
+        /** Channel to read from, or null if all of the postings are in {@link #buffer}. */
+        private final FileChannel channel;
+        /** Position of the first posting in the channel. */
+        private final long start;
+        /** Postings read so far, starting at {@link #bufferStart}. */
+        private final ByteBuffer buffer;
+        /** Key of the first posting in each block. */
+        private final long[] blockKeys;
+        /** Position of the first posting in each block. */
+        private final int[] blockPositions;
+        /** Length of the encoded postings. */
+        private final int length;
+        /** Position of {@link #buffer} within the postings. */
+        private int bufferStart;
+        /** Position of the next byte to decode. */
+        private int position;
+        private int file = -1;
+        private long offset;
+        private int day;
+
+        Reader(final FileChannel channel, final long start, final ByteBuffer buffer,
+                final long[] blockKeys, final int[] blockPositions, final int length) {
+            this.channel = channel;
+            this.start = start;
+            this.buffer = buffer;
+            this.blockKeys = blockKeys;
+            this.blockPositions = blockPositions;
+            this.length = length;
+        }
+
+        boolean next() throws IOException {
+            if (position >= length) {
+                return false;
+            }
+            final long header = readVarLong();
+            if ((header & 1) == 1) {
+                offset += header >>> 1;
+            } else {
+                file = (int) (header >>> 1);
+                offset = readVarLong();
+            }
+            day = (int) readVarLong();
+            return true;
+        }
+
+        /**
+         * Moves to the first posting with a key greater than or equal to the given key, which
+         * must be greater than the current key.
+         */
+        boolean advanceTo(final long key) throws IOException {
+            int block = Arrays.binarySearch(blockKeys, key);
+            if (block < 0) {
+                block = -block - 2;
+            }
+            if (block >= 0 && blockPositions[block] >= position) {
+                position = blockPositions[block];
+                if (!next()) {
+                    return false;
+                }
+            }
+            while (getKey() < key) {
+                if (!next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long getKey() {
+            return LogIndexPostings.getKey(file, offset);
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = readByte();
+                value |= (long) (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+            return value;
+        }
+
+        private byte readByte() throws IOException {
+            if (position < bufferStart || position >= bufferStart + buffer.limit()) {
+                fill();
+            }
+            return buffer.get(position++ - bufferStart);
+        }
+
+        private void fill() throws IOException {
+            if (channel == null || position >= length) {
+                throw new IOException("Truncated postings");
+            }
+            buffer.clear();
+            buffer.limit(Math.min(buffer.capacity(), length - position));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of index segment");
+                }
+            }
+            buffer.flip();
+            bufferStart = position;
+        }
+
+    }
+
+}
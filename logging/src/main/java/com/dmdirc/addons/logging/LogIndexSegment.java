@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.logging;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * An immutable segment of the {@link LogIndex} on disk.
+ *
+ * <p>A segment contains the encoded postings for each term, followed by a sorted dictionary of
+ * terms with the position and length of their postings, and finally a trailer giving the position
+ * of the dictionary. The dictionary is held in memory while the segment is open. Each term's
+ * postings are sorted by key and preceded by their skip data, and are read from disk a block at a
+ * time as they are needed.
+ */
+final class LogIndexSegment implements Closeable {
+
+    /** Magic number at the end of every segment. */
+    private static final int MAGIC = 0x444d4933;
+    /** Size of the trailer at the end of every segment. */
+    private static final int TRAILER_SIZE = 12;
+    /** Path of this segment. */
+    private final Path path;
+    /** Size of this segment, in bytes. */
+    private final long size;
+    /** Channel used to read postings. */
+    private final FileChannel channel;
+    /** Sorted terms in this segment. */
+    private final String[] terms;
+    /** Position of each term's postings. */
+    private final long[] positions;
+    /** Length of each term's postings. */
+    private final int[] lengths;
+
+    private LogIndexSegment(final Path path, final long size, final FileChannel channel,
+            final String[] terms, final long[] positions, final int[] lengths) {
+        this.path = path;
+        this.size = size;
+        this.channel = channel;
+        this.terms = terms;
+        this.positions = positions;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Opens an existing segment.
+     *
+     * @param path The path of the segment
+     *
+     * @return The opened segment
+     *
+     * @throws IOException If the segment could not be read, or is invalid
+     */
+    static LogIndexSegment open(final Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final long size = channel.size();
+            final ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            if (size < TRAILER_SIZE) {
+                throw new IOException("Invalid index segment: " + path);
+            }
+            readFully(channel, trailer, size - TRAILER_SIZE);
+            trailer.flip();
+            final long dictionary = trailer.getLong();
+            if (trailer.getInt() != MAGIC || dictionary < 0 || dictionary > size - TRAILER_SIZE) {
+                throw new IOException("Invalid index segment: " + path);
+            }
+
+            channel.position(dictionary);
+            final DataInputStream in = new DataInputStream(
+                    Channels.newInputStream(channel));
+            final int count = in.readInt();
+            final String[] terms = new String[count];
+            final long[] positions = new long[count];
+            final int[] lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                terms[i] = in.readUTF();
+                positions[i] = in.readLong();
+                lengths[i] = in.readInt();
+            }
+            return new LogIndexSegment(path, size, channel, terms, positions, lengths);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Writes a new segment containing the given postings. Each list of postings is sorted before
+     * it is written.
+     *
+     * @param path     The path to write the segment to
+     * @param postings Map of terms to their encoded postings
+     *
+     * @throws IOException If the segment could not be written
+     */
+    static void write(final Path path, final SortedMap<String, LogIndexPostings> postings)
+            throws IOException {
+        final String[] terms = new String[postings.size()];
+        final long[] positions = new long[terms.length];
+        final int[] lengths = new int[terms.length];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(path)))) {
+            long position = 0;
+            int index = 0;
+            for (Map.Entry<String, LogIndexPostings> entry : postings.entrySet()) {
+                terms[index] = entry.getKey();
+                positions[index] = position;
+                lengths[index] = entry.getValue().writeTo(out);
+                position += lengths[index];
+                index++;
+            }
+            writeDictionary(out, position, terms, positions, lengths);
+        }
+    }
+
+    /**
+     * Writes a new segment containing all of the postings in the given segments.
+     *
+     * @param path     The path to write the segment to
+     * @param segments The segments to merge
+     *
+     * @throws IOException If the segments could not be read, or the new segment written
+     */
+    static void merge(final Path path, final List<LogIndexSegment> segments)
+            throws IOException {
+        final SortedSet<String> allTerms = new TreeSet<>();
+        for (LogIndexSegment segment : segments) {
+            allTerms.addAll(Arrays.asList(segment.terms));
+        }
+
+        final String[] terms = allTerms.toArray(new String[allTerms.size()]);
+        final long[] positions = new long[terms.length];
+        final int[] lengths = new int[terms.length];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(path)))) {
+            long position = 0;
+            for (int i = 0; i < terms.length; i++) {
+                final LogIndexPostings.Cursor cursor = new LogIndexPostings.Cursor();
+                for (LogIndexSegment segment : segments) {
+                    segment.addPostings(terms[i], cursor);
+                }
+                final LogIndexPostings postings = new LogIndexPostings();
+                while (cursor.next()) {
+                    postings.add(LogIndexPostings.getFile(cursor.getKey()),
+                            LogIndexPostings.getOffset(cursor.getKey()), cursor.getDay());
+                }
+                positions[i] = position;
+                lengths[i] = postings.writeTo(out);
+                position += lengths[i];
+            }
+            writeDictionary(out, position, terms, positions, lengths);
+        }
+    }
+
+    private static void writeDictionary(final DataOutputStream out, final long position,
+            final String[] terms, final long[] positions, final int[] lengths)
+            throws IOException {
+        out.writeInt(terms.length);
+        for (int i = 0; i < terms.length; i++) {
+            out.writeUTF(terms[i]);
+            out.writeLong(positions[i]);
+            out.writeInt(lengths[i]);
+        }
+        out.writeLong(position);
+        out.writeInt(MAGIC);
+    }
+
+    /**
+     * Gets the path of this segment.
+     *
+     * @return This segment's path
+     */
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the size of this segment on disk.
+     *
+     * @return This segment's size, in bytes
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the length of the encoded postings for the given term.
+     *
+     * @param term The term to look up
+     *
+     * @return The number of bytes of postings the term has, or 0 if it is not in this segment
+     */
+    int getPostingsLength(final String term) {
+        final int index = Arrays.binarySearch(terms, term);
+        return index < 0 ? 0 : lengths[index];
+    }
+
+    /**
+     * Adds the postings for the given term to a cursor. Only the term's skip data is read
+     * straight away, the postings themselves are read as the cursor reaches them.
+     *
+     * @param term   The term to look up
+     * @param cursor The cursor to add the postings to
+     *
+     * @return True if the term is in this segment, false otherwise
+     *
+     * @throws IOException If the postings could not be read
+     */
+    boolean addPostings(final String term, final LogIndexPostings.Cursor cursor)
+            throws IOException {
+        final int index = Arrays.binarySearch(terms, term);
+        if (index < 0) {
+            return false;
+        }
+
+        final ByteBuffer count = ByteBuffer.allocate(4);
+        readFully(channel, count, positions[index]);
+        final int blocks = count.getInt(0);
+        if (blocks < 0 || blocks > (lengths[index] - 4) / 12) {
+            throw new IOException("Invalid index segment: " + path);
+        }
+        final int headerSize = LogIndexPostings.getHeaderSize(blocks);
+
+        final ByteBuffer header = ByteBuffer.allocate(headerSize - 4);
+        readFully(channel, header, positions[index] + 4);
+        header.flip();
+        final long[] blockKeys = new long[blocks];
+        final int[] blockPositions = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            blockKeys[i] = header.getLong();
+            blockPositions[i] = header.getInt();
+        }
+        cursor.add(channel, positions[index] + headerSize, lengths[index] - headerSize,
+                blockKeys, blockPositions);
+        return true;
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer,
+            final long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of index segment");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.logging;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+
+/**
+ * A single line found by searching the {@link LogIndex}.
+ */
+public class LogSearchResult {
+
+    /** Orders results by network, then target, then date, then position in the log. */
+    public static final Comparator<LogSearchResult> GROUP_ORDER =
+            Comparator.comparing(LogSearchResult::getNetwork)
+                    .thenComparing(LogSearchResult::getTarget)
+                    .thenComparing(LogSearchResult::getDate)
+                    .thenComparing(LogSearchResult::getFile)
+                    .thenComparingLong(LogSearchResult::getOffset);
+
+    private final String network;
+    private final String target;
+    private final LocalDate date;
+    private final String file;
+    private final long offset;
+    private final String line;
+
+    public LogSearchResult(final String network, final String target, final LocalDate date,
+            final String file, final long offset, final String line) {
+        this.network = network;
+        this.target = target;
+        this.date = date;
+        this.file = file;
+        this.offset = offset;
+        this.line = line;
+    }
+
+    public String getNetwork() {
+        return network;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public String getLine() {
+        return line;
+    }
+
+}
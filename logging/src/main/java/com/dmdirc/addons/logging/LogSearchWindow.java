@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.logging;
+
+import com.dmdirc.FrameContainer;
+import com.dmdirc.events.eventbus.EventBus;
+import com.dmdirc.interfaces.Connection;
+import com.dmdirc.interfaces.WindowModel;
+import com.dmdirc.ui.core.components.WindowComponent;
+import com.dmdirc.ui.messages.BackBufferFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Displays the results of searching the logs, grouped by network, target and date.
+ */
+public class LogSearchWindow extends FrameContainer {
+
+    private final Optional<Connection> connection;
+
+    /**
+     * Creates a new LogSearchWindow.
+     */
+    public LogSearchWindow(
+            final String title,
+            final String query,
+            final WindowModel parent,
+            final EventBus eventBus,
+            final BackBufferFactory backBufferFactory,
+            final List<LogSearchResult> results) {
+        super("raw", title, title, parent.getConfigManager(), backBufferFactory,
+                eventBus, Collections.singletonList(WindowComponent.TEXTAREA.getIdentifier()));
+        this.connection = parent.getConnection();
+
+        initBackBuffer();
+        outputResults(query, results);
+    }
+
+    @Override
+    public Optional<Connection> getConnection() {
+        return connection;
+    }
+
+    private void outputResults(final String query, final List<LogSearchResult> results) {
+        final List<String> lines = new ArrayList<>();
+        LogSearchResult previous = null;
+        for (LogSearchResult result : results) {
+            if (previous == null || !previous.getNetwork().equals(result.getNetwork())
+                    || !previous.getTarget().equals(result.getTarget())
+                    || !Objects.equals(previous.getDate(), result.getDate())) {
+                lines.add(String.format("--- %s%s (%s)",
+                        result.getNetwork().isEmpty() ? "" : result.getNetwork() + " / ",
+                        result.getTarget(), result.getDate()));
+            }
+            lines.add(result.getLine());
+            previous = result;
+        }
+
+        lines.add(results.isEmpty() ? "--- No results for: " + query
+                : "--- " + results.size() + " results for: " + query);
+        getEventBus().publishAsync(new HistoricalLineRestoredEvent(this, lines));
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the last lines of a log file. The end of the file is memory mapped and scanned backwards
+ * for newlines, so only the lines that are returned are ever decoded. At most {@link
+ * #MAX_READ_SIZE} bytes are read, so very long lines may mean fewer lines are returned than were
+ * asked for.
+ */
+final class LogTailReader {
+
+    /** Size of each region of the file that is mapped while searching for newlines. */
+    private static final int MAP_SIZE = 1024 * 1024;
+    /** Maximum number of bytes read from the end of the file. */
+    private static final int MAX_READ_SIZE = 16 * MAP_SIZE;
+
+    private LogTailReader() {
+        // Shouldn't be instantiated
+    }
+
+    /**
+     * Reads up to the specified number of lines from the end of the given file. A newline at the
+     * very end of the file does not count as an empty final line.
+     *
+     * @param file  The file to read
+     * @param count The maximum number of lines to read
+     *
+     * @return The lines read, in the order they appear in the file
+     *
+     * @throws IOException If the file could not be read
+     */
+    static List<String> readLastLines(final Path file, final int count) throws IOException {
+        if (count <= 0) {
+            return Collections.emptyList();
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long end = channel.size();
+            if (end > 0 && endsWithNewline(channel, end)) {
+                end--;
+            }
+            if (end <= 0) {
+                return Collections.emptyList();
+            }
+
+            final long start = findStart(channel, end, count);
+            final ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+            while (buffer.hasRemaining()
+                    && channel.read(buffer, start + buffer.position()) >= 0) {
+                // Keep reading until the buffer is full
+            }
+            buffer.flip();
+            return splitLines(Charset.defaultCharset().decode(buffer).toString());
+        }
+    }
+
+    /**
+     * Determines whether the byte before the given offset is a newline.
+     */
+    private static boolean endsWithNewline(final FileChannel channel, final long end)
+            throws IOException {
+        final ByteBuffer last = ByteBuffer.allocate(1);
+        return channel.read(last, end - 1) == 1 && last.get(0) == '\n';
+    }
+
+    /**
+     * Finds the offset of the first of the last {@code count} lines before {@code end}. If they
+     * don't all fit in {@link #MAX_READ_SIZE} bytes, the offset of the first whole line that
+     * does is returned instead.
+     */
+    private static long findStart(final FileChannel channel, final long end, final int count)
+            throws IOException {
+        final long limit = Math.max(0, end - MAX_READ_SIZE);
+        int found = 0;
+        long firstLine = limit;
+        long regionEnd = end;
+        while (regionEnd > limit) {
+            final long regionStart = Math.max(limit, regionEnd - MAP_SIZE);
+            final MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY,
+                    regionStart, regionEnd - regionStart);
+            for (int i = (int) (regionEnd - regionStart) - 1; i >= 0; i--) {
+                if (region.get(i) == '\n') {
+                    firstLine = regionStart + i + 1;
+                    if (++found == count) {
+                        return firstLine;
+                    }
+                }
+            }
+            regionEnd = regionStart;
+        }
+        return limit == 0 ? 0 : firstLine;
+    }
+
+    /**
+     * Splits the given text into lines, removing any carriage returns before the newlines.
+     */
+    private static List<String> splitLines(final String text) {
+        final List<String> lines = new ArrayList<>();
+        int lineStart = 0;
+        while (lineStart <= text.length()) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd == -1) {
+                lineEnd = text.length();
+            }
+            final int contentEnd = lineEnd > lineStart && text.charAt(lineEnd - 1) == '\r'
+                    ? lineEnd - 1 : lineEnd;
+            lines.add(text.substring(lineStart, contentEnd));
+            lineStart = lineEnd + 1;
+        }
+        return lines;
+    }
+
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.dmdirc.addons.logging;
+
+import com.dmdirc.config.GlobalConfig;
+import com.dmdirc.config.binding.ConfigBinder;
+import com.dmdirc.config.binding.ConfigBinding;
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.plugins.PluginDomain;
+import com.dmdirc.util.io.StreamUtils;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.dmdirc.util.LogUtils.USER_ERROR;
+
+/**
+ * Writes formatted log lines to disk on a dedicated thread.
+ *
+ * <p>Callers enqueue complete lines into a bounded queue. A single writer thread drains the queue
+ * in batches, writes each line to the appropriate file, and flushes all files touched since the
+ * last flush once either the flush interval has elapsed or enough lines have been written. All
+ * open files are owned by the writer thread, so no locking is required around them.
+ */
+@Singleton
+public class LogWriter implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogWriter.class);
+    /** Time after which an unused file is closed. */
+    private static final long IDLE_FILE_TIMEOUT = 3480000;
+    /** Maximum number of records to take from the queue in one go. */
+    private static final int MAX_BATCH = 1024;
+    /** Record used to tell the writer thread to finish. */
+    private static final LogRecord STOP = new LogRecord("", null);
+    /** Binder used to bind config settings. */
+    private final ConfigBinder binder;
+    /** Map of open files, only accessed from the writer thread. */
+    private final Map<String, OpenFile> openFiles = new HashMap<>();
+    /** Files written to since the last flush, only accessed from the writer thread. */
+    private final Set<OpenFile> dirtyFiles = new HashSet<>();
+    /** Number of lines dropped because the queue was full. */
+    private final AtomicLong droppedLines = new AtomicLong();
+    /** Number of dropped lines last reported in the log. */
+    private long reportedDroppedLines;
+    /** Queue of records waiting to be written. */
+    private volatile BlockingQueue<LogRecord> queue;
+    /** Thread draining the queue, or null if not started. */
+    private Thread thread;
+    /** Maximum number of records waiting to be written. */
+    @ConfigBinding(key = "writer.queuesize")
+    private volatile int queueSize;
+    /** Maximum time, in milliseconds, between flushes. */
+    @ConfigBinding(key = "writer.flushinterval")
+    private volatile int flushInterval;
+    /** Number of lines written after which files are flushed early. */
+    @ConfigBinding(key = "writer.flushlines")
+    private volatile int flushLines;
+    /** Whether to block callers when the queue is full, rather than dropping lines. */
+    @ConfigBinding(key = "writer.blockwhenfull")
+    private volatile boolean blockWhenFull;
+
+    @Inject
+    public LogWriter(
+            @GlobalConfig final AggregateConfigProvider globalConfig,
+            @PluginDomain(LoggingPlugin.class) final String domain) {
+        binder = globalConfig.getBinder().withDefaultDomain(domain);
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    public void start() {
+        binder.bind(this, LogWriter.class);
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        thread = new Thread(this, "LoggingPlugin Writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the writer thread, waiting until every line queued before this call has been written
+     * and all files have been closed.
+     */
+    public void stop() {
+        binder.unbind(this);
+        if (thread == null) {
+            return;
+        }
+
+        boolean interrupted = false;
+        boolean stopQueued = false;
+        while (thread.isAlive()) {
+            try {
+                if (!stopQueued) {
+                    queue.put(STOP);
+                    stopQueued = true;
+                }
+                thread.join();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        thread = null;
+        queue = null;
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues a line to be written to the given file.
+     *
+     * @param filename Name of file to write to
+     * @param line     Line to add. (NewLine will be added Automatically)
+     *
+     * @return True if the line was queued, false if it was dropped.
+     */
+    public boolean append(final String filename, final String line) {
+        return enqueue(new LogRecord(filename, line));
+    }
+
+    /**
+     * Queues a request to close the given file once all previously queued lines are written.
+     *
+     * @param filename Name of file to close
+     */
+    public void close(final String filename) {
+        enqueue(new LogRecord(filename, null));
+    }
+
+    /**
+     * Gets the number of lines that have been dropped because the queue was full.
+     *
+     * @return Number of dropped lines
+     */
+    public long getDroppedLines() {
+        return droppedLines.get();
+    }
+
+    private boolean enqueue(final LogRecord record) {
+        final BlockingQueue<LogRecord> target = queue;
+        if (target == null) {
+            return false;
+        }
+
+        if (blockWhenFull) {
+            try {
+                target.put(record);
+                return true;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (target.offer(record)) {
+            return true;
+        }
+
+        droppedLines.incrementAndGet();
+        return false;
+    }
+
+    @Override
+    public void run() {
+        final List<LogRecord> batch = new ArrayList<>(MAX_BATCH);
+        long lastFlush = System.currentTimeMillis();
+        int unflushedLines = 0;
+        boolean running = true;
+
+        while (running) {
+            try {
+                final LogRecord first = queue.poll(Math.max(1, flushInterval),
+                        TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                }
+            } catch (InterruptedException ex) {
+                // Only stop() ends the writer, so that queued lines are never lost.
+            }
+
+            for (LogRecord record : batch) {
+                if (record == STOP) {
+                    running = false;
+                } else if (record.line == null) {
+                    closeFile(record.filename);
+                } else if (write(record)) {
+                    unflushedLines++;
+                }
+            }
+            batch.clear();
+
+            final long now = System.currentTimeMillis();
+            if (!running || unflushedLines >= flushLines || now - lastFlush >= flushInterval) {
+                flushFiles();
+                closeIdleFiles(now);
+                reportDroppedLines();
+                lastFlush = now;
+                unflushedLines = 0;
+            }
+        }
+
+        openFiles.values().forEach(file -> StreamUtils.close(file.writer));
+        openFiles.clear();
+        dirtyFiles.clear();
+    }
+
+    private boolean write(final LogRecord record) {
+        try {
+            OpenFile file = openFiles.get(record.filename);
+            if (file == null) {
+                file = new OpenFile(new BufferedWriter(new FileWriter(record.filename, true)));
+                openFiles.put(record.filename, file);
+            }
+            file.lastUsedTime = System.currentTimeMillis();
+            file.writer.write(record.line);
+            file.writer.newLine();
+            dirtyFiles.add(file);
+            return true;
+        } catch (IOException e) {
+            /*
+             * Do Nothing
+             *
+             * Makes no sense to keep adding errors to the logger when we can't write to the file,
+             * as chances are it will happen on every incoming line.
+             */
+        }
+        return false;
+    }
+
+    private void flushFiles() {
+        for (OpenFile file : dirtyFiles) {
+            try {
+                file.writer.flush();
+            } catch (IOException e) {
+                // Do Nothing, as in write(LogRecord)
+            }
+        }
+        dirtyFiles.clear();
+    }
+
+    private void closeFile(final String filename) {
+        final OpenFile file = openFiles.remove(filename);
+        if (file != null) {
+            dirtyFiles.remove(file);
+            StreamUtils.close(file.writer);
+        }
+    }
+
+    private void closeIdleFiles(final long now) {
+        final long oldestTime = now - IDLE_FILE_TIMEOUT;
+        final Iterator<OpenFile> iterator = openFiles.values().iterator();
+        while (iterator.hasNext()) {
+            final OpenFile file = iterator.next();
+            if (file.lastUsedTime < oldestTime) {
+                StreamUtils.close(file.writer);
+                iterator.remove();
+            }
+        }
+    }
+
+    private void reportDroppedLines() {
+        final long dropped = droppedLines.get();
+        if (dropped != reportedDroppedLines) {
+            LOG.warn(USER_ERROR, "Logging queue full, {} lines have not been written to disk",
+                    dropped - reportedDroppedLines);
+            reportedDroppedLines = dropped;
+        }
+    }
+
+    /** A line waiting to be written, or a request to close a file if the line is null. */
+    private static class LogRecord {
+
+        /** Name of the file to write to. */
+        private final String filename;
+        /** Line to write, without a trailing new line. */
+        private final String line;
+
+        LogRecord(final String filename, final String line) {
+            this.filename = filename;
+            this.line = line;
+        }
+
+    }
+
+    /** Open File. */
+    private static class OpenFile {
+
+        /** Last used time. */
+        private long lastUsedTime = System.currentTimeMillis();
+        /** Open file's writer. */
+        private final BufferedWriter writer;
+
+        /**
+         * Creates a new open file.
+         *
+         * @param writer Writer that has file open
+         */
+        OpenFile(final BufferedWriter writer) {
+            this.writer = writer;
+        }
+
+    }
+
+}
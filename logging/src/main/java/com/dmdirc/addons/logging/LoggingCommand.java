@@ -39,7 +39,7 @@ public class LoggingCommand extends BaseCommand implements IntelligentCommand {
     private static final String LOGGING = "logging";
     /** A command info object for this command. */
     public static final BaseCommandInfo INFO = new BaseCommandInfo(LOGGING,
-            "logging <history|help> - view logging related information",
+            "logging <history|search|help> - view logging related information",
             CommandType.TYPE_SERVER);
     /** Logging manager. */
     private final LoggingManager manager;
@@ -64,9 +64,17 @@ public class LoggingCommand extends BaseCommand implements IntelligentCommand {
                 if (!manager.showHistory(origin)) {
                     showError(origin, args.isSilent(), "Unable to open history for this window.");
                 }
+            } else if ("search".equalsIgnoreCase(args.getArguments()[0])) {
+                if (args.getArguments().length < 2) {
+                    showError(origin, args.isSilent(), "Usage: " + LOGGING + " search <terms>");
+                } else if (!manager.search(origin, args.getArgumentsAsString(1))) {
+                    showError(origin, args.isSilent(), "Log searching is not available.");
+                }
             } else if ("help".equalsIgnoreCase(args.getArguments()[0])) {
                 showOutput(origin, args.isSilent(), LOGGING
                         + " history          - Open the history of this window, if available.");
+                showOutput(origin, args.isSilent(), LOGGING
+                        + " search <terms>   - Search all logs for lines containing the terms.");
                 showOutput(origin, args.isSilent(), LOGGING
                         + " help             - Show this help.");
             } else {
@@ -85,6 +93,7 @@ public class LoggingCommand extends BaseCommand implements IntelligentCommand {
         final AdditionalTabTargets res = new AdditionalTabTargets();
         if (arg == 0) {
             res.add("history");
+            res.add("search");
             res.add("help");
             res.excludeAll();
         }
@@ -58,28 +58,18 @@ import com.dmdirc.ui.WindowManager;
 import com.dmdirc.ui.messages.BackBufferFactory;
 import com.dmdirc.ui.messages.IRCControlCodes;
 import com.dmdirc.ui.messages.StyledMessageUtils;
-import com.dmdirc.util.io.ReverseFileReader;
-import com.dmdirc.util.io.StreamUtils;
 import java.awt.Color;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Stack;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.List;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
@@ -97,11 +87,13 @@ public class LoggingManager implements ConfigChangeListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(LoggingManager.class);
     /** Date format used for "File Opened At" log. */
-    private static final DateFormat OPENED_AT_FORMAT = new SimpleDateFormat(
+    private static final DateTimeFormatter OPENED_AT_FORMAT = DateTimeFormatter.ofPattern(
             "EEEE MMMM dd, yyyy - HH:mm:ss");
-    /** Object for synchronising access to the date forma.t */
-    private static final Object FORMAT_LOCK = new Object();
-    private static final DateFormat LOG_FORMAT = new SimpleDateFormat("[dd/MM/yyyy HH:mm:ss]");
+    /** Date format used for the timestamp at the start of each line. */
+    private static final DateTimeFormatter LOG_FORMAT =
+            DateTimeFormatter.ofPattern("[dd/MM/yyyy HH:mm:ss]");
+    /** Maximum number of lines shown when searching the logs. */
+    private static final int MAX_SEARCH_RESULTS = 1000;
     /** This plugin's plugin info. */
     private final String domain;
     private final PluginInfo pluginInfo;
@@ -109,15 +101,17 @@ public class LoggingManager implements ConfigChangeListener {
     private final AggregateConfigProvider config;
     /** The manager to add history windows to. */
     private final WindowManager windowManager;
-    /** Map of open files. */
-    private final Map<String, OpenFile> openFiles = Collections.synchronizedMap(new HashMap<>());
     private final EventBus eventBus;
     private final Provider<String> directoryProvider;
     private final BackBufferFactory backBufferFactory;
     private final LogFileLocator locator;
     private final StyledMessageUtils styleUtils;
-    /** Timer used to close idle files. */
-    private Timer idleFileTimer;
+    /** Writer used to write lines to disk. */
+    private final LogWriter writer;
+    /** The most recently formatted timestamp. */
+    private volatile CachedTimestamp timestamp = new CachedTimestamp(Long.MIN_VALUE, "");
+    /** Full-text index of the log files. */
+    private final LogIndex index;
     /** Cached boolean settings. */
     private boolean addtime;
     private boolean stripcodes;
@@ -137,7 +131,9 @@ public class LoggingManager implements ConfigChangeListener {
             @Directory(LoggingModule.LOGS_DIRECTORY) final Provider<String> directoryProvider,
             final BackBufferFactory backBufferFactory,
             final LogFileLocator locator,
-            final StyledMessageUtils styleUtils) {
+            final StyledMessageUtils styleUtils,
+            final LogWriter writer,
+            final LogIndex index) {
         this.domain = domain;
         this.pluginInfo = pluginInfo;
         this.config = globalConfig;
@@ -147,6 +143,8 @@ public class LoggingManager implements ConfigChangeListener {
         this.backBufferFactory = backBufferFactory;
         this.locator = locator;
         this.styleUtils = styleUtils;
+        this.writer = writer;
+        this.index = index;
     }
 
     public void load() {
@@ -165,53 +163,17 @@ public class LoggingManager implements ConfigChangeListener {
 
         config.addChangeListener(domain, this);
 
-        // Close idle files every hour.
-        idleFileTimer = new Timer("LoggingPlugin Timer");
-        idleFileTimer.schedule(new TimerTask() {
-
-            @Override
-            public void run() {
-                timerTask();
-            }
-        }, 3600000);
-
+        writer.start();
+        index.start();
         eventBus.subscribe(this);
     }
 
     public void unload() {
-        if (idleFileTimer != null) {
-            idleFileTimer.cancel();
-            idleFileTimer.purge();
-        }
-
-        synchronized (openFiles) {
-            for (OpenFile file : openFiles.values()) {
-                StreamUtils.close(file.writer);
-            }
-            openFiles.clear();
-        }
-
         eventBus.unsubscribe(this);
-    }
 
-    /**
-     * What to do every hour when the timer fires.
-     */
-    protected void timerTask() {
-        // Oldest time to allow
-        final long oldestTime = System.currentTimeMillis() - 3480000;
-
-        synchronized (openFiles) {
-            final Collection<String> old = new ArrayList<>(openFiles.size());
-            openFiles.entrySet().stream()
-                    .filter(entry -> entry.getValue().lastUsedTime < oldestTime)
-                    .forEach(entry -> {
-                        StreamUtils.close(entry.getValue().writer);
-                        old.add(entry.getKey());
-                    });
-
-            openFiles.keySet().removeAll(old);
-        }
+        // Waits for all queued lines to be written before closing the files.
+        writer.stop();
+        index.stop();
     }
 
     @Handler
@@ -221,27 +183,22 @@ public class LoggingManager implements ConfigChangeListener {
             showBackBuffer(event.getQuery().getWindowModel(), filename);
         }
 
-        synchronized (FORMAT_LOCK) {
-            appendLine(filename, "*** Query opened at: %s", OPENED_AT_FORMAT.format(new Date()));
-            appendLine(filename, "*** Query with User: %s", event.getQuery().getUser().getNickname()
-                    + '!' + event.getQuery().getUser().getUsername().orElse("")
-                    + '@' + event.getQuery().getUser().getHostname().orElse(""));
-            appendLine(filename, "");
-        }
+        appendLine(filename, "*** Query opened at: %s",
+                OPENED_AT_FORMAT.format(LocalDateTime.now()));
+        appendLine(filename, "*** Query with User: %s", event.getQuery().getUser().getNickname()
+                + '!' + event.getQuery().getUser().getUsername().orElse("")
+                + '@' + event.getQuery().getUser().getHostname().orElse(""));
+        appendLine(filename, "");
     }
 
     @Handler
     public void handleQueryClosed(final QueryClosedEvent event) {
         final String filename = locator.getLogFile(event.getQuery().getUser());
 
-        synchronized (FORMAT_LOCK) {
-            appendLine(filename, "*** Query closed at: %s", OPENED_AT_FORMAT.format(new Date()));
-        }
+        appendLine(filename, "*** Query closed at: %s",
+                OPENED_AT_FORMAT.format(LocalDateTime.now()));
 
-        if (openFiles.containsKey(filename)) {
-            StreamUtils.close(openFiles.get(filename).writer);
-            openFiles.remove(filename);
-        }
+        writer.close(filename);
     }
 
     @Handler
@@ -400,24 +357,19 @@ public class LoggingManager implements ConfigChangeListener {
             showBackBuffer(event.getChannel().getWindowModel(), filename);
         }
 
-        synchronized (FORMAT_LOCK) {
-            appendLine(filename, "*** Channel opened at: %s", OPENED_AT_FORMAT.format(new Date()));
-            appendLine(filename, "");
-        }
+        appendLine(filename, "*** Channel opened at: %s",
+                OPENED_AT_FORMAT.format(LocalDateTime.now()));
+        appendLine(filename, "");
     }
 
     @Handler
     public void handleChannelClosed(final ChannelClosedEvent event) {
         final String filename = locator.getLogFile(event.getChannel());
 
-        synchronized (FORMAT_LOCK) {
-            appendLine(filename, "*** Channel closed at: %s", OPENED_AT_FORMAT.format(new Date()));
-        }
+        appendLine(filename, "*** Channel closed at: %s",
+                OPENED_AT_FORMAT.format(LocalDateTime.now()));
 
-        if (openFiles.containsKey(filename)) {
-            StreamUtils.close(openFiles.get(filename).writer);
-            openFiles.remove(filename);
-        }
+        writer.close(filename);
     }
 
     /**
@@ -434,19 +386,13 @@ public class LoggingManager implements ConfigChangeListener {
 
         final Path testFile = Paths.get(filename);
         if (Files.exists(testFile)) {
-            try (final ReverseFileReader file = new ReverseFileReader(testFile)) {
-                // Because the file includes a newline char at the end, an empty line
-                // is returned by getLines. To counter this, we call getLines(1) and do
-                // nothing with the output.
-                file.getLines(1);
-                final Stack<String> lines = file.getLines(backbufferLines);
-                while (!lines.empty()) {
-                    frame.getEventBus().publishAsync(new HistoricalLineRestoredEvent(frame,
-                            getColouredString(colour, lines.pop())));
+            try {
+                final List<String> lines = new ArrayList<>();
+                for (String line : LogTailReader.readLastLines(testFile, backbufferLines)) {
+                    lines.add(getColouredString(colour, line));
                 }
-                file.close();
-                frame.getEventBus().publishAsync(new HistoricalLineRestoredEvent(frame,
-                        getColouredString(colour, "--- End of backbuffer\n")));
+                lines.add(getColouredString(colour, "--- End of backbuffer"));
+                frame.getEventBus().publishAsync(new HistoricalLineRestoredEvent(frame, lines));
             } catch (IOException | SecurityException e) {
                 LOG.info(USER_ERROR, "Unable to show backbuffer (Filename: {}): {}", filename,
                         e.getMessage(), e);
@@ -493,13 +439,26 @@ public class LoggingManager implements ConfigChangeListener {
      * Add a line to a file.
      *
      * @param filename Name of file to write to
-     * @param format   Format of line to add. (NewLine will be added Automatically)
+     * @param format   Format of line to add, where each %s is replaced by the next argument.
+     *                 (NewLine will be added Automatically)
      * @param args     Arguments for format
      *
-     * @return true on success, else false.
+     * @return true if the line was queued to be written, else false.
      */
     protected boolean appendLine(final String filename, final String format, final Object... args) {
-        return appendLine(filename, String.format(format, args));
+        final StringBuilder finalLine = startLine(format.length() + 64);
+        int argument = 0;
+        int start = 0;
+        int position = format.indexOf("%s");
+        while (position != -1) {
+            finalLine.append(format, start, position);
+            appendText(finalLine, argument < args.length
+                    ? String.valueOf(args[argument++]) : "%s");
+            start = position + 2;
+            position = format.indexOf("%s", start);
+        }
+        finalLine.append(format, start, format.length());
+        return writeLine(filename, finalLine);
     }
 
     /**
@@ -508,44 +467,79 @@ public class LoggingManager implements ConfigChangeListener {
      * @param filename Name of file to write to
      * @param line     Line to add. (NewLine will be added Automatically)
      *
-     * @return true on success, else false.
+     * @return true if the line was queued to be written, else false.
      */
     protected boolean appendLine(final String filename, final String line) {
-        final StringBuilder finalLine = new StringBuilder();
+        final StringBuilder finalLine = startLine(line.length());
+        appendText(finalLine, line);
+        return writeLine(filename, finalLine);
+    }
 
-        if (addtime) {
-            final String dateString = LOG_FORMAT.format(new Date()).trim();
-            finalLine.append(dateString);
-            finalLine.append(' ');
+    /**
+     * Creates a builder for a new line, starting with the timestamp if enabled.
+     *
+     * @param length The expected length of the rest of the line
+     *
+     * @return A builder containing the start of the line
+     */
+    private StringBuilder startLine(final int length) {
+        if (!addtime) {
+            return new StringBuilder(length);
         }
+        final String dateString = getTimestamp(System.currentTimeMillis());
+        return new StringBuilder(dateString.length() + 1 + length).append(dateString).append(' ');
+    }
 
-        if (stripcodes) {
-            finalLine.append(styleUtils.stripControlCodes(line));
+    /**
+     * Appends text to a line, stripping control codes if enabled.
+     *
+     * @param line The line to append to
+     * @param text The text to append
+     */
+    private void appendText(final StringBuilder line, final String text) {
+        if (stripcodes && hasControlCodes(text)) {
+            line.append(styleUtils.stripControlCodes(text));
         } else {
-            finalLine.append(line);
+            line.append(text);
         }
+    }
 
-        try {
-            final BufferedWriter out;
-            if (openFiles.containsKey(filename)) {
-                final OpenFile of = openFiles.get(filename);
-                of.lastUsedTime = System.currentTimeMillis();
-                out = of.writer;
-            } else {
-                out = new BufferedWriter(new FileWriter(filename, true));
-                openFiles.put(filename, new OpenFile(out));
-            }
-            out.write(finalLine.toString());
-            out.newLine();
-            out.flush();
+    private boolean writeLine(final String filename, final StringBuilder line) {
+        if (writer.append(filename, line.toString())) {
+            index.fileChanged(filename);
             return true;
-        } catch (IOException e) {
-            /*
-             * Do Nothing
-             *
-             * Makes no sense to keep adding errors to the logger when we can't write to the file,
-             * as chances are it will happen on every incoming line.
-             */
+        }
+        return false;
+    }
+
+    /**
+     * Gets the timestamp for lines written at the given time. The formatted timestamp is reused
+     * for every line written in the same second.
+     *
+     * @param time The time in milliseconds
+     *
+     * @return The formatted timestamp
+     */
+    private String getTimestamp(final long time) {
+        final long second = Math.floorDiv(time, 1000);
+        final CachedTimestamp cached = timestamp;
+        if (cached.second == second) {
+            return cached.text;
+        }
+        final String text = LOG_FORMAT.format(LocalDateTime.ofInstant(
+                Instant.ofEpochSecond(second), ZoneId.systemDefault()));
+        timestamp = new CachedTimestamp(second, text);
+        return text;
+    }
+
+    /**
+     * Determines whether the given text contains any characters that may be control codes.
+     */
+    private static boolean hasControlCodes(final String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < ' ') {
+                return true;
+            }
         }
         return false;
     }
@@ -613,6 +607,21 @@ public class LoggingManager implements ConfigChangeListener {
         return true;
     }
 
+    /**
+     * Searches the logs for lines containing all of the given terms, and shows the results in a
+     * new window.
+     *
+     * @param target The window the search was made from
+     * @param query  The terms to search for
+     *
+     * @return True if the search was started, false if the index isn't available
+     */
+    protected boolean search(final WindowModel target, final String query) {
+        return index.search(query, MAX_SEARCH_RESULTS, results ->
+                windowManager.addWindow(target, new LogSearchWindow("Search: " + query, query,
+                        target, eventBus, backBufferFactory, results)));
+    }
+
     /** Updates cached settings. */
     public void setCachedSettings() {
         addtime = config.getOptionBool(domain, "general.addtime");
@@ -687,26 +696,52 @@ public class LoggingManager implements ConfigChangeListener {
                         + "directory name(s) for archiving",
                 manager.getConfigManager(), manager.getIdentity()));
 
+        advanced.addSetting(new PreferencesSetting(PreferencesType.INTEGER,
+                pluginInfo.getDomain(), "writer.flushinterval", "Flush interval",
+                "Maximum time in milliseconds that written lines are buffered before being "
+                        + "flushed to disk",
+                manager.getConfigManager(), manager.getIdentity()));
+        advanced.addSetting(new PreferencesSetting(PreferencesType.INTEGER,
+                pluginInfo.getDomain(), "writer.flushlines", "Flush after lines",
+                "Number of written lines after which log files are flushed early",
+                manager.getConfigManager(), manager.getIdentity()));
+        advanced.addSetting(new PreferencesSetting(PreferencesType.INTEGER,
+                pluginInfo.getDomain(), "writer.queuesize", "Write queue size",
+                "Maximum number of lines waiting to be written (takes effect when the plugin "
+                        + "is reloaded)",
+                manager.getConfigManager(), manager.getIdentity()));
+        advanced.addSetting(new PreferencesSetting(PreferencesType.BOOLEAN,
+                pluginInfo.getDomain(), "writer.blockwhenfull", "Wait when queue is full",
+                "Should the client wait for the queue to empty when it is full, rather than "
+                        + "dropping lines?",
+                manager.getConfigManager(), manager.getIdentity()));
+        advanced.addSetting(new PreferencesSetting(PreferencesType.BOOLEAN,
+                pluginInfo.getDomain(), "index.enabled", "Index logs for searching",
+                "Should log files be indexed so they can be searched with /logging search "
+                        + "(takes effect when the plugin is reloaded)",
+                manager.getConfigManager(), manager.getIdentity()));
+        advanced.addSetting(new PreferencesSetting(PreferencesType.INTEGER,
+                pluginInfo.getDomain(), "index.interval", "Index interval",
+                "Time in milliseconds between indexing new lines (takes effect when the plugin "
+                        + "is reloaded)",
+                manager.getConfigManager(), manager.getIdentity()));
+
         general.addSubCategory(backbuffer.setInline());
         general.addSubCategory(advanced.setInline());
         manager.getCategory("Plugins").addSubCategory(general.setInlineAfter());
     }
 
-    /** Open File. */
-    private static class OpenFile {
+    /**
+     * A timestamp formatted for a particular second.
+     */
+    private static class CachedTimestamp {
 
-        /** Last used time. */
-        public long lastUsedTime = System.currentTimeMillis();
-        /** Open file's writer. */
-        public final BufferedWriter writer;
+        private final long second;
+        private final String text;
 
-        /**
-         * Creates a new open file.
-         *
-         * @param writer Writer that has file open
-         */
-        protected OpenFile(final BufferedWriter writer) {
-            this.writer = writer;
+        CachedTimestamp(final long second, final String text) {
+            this.second = second;
+            this.text = text;
         }
 
     }
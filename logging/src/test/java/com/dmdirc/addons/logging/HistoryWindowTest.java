@@ -31,6 +31,7 @@ import com.dmdirc.config.provider.AggregateConfigProvider;
 import com.dmdirc.ui.messages.BackBufferFactory;
 import com.dmdirc.ui.messages.BackBufferImpl;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Optional;
 import org.junit.Before;
 import org.junit.Test;
@@ -73,11 +74,13 @@ public class HistoryWindowTest {
     public void testOutputLoggingBackBuffer() throws Exception {
         instance.outputLoggingBackBuffer(4);
 
-        verify(eventBus, times(4)).publishAsync(eventCaptor.capture());
-        assertEquals("[21/12/2015 12:58:02] RAAR", eventCaptor.getAllValues().get(0).getLine());
-        assertEquals("[21/12/2015 12:59:03] RAAAR", eventCaptor.getAllValues().get(1).getLine());
-        assertEquals("[21/12/2015 13:00:04] RAAAAR", eventCaptor.getAllValues().get(2).getLine());
-        assertEquals("[21/12/2015 13:01:05] RAAAAAR", eventCaptor.getAllValues().get(3).getLine());
+        verify(eventBus, times(1)).publishAsync(eventCaptor.capture());
+        final List<String> lines = eventCaptor.getValue().getLines();
+        assertEquals(4, lines.size());
+        assertEquals("[21/12/2015 12:58:02] RAAR", lines.get(0));
+        assertEquals("[21/12/2015 12:59:03] RAAAR", lines.get(1));
+        assertEquals("[21/12/2015 13:00:04] RAAAAR", lines.get(2));
+        assertEquals("[21/12/2015 13:01:05] RAAAAAR", lines.get(3));
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.dmdirc.addons.logging;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LogIndexPostingsTest {
+
+    @Test
+    public void testRoundTripsLargeValues() throws IOException {
+        final LogIndexPostings postings = new LogIndexPostings();
+        postings.add(0, 0, 0);
+        postings.add(0, 127, 1);
+        postings.add(0, 128, 16000);
+        postings.add(3, 0xFFFFFFFFFFL, Integer.MAX_VALUE);
+        postings.add(0x7FFFFF, 1L << 35, 17000);
+
+        assertEquals(Arrays.asList(
+                LogIndexPostings.getKey(0, 0), 0L,
+                LogIndexPostings.getKey(0, 127), 1L,
+                LogIndexPostings.getKey(0, 128), 16000L,
+                LogIndexPostings.getKey(3, 0xFFFFFFFFFFL), (long) Integer.MAX_VALUE,
+                LogIndexPostings.getKey(0x7FFFFF, 1L << 35), 17000L),
+                read(postings));
+    }
+
+    @Test
+    public void testDeltaEncodesOffsetsInSameFile() {
+        final LogIndexPostings postings = new LogIndexPostings();
+        postings.add(1, 100000, 1);
+        final int size = postings.getSize();
+        postings.add(1, 100010, 1);
+        // One byte for the delta and one for the day.
+        assertEquals(size + 2, postings.getSize());
+    }
+
+    @Test
+    public void testKeyRoundTrips() {
+        final long key = LogIndexPostings.getKey(12345, 0xABCDEF0123L);
+        assertEquals(12345, LogIndexPostings.getFile(key));
+        assertEquals(0xABCDEF0123L, LogIndexPostings.getOffset(key));
+        assertTrue(key < LogIndexPostings.getKey(12346, 0));
+    }
+
+    @Test
+    public void testSortReordersPostings() throws IOException {
+        final LogIndexPostings postings = new LogIndexPostings();
+        postings.add(2, 10, 5);
+        postings.add(2, 20, 6);
+        postings.add(1, 30, 7);
+        postings.add(2, 5, 8);
+        postings.sort();
+
+        assertEquals(Arrays.asList(
+                LogIndexPostings.getKey(1, 30), 7L,
+                LogIndexPostings.getKey(2, 5), 8L,
+                LogIndexPostings.getKey(2, 10), 5L,
+                LogIndexPostings.getKey(2, 20), 6L),
+                read(postings));
+    }
+
+    @Test
+    public void testCursorMergesLists() throws IOException {
+        final LogIndexPostings first = new LogIndexPostings();
+        first.add(1, 10, 1);
+        first.add(3, 10, 3);
+        final LogIndexPostings second = new LogIndexPostings();
+        second.add(2, 10, 2);
+        second.add(4, 10, 4);
+
+        final LogIndexPostings.Cursor cursor = new LogIndexPostings.Cursor();
+        cursor.add(first);
+        cursor.add(second);
+        cursor.add(new LogIndexPostings());
+        for (int file = 1; file <= 4; file++) {
+            assertTrue(cursor.next());
+            assertEquals(LogIndexPostings.getKey(file, 10), cursor.getKey());
+            assertEquals(file, cursor.getDay());
+        }
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    public void testCursorAdvancesTo() throws IOException {
+        final LogIndexPostings postings = new LogIndexPostings();
+        postings.add(1, 10, 1);
+        postings.add(1, 20, 2);
+        postings.add(1, 30, 3);
+
+        final LogIndexPostings.Cursor cursor = new LogIndexPostings.Cursor();
+        cursor.add(postings);
+        assertTrue(cursor.advanceTo(LogIndexPostings.getKey(1, 15)));
+        assertEquals(LogIndexPostings.getKey(1, 20), cursor.getKey());
+        assertTrue(cursor.advanceTo(LogIndexPostings.getKey(1, 20)));
+        assertEquals(2, cursor.getDay());
+        assertFalse(cursor.advanceTo(LogIndexPostings.getKey(1, 31)));
+    }
+
+    @Test
+    public void testCursorAdvancesAcrossBlocks() throws IOException {
+        final LogIndexPostings postings = new LogIndexPostings();
+        for (int i = 0; i < 1000; i++) {
+            postings.add(i / 300, i * 10, i);
+        }
+
+        final LogIndexPostings.Cursor cursor = new LogIndexPostings.Cursor();
+        cursor.add(postings);
+        assertTrue(cursor.advanceTo(LogIndexPostings.getKey(0, 1285)));
+        assertEquals(129, cursor.getDay());
+        assertTrue(cursor.advanceTo(LogIndexPostings.getKey(2, 0)));
+        assertEquals(600, cursor.getDay());
+        assertTrue(cursor.advanceTo(LogIndexPostings.getKey(3, 9990)));
+        assertEquals(999, cursor.getDay());
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    public void testSortRebuildsBlocks() throws IOException {
+        final LogIndexPostings postings = new LogIndexPostings();
+        for (int i = 999; i >= 0; i--) {
+            postings.add(1, i, i);
+        }
+
+        final LogIndexPostings.Cursor cursor = new LogIndexPostings.Cursor();
+        cursor.add(postings);
+        assertTrue(cursor.advanceTo(LogIndexPostings.getKey(1, 700)));
+        assertEquals(700, cursor.getDay());
+        assertTrue(cursor.next());
+        assertEquals(701, cursor.getDay());
+    }
+
+    /**
+     * Reads postings into a flat list of keys and days.
+     */
+    static List<Long> read(final LogIndexPostings postings) throws IOException {
+        final LogIndexPostings.Cursor cursor = new LogIndexPostings.Cursor();
+        cursor.add(postings);
+        return read(cursor);
+    }
+
+    /**
+     * Reads the remaining postings of a cursor into a flat list of keys and days.
+     */
+    static List<Long> read(final LogIndexPostings.Cursor cursor) throws IOException {
+        final List<Long> result = new ArrayList<>();
+        while (cursor.next()) {
+            result.add(cursor.getKey());
+            result.add((long) cursor.getDay());
+        }
+        return result;
+    }
+
+}
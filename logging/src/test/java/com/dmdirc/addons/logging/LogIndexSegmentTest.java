@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.dmdirc.addons.logging;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LogIndexSegmentTest {
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteAndOpen() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("segment-0.seg");
+        final SortedMap<String, LogIndexPostings> postings = new TreeMap<>();
+        postings.put("hello", postings(1, 10, 2, 0, 20, 1));
+        postings.put("world", postings(0, 20, 1));
+        LogIndexSegment.write(path, postings);
+
+        try (LogIndexSegment segment = LogIndexSegment.open(path)) {
+            assertEquals(path, segment.getPath());
+            // Postings are sorted when they're written.
+            assertEquals(Arrays.asList(LogIndexPostings.getKey(0, 20), 1L,
+                    LogIndexPostings.getKey(1, 10), 2L), read(segment, "hello"));
+            assertEquals(Arrays.asList(LogIndexPostings.getKey(0, 20), 1L),
+                    read(segment, "world"));
+            assertTrue(segment.getPostingsLength("world") > 0);
+            assertFalse(segment.addPostings("missing", new LogIndexPostings.Cursor()));
+            assertEquals(0, segment.getPostingsLength("missing"));
+        }
+    }
+
+    @Test
+    public void testMerge() throws IOException {
+        final Path first = folder.getRoot().toPath().resolve("segment-0.seg");
+        final Path second = folder.getRoot().toPath().resolve("segment-1.seg");
+        final Path merged = folder.getRoot().toPath().resolve("segment-2.seg");
+        LogIndexSegment.write(first, new TreeMap<>(Collections.singletonMap("hello",
+                postings(2, 10, 1))));
+        final SortedMap<String, LogIndexPostings> postings = new TreeMap<>();
+        postings.put("hello", postings(1, 10, 2, 3, 10, 3));
+        postings.put("world", postings(1, 10, 2));
+        LogIndexSegment.write(second, postings);
+
+        try (LogIndexSegment one = LogIndexSegment.open(first);
+                LogIndexSegment two = LogIndexSegment.open(second)) {
+            LogIndexSegment.merge(merged, Arrays.asList(one, two));
+        }
+
+        try (LogIndexSegment segment = LogIndexSegment.open(merged)) {
+            assertEquals(Arrays.asList(LogIndexPostings.getKey(1, 10), 2L,
+                    LogIndexPostings.getKey(2, 10), 1L,
+                    LogIndexPostings.getKey(3, 10), 3L), read(segment, "hello"));
+            assertEquals(Arrays.asList(LogIndexPostings.getKey(1, 10), 2L),
+                    read(segment, "world"));
+        }
+    }
+
+    @Test
+    public void testAdvancesThroughLargePostings() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("segment-0.seg");
+        final LogIndexPostings large = new LogIndexPostings();
+        for (int i = 0; i < 100000; i++) {
+            large.add(i / 1000, i * 100L, i);
+        }
+        LogIndexSegment.write(path, new TreeMap<>(Collections.singletonMap("hello", large)));
+
+        try (LogIndexSegment segment = LogIndexSegment.open(path)) {
+            final LogIndexPostings.Cursor cursor = new LogIndexPostings.Cursor();
+            assertTrue(segment.addPostings("hello", cursor));
+            assertTrue(cursor.advanceTo(LogIndexPostings.getKey(50, 5000050)));
+            assertEquals(50001, cursor.getDay());
+            assertTrue(cursor.advanceTo(LogIndexPostings.getKey(99, 9999900)));
+            assertEquals(99999, cursor.getDay());
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenTruncatedSegment() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("segment-0.seg");
+        LogIndexSegment.write(path, new TreeMap<>(Collections.singletonMap("hello",
+                postings(1, 10, 2))));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 4);
+        }
+        LogIndexSegment.open(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenEmptySegment() throws IOException {
+        final Path path = folder.newFile("segment-0.seg").toPath();
+        LogIndexSegment.open(path);
+    }
+
+    /**
+     * Reads a term's postings from a segment into a flat list of keys and days.
+     */
+    private static List<Long> read(final LogIndexSegment segment, final String term)
+            throws IOException {
+        final LogIndexPostings.Cursor cursor = new LogIndexPostings.Cursor();
+        segment.addPostings(term, cursor);
+        return LogIndexPostingsTest.read(cursor);
+    }
+
+    /**
+     * Creates postings from triples of file, offset and day.
+     */
+    private static LogIndexPostings postings(final int... values) {
+        final LogIndexPostings postings = new LogIndexPostings();
+        for (int i = 0; i < values.length; i += 3) {
+            postings.add(values[i], values[i + 1], values[i + 2]);
+        }
+        return postings;
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.dmdirc.addons.logging;
+
+import com.dmdirc.config.binding.ConfigBinder;
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.ui.messages.IRCControlCodes;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LogIndexTest {
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+    @Mock private AggregateConfigProvider config;
+    @Mock private ConfigBinder binder;
+    private Path logDirectory;
+    private LogIndex instance;
+
+    @Before
+    public void setUp() throws IOException {
+        when(config.getBinder()).thenReturn(binder);
+        when(binder.withDefaultDomain(anyString())).thenReturn(binder);
+        logDirectory = folder.getRoot().toPath();
+        write("quakenet/#dmdirc.log",
+                "[21/12/2015 12:00:00] <foo> hello world",
+                "[22/12/2015 12:00:00] <bar> hello there",
+                "[23/12/2015 12:00:00] <baz> goodbye world",
+                "[24/12/2015 12:00:00] <foo> Hello, World again");
+        write("freenode/#other.log",
+                "[20/12/2015 12:00:00] <qux> world says hello");
+    }
+
+    @After
+    public void tearDown() {
+        if (instance != null) {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testTokenise() {
+        final Set<String> terms = new HashSet<>();
+        LogIndex.tokenise("Hello, WORLD! a " + IRCControlCodes.COLOUR + "4,12red "
+                + IRCControlCodes.COLOUR_HEX + "FF00FFhex x-y", 0, terms);
+        assertEquals(new HashSet<>(Arrays.asList("hello", "world", "red", "hex")), terms);
+    }
+
+    @Test
+    public void testTokeniseFromStart() {
+        final Set<String> terms = new HashSet<>();
+        LogIndex.tokenise("[21/12/2015] text", 12, terms);
+        assertEquals(new HashSet<>(Arrays.asList("text")), terms);
+    }
+
+    @Test
+    public void testSearchRequiresAllTerms() {
+        instance = open();
+        final List<LogSearchResult> results = instance.doSearch("world hello", 10);
+        assertEquals(Arrays.asList(
+                "[20/12/2015 12:00:00] <qux> world says hello",
+                "[21/12/2015 12:00:00] <foo> hello world",
+                "[24/12/2015 12:00:00] <foo> Hello, World again"), lines(results));
+        assertEquals("freenode", results.get(0).getNetwork());
+        assertEquals("#other", results.get(0).getTarget());
+        assertEquals(LocalDate.of(2015, 12, 20), results.get(0).getDate());
+    }
+
+    @Test
+    public void testSearchKeepsMostRecentResults() {
+        instance = open();
+        assertEquals(Arrays.asList(
+                "[22/12/2015 12:00:00] <bar> hello there",
+                "[24/12/2015 12:00:00] <foo> Hello, World again"),
+                lines(instance.doSearch("hello", 2)));
+    }
+
+    @Test
+    public void testSearchWithNoMatches() {
+        instance = open();
+        assertTrue(instance.doSearch("goodbye there", 10).isEmpty());
+        assertTrue(instance.doSearch("missing", 10).isEmpty());
+        assertTrue(instance.doSearch("!!", 10).isEmpty());
+    }
+
+    @Test
+    public void testIndexesLinesAppendedSinceCommit() throws IOException {
+        instance = open();
+        instance.close();
+        append("quakenet/#dmdirc.log", "[25/12/2015 12:00:00] <foo> merry world");
+
+        instance = open();
+        assertEquals(Arrays.asList("[25/12/2015 12:00:00] <foo> merry world"),
+                lines(instance.doSearch("merry", 10)));
+        assertEquals(5, instance.doSearch("world", 10).size());
+    }
+
+    @Test
+    public void testCommitsWhenIdle() throws IOException {
+        instance = open();
+        assertTrue(Files.exists(logDirectory.resolve(".index/files.idx")));
+        assertEquals(1, segments().size());
+    }
+
+    @Test
+    public void testReopensCommittedIndex() throws IOException {
+        instance = open();
+        instance.close();
+        final Path segment = segments().get(0);
+
+        instance = open();
+        assertEquals(Arrays.asList(segment), segments());
+        assertEquals(4, instance.doSearch("world", 10).size());
+    }
+
+    @Test
+    public void testRebuildsAfterTruncatedSegment() throws IOException {
+        instance = open();
+        instance.close();
+        try (FileChannel channel = FileChannel.open(segments().get(0),
+                StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() / 2);
+        }
+
+        instance = open();
+        assertEquals(4, instance.doSearch("world", 10).size());
+    }
+
+    @Test
+    public void testCommitsWhileIndexingLargeFile() throws IOException {
+        final List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            lines.add("[25/12/2015 12:00:00] <foo> alpha bravo charlie delta echo foxtrot golf "
+                    + "hotel india line" + i);
+        }
+        write("quakenet/#big.log", lines.toArray(new String[lines.size()]));
+
+        instance = open();
+        assertEquals(2, segments().size());
+        assertEquals(Arrays.asList("[25/12/2015 12:00:00] <foo> alpha bravo charlie delta echo "
+                + "foxtrot golf hotel india line49999"), lines(instance.doSearch("line49999", 10)));
+        assertEquals(10, instance.doSearch("alpha golf", 10).size());
+        assertEquals(4, instance.doSearch("world", 10).size());
+    }
+
+    private LogIndex open() {
+        final LogIndex index = new LogIndex(config, "logging", logDirectory::toString);
+        index.open();
+        index.update();
+        return index;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+                logDirectory.resolve(".index"), "segment-*.seg")) {
+            final List<Path> paths = new ArrayList<>();
+            stream.forEach(paths::add);
+            return paths;
+        }
+    }
+
+    private void write(final String file, final String... lines) throws IOException {
+        final Path path = logDirectory.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, Arrays.asList(lines), Charset.defaultCharset());
+    }
+
+    private void append(final String file, final String... lines) throws IOException {
+        Files.write(logDirectory.resolve(file), Arrays.asList(lines), Charset.defaultCharset(),
+                StandardOpenOption.APPEND);
+    }
+
+    private static List<String> lines(final List<LogSearchResult> results) {
+        return results.stream().map(LogSearchResult::getLine).collect(Collectors.toList());
+    }
+
+}
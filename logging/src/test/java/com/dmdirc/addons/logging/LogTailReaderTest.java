@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.logging;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogTailReaderTest {
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadsLastLines() throws IOException {
+        assertEquals(Arrays.asList("three", "four"),
+                LogTailReader.readLastLines(write("one\ntwo\nthree\nfour\n"), 2));
+    }
+
+    @Test
+    public void testReadsWithoutTrailingNewline() throws IOException {
+        assertEquals(Arrays.asList("three", "four"),
+                LogTailReader.readLastLines(write("one\ntwo\nthree\nfour"), 2));
+    }
+
+    @Test
+    public void testReadsWholeFileWhenShort() throws IOException {
+        assertEquals(Arrays.asList("one", "two"),
+                LogTailReader.readLastLines(write("one\ntwo\n"), 10));
+    }
+
+    @Test
+    public void testRemovesCarriageReturns() throws IOException {
+        assertEquals(Arrays.asList("one", "", "two"),
+                LogTailReader.readLastLines(write("one\r\n\r\ntwo\r\n"), 10));
+    }
+
+    @Test
+    public void testReadsEmptyFile() throws IOException {
+        assertEquals(Collections.emptyList(), LogTailReader.readLastLines(write(""), 10));
+        assertEquals(Collections.emptyList(), LogTailReader.readLastLines(write("\n"), 10));
+    }
+
+    @Test
+    public void testReadsNoLines() throws IOException {
+        assertEquals(Collections.emptyList(), LogTailReader.readLastLines(write("one\n"), 0));
+    }
+
+    @Test
+    public void testReadsAcrossMappedRegions() throws IOException {
+        final List<String> lines = lines(30000, 100);
+        final Path file = write(lines);
+        assertEquals(lines.subList(5000, 30000), LogTailReader.readLastLines(file, 25000));
+    }
+
+    @Test
+    public void testReadsOnlyWholeLinesWhenTooLong() throws IOException {
+        final List<String> lines = lines(20000, 1000);
+        final Path file = write(lines);
+        final List<String> result = LogTailReader.readLastLines(file, 20000);
+        assertTrue(result.size() < lines.size());
+        assertEquals(lines.subList(lines.size() - result.size(), lines.size()), result);
+    }
+
+    private Path write(final String content) throws IOException {
+        final Path path = folder.newFile().toPath();
+        Files.write(path, content.getBytes(Charset.defaultCharset()));
+        return path;
+    }
+
+    private Path write(final List<String> lines) throws IOException {
+        final Path path = folder.newFile().toPath();
+        try (BufferedWriter writer = Files.newBufferedWriter(path, Charset.defaultCharset())) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Creates the given number of distinct lines, each of the given length.
+     */
+    private static List<String> lines(final int count, final int length) {
+        final List<String> lines = new ArrayList<>(count);
+        final char[] padding = new char[length];
+        Arrays.fill(padding, 'x');
+        for (int i = 0; i < count; i++) {
+            final String number = Integer.toString(i);
+            lines.add(number + new String(padding, number.length(), length - number.length()));
+        }
+        return lines;
+    }
+
+}
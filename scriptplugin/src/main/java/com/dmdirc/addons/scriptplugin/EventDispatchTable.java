@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.scriptplugin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps event classes to the script function that handles them, and the getters used to build the
+ * function's arguments. Each event class is only inspected the first time it is seen.
+ */
+final class EventDispatchTable {
+
+    /** Type every getter is adapted to, so they can all be invoked exactly. */
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class,
+            Object.class);
+
+    /** Dispatch information for each event class. */
+    private final ClassValue<Dispatch> dispatches = new ClassValue<Dispatch>() {
+        @Override
+        protected Dispatch computeValue(final Class<?> type) {
+            return createDispatch(type);
+        }
+    };
+
+    /**
+     * Gets the dispatch information for the given event class.
+     *
+     * @param type The class of the event
+     *
+     * @return The dispatch information for the class
+     */
+    Dispatch get(final Class<?> type) {
+        return dispatches.get(type);
+    }
+
+    private static Dispatch createDispatch(final Class<?> type) {
+        final String name = "action_" + type.getSimpleName()
+                .replaceAll("Event$", "")
+                .replaceAll("(.)([A-Z])", "$1_$2")
+                .toUpperCase();
+
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final List<MethodHandle> getters = new ArrayList<>();
+        for (Method method : type.getMethods()) {
+            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0 &&
+                    !"getDisplayFormat".equals(method.getName())) {
+                getters.add(unreflect(lookup, method));
+            }
+        }
+        return new Dispatch(name, getters.toArray(new MethodHandle[getters.size()]));
+    }
+
+    private static MethodHandle unreflect(final MethodHandles.Lookup lookup,
+            final Method method) {
+        try {
+            return lookup.unreflect(method).asType(GETTER_TYPE);
+        } catch (IllegalAccessException ex) {
+            // Public methods declared by non-public classes need to be made accessible first.
+            method.setAccessible(true);
+            try {
+                return lookup.unreflect(method).asType(GETTER_TYPE);
+            } catch (IllegalAccessException ex1) {
+                throw new IllegalStateException("Unable to access " + method, ex1);
+            }
+        }
+    }
+
+    /**
+     * The script function and argument getters for a single event class.
+     */
+    static final class Dispatch {
+
+        /** Name of the script function that handles the event. */
+        private final String functionName;
+        /** Getters used to build the function's arguments. */
+        private final MethodHandle[] getters;
+
+        Dispatch(final String functionName, final MethodHandle[] getters) {
+            this.functionName = functionName;
+            this.getters = getters;
+        }
+
+        /**
+         * Gets the name of the script function that handles the event.
+         *
+         * @return The function name
+         */
+        String getFunctionName() {
+            return functionName;
+        }
+
+        /**
+         * Gets the arguments to pass to the script function for the given event.
+         *
+         * @param event The event being dispatched
+         *
+         * @return The function arguments
+         *
+         * @throws ReflectiveOperationException If one of the getters fails
+         */
+        Object[] getArguments(final Object event) throws ReflectiveOperationException {
+            final Object[] arguments = new Object[getters.length];
+            for (int i = 0; i < getters.length; i++) {
+                try {
+                    arguments[i] = (Object) getters[i].invokeExact(event);
+                } catch (RuntimeException | Error ex) {
+                    throw ex;
+                } catch (Throwable ex) {
+                    throw new ReflectiveOperationException(ex);
+                }
+            }
+            return arguments;
+        }
+
+    }
+
+}
@@ -60,6 +60,8 @@ public class ScriptCommand extends BaseCommand implements IntelligentCommand {
     private final String scriptDirectory;
     /** Script manager to handle scripts. */
     private final ScriptManager scriptManager;
+    /** Wrapper for the eval base file, reused while the base file doesn't change. */
+    private ScriptEngineWrapper evalWrapper;
 
     /**
      * Creates a new instance of this command.
@@ -121,7 +123,7 @@ public class ScriptCommand extends BaseCommand implements IntelligentCommand {
                         final String baseFile = scriptDirectory + '/'
                                 + globalConfig.getOption(domain, "eval.baseFile");
                         if (new File(baseFile).exists()) {
-                            wrapper = new ScriptEngineWrapper(scriptEngineManager, baseFile);
+                            wrapper = getEvalWrapper(baseFile);
                         } else {
                             wrapper = new ScriptEngineWrapper(scriptEngineManager, null);
                         }
@@ -186,6 +188,17 @@ public class ScriptCommand extends BaseCommand implements IntelligentCommand {
                 showError(origin, args.isSilent(),
                         "You must specify a function name and some script to save.");
             }
+        } else if (sargs.length > 0 && "status".equalsIgnoreCase(sargs[0])) {
+            final Map<String, ScriptEngineWrapper> scripts = scriptManager.getScripts();
+            if (scripts.isEmpty()) {
+                showOutput(origin, args.isSilent(), "No scripts loaded.");
+            }
+            for (Map.Entry<String, ScriptEngineWrapper> entry : scripts.entrySet()) {
+                final ScriptLane lane = entry.getValue().getLane();
+                showOutput(origin, args.isSilent(), entry.getKey() + ": " + lane.getQueueSize()
+                        + " queued, " + lane.getOverruns() + " over budget, "
+                        + lane.getDropped() + " dropped");
+            }
         } else if (sargs.length > 0 && "help".equalsIgnoreCase(sargs[0])) {
             showOutput(origin, args.isSilent(),
                     "This command allows you to interact with the script plugin");
@@ -196,6 +209,8 @@ public class ScriptCommand extends BaseCommand implements IntelligentCommand {
                     "load <script>                  - load scripts/<script> (file name relative to scripts dir)");
             showOutput(origin, args.isSilent(),
                     "unload <script>                - unload <script> (full file name)");
+            showOutput(origin, args.isSilent(),
+                    "status                         - show the call queue of each loaded script");
             showOutput(origin, args.isSilent(),
                     "eval <script>                  - evaluate the code <script> and return the result");
             showOutput(origin, args.isSilent(),
@@ -223,6 +238,7 @@ public class ScriptCommand extends BaseCommand implements IntelligentCommand {
             res.add("reload");
             res.add("load");
             res.add("unload");
+            res.add("status");
             res.add("eval");
             res.add("savetobasefile");
         } else if (arg == 1) {
@@ -238,6 +254,25 @@ public class ScriptCommand extends BaseCommand implements IntelligentCommand {
         return res;
     }
 
+    /**
+     * Gets a wrapper for the eval base file in a freshly loaded state. The previous wrapper is
+     * reset rather than recreated, so the base file is only recompiled when it changes.
+     *
+     * @param baseFile The eval base file
+     *
+     * @return A wrapper for the base file
+     *
+     * @throws ScriptException If there was an error evaluating the base file
+     */
+    private ScriptEngineWrapper getEvalWrapper(final String baseFile) throws ScriptException {
+        if (evalWrapper != null && evalWrapper.getFile().equals(new File(baseFile))) {
+            evalWrapper.reset();
+        } else {
+            evalWrapper = new ScriptEngineWrapper(scriptEngineManager, baseFile);
+        }
+        return evalWrapper;
+    }
+
     /**
      * Converts an exception into a string array.
      *
@@ -22,8 +22,16 @@ import com.google.common.base.Preconditions;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
 
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.Invocable;
+import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
@@ -39,17 +47,31 @@ import static com.dmdirc.util.LogUtils.USER_ERROR;
 public class ScriptEngineWrapper {
 
     private static final Logger LOG = LoggerFactory.getLogger(ScriptEngineWrapper.class);
+    /** Prefix of functions called in response to events. */
+    private static final String ACTION_PREFIX = "action_";
+    /** Pattern matching names that are safe to evaluate. */
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
     /** The Script Engine this wrapper wraps */
-    private ScriptEngine engine;
+    private volatile ScriptEngine engine;
     /** The File this script is from */
     private final File file;
     /** Script-Local JS Helper */
     private final JavaScriptHelper localHelper = new JavaScriptHelper();
     /** Manager to get script engines. */
     private final ScriptEngineManager scriptEngineManager;
+    /** Action functions defined by the script, or null if they couldn't be determined. */
+    private volatile Set<String> actionFunctions;
+    /** Lane that calls into the script run on, or null to call it directly. */
+    private final ScriptLane lane;
+    /** The compiled script, if the engine supports compilation. */
+    private CompiledScript compiledScript;
+    /** Last modified time of the file when it was compiled. */
+    private long compiledModified;
+    /** Length of the file when it was compiled. */
+    private long compiledLength;
 
     /**
-     * Create a new ScriptEngineWrapper
+     * Create a new ScriptEngineWrapper that is called directly.
      *
      * @param scriptEngineManager Manager to get script engines
      * @param filename            Filename of script
@@ -58,11 +80,27 @@ public class ScriptEngineWrapper {
      */
     protected ScriptEngineWrapper(final ScriptEngineManager scriptEngineManager,
             final String filename) throws ScriptException {
+        this(scriptEngineManager, filename, null);
+    }
+
+    /**
+     * Create a new ScriptEngineWrapper
+     *
+     * @param scriptEngineManager Manager to get script engines
+     * @param filename            Filename of script
+     * @param lane                Lane to run calls into the script on, or null to call it directly
+     *
+     * @throws ScriptException  If there was an error during creation
+     */
+    protected ScriptEngineWrapper(final ScriptEngineManager scriptEngineManager,
+            final String filename, final ScriptLane lane) throws ScriptException {
         Preconditions.checkNotNull(filename, "File cannot be null");
         this.scriptEngineManager = scriptEngineManager;
+        this.lane = lane;
         file = new File(filename);
 
         engine = createEngine();
+        actionFunctions = findActionFunctions(engine);
 
         callFunction("onLoad");
     }
@@ -94,6 +132,63 @@ public class ScriptEngineWrapper {
         return file;
     }
 
+    /**
+     * Get the lane calls into this script run on.
+     *
+     * @return The lane for this script, or null if it is called directly
+     */
+    protected ScriptLane getLane() {
+        return lane;
+    }
+
+    /**
+     * Gets the action functions defined by this script when it was loaded or last reloaded.
+     *
+     * @return The names of the action functions, or null if they couldn't be determined
+     */
+    protected Set<String> getActionFunctions() {
+        return actionFunctions;
+    }
+
+    /**
+     * Checks whether this script may define the given function. Action functions are only looked
+     * for when the script is loaded or reloaded; any other function is assumed to exist.
+     *
+     * @param functionName Name of function
+     *
+     * @return False if the script does not define the action function, true otherwise
+     */
+    protected boolean hasFunction(final String functionName) {
+        final Set<String> functions = actionFunctions;
+        return functions == null || !functionName.startsWith(ACTION_PREFIX)
+                || functions.contains(functionName);
+    }
+
+    /**
+     * Finds the action functions defined in the global scope of the given engine.
+     *
+     * @param scriptEngine The engine to search
+     *
+     * @return The names of the action functions, or null if they couldn't be determined
+     */
+    private Set<String> findActionFunctions(final ScriptEngine scriptEngine) {
+        try {
+            final Bindings bindings = scriptEngine.getBindings(ScriptContext.ENGINE_SCOPE);
+            final Set<String> functions = new HashSet<>();
+            for (String name : bindings.keySet()) {
+                if (name.startsWith(ACTION_PREFIX) && IDENTIFIER.matcher(name).matches()
+                        && "function".equals(scriptEngine.eval("typeof " + name))) {
+                    functions.add(name);
+                }
+            }
+            return Collections.unmodifiableSet(functions);
+        } catch (ScriptException | RuntimeException e) {
+            LOG.debug("Unable to find action functions in '{}': {}", file.getPath(),
+                    e.getMessage(), e);
+            return null;
+        }
+    }
+
     /**
      * Create a new engine for this script
      *
@@ -102,19 +197,76 @@ public class ScriptEngineWrapper {
      * @throws ScriptException  If there was an error during creation
      */
     protected ScriptEngine createEngine() throws ScriptException {
+        final long modified = file.lastModified();
+        final long length = file.length();
+        final ScriptEngine current = engine;
+        if (current != null && compiledScript != null && compiledScript.getEngine() == current
+                && modified == compiledModified && length == compiledLength) {
+            // The file hasn't changed, so just run the compiled script again with fresh bindings.
+            final Bindings previous = current.getBindings(ScriptContext.ENGINE_SCOPE);
+            current.setBindings(current.createBindings(), ScriptContext.ENGINE_SCOPE);
+            try {
+                compiledScript.eval();
+            } catch (ScriptException | RuntimeException e) {
+                current.setBindings(previous, ScriptContext.ENGINE_SCOPE);
+                throw e;
+            }
+            addHelpers(current);
+            return current;
+        }
+
         final ScriptEngine result = scriptEngineManager.getEngineByName("JavaScript");
         try (FileReader fr = new FileReader(file)) {
-            result.eval(fr);
+            if (result instanceof Compilable) {
+                compiledScript = ((Compilable) result).compile(fr);
+                compiledModified = modified;
+                compiledLength = length;
+                compiledScript.eval();
+            } else {
+                compiledScript = null;
+                result.eval(fr);
+            }
         } catch (IOException ex) {
             throw new ScriptException(ex);
         }
 
-        result.put("localHelper", localHelper);
-        result.put("thisEngine", this);
+        addHelpers(result);
 
         return result;
     }
 
+    /**
+     * Adds the script-local helpers to the given engine.
+     *
+     * @param scriptEngine The engine to add the helpers to
+     */
+    private void addHelpers(final ScriptEngine scriptEngine) {
+        scriptEngine.put("localHelper", localHelper);
+        scriptEngine.put("thisEngine", this);
+    }
+
+    /**
+     * Resets this script to a freshly loaded state, reusing the compiled script if the file has
+     * not changed.
+     *
+     * @throws ScriptException If there was an error evaluating the script
+     */
+    protected void reset() throws ScriptException {
+        engine = createEngine();
+        actionFunctions = findActionFunctions(engine);
+
+        callFunction("onLoad");
+    }
+
+    /**
+     * Stops the lane this script runs on, once any queued calls have completed.
+     */
+    protected void shutdown() {
+        if (lane != null) {
+            lane.shutdown();
+        }
+    }
+
     /**
      * Call a function in this script.
      *
@@ -122,6 +274,20 @@ public class ScriptEngineWrapper {
      * @param args         Arguments for function
      */
     protected void callFunction(final String functionName, final Object... args) {
+        if (lane == null) {
+            invokeFunction(functionName, args);
+        } else {
+            lane.execute(functionName, () -> invokeFunction(functionName, args));
+        }
+    }
+
+    /**
+     * Call a function in this script on the current thread.
+     *
+     * @param functionName Name of function
+     * @param args         Arguments for function
+     */
+    private void invokeFunction(final String functionName, final Object... args) {
         try {
             // Call Function
             final Invocable invEngine = (Invocable) engine;
@@ -142,18 +308,37 @@ public class ScriptEngineWrapper {
      * @return True if script was reloaded
      */
     protected boolean reload() {
+        if (lane == null) {
+            return reloadEngine();
+        }
+
+        try {
+            return lane.call("reload", this::reloadEngine);
+        } catch (Exception e) {
+            LOG.info(USER_ERROR, "Reloading '{}' failed: {}", file.getPath(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Reload this script on the current thread.
+     *
+     * @return True if script was reloaded
+     */
+    private boolean reloadEngine() {
         // Tell the current engine that its about to be obliterated.
-        callFunction("onPreRehash");
+        invokeFunction("onPreRehash");
 
         try {
             // Try making a new engine
             engine = createEngine();
+            actionFunctions = findActionFunctions(engine);
             // Tell it that it has been rehashed
-            callFunction("onRehashSucess");
+            invokeFunction("onRehashSucess");
         } catch (ScriptException e) {
             LOG.info(USER_ERROR, "Reloading '{}' failed: {}", file.getPath(), e.getMessage(), e);
             // Tell it that its rehash failed
-            callFunction("onRehashFailed", e);
+            invokeFunction("onRehashFailed", e);
             return false;
         }
 
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.scriptplugin;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.dmdirc.util.LogUtils.USER_ERROR;
+
+/**
+ * Runs all calls into a single script on one thread, with a bounded queue so that a slow script
+ * can't hold up the thread dispatching events.
+ */
+final class ScriptLane {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScriptLane.class);
+    /** Name of the script this lane runs, used in log messages. */
+    private final String name;
+    /** Executor that runs the script's calls. */
+    private final ThreadPoolExecutor executor;
+    /** Maximum number of queued calls before further calls are dropped. */
+    private final int queueSize;
+    /** Time, in nanoseconds, a single call may take before an overrun is logged. */
+    private final long budget;
+    /** Number of calls that took longer than the budget. */
+    private final AtomicLong overruns = new AtomicLong();
+    /** Number of calls dropped because the queue was full. */
+    private final AtomicLong dropped = new AtomicLong();
+    /** Thread the executor is currently running on. */
+    private volatile Thread thread;
+
+    /**
+     * Creates a new lane for a script.
+     *
+     * @param name         Name of the script
+     * @param queueSize    Maximum number of calls that may be waiting to run
+     * @param budgetMillis Time, in milliseconds, a single call should take at most
+     */
+    ScriptLane(final String name, final int queueSize, final long budgetMillis) {
+        this.name = name;
+        this.queueSize = Math.max(1, queueSize);
+        this.budget = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    thread = new Thread(runnable, "Script: " + name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Queues a call to be run on this lane. If the queue is full the call is dropped.
+     *
+     * @param description Description of the call, used in log messages
+     * @param task        The call to run
+     */
+    void execute(final String description, final Runnable task) {
+        if (getQueueSize() >= queueSize) {
+            if (dropped.getAndIncrement() == 0) {
+                LOG.warn(USER_ERROR, "Script '{}' is not keeping up, calls to it are being dropped",
+                        name);
+            }
+            return;
+        }
+        try {
+            executor.execute(() -> run(description, task));
+        } catch (RejectedExecutionException ex) {
+            // The lane has been shut down, so the script is no longer loaded.
+        }
+    }
+
+    /**
+     * Runs a call on this lane and waits for it to complete. Calls made from the lane itself are
+     * run immediately. These calls are never dropped, regardless of the queue size.
+     *
+     * @param description Description of the call, used in log messages
+     * @param task        The call to run
+     * @param <T>         The type of the call's result
+     *
+     * @return The result of the call
+     *
+     * @throws Exception If the call failed
+     */
+    <T> T call(final String description, final Callable<T> task) throws Exception {
+        if (Thread.currentThread() == thread) {
+            return task.call();
+        }
+        final Future<T> future = executor.submit(() -> {
+            final long start = System.nanoTime();
+            try {
+                return task.call();
+            } finally {
+                checkBudget(description, start);
+            }
+        });
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Exception) {
+                throw (Exception) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Gets the number of calls waiting to run on this lane.
+     *
+     * @return The current queue depth
+     */
+    int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Gets the number of calls that have taken longer than the time budget.
+     *
+     * @return The number of overruns
+     */
+    long getOverruns() {
+        return overruns.get();
+    }
+
+    /**
+     * Gets the number of calls that were dropped because the queue was full.
+     *
+     * @return The number of dropped calls
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Stops this lane once all queued calls have run.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    private void run(final String description, final Runnable task) {
+        final long start = System.nanoTime();
+        try {
+            task.run();
+        } finally {
+            checkBudget(description, start);
+        }
+    }
+
+    private void checkBudget(final String description, final long start) {
+        final long elapsed = System.nanoTime() - start;
+        if (elapsed > budget) {
+            overruns.incrementAndGet();
+            LOG.warn(USER_ERROR, "Calling '{}' in '{}' took {}ms, over the {}ms budget "
+                    + "({} calls waiting)", description, name,
+                    TimeUnit.NANOSECONDS.toMillis(elapsed), TimeUnit.NANOSECONDS.toMillis(budget),
+                    getQueueSize());
+        }
+    }
+
+}
@@ -18,13 +18,20 @@
 package com.dmdirc.addons.scriptplugin;
 
 import com.dmdirc.commandline.CommandLineOptionsModule.Directory;
+import com.dmdirc.config.GlobalConfig;
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.plugins.PluginDomain;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.script.ScriptEngineManager;
@@ -42,14 +49,24 @@ public class ScriptManager {
     private final ScriptEngineManager scriptEngineManager;
     /** Script directory. */
     private final String scriptDirectory;
+    /** Global config to read settings from. */
+    private final AggregateConfigProvider globalConfig;
+    /** Plugin settings domain. */
+    private final String domain;
     /** Store Script State Name,Engine */
-    private final Map<String, ScriptEngineWrapper> scripts = new HashMap<>();
+    private final Map<String, ScriptEngineWrapper> scripts = new ConcurrentHashMap<>();
+    /** Action functions defined by any loaded script, or null if they are unknown. */
+    private volatile Set<String> actionFunctions = Collections.emptySet();
 
     @Inject
     public ScriptManager(final ScriptEngineManager scriptEngineManager,
-            @Directory(ScriptModule.SCRIPTS) final String scriptDirectory) {
+            @Directory(ScriptModule.SCRIPTS) final String scriptDirectory,
+            @GlobalConfig final AggregateConfigProvider globalConfig,
+            @PluginDomain(ScriptPlugin.class) final String domain) {
         this.scriptEngineManager = scriptEngineManager;
         this.scriptDirectory = scriptDirectory;
+        this.globalConfig = globalConfig;
+        this.domain = domain;
     }
 
     /**
@@ -64,6 +81,7 @@ public class ScriptManager {
     /** Reload all scripts */
     public void rehash() {
         scripts.values().forEach(ScriptEngineWrapper::reload);
+        updateActionFunctions();
         // Advise the Garbage collector that now would be a good time to run
         System.gc();
     }
@@ -76,8 +94,37 @@ public class ScriptManager {
      */
     public void callFunctionAll(final String functionName, final Object... args) {
         for (final ScriptEngineWrapper engine : scripts.values()) {
-            engine.callFunction(functionName, args);
+            if (engine.hasFunction(functionName)) {
+                engine.callFunction(functionName, args);
+            }
+        }
+    }
+
+    /**
+     * Checks whether any loaded script may define the given function. Action functions are only
+     * looked for when scripts are loaded or rehashed.
+     *
+     * @param functionName Name of function
+     *
+     * @return False if no script defines the function, true otherwise
+     */
+    public boolean hasFunction(final String functionName) {
+        final Set<String> functions = actionFunctions;
+        return functions == null || functions.contains(functionName);
+    }
+
+    /** Rebuilds the set of action functions defined by the loaded scripts. */
+    private void updateActionFunctions() {
+        final Set<String> functions = new HashSet<>();
+        for (ScriptEngineWrapper engine : scripts.values()) {
+            final Set<String> engineFunctions = engine.getActionFunctions();
+            if (engineFunctions == null) {
+                actionFunctions = null;
+                return;
+            }
+            functions.addAll(engineFunctions);
         }
+        actionFunctions = Collections.unmodifiableSet(functions);
     }
 
     /**
@@ -90,11 +137,16 @@ public class ScriptManager {
      */
     public boolean loadScript(final String scriptFilename) {
         if (!scripts.containsKey(scriptFilename)) {
+            final ScriptLane lane = new ScriptLane(scriptFilename,
+                    globalConfig.getOptionInt(domain, "execution.queueSize"),
+                    globalConfig.getOptionInt(domain, "execution.timeBudget"));
             try {
                 final ScriptEngineWrapper wrapper = new ScriptEngineWrapper(scriptEngineManager,
-                        scriptFilename);
+                        scriptFilename, lane);
                 scripts.put(scriptFilename, wrapper);
+                updateActionFunctions();
             } catch (ScriptException e) {
+                lane.shutdown();
                 LOG.info(USER_ERROR, "Error loading '{}': {}", scriptFilename, e.getMessage(), e);
                 return false;
             }
@@ -109,15 +161,25 @@ public class ScriptManager {
      */
     public void unloadScript(final String scriptFilename) {
         if (scripts.containsKey(scriptFilename)) {
+            final ScriptEngineWrapper wrapper = scripts.get(scriptFilename);
             // Tell it that its about to be unloaded.
-            scripts.get(scriptFilename).callFunction("onUnload");
+            wrapper.callFunction("onUnload");
+            wrapper.shutdown();
             // Remove the script
             scripts.remove(scriptFilename);
+            updateActionFunctions();
             // Advise the Garbage collector that now would be a good time to run
             System.gc();
         }
     }
 
+    /**
+     * Unloads all loaded scripts.
+     */
+    public void unloadAllScripts() {
+        scripts.keySet().forEach(this::unloadScript);
+    }
+
     /**
      * Retrieves a list of all installed scripts. Any file under the main plugin directory
      * (~/.DMDirc/scripts or similar) that matches *.js is deemed to be a valid script.
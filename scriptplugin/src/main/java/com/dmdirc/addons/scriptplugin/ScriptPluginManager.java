@@ -27,9 +27,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
 
 import javax.inject.Inject;
 import javax.script.ScriptEngineManager;
@@ -48,6 +45,8 @@ public class ScriptPluginManager {
     private final String scriptDir;
     private final ScriptManager scriptManager;
     private final TypedProperties globalVariables;
+    /** Script functions and arguments for each event class. */
+    private final EventDispatchTable dispatchTable = new EventDispatchTable();
 
     @Inject
     public ScriptPluginManager(final EventBus eventBus,
@@ -84,6 +83,7 @@ public class ScriptPluginManager {
 
     public void onUnLoad() {
         eventBus.unsubscribe(this);
+        scriptManager.unloadAllScripts();
 
         final File savedVariables = new File(scriptDir + "storedVariables");
         try (FileOutputStream fos = new FileOutputStream(savedVariables)) {
@@ -99,17 +99,11 @@ public class ScriptPluginManager {
         if (event instanceof PluginLoadedEvent || event instanceof PluginUnloadedEvent) {
             return;
         }
-        final String name = event.getClass().getSimpleName()
-                .replaceAll("Event$", "")
-                .replaceAll("(.)([A-Z])", "$1_$2")
-                .toUpperCase();
-        final List<Object> arguments = new ArrayList<>();
-        for (Method method : event.getClass().getMethods()) {
-            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0 &&
-                    !"getDisplayFormat".equals(method.getName())) {
-                arguments.add(method.invoke(event));
-            }
+        final EventDispatchTable.Dispatch dispatch = dispatchTable.get(event.getClass());
+        // Don't bother building arguments for events that no script handles.
+        if (scriptManager.hasFunction(dispatch.getFunctionName())) {
+            scriptManager.callFunctionAll(dispatch.getFunctionName(),
+                    dispatch.getArguments(event));
         }
-        scriptManager.callFunctionAll("action_" + name, arguments.toArray());
     }
 }
@@ -18,10 +18,22 @@
 package com.dmdirc.addons.time;
 
 import com.dmdirc.ClientModule;
+import com.dmdirc.util.LoggingScheduledExecutorService;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.inject.Named;
 
 import dagger.Module;
+import dagger.Provides;
 
 @Module(injects = {TimerCommand.class, TimerManager.class}, addsTo = ClientModule.class)
 public class TimeModule {
 
+    @Provides
+    @Named("timer")
+    public ScheduledExecutorService getExecutorService() {
+        return new LoggingScheduledExecutorService(1, "Timed Commands");
+    }
+
 }
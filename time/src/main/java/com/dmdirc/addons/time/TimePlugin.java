@@ -41,6 +41,7 @@ public class TimePlugin extends BaseCommandPlugin {
     @Override
     public void onUnload() {
         super.onUnload();
+        manager.shutdown();
         manager = null;
     }
 
@@ -19,13 +19,15 @@ package com.dmdirc.addons.time;
 
 import com.dmdirc.interfaces.WindowModel;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Timed command represents a command that has been scheduled by the user.
  */
-public class TimedCommand extends TimerTask {
+public class TimedCommand implements Runnable {
 
     /** The number of repetitions remaining. */
     private int repetitions;
@@ -33,14 +35,22 @@ public class TimedCommand extends TimerTask {
     private final String command;
     /** The container to use for executing commands. */
     private final WindowModel origin;
-    /** The number of seconds between each execution. */
-    private final int delay;
+    /** The interval between each execution. */
+    private final Duration delay;
     /** The key for this timer in the Timer Manager. */
     private final int timerKey;
     /** The manager for this timer. */
     private final TimerManager manager;
-    /** The timer we're using for scheduling this command. */
-    private Timer timer;
+    /** The scheduled execution of this command. */
+    private ScheduledFuture<?> future;
+    /** The time, in nanoseconds, that the first execution was due. */
+    private long firstRun;
+    /** The number of times this command has been executed. */
+    private long runs;
+    /** The total time, in nanoseconds, that executions have started late by. */
+    private long totalLateness;
+    /** The longest time, in nanoseconds, that an execution has started late by. */
+    private long maxLateness;
 
     /**
      * Creates a new instance of TimedCommand.
@@ -48,7 +58,7 @@ public class TimedCommand extends TimerTask {
      * @param manager           The manager that is controlling this command.
      * @param timerKey          The key for this timer in the Timer Manager.
      * @param repetitions       The number of times this command will be executed
-     * @param delay             The number of seconds between each execution
+     * @param delay             The interval between each execution
      * @param command           The command to be executed
      * @param origin            The frame container to use for the execution
      */
@@ -56,7 +66,7 @@ public class TimedCommand extends TimerTask {
             final TimerManager manager,
             final int timerKey,
             final int repetitions,
-            final int delay,
+            final Duration delay,
             final String command,
             final WindowModel origin) {
         this.timerKey = timerKey;
@@ -67,9 +77,16 @@ public class TimedCommand extends TimerTask {
         this.delay = delay;
     }
 
-    public void schedule(final TimerFactory timerFactory) {
-        timer = timerFactory.getTimer("Timed Command Timer");
-        timer.schedule(this, delay * 1000L, delay * 1000L);
+    /**
+     * Schedules this command to be executed at a fixed rate, so that slow executions don't cause
+     * later ones to drift.
+     *
+     * @param executor The executor to schedule this command on
+     */
+    public synchronized void schedule(final ScheduledExecutorService executor) {
+        final long interval = delay.toNanos();
+        firstRun = System.nanoTime() + interval;
+        future = executor.scheduleAtFixedRate(this, interval, interval, TimeUnit.NANOSECONDS);
     }
 
     /**
@@ -81,26 +98,79 @@ public class TimedCommand extends TimerTask {
         return command;
     }
 
+    /**
+     * Returns the interval between each execution of this timer.
+     *
+     * @return The interval of this timer
+     */
+    public Duration getInterval() {
+        return delay;
+    }
+
+    /**
+     * Returns the number of times this timer is still due to execute.
+     *
+     * @return The number of remaining repetitions
+     */
+    public synchronized int getRepetitions() {
+        return repetitions;
+    }
+
+    /**
+     * Returns the number of times this timer has executed.
+     *
+     * @return The number of executions
+     */
+    public synchronized long getRuns() {
+        return runs;
+    }
+
+    /**
+     * Returns the average time executions of this timer have started after they were due.
+     *
+     * @return The mean lateness of executions
+     */
+    public synchronized Duration getMeanLateness() {
+        return Duration.ofNanos(runs == 0 ? 0 : totalLateness / runs);
+    }
+
+    /**
+     * Returns the longest time an execution of this timer has started after it was due.
+     *
+     * @return The maximum lateness of executions
+     */
+    public synchronized Duration getMaxLateness() {
+        return Duration.ofNanos(maxLateness);
+    }
+
     /**
      * Cancels this timer and removes it from the Timer Manager
      */
-    public void cancelTimer() {
+    public synchronized void cancelTimer() {
         manager.removeTimer(timerKey);
-        if (timer != null) {
-            timer.cancel();
+        if (future != null) {
+            future.cancel(false);
         }
     }
 
     @Override
-    public void run() {
-        if (timer == null) {
+    public synchronized void run() {
+        if (future == null) {
             return;
         }
+        // Executions are due at fixed multiples of the interval from the first, so any lateness
+        // measured here is scheduling delay rather than accumulated drift.
+        final long lateness = Math.max(0,
+                System.nanoTime() - firstRun - runs * delay.toNanos());
+        totalLateness += lateness;
+        maxLateness = Math.max(maxLateness, lateness);
+        runs++;
+
         origin.getInputModel().get().getCommandParser().parseCommand(origin, command);
 
         if (--repetitions <= 0) {
             manager.removeTimer(timerKey);
-            timer.cancel();
+            future.cancel(false);
         }
     }
 
@@ -30,6 +30,9 @@ import com.dmdirc.ui.input.AdditionalTabTargets;
 
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -42,11 +45,15 @@ public class TimerCommand extends BaseCommand implements IntelligentCommand {
 
     /** A command info object for this command. */
     public static final CommandInfo INFO = new BaseCommandInfo("timer",
-            "timer [--list|--cancel <timer id> | <repetitions> <interval> "
-            + "<command>] - lists all active timers / cancels an active timer "
-            + "of given ID / schedules a command to be executed after a certain "
-            + "time",
+            "timer [--list|--stats|--cancel <timer id> | <repetitions> <interval> "
+            + "<command>] - lists all active timers / shows timing statistics for "
+            + "active timers / cancels an active timer of given ID / schedules a "
+            + "command to be executed after a certain number of seconds",
             CommandType.TYPE_GLOBAL);
+    /** The shortest interval a timer may use. */
+    private static final Duration MINIMUM_INTERVAL = Duration.ofMillis(100);
+    /** The longest interval a timer may use, well within the range of a long of nanoseconds. */
+    private static final Duration MAXIMUM_INTERVAL = Duration.ofDays(365);
     /** The TimerManager for this TimerCommand. */
     private final TimerManager manager;
 
@@ -75,6 +82,9 @@ public class TimerCommand extends BaseCommand implements IntelligentCommand {
                 case "--list":
                     doList(origin, args.isSilent());
                     break;
+                case "--stats":
+                    doStats(origin, args.isSilent());
+                    break;
                 default:
                     if (args.getArguments().length < 3) {
                         doUsage(origin, args.isSilent());
@@ -90,20 +100,27 @@ public class TimerCommand extends BaseCommand implements IntelligentCommand {
 
     private void doCommand(final WindowModel origin, final CommandArguments args) {
         final int repetitions;
-        final int interval;
+        final Duration interval;
 
         final String command = args.getArgumentsAsString(2);
 
         try {
             repetitions = Integer.parseInt(args.getArguments()[0]);
-            interval = Integer.parseInt(args.getArguments()[1]);
-        } catch (NumberFormatException ex) {
+            interval = Duration.ofMillis(new BigDecimal(args.getArguments()[1])
+                    .movePointRight(3).setScale(0, RoundingMode.HALF_UP).longValueExact());
+        } catch (NumberFormatException | ArithmeticException ex) {
             doUsage(origin, args.isSilent());
             return;
         }
 
-        if (interval < 1) {
-            showError(origin, args.isSilent(), "Cannot use intervals below 1");
+        if (interval.compareTo(MINIMUM_INTERVAL) < 0) {
+            showError(origin, args.isSilent(), "Cannot use intervals below 0.1");
+            return;
+        }
+
+        if (interval.compareTo(MAXIMUM_INTERVAL) > 0) {
+            showError(origin, args.isSilent(), "Cannot use intervals above "
+                    + MAXIMUM_INTERVAL.getSeconds());
             return;
         }
 
@@ -139,6 +156,22 @@ public class TimerCommand extends BaseCommand implements IntelligentCommand {
         }
     }
 
+    private void doStats(final WindowModel origin, final boolean isSilent) {
+        final Set<Entry<Integer, TimedCommand>> timerList = manager.listTimers();
+        if (timerList.isEmpty()) {
+            showError(origin, isSilent, "There are currently no active timers");
+        } else {
+            for (Entry<Integer, TimedCommand> entry : timerList) {
+                final TimedCommand timer = entry.getValue();
+                showOutput(origin, isSilent, "Timer ID: " + entry.getKey()
+                        + " - every " + timer.getInterval().toMillis() + "ms, "
+                        + timer.getRuns() + " runs, " + timer.getRepetitions() + " remaining, "
+                        + "mean lateness " + timer.getMeanLateness().toMillis() + "ms, "
+                        + "max lateness " + timer.getMaxLateness().toMillis() + "ms");
+            }
+        }
+    }
+
     /**
      * Displays usage information for this command.
      *
@@ -157,6 +190,7 @@ public class TimerCommand extends BaseCommand implements IntelligentCommand {
         targets.excludeAll();
         if (arg == 0) {
             targets.add("--list");
+            targets.add("--stats");
             targets.add("--cancel");
         } else if (arg == 1 && "--cancel".equals(context.getPreviousArgs().get(0))) {
             targets.addAll(manager.getTimerIDs().stream()
@@ -19,26 +19,38 @@ package com.dmdirc.addons.time;
 
 import com.dmdirc.interfaces.WindowModel;
 
-import java.util.HashMap;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
 
 /**
  * Class to manage Timers.
  */
+@Singleton
 public class TimerManager {
 
     /** Map of all the timers that are running. */
-    private final Map<Integer, TimedCommand> timerList = new HashMap<>();
-    /** The timer factory to create timers with. */
-    private final TimerFactory timerFactory;
+    private final Map<Integer, TimedCommand> timerList = new ConcurrentHashMap<>();
+    /** Keys released by timers that have finished, to be reused by new timers. */
+    private final Queue<Integer> freeKeys = new ConcurrentLinkedQueue<>();
+    /** The next key to use when there are no released keys. */
+    private final AtomicInteger nextKey = new AtomicInteger();
+    /** The executor all timers are scheduled on. */
+    private final ScheduledExecutorService executor;
 
     @Inject
-    public TimerManager(final TimerFactory timerFactory) {
-        this.timerFactory = timerFactory;
+    public TimerManager(@Named("timer") final ScheduledExecutorService executor) {
+        this.executor = executor;
     }
 
     /**
@@ -49,16 +61,13 @@ public class TimerManager {
      * @param command     Command to be run when the timer fires
      * @param origin      The frame container to use for the execution
      */
-    public void addTimer(final int repetitions, final int interval,
+    public void addTimer(final int repetitions, final Duration interval,
             final String command, final WindowModel origin) {
-
-        synchronized (this) {
-            final int timerKey = findFreeKey();
-            final TimedCommand timedCommand = new TimedCommand(this, timerKey,
-                    repetitions, interval, command, origin);
-            timerList.put(timerKey, timedCommand);
-            timedCommand.schedule(timerFactory);
-        }
+        final int timerKey = findFreeKey();
+        final TimedCommand timedCommand = new TimedCommand(this, timerKey,
+                repetitions, interval, command, origin);
+        timerList.put(timerKey, timedCommand);
+        timedCommand.schedule(executor);
     }
 
     /**
@@ -68,7 +77,9 @@ public class TimerManager {
      * @param timerKey Key of the timer to remove
      */
     public void removeTimer(final int timerKey) {
-        timerList.remove(timerKey);
+        if (timerList.remove(timerKey) != null) {
+            freeKeys.offer(timerKey);
+        }
     }
 
     /**
@@ -90,16 +101,22 @@ public class TimerManager {
     }
 
     /**
-     * Locates a key in our list that is currently not being used by a timer.
+     * Cancels all active timers and stops the executor they run on.
+     */
+    public void shutdown() {
+        timerList.values().forEach(TimedCommand::cancelTimer);
+        executor.shutdown();
+    }
+
+    /**
+     * Locates a key in our list that is currently not being used by a timer. Keys released by
+     * finished timers are reused before new ones are allocated.
      *
      * @return Returns a key that can be used for creating a new timer
      */
     private int findFreeKey() {
-        int i = 0;
-        while (timerList.containsKey(i)) {
-            i++;
-        }
-        return i;
+        final Integer key = freeKeys.poll();
+        return key == null ? nextKey.getAndIncrement() : key;
     }
 
     /**
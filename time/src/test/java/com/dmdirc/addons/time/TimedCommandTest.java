@@ -21,8 +21,11 @@ import com.dmdirc.commandparser.parsers.CommandParser;
 import com.dmdirc.interfaces.InputModel;
 import com.dmdirc.interfaces.WindowModel;
 
+import java.time.Duration;
 import java.util.Optional;
-import java.util.Timer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -31,7 +34,8 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import static junit.framework.TestCase.assertEquals;
-import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -44,23 +48,26 @@ public class TimedCommandTest {
     @Mock private WindowModel origin;
     @Mock private InputModel inputModel;
     @Mock private CommandParser commandParser;
-    @Mock private TimerFactory timerFactory;
-    @Mock private Timer timer;
+    @Mock private ScheduledExecutorService executor;
+    @Mock private ScheduledFuture<?> future;
 
     private TimedCommand instance;
 
     @Before
     public void setUp() throws Exception {
-        when(timerFactory.getTimer(anyString())).thenReturn(timer);
+        when(executor.scheduleAtFixedRate(any(Runnable.class), anyLong(), anyLong(),
+                any(TimeUnit.class))).thenAnswer(invocation -> future);
         when(origin.getInputModel()).thenReturn(Optional.of(inputModel));
         when(inputModel.getCommandParser()).thenReturn(commandParser);
-        instance = new TimedCommand(timerManager, 1, 2, 3, "command", origin);
+        instance = new TimedCommand(timerManager, 1, 2, Duration.ofSeconds(3), "command",
+                origin);
     }
 
     @Test
     public void testSchedule() throws Exception {
-        instance.schedule(timerFactory);
-        verify(timer).schedule(instance, 3000, 3000);
+        instance.schedule(executor);
+        verify(executor).scheduleAtFixedRate(instance, 3000000000L, 3000000000L,
+                TimeUnit.NANOSECONDS);
     }
 
     @Test
@@ -76,10 +83,10 @@ public class TimedCommandTest {
 
     @Test
     public void testCancelTimer() throws Exception {
-        instance.schedule(timerFactory);
+        instance.schedule(executor);
         instance.cancelTimer();
         verify(timerManager).removeTimer(1);
-        verify(timer).cancel();
+        verify(future).cancel(false);
     }
 
     @Test
@@ -87,25 +94,27 @@ public class TimedCommandTest {
         instance.run();
         verify(commandParser, never()).parseCommand(origin, "command");
         verify(timerManager, never()).removeTimer(1);
-        verify(timer, never()).cancel();
+        verify(future, never()).cancel(false);
     }
 
     @Test
     public void testRun_LessThanRepetitions() throws Exception {
-        instance.schedule(timerFactory);
+        instance.schedule(executor);
         instance.run();
         verify(commandParser, times(1)).parseCommand(origin, "command");
         verify(timerManager, never()).removeTimer(1);
-        verify(timer, never()).cancel();
+        verify(future, never()).cancel(false);
     }
 
     @Test
     public void testRun_AllRepetitions() throws Exception {
-        instance.schedule(timerFactory);
+        instance.schedule(executor);
         instance.run();
         instance.run();
         verify(commandParser, times(2)).parseCommand(origin, "command");
         verify(timerManager, times(1)).removeTimer(1);
-        verify(timer, times(1)).cancel();
+        verify(future, times(1)).cancel(false);
+        assertEquals(2, instance.getRuns());
+        assertEquals(0, instance.getRepetitions());
     }
 }
\ No newline at end of file
@@ -31,6 +31,8 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
+import java.time.Duration;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -40,7 +42,9 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import static junit.framework.TestCase.assertEquals;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -186,22 +190,40 @@ public class TimerCommandTest {
         mockCommandArguments("1", "0", "woop");
         instance.execute(frameContainer, commandArguments, commandContext);
         verify(eventbus).publishAsync(errorEventCaptor.capture());
-        assertEquals("Cannot use intervals below 1", errorEventCaptor.getValue().getMessage());
+        assertEquals("Cannot use intervals below 0.1", errorEventCaptor.getValue().getMessage());
+    }
+
+    @Test
+    public void testExecute_interval_too_long() throws Exception {
+        mockCommandArguments("1", "10000000000", "woop");
+        instance.execute(frameContainer, commandArguments, commandContext);
+        verify(eventbus).publishAsync(errorEventCaptor.capture());
+        assertEquals("Cannot use intervals above 31536000",
+                errorEventCaptor.getValue().getMessage());
+        verify(timerManager, never()).addTimer(anyInt(), any(Duration.class), anyString(),
+                any(WindowModel.class));
     }
 
     @Test
     public void testExecute_add() throws Exception {
         mockCommandArguments("1", "1", "woop");
         instance.execute(frameContainer, commandArguments, commandContext);
-        verify(timerManager).addTimer(1, 1, "woop", frameContainer);
+        verify(timerManager).addTimer(1, Duration.ofSeconds(1), "woop", frameContainer);
         verify(eventbus).publishAsync(outputEventCaptor.capture());
         assertEquals("Command scheduled.", outputEventCaptor.getValue().getMessage());
     }
 
+    @Test
+    public void testExecute_add_subsecond() throws Exception {
+        mockCommandArguments("1", "0.25", "woop");
+        instance.execute(frameContainer, commandArguments, commandContext);
+        verify(timerManager).addTimer(1, Duration.ofMillis(250), "woop", frameContainer);
+    }
+
     @Test
     public void testGetSuggestions_first() throws Exception {
         final AdditionalTabTargets targets = instance.getSuggestions(0, intelligentCommandContext);
-        assertEquals(Lists.newArrayList("--list", "--cancel"), targets);
+        assertEquals(Lists.newArrayList("--list", "--stats", "--cancel"), targets);
     }
 
     @Test
@@ -260,6 +260,7 @@ public class MainFrame extends JFrame implements WindowListener, ConfigChangeLis
         frameManagerPanel.removeAll();
         if (mainFrameManager != null) {
             swingEventBus.unsubscribe(mainFrameManager);
+            mainFrameManager.dispose();
         }
         mainFrameManager = frameManagerProvider.get();
         mainFrameManager.setParent(frameManagerPanel);
@@ -540,6 +541,9 @@ public class MainFrame extends JFrame implements WindowListener, ConfigChangeLis
         }
 
         globalConfig.removeListener(this);
+        if (mainFrameManager != null) {
+            mainFrameManager.dispose();
+        }
         super.dispose();
     }
 
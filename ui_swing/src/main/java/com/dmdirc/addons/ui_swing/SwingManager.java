@@ -17,6 +17,7 @@
 
 package com.dmdirc.addons.ui_swing;
 
+import com.dmdirc.addons.ui_swing.components.IconManager;
 import com.dmdirc.addons.ui_swing.components.menubar.MenuBar;
 import com.dmdirc.addons.ui_swing.components.statusbar.FeedbackNag;
 import com.dmdirc.addons.ui_swing.components.statusbar.SwingStatusBar;
@@ -83,6 +84,8 @@ public class SwingManager {
     private MainFrame mainFrame;
     /** Swing UI initialiser. */
     private final SwingUIInitialiser uiInitialiser;
+    /** Icon manager to stop when unloading. */
+    private final IconManager iconManager;
     private final PluginInfo pluginInfo;
     private final String domain;
 
@@ -104,6 +107,7 @@ public class SwingManager {
      * @param treeProvider            Provider to use for tree-based frame managers.
      * @param swingWindowManager      Swing window manager
      * @param uiInitialiser           Initialiser to set system/swing settings.
+     * @param iconManager             Icon manager to stop when unloading.
      */
     @Inject
     public SwingManager(
@@ -122,6 +126,7 @@ public class SwingManager {
             final TreeFrameManagerProvider treeProvider,
             final Provider<SwingWindowManager> swingWindowManager,
             final SwingUIInitialiser uiInitialiser,
+            final IconManager iconManager,
             @PluginDomain(SwingController.class) final PluginInfo pluginInfo,
             @PluginDomain(SwingController.class) final String domain) {
         this.windowFactory = windowFactory;
@@ -139,6 +144,7 @@ public class SwingManager {
         this.treeProvider = treeProvider;
         this.swingWindowManager = swingWindowManager;
         this.uiInitialiser = uiInitialiser;
+        this.iconManager = iconManager;
         this.pluginInfo = pluginInfo;
         this.domain = domain;
     }
@@ -183,6 +189,7 @@ public class SwingManager {
             eventBus.unsubscribe(mainFrame);
             eventBus.unsubscribe(linkHandler);
             uiInitialiser.unload();
+            iconManager.unload();
         });
     }
 
@@ -17,35 +17,67 @@
 
 package com.dmdirc.addons.ui_swing.components;
 
+import com.dmdirc.addons.ui_swing.UIUtilities;
 import com.dmdirc.config.GlobalConfig;
 import com.dmdirc.config.provider.AggregateConfigProvider;
 import com.dmdirc.config.provider.ConfigChangeListener;
 import com.dmdirc.util.URLBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.RenderingHints;
 import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import javax.imageio.ImageIO;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import javax.swing.CellRendererPane;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * The icon manager provides a standard way to access icons for use in DMDirc. It allows the user to
  * override the default actions using config settings under the icons domain.
+ *
+ * <p>Images are decoded and scaled in the background. Until that completes, icons are blank
+ * placeholders of the requested size which repaint any component they were painted on once they
+ * are loaded.
  */
 @Singleton
 public class IconManager implements ConfigChangeListener {
 
+    private static final Logger LOG = LoggerFactory.getLogger(IconManager.class);
+    /** Number of threads to load icons on. */
+    private static final int LOADER_THREADS = 2;
     /** A map of existing icons. */
-    private final Map<String, Icon> icons;
-    /** A map of existing images. */
-    private final Map<String, Image> images;
+    private final ConcurrentMap<IconKey, LoadingIcon> icons = new ConcurrentHashMap<>();
+    /** A map of existing images, loaded or loading. */
+    private final ConcurrentMap<IconKey, CompletableFuture<BufferedImage>> images =
+            new ConcurrentHashMap<>();
+    /** Executor to load and scale images on. */
+    private final ExecutorService executor = Executors.newFixedThreadPool(LOADER_THREADS,
+            new ThreadFactoryBuilder().setNameFormat("Icon Loader %d").setDaemon(true).build());
     /** Config manager to retrieve settings from. */
     private final AggregateConfigProvider configManager;
     /** URL builder to use for icons. */
@@ -64,12 +96,18 @@ public class IconManager implements ConfigChangeListener {
         this.configManager = configManager;
         this.urlBuilder = urlBuilder;
 
-        icons = new HashMap<>();
-        images = new HashMap<>();
-
         configManager.addChangeListener("icon", this);
     }
 
+    /**
+     * Stops listening for config changes and stops loading icons. Icons that haven't finished
+     * loading are left blank.
+     */
+    public void unload() {
+        configManager.removeListener(this);
+        executor.shutdownNow();
+    }
+
     /**
      * Retrieves the icon with the specified type. Returns null if the icon wasn't found.
      *
@@ -78,16 +116,7 @@ public class IconManager implements ConfigChangeListener {
      * @return The icon that should be used for the specified type
      */
     public Icon getIcon(final String type) {
-        if (icons.containsKey(type)) {
-            return icons.get(type);
-        }
-        if (!icons.containsKey(type)) {
-            final URL iconURL = getIconURL(type);
-            final Image iconImage = Toolkit.getDefaultToolkit().getImage(iconURL);
-            final Image scaledIconImage = getScaledImage(iconImage, 16, 16);
-            icons.put(type, new ImageIcon(scaledIconImage));
-        }
-        return icons.get(type);
+        return getScaledIcon(type, 16, 16);
     }
 
     /**
@@ -102,8 +131,20 @@ public class IconManager implements ConfigChangeListener {
      * @since 0.6.3m1
      */
     public Icon getScaledIcon(final String type, final int width, final int height) {
-        return new ImageIcon(getScaledImage(new ImageIcon(getIconURL(type)).
-                getImage(), width, height));
+        final IconKey key = getKey(type, width, height);
+        return icons.computeIfAbsent(key, k -> {
+            final LoadingIcon icon = new LoadingIcon(width, height);
+            loadImage(getKey(type, 0, 0))
+                    .thenApplyAsync(image -> scaleImage(image, width, height), executor)
+                    .thenAccept(image -> UIUtilities.invokeLater(() -> icon.setLoadedImage(image)))
+                    .exceptionally(ex -> {
+                        if (!executor.isShutdown()) {
+                            LOG.warn("Unable to load icon '{}': {}", k.type, ex.getMessage(), ex);
+                        }
+                        return null;
+                    });
+            return icon;
+        });
     }
 
     /**
@@ -114,14 +155,88 @@ public class IconManager implements ConfigChangeListener {
      * @return The image that should be used for the specified type
      */
     public Image getImage(final String type) {
-        if (!images.containsKey(type)) {
-            images.put(type, Toolkit.getDefaultToolkit().createImage(getIconURL(type)));
+        final IconKey key = getKey(type, 0, 0);
+        final BufferedImage image = loadImage(key).getNow(null);
+        if (image == null) {
+            // Not loaded yet, let the toolkit load it lazily rather than waiting.
+            return Toolkit.getDefaultToolkit().createImage(getIconURL(key));
         }
-        return images.get(type);
+        return image;
+    }
+
+    /**
+     * Gets the key for the specified icon type, as currently configured.
+     *
+     * @param type   The name of the icon type
+     * @param width  Width of the icon, or 0 for the full size image
+     * @param height Height of the icon, or 0 for the full size image
+     *
+     * @return A key for the icon
+     */
+    private IconKey getKey(final String type, final int width, final int height) {
+        final String iconType = getSpecialIcons(type);
+        final String path = configManager.hasOptionString("icon", iconType)
+                ? configManager.getOption("icon", iconType)
+                : "dmdirc://com/dmdirc/res/" + iconType + ".png";
+        return new IconKey(iconType, path, width, height);
     }
 
     /**
-     * Returns a scaled image.
+     * Gets the full size image for the specified key, loading it in the background if needed.
+     *
+     * @param key Key of the image to get
+     *
+     * @return A future for the loaded image
+     */
+    private CompletableFuture<BufferedImage> loadImage(final IconKey key) {
+        return images.computeIfAbsent(key, k -> {
+            try {
+                return CompletableFuture.supplyAsync(() -> readImage(k), executor);
+            } catch (RejectedExecutionException ex) {
+                // We've been unloaded, leave the icon blank.
+                final CompletableFuture<BufferedImage> future = new CompletableFuture<>();
+                future.completeExceptionally(ex);
+                return future;
+            }
+        });
+    }
+
+    /**
+     * Reads the image for the specified key, falling back to the default icon if it can't be
+     * read.
+     *
+     * @param key Key of the image to read
+     *
+     * @return The decoded image
+     */
+    private BufferedImage readImage(final IconKey key) {
+        try {
+            final BufferedImage image = ImageIO.read(getIconURL(key));
+            if (image != null) {
+                return image;
+            }
+        } catch (IOException ex) {
+            LOG.debug("Unable to read icon '{}': {}", key.type, ex.getMessage());
+        }
+
+        final URL defaultURL = getClassLoader().getResource("com/dmdirc/res/icon.png");
+        try {
+            if (defaultURL != null) {
+                final BufferedImage image = ImageIO.read(defaultURL);
+                if (image != null) {
+                    return image;
+                }
+            }
+        } catch (IOException ex) {
+            LOG.debug("Unable to read default icon: {}", ex.getMessage());
+        }
+        throw new IllegalArgumentException("Unable to load icon type '"
+                + key.type + "', and unable to load default");
+    }
+
+    /**
+     * Returns a scaled image. Large reductions are done in several steps to keep the quality
+     * close to {@link Image#SCALE_SMOOTH}.
      *
      * @param image  Image to scale
      * @param width  Width of resulting image
@@ -129,56 +244,63 @@ public class IconManager implements ConfigChangeListener {
      *
      * @return Scaled Image
      */
-    private Image getScaledImage(final Image image,
+    private static BufferedImage scaleImage(final BufferedImage image,
             final int width, final int height) {
-        return image.getScaledInstance(width, height, Image.SCALE_SMOOTH);
+        BufferedImage result = image;
+        while (result.getWidth() != width || result.getHeight() != height) {
+            final int stepWidth = Math.max(width, result.getWidth() / 2);
+            final int stepHeight = Math.max(height, result.getHeight() / 2);
+            final BufferedImage step = new BufferedImage(stepWidth, stepHeight,
+                    BufferedImage.TYPE_INT_ARGB);
+            final Graphics2D g = step.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING,
+                        RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(result, 0, 0, stepWidth, stepHeight, null);
+            } finally {
+                g.dispose();
+            }
+            result = step;
+        }
+        return result;
     }
 
     /**
-     * Retrieves the URL of a specified icon type.
+     * Retrieves the URL of a specified icon.
      *
-     * @param type The name of the icon type to retrieve
+     * @param key The key of the icon to retrieve
      *
      * @return The URL that should be used to retrieve the specified icon
      */
-    private URL getIconURL(final String type) {
-        final String iconType = getSpecialIcons(type);
-        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
-        final ClassLoader classLoader = contextClassLoader == null
-                ? getClass().getClassLoader() : contextClassLoader;
-        final URL defaultURL = classLoader.getResource("com/dmdirc/res/" + iconType + ".png");
-
-        //Get the path for the url
-        final String path = configManager.hasOptionString("icon", iconType)
-                ? configManager.getOption("icon", iconType)
-                : "dmdirc://com/dmdirc/res/" + iconType + ".png";
+    private URL getIconURL(final IconKey key) {
+        final ClassLoader classLoader = getClassLoader();
 
         //Get the url for the specified path
-        URL imageURL = urlBuilder.getUrl(path);
-
-        if (imageURL == null && defaultURL != null) {
-            imageURL = defaultURL;
-        }
+        URL imageURL = urlBuilder.getUrl(key.path);
 
         if (imageURL == null) {
-            imageURL = classLoader.getResource("com/dmdirc/res/icon.png");
+            imageURL = classLoader.getResource("com/dmdirc/res/" + key.type + ".png");
         }
 
-        //Check URL points to a valid location
-        try {
-            imageURL.openConnection().connect();
-        } catch (IOException ex) {
+        if (imageURL == null) {
             imageURL = classLoader.getResource("com/dmdirc/res/icon.png");
         }
 
         if (imageURL == null) {
             throw new IllegalArgumentException("Unable to load icon type '"
-                    + iconType + "', and unable to load default");
+                    + key.type + "', and unable to load default");
         }
 
         return imageURL;
     }
 
+    private ClassLoader getClassLoader() {
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        return contextClassLoader == null ? getClass().getClassLoader() : contextClassLoader;
+    }
+
     private String getSpecialIcons(final String type) {
         final Calendar cal = new GregorianCalendar();
         cal.setTime(new Date());
@@ -194,13 +316,102 @@ public class IconManager implements ConfigChangeListener {
     @Override
     public void configChanged(final String domain, final String key) {
         if ("icon".equals(domain)) {
-            if (images.containsKey(key)) {
-                images.remove(key);
+            images.keySet().removeIf(k -> k.type.equals(key));
+            icons.keySet().removeIf(k -> k.type.equals(key));
+        }
+    }
+
+    /**
+     * Identifies an icon by its type, configured path and size.
+     */
+    private static class IconKey {
+
+        private final String type;
+        private final String path;
+        private final int width;
+        private final int height;
+
+        IconKey(final String type, final String path, final int width, final int height) {
+            this.type = type;
+            this.path = path;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof IconKey)) {
+                return false;
             }
-            if (icons.containsKey(key)) {
-                icons.remove(key);
+            final IconKey other = (IconKey) obj;
+            return type.equals(other.type) && path.equals(other.path)
+                    && width == other.width && height == other.height;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, path, width, height);
+        }
+
+    }
+
+    /**
+     * An icon that is blank until its image has been loaded.
+     */
+    private static class LoadingIcon extends ImageIcon {
+
+        /** A version number for this class. */
+        private static final long serialVersionUID = 1L;
+        /** Components this icon was painted on before it was loaded. Only used on the EDT. */
+        private final transient Set<Component> components =
+                Collections.newSetFromMap(new WeakHashMap<>());
+        /** Whether the image has been loaded. */
+        private boolean loaded;
+
+        LoadingIcon(final int width, final int height) {
+            super(new BufferedImage(Math.max(1, width), Math.max(1, height),
+                    BufferedImage.TYPE_INT_ARGB));
+        }
+
+        @Override
+        public synchronized void paintIcon(final Component c, final Graphics g, final int x,
+                final int y) {
+            if (!loaded && c != null) {
+                components.add(getRepaintTarget(c));
+            }
+            super.paintIcon(c, g, x, y);
+        }
+
+        /**
+         * Gets the component to repaint once the image is loaded. Cell renderers are painted
+         * through a {@link CellRendererPane}, which ignores repaints, so the tree, list or table
+         * that owns the pane is repainted instead.
+         *
+         * @param component The component the icon was painted on
+         *
+         * @return The component to repaint
+         */
+        private static Component getRepaintTarget(final Component component) {
+            final Container pane = SwingUtilities.getAncestorOfClass(CellRendererPane.class,
+                    component);
+            if (pane == null || pane.getParent() == null) {
+                return component;
             }
+            return pane.getParent();
         }
+
+        /**
+         * Sets the loaded image, and repaints any components this icon has been painted on.
+         *
+         * @param image The loaded image
+         */
+        void setLoadedImage(final Image image) {
+            setImage(image);
+            loaded = true;
+            components.forEach(Component::repaint);
+            components.clear();
+        }
+
     }
 
 }
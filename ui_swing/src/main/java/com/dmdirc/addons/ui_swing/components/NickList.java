@@ -40,7 +40,11 @@ import java.awt.Font;
 import java.awt.Point;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.JList;
 import javax.swing.JScrollPane;
@@ -63,6 +67,14 @@ public class NickList extends JScrollPane implements MouseListener {
     private final ColourManager colourManager;
     /** Nick list model. */
     private final NicklistListModel nicklistModel;
+    /** Lock guarding the pending changes. */
+    private final Object pendingLock = new Object();
+    /** Clients changed since the last flush, mapped to whether they should be present. */
+    private final Map<GroupChatUser, Boolean> pendingChanges = new LinkedHashMap<>();
+    /** Replacement client list received since the last flush, if any. */
+    private Collection<GroupChatUser> pendingReplacement;
+    /** Whether a flush of the pending changes has been scheduled on the EDT. */
+    private boolean flushScheduled;
 
     /**
      * Creates a nicklist.
@@ -217,10 +229,14 @@ public class NickList extends JScrollPane implements MouseListener {
         nickList.repaint();
     }
 
-    @Handler(invocation = EdtHandlerInvocation.class)
+    @Handler
     public void handleClientsChanged(final NickListClientsChangedEvent event) {
         if (event.getChannel().getWindowModel().equals(frame.getContainer())) {
-            nicklistModel.replace(event.getUsers());
+            synchronized (pendingLock) {
+                pendingChanges.clear();
+                pendingReplacement = new ArrayList<>(event.getUsers());
+                scheduleFlush();
+            }
         }
     }
 
@@ -232,18 +248,56 @@ public class NickList extends JScrollPane implements MouseListener {
         }
     }
 
-    @Handler(invocation = EdtHandlerInvocation.class)
+    @Handler
     public void handleClientAdded(final NickListClientAddedEvent event) {
         if (event.getChannel().getWindowModel().equals(frame.getContainer())) {
-            nicklistModel.add(event.getUser());
+            synchronized (pendingLock) {
+                pendingChanges.put(event.getUser(), true);
+                scheduleFlush();
+            }
         }
     }
 
-    @Handler(invocation = EdtHandlerInvocation.class)
+    @Handler
     public void handleClientRemoved(final NickListClientRemovedEvent event) {
         if (event.getChannel().getWindowModel().equals(frame.getContainer())) {
-            nicklistModel.remove(event.getUser());
+            synchronized (pendingLock) {
+                pendingChanges.put(event.getUser(), false);
+                scheduleFlush();
+            }
+        }
+    }
+
+    /**
+     * Schedules the pending changes to be applied on the EDT, unless a flush is already
+     * scheduled. Must be called while holding {@link #pendingLock}.
+     */
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            UIUtilities.invokeLater(this::flushPendingChanges);
+        }
+    }
+
+    /**
+     * Applies all changes received since the last flush to the model as a single batch.
+     */
+    private void flushPendingChanges() {
+        final Collection<GroupChatUser> replacement;
+        final List<GroupChatUser> added = new ArrayList<>();
+        final List<GroupChatUser> removed = new ArrayList<>();
+        synchronized (pendingLock) {
+            replacement = pendingReplacement;
+            pendingChanges.forEach((user, present) -> (present ? added : removed).add(user));
+            pendingReplacement = null;
+            pendingChanges.clear();
+            flushScheduled = false;
+        }
+
+        if (replacement != null) {
+            nicklistModel.replace(replacement);
         }
+        nicklistModel.update(added, removed);
     }
 
 }
@@ -24,7 +24,10 @@ import com.dmdirc.config.provider.ConfigChangeListener;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.swing.AbstractListModel;
 
@@ -34,6 +37,8 @@ public final class NicklistListModel extends AbstractListModel<GroupChatUser> im
 
     /** A version number for this class. */
     private static final long serialVersionUID = 1;
+    /** Number of changes above which {@link #update} re-sorts instead of inserting. */
+    private static final int BULK_UPDATE_THRESHOLD = 64;
     /** stores the nicknames to be shown in this list. */
     private final List<GroupChatUser> nicknames;
     /** Config manager. */
@@ -42,6 +47,8 @@ public final class NicklistListModel extends AbstractListModel<GroupChatUser> im
     private boolean sortByMode;
     /** Sort by case? */
     private boolean sortByCase;
+    /** Comparator matching the current sort settings. */
+    private NicklistComparator comparator;
 
     /**
      * Creates a new empty model.
@@ -65,6 +72,7 @@ public final class NicklistListModel extends AbstractListModel<GroupChatUser> im
 
         sortByMode = config.getOptionBool("nicklist", "sortByMode");
         sortByCase = config.getOptionBool("nicklist", "sortByCase");
+        comparator = new NicklistComparator(sortByMode, sortByCase);
         config.addChangeListener("nicklist", "sortByMode", this);
         config.addChangeListener("nicklist", "sortByCase", this);
         nicknames = Collections.synchronizedList(newNicknames);
@@ -99,7 +107,7 @@ public final class NicklistListModel extends AbstractListModel<GroupChatUser> im
      */
     public void sort() {
         synchronized (nicknames) {
-            nicknames.sort(new NicklistComparator(sortByMode, sortByCase));
+            nicknames.sort(comparator);
         }
         rerender();
     }
@@ -120,15 +128,21 @@ public final class NicklistListModel extends AbstractListModel<GroupChatUser> im
     }
 
     /**
-     * Adds the specified client to the nicklist.
+     * Adds the specified client to the nicklist, at the position determined by the current sort
+     * settings.
      *
      * @param client client to add to the nicklist
      *
      * @return boolean success
      */
     public boolean add(final GroupChatUser client) {
-        nicknames.add(client);
-        sort();
+        final int index;
+        synchronized (nicknames) {
+            final int position = Collections.binarySearch(nicknames, client, comparator);
+            index = position < 0 ? -position - 1 : position;
+            nicknames.add(index, client);
+        }
+        fireIntervalAdded(this, index, index);
 
         return true;
     }
@@ -141,11 +155,17 @@ public final class NicklistListModel extends AbstractListModel<GroupChatUser> im
      * @return boolean success
      */
     public boolean remove(final GroupChatUser client) {
+        final int index;
+        synchronized (nicknames) {
+            index = nicknames.indexOf(client);
+            if (index == -1) {
+                return false;
+            }
+            nicknames.remove(index);
+        }
+        fireIntervalRemoved(this, index, index);
 
-        final boolean returnValue = nicknames.remove(client);
-        rerender();
-
-        return returnValue;
+        return true;
     }
 
     /**
@@ -158,11 +178,40 @@ public final class NicklistListModel extends AbstractListModel<GroupChatUser> im
     public GroupChatUser remove(final int index) {
 
         final GroupChatUser returnValue = nicknames.remove(index);
-        rerender();
+        fireIntervalRemoved(this, index, index);
 
         return returnValue;
     }
 
+    /**
+     * Applies a batch of changes to the nicklist. Every client in the batch is removed, and the
+     * added clients are then inserted again at their sorted position, so any client whose nickname
+     * or modes changed during the batch ends up in the right place. Small batches are applied
+     * incrementally; large batches are applied with a single sort and change event.
+     *
+     * @param added   clients that should be in the nicklist
+     * @param removed clients to remove from the nicklist
+     */
+    public void update(final Collection<GroupChatUser> added,
+            final Collection<GroupChatUser> removed) {
+        if (added.size() + removed.size() <= BULK_UPDATE_THRESHOLD) {
+            removed.forEach(this::remove);
+            for (GroupChatUser client : added) {
+                remove(client);
+                add(client);
+            }
+            return;
+        }
+
+        synchronized (nicknames) {
+            final Set<GroupChatUser> changed = new HashSet<>(removed);
+            changed.addAll(added);
+            nicknames.removeIf(changed::contains);
+            nicknames.addAll(new LinkedHashSet<>(added));
+        }
+        sort();
+    }
+
     /**
      * Fires the model changed event forcing the model to re-render.
      */
@@ -180,6 +229,7 @@ public final class NicklistListModel extends AbstractListModel<GroupChatUser> im
                 sortByCase = config.getOptionBool("nicklist", "sortByCase");
                 break;
         }
+        comparator = new NicklistComparator(sortByMode, sortByCase);
 
         sort();
     }
@@ -49,4 +49,11 @@ public interface FrameManager {
      */
     boolean canPositionHorizontally();
 
+    /**
+     * Releases any listeners or resources held by this frame manager. Called once the frame
+     * manager is no longer displayed.
+     */
+    default void dispose() {
+    }
+
 }
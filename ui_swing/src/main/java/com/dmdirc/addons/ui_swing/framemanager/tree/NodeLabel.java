@@ -34,7 +34,6 @@ import javax.swing.JTextPane;
 import javax.swing.UIManager;
 import javax.swing.text.DefaultStyledDocument;
 import javax.swing.text.StyledDocument;
-import net.engio.mbassy.listener.Handler;
 import net.miginfocom.swing.MigLayout;
 
 /**
@@ -98,7 +97,6 @@ public class NodeLabel extends JPanel {
         selected = false;
     }
 
-    @Handler
     public void selectionChanged(final SwingWindowSelectedEvent event) {
         selected = event.getWindow().isPresent()
                 && window.equals(event.getWindow().get());
@@ -109,14 +107,12 @@ public class NodeLabel extends JPanel {
                 .orElse(defaultForegroundColour);
     }
 
-    @Handler
     public void iconChanged(final FrameIconChangedEvent event) {
         if (window.getContainer().equals(event.getContainer())) {
             icon.setIcon(iconManager.getIcon(event.getIcon()));
         }
     }
 
-    @Handler
     public void nameChanged(final FrameNameChangedEvent event) {
         if (window.getContainer().equals(event.getContainer())) {
             text.setText(event.getName());
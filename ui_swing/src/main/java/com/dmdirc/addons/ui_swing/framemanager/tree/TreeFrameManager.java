@@ -32,6 +32,7 @@ import com.dmdirc.addons.ui_swing.framemanager.FrameManager;
 import com.dmdirc.addons.ui_swing.interfaces.ActiveFrameManager;
 import com.dmdirc.config.GlobalConfig;
 import com.dmdirc.events.FrameIconChangedEvent;
+import com.dmdirc.events.FrameNameChangedEvent;
 import com.dmdirc.events.UnreadStatusChangedEvent;
 import com.dmdirc.events.eventbus.EventBus;
 import com.dmdirc.interfaces.WindowModel;
@@ -46,8 +47,8 @@ import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.io.Serializable;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.inject.Inject;
 import javax.swing.JComponent;
 import javax.swing.JScrollPane;
@@ -73,7 +74,10 @@ public class TreeFrameManager implements FrameManager, Serializable, ConfigChang
     private static final Logger LOG = LoggerFactory.getLogger(TreeFrameManager.class);
     /** Serial version UID. */
     private static final long serialVersionUID = 5;
-    /** node storage, used for adding and deleting nodes correctly. */
+    /**
+     * node storage, used for adding and deleting nodes correctly, and for routing window events
+     * to their node. Windows are only equal to themselves, so this is keyed on identity.
+     */
     private final Map<TextFrame, TreeViewNode> nodes;
     /** Configuration manager. */
     private final AggregateConfigProvider config;
@@ -97,6 +101,8 @@ public class TreeFrameManager implements FrameManager, Serializable, ConfigChang
     private TreeViewModel model;
     /** Tree scroller. */
     private TreeScroller scroller;
+    /** Label of the selected window, only used on the EDT. */
+    private NodeLabel selectedLabel;
 
     @Inject
     public TreeFrameManager(final WindowManager windowManager,
@@ -110,7 +116,7 @@ public class TreeFrameManager implements FrameManager, Serializable, ConfigChang
             final IconManager iconManager) {
         this.windowFactory = windowFactory;
         this.windowManager = windowManager;
-        this.nodes = new HashMap<>();
+        this.nodes = new ConcurrentHashMap<>();
         this.config = globalConfig;
         this.colourManager = colourManager;
         this.activeFrameManager = activeFrameManager;
@@ -165,6 +171,20 @@ public class TreeFrameManager implements FrameManager, Serializable, ConfigChang
         });
     }
 
+    @Override
+    public void dispose() {
+        UIUtilities.invokeLater(() -> {
+            eventBus.unsubscribe(this);
+            swingEventBus.unsubscribe(this);
+            config.removeListener(this);
+            if (scroller != null) {
+                scroller.unregister();
+                scroller = null;
+            }
+            model.dispose();
+        });
+    }
+
     @Handler
     public void doAddWindow(final SwingWindowAddedEvent event) {
         final TextFrame parent = event.getParentWindow().orElse(null);
@@ -182,20 +202,16 @@ public class TreeFrameManager implements FrameManager, Serializable, ConfigChang
     @Handler
     public void doDeleteWindow(final SwingWindowDeletedEvent event) {
         final TextFrame window = event.getChildWindow();
-        UIUtilities.invokeAndWait(() -> {
-            if (nodes.get(window) == null) {
-                return;
-            }
-            final DefaultMutableTreeNode node = nodes.get(window);
+        final DefaultMutableTreeNode node = window == null ? null : nodes.remove(window);
+        if (node == null) {
+            return;
+        }
+        UIUtilities.invokeLater(() -> {
             if (node.getLevel() == 0) {
                 LOG.warn(LogUtils.USER_ERROR, "delServer triggered for root node {}",
                         node, new IllegalArgumentException());
             } else {
-                model.removeNodeFromParent(nodes.get(window));
-            }
-            synchronized (nodes) {
-                eventBus.unsubscribe(nodes.get(window).getLabel());
-                nodes.remove(window);
+                model.removeNodeFromParent(node);
             }
         });
     }
@@ -207,14 +223,8 @@ public class TreeFrameManager implements FrameManager, Serializable, ConfigChang
      * @param window Window to add
      */
     public void addWindow(final MutableTreeNode parent, final TextFrame window) {
-        UIUtilities.invokeAndWait(() -> {
-            final NodeLabel label = new NodeLabel(window, iconManager, getForegroundColour());
-            eventBus.subscribe(label);
-            swingEventBus.subscribe(label);
-            final TreeViewNode node = new TreeViewNode(label, window);
-            synchronized (nodes) {
-                nodes.put(window, node);
-            }
+        UIUtilities.invokeLater(() -> {
+            final TreeViewNode node = createNode(window);
             if (parent == null) {
                 model.insertNodeInto(node, model.getRootNode());
             } else {
@@ -226,13 +236,26 @@ public class TreeFrameManager implements FrameManager, Serializable, ConfigChang
             if (view != null) {
                 tree.scrollRectToVisible(new Rectangle(0, (int) view.getY(), 0, 0));
             }
-
-            refreshNodeLabel(window, node);
-            node.getLabel().iconChanged(new FrameIconChangedEvent(window.getContainer(),
-                    window.getContainer().getIcon()));
         });
     }
 
+    /**
+     * Creates and stores a node for the specified window. Must be called on the EDT.
+     *
+     * @param window Window to create a node for
+     *
+     * @return The window's new node
+     */
+    private TreeViewNode createNode(final TextFrame window) {
+        final NodeLabel label = new NodeLabel(window, iconManager, getForegroundColour());
+        final TreeViewNode node = new TreeViewNode(label, window);
+        nodes.put(window, node);
+        refreshNodeLabel(window, node);
+        label.iconChanged(new FrameIconChangedEvent(window.getContainer(),
+                window.getContainer().getIcon()));
+        return node;
+    }
+
     /**
      * Returns the tree for this frame manager.
      *
@@ -254,11 +277,9 @@ public class TreeFrameManager implements FrameManager, Serializable, ConfigChang
             node = tree.getNodeForLocation(event.getX(), event.getY()).getLabel();
         }
 
-        synchronized (nodes) {
-            for (TreeViewNode treeNode : nodes.values()) {
-                final NodeLabel label = treeNode.getLabel();
-                label.setRollover(label == node);
-            }
+        for (TreeViewNode treeNode : nodes.values()) {
+            final NodeLabel label = treeNode.getLabel();
+            label.setRollover(label == node);
         }
         tree.repaint();
     }
@@ -302,26 +323,34 @@ public class TreeFrameManager implements FrameManager, Serializable, ConfigChang
     }
 
     /**
-     * Starts the tree from scratch taking into account new sort orders.
+     * Starts the tree from scratch taking into account new sort orders. The new tree is built
+     * without firing any model events, and then replaces the old one in a single step.
      */
     private void redoTreeView() {
         UIUtilities.invokeLater(() -> {
-            ((DefaultTreeModel) tree.getModel()).setRoot(null);
-            ((DefaultTreeModel) tree.getModel()).setRoot(new TreeViewNode(null, null));
-            if (scroller != null) {
-                scroller.unregister();
-            }
-            scroller = new TreeTreeScroller(swingEventBus, tree);
-
+            final TreeViewNode root = new TreeViewNode(null, null);
             for (WindowModel window : windowManager.getRootWindows()) {
-                addWindow(null, windowFactory.getSwingWindow(window));
+                final TreeViewNode node = createNode(windowFactory.getSwingWindow(window));
+                model.addNode(node, root);
                 final Collection<WindowModel> childWindows = windowManager.getChildren(window);
                 for (WindowModel childWindow : childWindows) {
-                    addWindow(nodes.get(windowFactory.getSwingWindow(window)),
-                            windowFactory.getSwingWindow(childWindow));
+                    model.addNode(createNode(windowFactory.getSwingWindow(childWindow)), node);
                 }
             }
 
+            model.setRoot(root);
+            tree.expandPath(new TreePath(root));
+            for (int i = 0; i < root.getChildCount(); i++) {
+                final TreeViewNode node = (TreeViewNode) root.getChildAt(i);
+                if (node.getChildCount() > 0) {
+                    tree.expandPath(new TreePath(node.getPath()));
+                }
+            }
+            if (scroller != null) {
+                scroller.unregister();
+            }
+            scroller = new TreeTreeScroller(swingEventBus, tree);
+
             if (activeFrameManager.getActiveFrame() != null) {
                 selectionChanged(new SwingWindowSelectedEvent(activeFrameManager.getActiveFrame()));
             }
@@ -330,6 +359,15 @@ public class TreeFrameManager implements FrameManager, Serializable, ConfigChang
 
     @Handler(invocation = EdtHandlerInvocation.class)
     public void selectionChanged(final SwingWindowSelectedEvent event) {
+        final TreeViewNode selectedNode = event.getWindow().map(nodes::get).orElse(null);
+        if (selectedLabel != null) {
+            selectedLabel.selectionChanged(event);
+        }
+        selectedLabel = selectedNode == null ? null : selectedNode.getLabel();
+        if (selectedLabel != null) {
+            selectedLabel.selectionChanged(event);
+        }
+
         if (event.getWindow().isPresent()) {
             UIUtilities.invokeLater(() -> {
                 final TreeNode[] treePath = ((DefaultTreeModel) tree.getModel())
@@ -346,16 +384,54 @@ public class TreeFrameManager implements FrameManager, Serializable, ConfigChang
 
     @Handler(invocation = EdtHandlerInvocation.class, delivery = Invoke.Asynchronously)
     public void unreadStatusChanged(final UnreadStatusChangedEvent event) {
-        synchronized (nodes) {
-            final TreeViewNode node = nodes.get(windowFactory.getSwingWindow(event.getSource()));
-            if (node != null) {
-                final NodeLabel label = node.getLabel();
-                if (label != null) {
-                    label.unreadStatusChanged(event);
-                    tree.repaint();
-                }
-            }
+        final NodeLabel label = getLabel(event.getSource());
+        if (label != null) {
+            label.unreadStatusChanged(event);
+            tree.repaint();
+        }
+    }
+
+    @Handler(invocation = EdtHandlerInvocation.class, delivery = Invoke.Asynchronously)
+    public void iconChanged(final FrameIconChangedEvent event) {
+        final NodeLabel label = getLabel(event.getContainer());
+        if (label != null) {
+            label.iconChanged(event);
+            tree.repaint();
         }
     }
 
+    @Handler(invocation = EdtHandlerInvocation.class, delivery = Invoke.Asynchronously)
+    public void nameChanged(final FrameNameChangedEvent event) {
+        final TreeViewNode node = getNode(event.getContainer());
+        if (node != null) {
+            node.nameChanged();
+            node.getLabel().nameChanged(event);
+            tree.repaint();
+        }
+    }
+
+    /**
+     * Gets the label of the node for the specified window.
+     *
+     * @param window The window to get the label for
+     *
+     * @return The window's label, or null if it has no node
+     */
+    private NodeLabel getLabel(final WindowModel window) {
+        final TreeViewNode node = getNode(window);
+        return node == null ? null : node.getLabel();
+    }
+
+    /**
+     * Gets the node for the specified window.
+     *
+     * @param window The window to get the node for
+     *
+     * @return The window's node, or null if it has none
+     */
+    private TreeViewNode getNode(final WindowModel window) {
+        final TextFrame swingWindow = windowFactory.getSwingWindow(window);
+        return swingWindow == null ? null : nodes.get(swingWindow);
+    }
+
 }
@@ -19,6 +19,8 @@ package com.dmdirc.addons.ui_swing.framemanager.tree;
 
 import com.dmdirc.GlobalWindow;
 import com.dmdirc.addons.ui_swing.WindowComparator;
+import com.dmdirc.config.binding.ConfigBinder;
+import com.dmdirc.config.binding.ConfigBinding;
 import com.dmdirc.config.provider.AggregateConfigProvider;
 
 import javax.swing.tree.DefaultTreeModel;
@@ -34,8 +36,12 @@ public class TreeViewModel extends DefaultTreeModel {
     private static final long serialVersionUID = 1;
     /** Window comparator. */
     private final WindowComparator comparator;
-    /** Configuration provider to read settings from. */
-    private final AggregateConfigProvider globalConfig;
+    /** Binder used to bind the sort settings. */
+    private final transient ConfigBinder binder;
+    /** Whether root windows are sorted. */
+    private volatile boolean sortRootWindows;
+    /** Whether child windows are sorted. */
+    private volatile boolean sortChildWindows;
 
     /**
      * Creates a tree in which any node can have children.
@@ -46,8 +52,26 @@ public class TreeViewModel extends DefaultTreeModel {
     public TreeViewModel(final AggregateConfigProvider globalConfig, final TreeNode root) {
         super(root, false);
 
-        this.globalConfig = globalConfig;
         comparator = new WindowComparator();
+        binder = globalConfig.getBinder();
+        binder.bind(this, TreeViewModel.class);
+    }
+
+    /**
+     * Stops listening for changes to the sort settings.
+     */
+    public void dispose() {
+        binder.unbind(this);
+    }
+
+    @ConfigBinding(domain = "ui", key = "sortrootwindows")
+    public void handleSortRootWindows(final boolean value) {
+        sortRootWindows = value;
+    }
+
+    @ConfigBinding(domain = "ui", key = "sortchildwindows")
+    public void handleSortChildWindows(final boolean value) {
+        sortChildWindows = value;
     }
 
     /**
@@ -60,6 +84,17 @@ public class TreeViewModel extends DefaultTreeModel {
         insertNodeInto(newChild, parent, getIndex(newChild, parent));
     }
 
+    /**
+     * Inserts a new node into a tree that isn't in this model yet, without firing any events. The
+     * tree can then be shown with {@link #setRoot(TreeNode)}.
+     *
+     * @param newChild child to be added.
+     * @param parent   parent child is to be added too.
+     */
+    public void addNode(final TreeViewNode newChild, final MutableTreeNode parent) {
+        parent.insert(newChild, getIndex(newChild, parent));
+    }
+
     /**
      * Compares the new child with the existing children or parent to decide where it needs to be
      * inserted.
@@ -74,49 +109,48 @@ public class TreeViewModel extends DefaultTreeModel {
             return 0;
         }
 
-        if (parent.equals(root) && !globalConfig.getOptionBool("ui", "sortrootwindows")) {
+        if (parent.getParent() == null && !sortRootWindows) {
             return parent.getChildCount();
         }
 
-        if (globalConfig.getOptionBool("ui", "sortchildwindows")) {
-            for (int i = 0; i < parent.getChildCount(); i++) {
-                final TreeViewNode child = (TreeViewNode) parent.getChildAt(i);
-                if (sortBefore(newChild, child)
-                        || !sortAfter(newChild, child)
-                        && newChild.getUserObject().toString().compareToIgnoreCase(
-                        child.getUserObject().toString()) < 0) {
-                    return i;
+        if (sortChildWindows) {
+            // The children are already sorted, apart from the global window which is always first,
+            // so find the first child that sorts after the new one.
+            int low = 0;
+            while (low < parent.getChildCount() && ((TreeViewNode) parent.getChildAt(low))
+                    .getWindow().getContainer() instanceof GlobalWindow) {
+                low++;
+            }
+            int high = parent.getChildCount();
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (compare(newChild, (TreeViewNode) parent.getChildAt(middle)) < 0) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
                 }
             }
+            return low;
         }
 
         return parent.getChildCount();
     }
 
     /**
-     * Compares the types of the specified nodes' objects to see if the new node should be sorted
-     * before the other.
-     *
-     * @param newChild The new child to be tested
-     * @param child    The existing child that it's being tested against
-     *
-     * @return True iff newChild should be sorted before child
-     */
-    private boolean sortBefore(final TreeViewNode newChild, final TreeViewNode child) {
-        return comparator.compare(newChild.getWindow(), child.getWindow()) <= -1;
-    }
-
-    /**
-     * Compares the types of the specified nodes' objects to see if the new node should be sorted
-     * after the other.
+     * Compares the specified nodes by their windows, and then by their sort keys.
      *
      * @param newChild The new child to be tested
      * @param child    The existing child that it's being tested against
      *
-     * @return True iff newChild should be sorted before child
+     * @return A negative number, zero or a positive number if newChild sorts before, with or after
+     *         child
      */
-    private boolean sortAfter(final TreeViewNode newChild, final TreeViewNode child) {
-        return comparator.compare(newChild.getWindow(), child.getWindow()) >= 1;
+    private int compare(final TreeViewNode newChild, final TreeViewNode child) {
+        final int result = comparator.compare(newChild.getWindow(), child.getWindow());
+        if (result != 0) {
+            return result;
+        }
+        return newChild.getSortKey().compareTo(child.getSortKey());
     }
 
     /**
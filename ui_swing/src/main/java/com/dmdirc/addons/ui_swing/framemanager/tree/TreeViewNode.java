@@ -19,6 +19,9 @@ package com.dmdirc.addons.ui_swing.framemanager.tree;
 
 import com.dmdirc.addons.ui_swing.components.frames.TextFrame;
 
+import java.text.CollationKey;
+import java.text.Collator;
+
 import javax.swing.tree.DefaultMutableTreeNode;
 
 /**
@@ -28,10 +31,14 @@ public class TreeViewNode extends DefaultMutableTreeNode {
 
     /** A version number for this class. */
     private static final long serialVersionUID = 5;
+    /** Collator used to build sort keys, ignoring case. Only used on the EDT. */
+    private static final Collator COLLATOR = createCollator();
     /** Node's label. */
     private final NodeLabel label;
     /** Node's frame container. */
     private final TextFrame window;
+    /** The key used to sort nodes whose windows compare equally, or null if not known. */
+    private transient CollationKey sortKey;
 
     /**
      * Instantiates a new tree view node.
@@ -63,4 +70,30 @@ public class TreeViewNode extends DefaultMutableTreeNode {
         return window;
     }
 
+    /**
+     * Returns the key used to sort this node after its window, based on the window's name.
+     *
+     * @return Sort key for this node
+     */
+    public CollationKey getSortKey() {
+        if (sortKey == null) {
+            sortKey = COLLATOR.getCollationKey(window == null ? ""
+                    : window.getContainer().getName());
+        }
+        return sortKey;
+    }
+
+    /**
+     * Notes that the name of this node's window has changed, so its sort key is rebuilt.
+     */
+    public void nameChanged() {
+        sortKey = null;
+    }
+
+    private static Collator createCollator() {
+        final Collator collator = Collator.getInstance();
+        collator.setStrength(Collator.SECONDARY);
+        return collator;
+    }
+
 }
@@ -59,7 +59,6 @@ import com.dmdirc.plugins.PluginInfo;
 import com.dmdirc.plugins.ServiceLocator;
 import com.dmdirc.plugins.ServiceManager;
 import com.dmdirc.ui.core.util.URLHandler;
-import com.dmdirc.util.URLBuilder;
 import dagger.Module;
 import dagger.Provides;
 import java.awt.Toolkit;
@@ -124,7 +123,7 @@ public class SwingModule {
             final LifecycleController lifecycleController,
             @GlobalConfig final AggregateConfigProvider globalConfig,
             final Provider<QuitWorker> quitWorker,
-            final URLBuilder urlBuilder,
+            final IconManager iconManager,
             final Provider<FrameManager> frameManagerProvider,
             final EventBus eventBus,
             final SwingEventBus swingEventBus) {
@@ -133,7 +132,7 @@ public class SwingModule {
                 lifecycleController,
                 globalConfig,
                 quitWorker,
-                new IconManager(globalConfig, urlBuilder),
+                iconManager,
                 frameManagerProvider,
                 eventBus,
                 swingEventBus));
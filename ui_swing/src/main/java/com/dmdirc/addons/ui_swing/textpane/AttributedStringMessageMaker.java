@@ -18,36 +18,265 @@
 package com.dmdirc.addons.ui_swing.textpane;
 
 import com.dmdirc.ui.core.util.ExtendedAttributedString;
-import com.dmdirc.ui.messages.DelegatingStyledMessageMaker;
 import com.dmdirc.ui.messages.IRCTextAttribute;
+import com.dmdirc.ui.messages.StyledMessageMaker;
+import com.dmdirc.util.colours.Colour;
 
+import java.awt.Color;
 import java.awt.Font;
 import java.awt.font.TextAttribute;
+import java.text.AttributedCharacterIterator.Attribute;
 import java.text.AttributedString;
-import java.util.Enumeration;
-
-import javax.swing.text.AttributeSet;
-import javax.swing.text.BadLocationException;
-import javax.swing.text.Element;
-import javax.swing.text.StyleConstants;
-import javax.swing.text.StyledDocument;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 
 /**
- * Creates an attributed string from a styled document.
+ * {@link StyledMessageMaker} that produces an {@link AttributedString}.
+ *
+ * <p>Text is collected into runs of identical style as it is appended, and the attributes for
+ * each run are applied directly when the message is requested.
  */
-public class AttributedStringMessageMaker
-        extends DelegatingStyledMessageMaker<StyledDocument, AttributedString> {
+public class AttributedStringMessageMaker implements StyledMessageMaker<AttributedString> {
 
+    /** Family used for fixed width text. */
+    private static final String MONOSPACED = "monospaced";
+    /** Maximum number of converted colours to keep. */
+    private static final int MAX_COLOURS = 64;
+    /** The text of the current message. */
+    private final StringBuilder text = new StringBuilder();
+    /** Recently converted colours, keyed on their RGB value. */
+    private final Map<Integer, Color> colours =
+            new LinkedHashMap<Integer, Color>(MAX_COLOURS, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Integer, Color> eldest) {
+                    return size() > MAX_COLOURS;
+                }
+            };
+    /** Runs making up the current message, reused between messages. */
+    private Run[] runs = new Run[8];
+    /** Number of runs in use for the current message. */
+    private int runCount;
+    /** The style that will be applied to appended text. */
+    private final Run style = new Run();
+    /** Whether the underline should be kept when the current link ends. */
+    private boolean restoreUnderline;
+    /** The foreground colour to restore when the current link ends. */
+    private Color restoreColour;
+    private Color defaultForeground;
+    private Color defaultBackground;
     private String fontName;
     private int fontSize;
+    /** The font name the cached family was resolved from. */
+    private String familyFontName;
+    /** The family of the last font used. */
+    private String family;
+
+    @Override
+    public AttributedString getStyledMessage() {
+        final ExtendedAttributedString attributedString = text.length() == 0
+                ? new ExtendedAttributedString(new AttributedString("\n"), fontSize)
+                : new ExtendedAttributedString(buildString(), fontSize);
+        fontSize = attributedString.getMaxLineHeight();
+        return attributedString.getAttributedString();
+    }
+
+    /**
+     * Builds an attributed string from the text and runs of the current message.
+     *
+     * @return A new attributed string
+     */
+    private AttributedString buildString() {
+        final AttributedString attString = new AttributedString(text.toString());
+        attString.addAttribute(TextAttribute.SIZE, fontSize);
+        attString.addAttribute(TextAttribute.FAMILY, getFamily());
+
+        for (int i = 0; i < runCount; i++) {
+            final Run run = runs[i];
+            addAttribute(attString, IRCTextAttribute.HYPERLINK, run.hyperlink, run);
+            addAttribute(attString, IRCTextAttribute.NICKNAME, run.nickname, run);
+            addAttribute(attString, IRCTextAttribute.CHANNEL, run.channel, run);
+            addAttribute(attString, IRCTextAttribute.TOOLTIP, run.tooltip, run);
+            addAttribute(attString, TextAttribute.FOREGROUND, run.foreground, run);
+            addAttribute(attString, TextAttribute.BACKGROUND, run.background, run);
+            addAttribute(attString, TextAttribute.FAMILY, run.family, run);
+            if (run.bold) {
+                addAttribute(attString, TextAttribute.WEIGHT, TextAttribute.WEIGHT_BOLD, run);
+            }
+            if (run.italic) {
+                addAttribute(attString, TextAttribute.POSTURE, TextAttribute.POSTURE_OBLIQUE,
+                        run);
+            }
+            if (run.underline) {
+                addAttribute(attString, TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_ON, run);
+            }
+        }
+        return attString;
+    }
+
+    private static void addAttribute(final AttributedString attString,
+            final Attribute attribute, final Object value, final Run run) {
+        if (value != null) {
+            attString.addAttribute(attribute, value, run.start, run.end);
+        }
+    }
 
-    public AttributedStringMessageMaker() {
-        super(new StyledDocumentMaker());
+    /**
+     * Gets the family of the default font, only creating a new font when the name changes.
+     *
+     * @return The family of the default font
+     */
+    private String getFamily() {
+        if (family == null || !Objects.equals(fontName, familyFontName)) {
+            family = new Font(fontName, Font.PLAIN, fontSize).getFamily();
+            familyFontName = fontName;
+        }
+        return family;
     }
 
     @Override
-    public int getMaximumFontSize() {
-        return fontSize;
+    public void resetAllStyles() {
+        style.bold = false;
+        style.underline = false;
+        style.italic = false;
+        if (MONOSPACED.equals(style.family)) {
+            style.family = null;
+        }
+        resetColours();
+    }
+
+    @Override
+    public void resetColours() {
+        style.foreground = defaultForeground;
+        style.background = defaultBackground;
+    }
+
+    @Override
+    public void appendString(final String string) {
+        if (string.isEmpty()) {
+            return;
+        }
+
+        final int start = text.length();
+        text.append(string);
+        if (runCount > 0 && runs[runCount - 1].hasStyle(style)) {
+            runs[runCount - 1].end = text.length();
+            return;
+        }
+
+        if (runCount == runs.length) {
+            runs = Arrays.copyOf(runs, runCount * 2);
+        }
+        if (runs[runCount] == null) {
+            runs[runCount] = new Run();
+        }
+        runs[runCount].setStyle(style);
+        runs[runCount].start = start;
+        runs[runCount].end = text.length();
+        runCount++;
+    }
+
+    @Override
+    public void toggleBold() {
+        style.bold = !style.bold;
+    }
+
+    @Override
+    public void toggleUnderline() {
+        style.underline = !style.underline;
+    }
+
+    @Override
+    public void toggleItalic() {
+        style.italic = !style.italic;
+    }
+
+    @Override
+    public void startHyperlink(final String url) {
+        style.hyperlink = url;
+    }
+
+    @Override
+    public void endHyperlink() {
+        style.hyperlink = null;
+    }
+
+    @Override
+    public void toggleHyperlinkStyle(final Colour colour) {
+        toggleLink(style.hyperlink == null, colour);
+    }
+
+    @Override
+    public void startChannelLink(final String channel) {
+        style.channel = channel;
+    }
+
+    @Override
+    public void endChannelLink() {
+        style.channel = null;
+    }
+
+    @Override
+    public void toggleChannelLinkStyle(final Colour colour) {
+        toggleLink(style.channel == null, colour);
+    }
+
+    @Override
+    public void startNicknameLink(final String nickname) {
+        style.nickname = nickname;
+    }
+
+    @Override
+    public void endNicknameLink() {
+        style.nickname = null;
+    }
+
+    @Override
+    public void toggleFixedWidth() {
+        style.family = MONOSPACED.equals(style.family) ? null : MONOSPACED;
+    }
+
+    @Override
+    public void setForeground(final Colour colour) {
+        style.foreground = convertColour(colour);
+    }
+
+    @Override
+    public void setDefaultForeground(final Colour colour) {
+        defaultForeground = convertColour(colour);
+    }
+
+    @Override
+    public void setBackground(final Colour colour) {
+        style.background = convertColour(colour);
+    }
+
+    @Override
+    public void setDefaultBackground(final Colour colour) {
+        defaultBackground = convertColour(colour);
+    }
+
+    @Override
+    public void startSmilie(final String smilie) {
+        // Smilies aren't rendered
+    }
+
+    @Override
+    public void endSmilie() {
+        // Smilies aren't rendered
+    }
+
+    @Override
+    public void startToolTip(final String tooltip) {
+        style.tooltip = tooltip;
+    }
+
+    @Override
+    public void endToolTip() {
+        style.tooltip = null;
     }
 
     @Override
@@ -57,94 +286,106 @@ public class AttributedStringMessageMaker
     }
 
     @Override
-    protected AttributedString convert(final StyledDocument styledMessage) {
-        final Element line = styledMessage.getParagraphElement(0);
-        final AttributedString attString;
-        try {
-            attString = new AttributedString(
-                    line.getDocument().getText(0,
-                    line.getDocument().getLength()));
-        } catch (BadLocationException ex) {
-            // Shouldn't happen
-            return null;
-        }
+    public int getMaximumFontSize() {
+        return fontSize;
+    }
 
-        if (attString.getIterator().getEndIndex() != 0) {
-            final Font font = new Font(fontName, Font.PLAIN, fontSize);
-            attString.addAttribute(TextAttribute.SIZE, font.getSize());
-            attString.addAttribute(TextAttribute.FAMILY, font.getFamily());
-        }
+    @Override
+    public void clear() {
+        defaultForeground = null;
+        defaultBackground = null;
+        text.setLength(0);
+        runCount = 0;
+    }
+
+    /**
+     * Toggles the style for a link.
+     *
+     * @param start  True if the link is starting, false if it is ending
+     * @param colour The colour to colour the link
+     */
+    private void toggleLink(final boolean start, final Colour colour) {
+        if (start) {
+            if (style.underline) {
+                restoreUnderline = true;
+            } else {
+                style.underline = true;
+            }
 
-        for (int i = 0; i < line.getElementCount(); i++) {
-            final Element element = line.getElement(i);
-
-            final AttributeSet as = element.getAttributes();
-            final Enumeration<?> ae = as.getAttributeNames();
-
-            while (ae.hasMoreElements()) {
-                final Object attrib = ae.nextElement();
-
-                if (attrib == IRCTextAttribute.HYPERLINK) {
-                    //Hyperlink
-                    attString.addAttribute(IRCTextAttribute.HYPERLINK,
-                            as.getAttribute(attrib), element.getStartOffset(),
-                            element.getEndOffset());
-                } else if (attrib == IRCTextAttribute.NICKNAME) {
-                    //Nicknames
-                    attString.addAttribute(IRCTextAttribute.NICKNAME,
-                            as.getAttribute(attrib), element.getStartOffset(),
-                            element.getEndOffset());
-                } else if (attrib == IRCTextAttribute.CHANNEL) {
-                    //Channels
-                    attString.addAttribute(IRCTextAttribute.CHANNEL,
-                            as.getAttribute(attrib), element.getStartOffset(),
-                            element.getEndOffset());
-                } else if (attrib == IRCTextAttribute.TOOLTIP) {
-                    //Tooltips
-                    attString.addAttribute(IRCTextAttribute.TOOLTIP,
-                            as.getAttribute(attrib), element.getStartOffset(),
-                            element.getEndOffset());
-                } else if (attrib == StyleConstants.Foreground) {
-                    //Foreground
-                    attString.addAttribute(TextAttribute.FOREGROUND,
-                            as.getAttribute(attrib), element.getStartOffset(),
-                            element.getEndOffset());
-                } else if (attrib == StyleConstants.Background) {
-                    //Background
-                    attString.addAttribute(TextAttribute.BACKGROUND,
-                            as.getAttribute(attrib), element.getStartOffset(),
-                            element.getEndOffset());
-                } else if (attrib == StyleConstants.Bold) {
-                    //Bold
-                    attString.addAttribute(TextAttribute.WEIGHT,
-                            TextAttribute.WEIGHT_BOLD, element.getStartOffset(),
-                            element.getEndOffset());
-                } else if (attrib == StyleConstants.Family) {
-                    //Family
-                    attString.addAttribute(TextAttribute.FAMILY,
-                            as.getAttribute(attrib), element.getStartOffset(),
-                            element.getEndOffset());
-                } else if (attrib == StyleConstants.Italic) {
-                    //italics
-                    attString.addAttribute(TextAttribute.POSTURE,
-                            TextAttribute.POSTURE_OBLIQUE,
-                            element.getStartOffset(),
-                            element.getEndOffset());
-                } else if (attrib == StyleConstants.Underline) {
-                    //Underline
-                    attString.addAttribute(TextAttribute.UNDERLINE,
-                            TextAttribute.UNDERLINE_ON, element.getStartOffset(),
-                            element.getEndOffset());
+            if (colour != null) {
+                if (style.foreground != null) {
+                    restoreColour = style.foreground;
                 }
+                style.foreground = convertColour(colour);
+            }
+        } else {
+            if (restoreUnderline) {
+                restoreUnderline = false;
+            } else {
+                style.underline = false;
+            }
+
+            if (colour != null) {
+                style.foreground = restoreColour;
+                restoreColour = null;
             }
         }
+    }
+
+    /**
+     * Converts a DMDirc {@link Colour} into an AWT-specific {@link Color}, reusing any recent
+     * conversion of the same colour.
+     *
+     * @param colour The colour to be converted
+     *
+     * @return A corresponding AWT colour
+     */
+    private Color convertColour(final Colour colour) {
+        final int rgb = colour.getRed() << 16 | colour.getGreen() << 8 | colour.getBlue();
+        return colours.computeIfAbsent(rgb, Color::new);
+    }
+
+    /**
+     * A run of text with a single style.
+     */
+    private static class Run {
+
+        private int start;
+        private int end;
+        private boolean bold;
+        private boolean underline;
+        private boolean italic;
+        private String family;
+        private Color foreground;
+        private Color background;
+        private String hyperlink;
+        private String channel;
+        private String nickname;
+        private String tooltip;
+
+        private void setStyle(final Run other) {
+            bold = other.bold;
+            underline = other.underline;
+            italic = other.italic;
+            family = other.family;
+            foreground = other.foreground;
+            background = other.background;
+            hyperlink = other.hyperlink;
+            channel = other.channel;
+            nickname = other.nickname;
+            tooltip = other.tooltip;
+        }
+
+        private boolean hasStyle(final Run other) {
+            return bold == other.bold && underline == other.underline && italic == other.italic
+                    && Objects.equals(family, other.family)
+                    && foreground == other.foreground && background == other.background
+                    && Objects.equals(hyperlink, other.hyperlink)
+                    && Objects.equals(channel, other.channel)
+                    && Objects.equals(nickname, other.nickname)
+                    && Objects.equals(tooltip, other.tooltip);
+        }
 
-        final ExtendedAttributedString attributedString =
-                attString.getIterator().getEndIndex() == 0
-                        ? new ExtendedAttributedString(new AttributedString("\n"), fontSize)
-                        : new ExtendedAttributedString(attString, fontSize);
-        fontSize = attributedString.getMaxLineHeight();
-        return attributedString.getAttributedString();
     }
 
 }
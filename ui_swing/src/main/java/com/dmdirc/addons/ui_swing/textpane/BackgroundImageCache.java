@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.ui_swing.textpane;
+
+import com.dmdirc.addons.ui_swing.BackgroundOption;
+import com.dmdirc.addons.ui_swing.UIUtilities;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Shares background images between text panes. Each image is only decoded once while it is in
+ * use, and is composited onto the background colour once for each size it is painted at.
+ */
+@Singleton
+public class BackgroundImageCache {
+
+    /** Maximum number of composited backgrounds to keep. */
+    private static final int MAX_COMPOSITES = 4;
+    /** Decoded images, keyed on their URL. */
+    private final Map<String, Reference<Image>> images = new HashMap<>();
+    /** Callbacks waiting for images that are being loaded, keyed on their URL. */
+    private final Map<String, Collection<Consumer<Image>>> loading = new HashMap<>();
+    /** Recently used composited backgrounds. */
+    private final Map<CompositeKey, Image> composites =
+            new LinkedHashMap<CompositeKey, Image>(MAX_COMPOSITES, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<CompositeKey, Image> eldest) {
+                    return size() > MAX_COMPOSITES;
+                }
+            };
+
+    @Inject
+    public BackgroundImageCache() {
+    }
+
+    /**
+     * Gets the image at the specified URL, loading it in the background if it isn't already
+     * loaded. The callback is always called on the EDT, and is given null if the image couldn't
+     * be loaded.
+     *
+     * @param url      URL of the image to get
+     * @param callback Callback to give the image to
+     */
+    public void getImage(final URL url, final Consumer<Image> callback) {
+        final String key = url.toExternalForm();
+        synchronized (this) {
+            final Reference<Image> reference = images.get(key);
+            final Image image = reference == null ? null : reference.get();
+            if (image != null) {
+                UIUtilities.invokeLater(() -> callback.accept(image));
+                return;
+            }
+
+            final Collection<Consumer<Image>> callbacks = loading.get(key);
+            if (callbacks != null) {
+                callbacks.add(callback);
+                return;
+            }
+            loading.put(key, new ArrayList<>());
+            loading.get(key).add(callback);
+        }
+        new ImageLoader(url, this).execute();
+    }
+
+    /**
+     * Called when an image has finished loading.
+     *
+     * @param url   URL of the image that was loaded
+     * @param image The loaded image, or null if it couldn't be loaded
+     */
+    protected void setImage(final URL url, final Image image) {
+        final String key = url.toExternalForm();
+        final Collection<Consumer<Image>> callbacks;
+        synchronized (this) {
+            if (image == null) {
+                images.remove(key);
+            } else {
+                images.put(key, new WeakReference<>(image));
+            }
+            callbacks = loading.remove(key);
+        }
+        if (callbacks != null) {
+            callbacks.forEach(c -> c.accept(image));
+        }
+    }
+
+    /**
+     * Gets the specified image composited onto a solid background, ready to be drawn at the
+     * top left of a component.
+     *
+     * @param image         The background image
+     * @param option        How to lay out the image
+     * @param opacity       Opacity of the image
+     * @param background    Background colour to composite the image onto
+     * @param width         Width of the component
+     * @param height        Height of the component
+     * @param configuration Graphics configuration of the component
+     *
+     * @return An image of the given width and height
+     */
+    public synchronized Image getComposite(final Image image, final BackgroundOption option,
+            final float opacity, final Color background, final int width, final int height,
+            final GraphicsConfiguration configuration) {
+        final CompositeKey key = new CompositeKey(image, option, opacity, background, width,
+                height, configuration);
+        Image composite = composites.get(key);
+        if (composite == null) {
+            composite = createComposite(key);
+            composites.put(key, composite);
+        }
+        return composite;
+    }
+
+    private static Image createComposite(final CompositeKey key) {
+        final BufferedImage composite = key.configuration.createCompatibleImage(key.width,
+                key.height);
+        final Graphics2D g = composite.createGraphics();
+        try {
+            final Rectangle bounds = new Rectangle(key.width, key.height);
+            g.setColor(key.background);
+            g.fill(bounds);
+            UIUtilities.paintBackground(g, bounds, key.image, key.option, key.opacity);
+        } finally {
+            g.dispose();
+        }
+        return composite;
+    }
+
+    /**
+     * Identifies a composited background.
+     */
+    private static class CompositeKey {
+
+        private final Image image;
+        private final BackgroundOption option;
+        private final float opacity;
+        private final Color background;
+        private final int width;
+        private final int height;
+        private final GraphicsConfiguration configuration;
+
+        CompositeKey(final Image image, final BackgroundOption option, final float opacity,
+                final Color background, final int width, final int height,
+                final GraphicsConfiguration configuration) {
+            this.image = image;
+            this.option = option;
+            this.opacity = opacity;
+            this.background = background;
+            this.width = width;
+            this.height = height;
+            this.configuration = configuration;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof CompositeKey)) {
+                return false;
+            }
+            final CompositeKey other = (CompositeKey) obj;
+            return image == other.image && option == other.option
+                    && Float.compare(opacity, other.opacity) == 0
+                    && Objects.equals(background, other.background)
+                    && width == other.width && height == other.height
+                    && configuration.equals(other.configuration);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(image), option, opacity, background,
+                    width, height);
+        }
+
+    }
+
+}
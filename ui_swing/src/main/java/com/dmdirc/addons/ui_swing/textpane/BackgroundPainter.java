@@ -25,7 +25,9 @@ import com.dmdirc.util.URLBuilder;
 
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Image;
+import java.net.URL;
 
 import javax.annotation.Nonnull;
 import javax.swing.JComponent;
@@ -63,6 +65,8 @@ public class BackgroundPainter extends LayerUI<JComponent> {
 
     /** The URL builder to use to find icons. */
     private final URLBuilder urlBuilder;
+    /** The cache to get background images from. */
+    private final BackgroundImageCache imageCache;
     /**
      * Config manager to bind to and retrieve settings from.
      */
@@ -71,6 +75,10 @@ public class BackgroundPainter extends LayerUI<JComponent> {
      * Background image.
      */
     private Image backgroundImage;
+    /**
+     * URL of the background image that was last requested.
+     */
+    private volatile URL backgroundUrl;
     /**
      * Background option type.
      */
@@ -85,6 +93,7 @@ public class BackgroundPainter extends LayerUI<JComponent> {
      *
      * @param configManager Config manager to retrieve settings from
      * @param urlBuilder    URL Builder
+     * @param imageCache    Cache to get background images from
      * @param domain        Domain to retrieve settings from
      * @param imageKey      Key for background image
      * @param optionKey     Key for background type
@@ -93,10 +102,12 @@ public class BackgroundPainter extends LayerUI<JComponent> {
     public BackgroundPainter(
             final AggregateConfigProvider configManager,
             final URLBuilder urlBuilder,
+            final BackgroundImageCache imageCache,
             @Nonnull final String domain, @Nonnull final String imageKey,
             @Nonnull final String optionKey, @Nonnull final String opacityKey) {
         this.configManager = configManager;
         this.urlBuilder = urlBuilder;
+        this.imageCache = imageCache;
         this.domain = domain;
         this.imageKey = imageKey;
         this.optionKey = optionKey;
@@ -124,10 +135,6 @@ public class BackgroundPainter extends LayerUI<JComponent> {
         return opacityKey;
     }
 
-    protected void setBackgroundImage(final Image backgroundImage) {
-        this.backgroundImage = backgroundImage;
-    }
-
     /**
      * Called to update the value of the image URL.
      *
@@ -135,10 +142,16 @@ public class BackgroundPainter extends LayerUI<JComponent> {
      */
     @ConfigBinding(domain = "plugin-ui_swing", key = "textpanebackground")
     public void updateImage(final String value) {
-        if (value == null || value.isEmpty()) {
+        final URL url = value == null || value.isEmpty() ? null : urlBuilder.getUrl(value);
+        backgroundUrl = url;
+        if (url == null) {
             backgroundImage = null;
         } else {
-            new ImageLoader(urlBuilder.getUrl(value), this).execute();
+            imageCache.getImage(url, image -> {
+                if (url == backgroundUrl) {
+                    backgroundImage = image;
+                }
+            });
         }
     }
 
@@ -171,10 +184,18 @@ public class BackgroundPainter extends LayerUI<JComponent> {
     @Override
     public void paint(final Graphics graphics, final JComponent component) {
         final Graphics2D g2 = (Graphics2D) graphics;
-        g2.setColor(component.getBackground());
-        g2.fill(g2.getClipBounds());
-        UIUtilities.paintBackground(g2, component.getBounds(),
-                backgroundImage, backgroundOption, opacity);
+        final GraphicsConfiguration configuration = component.getGraphicsConfiguration();
+        if (backgroundImage == null || configuration == null
+                || component.getWidth() <= 0 || component.getHeight() <= 0) {
+            g2.setColor(component.getBackground());
+            g2.fill(g2.getClipBounds());
+            UIUtilities.paintBackground(g2, component.getBounds(),
+                    backgroundImage, backgroundOption, opacity);
+        } else {
+            g2.drawImage(imageCache.getComposite(backgroundImage, backgroundOption, opacity,
+                    component.getBackground(), component.getWidth(), component.getHeight(),
+                    configuration), 0, 0, null);
+        }
         super.paint(graphics, component);
     }
 
@@ -23,19 +23,15 @@ import com.dmdirc.ui.messages.LinePosition;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Shape;
-import java.awt.font.LineBreakMeasurer;
 import java.awt.font.TextAttribute;
 import java.awt.font.TextLayout;
 import java.awt.geom.Rectangle2D;
 import java.text.AttributedCharacterIterator;
 import java.text.AttributedString;
-import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.UIManager;
 
-import static com.google.common.base.Preconditions.checkNotNull;
-
 /**
  * Renders basic text, line wrapping where appropriate.
  */
@@ -52,18 +48,18 @@ public class BasicTextLineRenderer implements LineRenderer {
     private final TextPane textPane;
     private final TextPaneCanvas textPaneCanvas;
     private final CachingDocument<AttributedString> document;
+    private final WrappedLineCache wrappedLineCache;
 
     private final Color highlightForeground;
     private final Color highlightBackground;
 
-    /** Reused in each render pass to save creating a new list. */
-    private final List<TextLayout> wrappedLines = new ArrayList<>();
-
     public BasicTextLineRenderer(final TextPane textPane, final TextPaneCanvas textPaneCanvas,
-            final CachingDocument<AttributedString> document) {
+            final CachingDocument<AttributedString> document,
+            final WrappedLineCache wrappedLineCache) {
         this.textPane = textPane;
         this.textPaneCanvas = textPaneCanvas;
         this.document = document;
+        this.wrappedLineCache = wrappedLineCache;
 
         highlightForeground = UIManager.getColor("TextArea.selectionForeground");
         highlightBackground = UIManager.getColor("TextArea.selectionBackground");
@@ -76,22 +72,14 @@ public class BasicTextLineRenderer implements LineRenderer {
         result.textLayouts.clear();
         result.totalHeight = 0;
 
-        final AttributedCharacterIterator iterator = document.getStyledLine(line).getIterator();
-        final int paragraphStart = iterator.getBeginIndex();
-        final int paragraphEnd = iterator.getEndIndex();
-        final LineBreakMeasurer lineMeasurer = new LineBreakMeasurer(iterator,
-                graphics.getFontRenderContext());
-        lineMeasurer.setPosition(paragraphStart);
-
         float newDrawPosY = drawPosY;
 
-        // Calculate layouts for each wrapped line.
-        wrappedLines.clear();
+        // Get the layouts for each wrapped line.
+        final List<TextLayout> wrappedLines = wrappedLineCache.getLayouts(line,
+                document.getStyledLine(line), canvasWidth, graphics.getFontRenderContext());
         int chars = 0;
-        while (lineMeasurer.getPosition() < paragraphEnd) {
-            final TextLayout layout = checkNotNull(lineMeasurer.nextLayout(canvasWidth));
+        for (TextLayout layout : wrappedLines) {
             chars += layout.getCharacterCount();
-            wrappedLines.add(layout);
         }
 
         // Loop through each wrapped line
@@ -40,13 +40,13 @@ public class ImageLoader extends LoggingSwingWorker<Image, Void> {
      */
     private final URL imageURL;
     /**
-     * Background painter to load image into.
+     * Cache to load image into.
      */
-    private final BackgroundPainter painter;
+    private final BackgroundImageCache cache;
 
-    public ImageLoader(final URL imageURL, final BackgroundPainter painter) {
+    public ImageLoader(final URL imageURL, final BackgroundImageCache cache) {
         this.imageURL = imageURL;
-        this.painter = painter;
+        this.cache = cache;
     }
 
     @Override
@@ -65,19 +65,21 @@ public class ImageLoader extends LoggingSwingWorker<Image, Void> {
 
     @Override
     protected void done() {
+        Image image = null;
         try {
             if (isCancelled()) {
                 LOG.trace("Background loading cancelled.");
-                return;
+            } else {
+                image = get();
+                LOG.trace("Background loading complete: {}", image);
             }
-            LOG.trace("Background loading complete: {}", get());
-            painter.setBackgroundImage(get());
         } catch (InterruptedException ex) {
             LOG.debug("Interrupted whilst loading image: {}", imageURL);
         } catch (ExecutionException ex) {
             LOG.debug("Exception whilst loading image: {}. " + "Exception message:", imageURL, ex.
                     getMessage());
         }
+        cache.setImage(imageURL, image);
     }
 
 }
@@ -88,12 +88,13 @@ public final class TextPane extends JComponent implements MouseWheelListener,
      * @param configDomain The domain to read configuration from.
      * @param urlBuilder   The builder to use to construct URLs for resources.
      * @param clipboard    The clipboard to handle copy and paste actions
+     * @param imageCache   The cache to get background images from
      * @param window       Parent window
      */
     public TextPane(
             final String configDomain,
             final URLBuilder urlBuilder, final Clipboard clipboard,
-            final WindowModel window) {
+            final BackgroundImageCache imageCache, final WindowModel window) {
         this.window = window;
         this.configDomain = configDomain;
         this.clipboard = clipboard;
@@ -109,7 +110,7 @@ public final class TextPane extends JComponent implements MouseWheelListener,
 
         setLayout(new MigLayout("fill, hidemode 3"));
         backgroundPainter = new BackgroundPainter(window.getConfigManager(),
-                urlBuilder, configDomain, "textpanebackground",
+                urlBuilder, imageCache, configDomain, "textpanebackground",
                 "textpanebackgroundoption", "textpanebackgroundopacity");
         canvas = new TextPaneCanvas(this,
                 new CachingDocument<>(document, new AttributedStringMessageMaker()));
@@ -430,6 +431,7 @@ public final class TextPane extends JComponent implements MouseWheelListener,
     @Override
     public void trimmed(final int newSize, final int numTrimmed) {
         UIUtilities.invokeLater(() -> {
+            canvas.trimmed(numTrimmed);
             lastSeenLine -= numTrimmed;
             final LinePosition selectedRange = getSelectedRange();
             selectedRange.setStartLine(selectedRange.getStartLine() - numTrimmed);
@@ -454,6 +456,7 @@ public final class TextPane extends JComponent implements MouseWheelListener,
         UIUtilities.invokeLater(() -> {
             scrollModel.setMaximum(0);
             scrollModel.setValue(0);
+            canvas.clearLayouts();
             canvas.recalc();
         });
     }
@@ -461,6 +464,7 @@ public final class TextPane extends JComponent implements MouseWheelListener,
     @Override
     public void linesAdded(final int line, final int length, final int size) {
         UIUtilities.invokeLater(() -> {
+            canvas.linesAdded(line);
             if (scrollModel.getValue() == scrollModel.getMaximum()) {
                 setRangeProperties(size, size);
             } else {
@@ -474,7 +478,10 @@ public final class TextPane extends JComponent implements MouseWheelListener,
 
     @Override
     public void repaintNeeded() {
-        UIUtilities.invokeLater(canvas::recalc);
+        UIUtilities.invokeLater(() -> {
+            canvas.clearLayouts();
+            canvas.recalc();
+        });
     }
 
     /**
@@ -88,6 +88,8 @@ class TextPaneCanvas extends JPanel implements MouseInputListener,
     private final ListenerList listeners = new ListenerList();
     /** Renderer to use for lines. */
     private final LineRenderer lineRenderer;
+    /** Cache of wrapped line layouts used by the renderer. */
+    private final WrappedLineCache wrappedLineCache;
 
     /**
      * Creates a new text pane canvas.
@@ -99,7 +101,8 @@ class TextPaneCanvas extends JPanel implements MouseInputListener,
         this.document = document;
         textPane = parent;
         this.manager = parent.getWindow().getConfigManager();
-        this.lineRenderer = new BasicTextLineRenderer(textPane, this, document);
+        this.wrappedLineCache = new WrappedLineCache();
+        this.lineRenderer = new BasicTextLineRenderer(textPane, this, document, wrappedLineCache);
         startLine = 0;
         setDoubleBuffered(true);
         setOpaque(true);
@@ -140,6 +143,34 @@ class TextPaneCanvas extends JPanel implements MouseInputListener,
         }
     }
 
+    /**
+     * Updates cached layouts after lines have been removed from the start of the document. Must
+     * be called on the EDT.
+     *
+     * @param numTrimmed The number of lines that were removed
+     */
+    protected void trimmed(final int numTrimmed) {
+        wrappedLineCache.trimmed(numTrimmed);
+    }
+
+    /**
+     * Updates cached layouts after lines have been added to the document. Must be called on the
+     * EDT.
+     *
+     * @param line The number of the first line that was added
+     */
+    protected void linesAdded(final int line) {
+        wrappedLineCache.linesAdded(line);
+    }
+
+    /**
+     * Discards all cached layouts, for example because the document has been cleared or restyled.
+     * Must be called on the EDT.
+     */
+    protected void clearLayouts() {
+        wrappedLineCache.clear();
+    }
+
     /**
      * Updates cached config settings.
      */
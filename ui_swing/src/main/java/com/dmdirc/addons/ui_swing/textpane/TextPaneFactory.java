@@ -36,17 +36,21 @@ public class TextPaneFactory {
     private final String configDomain;
     private final URLBuilder urlBuilder;
     private final Clipboard clipboard;
+    private final BackgroundImageCache imageCache;
 
     @Inject
     public TextPaneFactory(@PluginDomain(SwingController.class) final String configDomain,
-            final URLBuilder urlBuilder, final Clipboard clipboard) {
+            final URLBuilder urlBuilder, final Clipboard clipboard,
+            final BackgroundImageCache imageCache) {
         this.configDomain = configDomain;
         this.urlBuilder = urlBuilder;
         this.clipboard = clipboard;
+        this.imageCache = imageCache;
     }
 
     public TextPane getTextPane(final TextFrame frame) {
-        return new TextPane(configDomain, urlBuilder, clipboard, frame.getContainer());
+        return new TextPane(configDomain, urlBuilder, clipboard, imageCache,
+                frame.getContainer());
     }
 
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.dmdirc.addons.ui_swing.textpane;
+
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineBreakMeasurer;
+import java.awt.font.TextLayout;
+import java.text.AttributedCharacterIterator;
+import java.text.AttributedString;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Caches the wrapped layouts of document lines, so that repainting does not need to re-measure
+ * lines that have not changed.
+ *
+ * <p>Layouts are only valid for a single canvas width and font render context; if either changes
+ * the whole cache is discarded. The least recently used lines are evicted once the cached layouts
+ * cover more than a fixed number of characters (by default {@link #MAX_CACHED_CHARACTERS}), which
+ * is used as an approximation of the memory they hold.
+ *
+ * <p>Each entry remembers the styled text it was laid out from. Trimming and adding lines are
+ * reported to the cache asynchronously, so a line number may briefly refer to different text than
+ * when it was cached; a lookup whose text does not match the cached text is treated as a miss.
+ *
+ * <p>This class is not thread safe, and should only be used on the EDT.
+ */
+class WrappedLineCache {
+
+    /** Maximum number of characters to keep layouts for. */
+    private static final int MAX_CACHED_CHARACTERS = 250000;
+    /** Approximate cost, in characters, of each layout regardless of its length. */
+    private static final int LAYOUT_OVERHEAD = 32;
+
+    /** The maximum size of the cache, in characters. */
+    private final int maxSize;
+    /** Map of line numbers to their wrapped layouts, in access order. */
+    private Map<Integer, CachedLine> lines = new LinkedHashMap<>(16, 0.75f, true);
+    /** The width that the cached lines were wrapped at. */
+    private float width = -1;
+    /** The font render context that the cached lines were laid out with. */
+    private FontRenderContext fontRenderContext;
+    /** The approximate size of the cache, in characters. */
+    private int size;
+
+    WrappedLineCache() {
+        this(MAX_CACHED_CHARACTERS);
+    }
+
+    /**
+     * Creates a new cache that holds layouts for at most the given number of characters.
+     *
+     * @param maxSize The approximate maximum size of the cache, in characters
+     */
+    WrappedLineCache(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets the layouts for each wrapped part of the specified line, laying the line out if it is
+     * not already cached.
+     *
+     * @param line              The number of the line in the document
+     * @param text              The styled text of the line
+     * @param canvasWidth       The width available to wrap the line in
+     * @param fontRenderContext The font render context to lay the line out with
+     *
+     * @return An unmodifiable list of layouts, one for each wrapped part of the line.
+     */
+    List<TextLayout> getLayouts(final int line, final AttributedString text,
+            final float canvasWidth, final FontRenderContext fontRenderContext) {
+        if (canvasWidth != width || !fontRenderContext.equals(this.fontRenderContext)) {
+            clear();
+            width = canvasWidth;
+            this.fontRenderContext = fontRenderContext;
+        }
+
+        final CachedLine cached = lines.get(line);
+        if (cached != null) {
+            if (cached.text == text) {
+                return cached.layouts;
+            }
+            size -= cached.weight;
+        }
+
+        final CachedLine wrapped = wrap(text, canvasWidth, fontRenderContext);
+        lines.put(line, wrapped);
+        size += wrapped.weight;
+        evict();
+        return wrapped.layouts;
+    }
+
+    /**
+     * Updates the cache after lines have been removed from the start of the document.
+     *
+     * @param numTrimmed The number of lines that were removed
+     */
+    void trimmed(final int numTrimmed) {
+        final Map<Integer, CachedLine> shifted = new LinkedHashMap<>(16, 0.75f, true);
+        size = 0;
+        for (Map.Entry<Integer, CachedLine> entry : lines.entrySet()) {
+            if (entry.getKey() >= numTrimmed) {
+                shifted.put(entry.getKey() - numTrimmed, entry.getValue());
+                size += entry.getValue().weight;
+            }
+        }
+        lines = shifted;
+    }
+
+    /**
+     * Updates the cache after lines have been added to the document.
+     *
+     * @param line The number of the first line that was added
+     */
+    void linesAdded(final int line) {
+        final Iterator<Map.Entry<Integer, CachedLine>> iterator = lines.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Integer, CachedLine> entry = iterator.next();
+            if (entry.getKey() >= line) {
+                size -= entry.getValue().weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Discards all cached layouts.
+     */
+    void clear() {
+        lines.clear();
+        size = 0;
+    }
+
+    private void evict() {
+        final Iterator<CachedLine> iterator = lines.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().weight;
+            iterator.remove();
+        }
+    }
+
+    private static CachedLine wrap(final AttributedString text, final float canvasWidth,
+            final FontRenderContext fontRenderContext) {
+        final AttributedCharacterIterator iterator = text.getIterator();
+        final int paragraphEnd = iterator.getEndIndex();
+        final LineBreakMeasurer lineMeasurer = new LineBreakMeasurer(iterator, fontRenderContext);
+        lineMeasurer.setPosition(iterator.getBeginIndex());
+
+        final List<TextLayout> layouts = new ArrayList<>(1);
+        int weight = 0;
+        while (lineMeasurer.getPosition() < paragraphEnd) {
+            final TextLayout layout = checkNotNull(lineMeasurer.nextLayout(canvasWidth));
+            weight += layout.getCharacterCount() + LAYOUT_OVERHEAD;
+            layouts.add(layout);
+        }
+        return new CachedLine(text, Collections.unmodifiableList(layouts), weight);
+    }
+
+    /** The cached layouts of a single line. */
+    private static class CachedLine {
+
+        /** The styled text that the line was laid out from. */
+        private final AttributedString text;
+        /** The layouts of each wrapped part of the line. */
+        private final List<TextLayout> layouts;
+        /** The approximate size of the layouts, in characters. */
+        private final int weight;
+
+        CachedLine(final AttributedString text, final List<TextLayout> layouts,
+                final int weight) {
+            this.text = text;
+            this.layouts = layouts;
+            this.weight = weight;
+        }
+
+    }
+
+}
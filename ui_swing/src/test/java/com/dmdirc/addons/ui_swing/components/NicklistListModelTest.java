@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.ui_swing.components;
+
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.interfaces.GroupChatUser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NicklistListModelTest {
+
+    @Mock private AggregateConfigProvider config;
+    private NicklistListModel instance;
+
+    @Before
+    public void setUp() {
+        instance = new NicklistListModel(config);
+        instance.replace(Arrays.asList(user("dave"), user("alice"), user("Carol")));
+    }
+
+    @Test
+    public void testReplaceSorts() {
+        assertEquals(Arrays.asList("alice", "Carol", "dave"), nicknames());
+    }
+
+    @Test
+    public void testAddInsertsInOrder() {
+        instance.add(user("Bob"));
+        instance.add(user("aaron"));
+        instance.add(user("eve"));
+        assertEquals(Arrays.asList("aaron", "alice", "Bob", "Carol", "dave", "eve"), nicknames());
+    }
+
+    @Test
+    public void testRemove() {
+        final GroupChatUser alice = instance.getElementAt(0);
+        assertTrue(instance.remove(alice));
+        assertFalse(instance.remove(alice));
+        assertEquals(Arrays.asList("Carol", "dave"), nicknames());
+    }
+
+    @Test
+    public void testUpdateAddsAndRemoves() {
+        instance.update(Arrays.asList(user("bob"), user("zed")),
+                Collections.singletonList(instance.getElementAt(2)));
+        assertEquals(Arrays.asList("alice", "bob", "Carol", "zed"), nicknames());
+    }
+
+    @Test
+    public void testUpdateReinsertsChangedClients() {
+        final GroupChatUser alice = instance.getElementAt(0);
+        when(alice.getNickname()).thenReturn("frank");
+        instance.update(Collections.singletonList(alice), Collections.emptyList());
+        assertEquals(Arrays.asList("Carol", "dave", "frank"), nicknames());
+    }
+
+    @Test
+    public void testBulkUpdateReinsertsChangedClients() {
+        final GroupChatUser alice = instance.getElementAt(0);
+        when(alice.getNickname()).thenReturn("frank");
+        final List<GroupChatUser> added = new ArrayList<>();
+        added.add(alice);
+        for (int i = 0; i < 100; i++) {
+            added.add(user("user" + (100 + i)));
+        }
+        instance.update(added, Collections.singletonList(instance.getElementAt(1)));
+
+        final List<String> nicknames = nicknames();
+        assertEquals(102, nicknames.size());
+        assertEquals(Arrays.asList("dave", "frank", "user100"), nicknames.subList(0, 3));
+        assertEquals("user199", nicknames.get(101));
+    }
+
+    private static GroupChatUser user(final String nickname) {
+        final GroupChatUser user = mock(GroupChatUser.class);
+        when(user.getNickname()).thenReturn(nickname);
+        return user;
+    }
+
+    private List<String> nicknames() {
+        final List<GroupChatUser> users = new ArrayList<>();
+        for (int i = 0; i < instance.getSize(); i++) {
+            users.add(instance.getElementAt(i));
+        }
+        return users.stream().map(GroupChatUser::getNickname).collect(Collectors.toList());
+    }
+
+}
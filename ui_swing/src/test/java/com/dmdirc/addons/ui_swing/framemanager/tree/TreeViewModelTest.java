@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.dmdirc.addons.ui_swing.framemanager.tree;
+
+import com.dmdirc.GlobalWindow;
+import com.dmdirc.addons.ui_swing.components.frames.TextFrame;
+import com.dmdirc.config.binding.ConfigBinder;
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.interfaces.WindowModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.tree.TreeNode;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TreeViewModelTest {
+
+    @Mock private AggregateConfigProvider config;
+    @Mock private ConfigBinder binder;
+    private TreeViewNode root;
+    private TreeViewModel instance;
+
+    @Before
+    public void setUp() {
+        when(config.getBinder()).thenReturn(binder);
+        root = new TreeViewNode(null, null);
+        instance = new TreeViewModel(config, root);
+    }
+
+    @Test
+    public void testBindsAndUnbindsSettings() {
+        verify(binder).bind(instance, TreeViewModel.class);
+        instance.dispose();
+        verify(binder).unbind(instance);
+    }
+
+    @Test
+    public void testRootWindowsNotSorted() {
+        instance.handleSortChildWindows(true);
+        addAll(root, "charlie", "alpha", "bravo");
+        assertEquals(Arrays.asList("charlie", "alpha", "bravo"), names(root));
+    }
+
+    @Test
+    public void testNothingSortedWithoutChildSorting() {
+        instance.handleSortRootWindows(true);
+        addAll(root, "charlie", "alpha", "bravo");
+        assertEquals(Arrays.asList("charlie", "alpha", "bravo"), names(root));
+    }
+
+    @Test
+    public void testRootWindowsSorted() {
+        instance.handleSortRootWindows(true);
+        instance.handleSortChildWindows(true);
+        addAll(root, "delta", "bravo", "echo", "alpha", "charlie");
+        assertEquals(Arrays.asList("alpha", "bravo", "charlie", "delta", "echo"), names(root));
+    }
+
+    @Test
+    public void testChildWindowsSorted() {
+        instance.handleSortChildWindows(true);
+        final TreeViewNode server = node("server");
+        instance.addNode(server, root);
+        addAll(server, "#zulu", "#alpha", "#mike");
+        assertEquals(Arrays.asList("#alpha", "#mike", "#zulu"), names(server));
+    }
+
+    @Test
+    public void testEqualNamesInsertedAfterExisting() {
+        instance.handleSortRootWindows(true);
+        instance.handleSortChildWindows(true);
+        addAll(root, "alpha", "charlie");
+        final TreeViewNode first = node("bravo");
+        final TreeViewNode second = node("bravo");
+        instance.addNode(first, root);
+        instance.addNode(second, root);
+        assertSame(first, root.getChildAt(1));
+        assertSame(second, root.getChildAt(2));
+    }
+
+    @Test
+    public void testGlobalWindowAlwaysFirst() {
+        instance.handleSortRootWindows(true);
+        instance.handleSortChildWindows(true);
+        addAll(root, "bravo", "charlie");
+        final GlobalWindow globalWindow = mock(GlobalWindow.class);
+        when(globalWindow.getName()).thenReturn("zulu");
+        final TreeViewNode global = node(globalWindow);
+        instance.addNode(global, root);
+        instance.addNode(node("alpha"), root);
+        assertSame(global, root.getChildAt(0));
+        assertEquals(Arrays.asList("zulu", "alpha", "bravo", "charlie"), names(root));
+    }
+
+    @Test
+    public void testSortKeyFollowsName() {
+        final WindowModel container = mock(WindowModel.class);
+        when(container.getName()).thenReturn("alpha");
+        final TreeViewNode node = node(container);
+        assertEquals("alpha", node.getSortKey().getSourceString());
+
+        when(container.getName()).thenReturn("bravo");
+        assertEquals("alpha", node.getSortKey().getSourceString());
+        node.nameChanged();
+        assertEquals("bravo", node.getSortKey().getSourceString());
+    }
+
+    @Test
+    public void testSortKeyIgnoresCase() {
+        assertEquals(0, node("Alpha").getSortKey().compareTo(node("alpha").getSortKey()));
+    }
+
+    private void addAll(final TreeViewNode parent, final String... names) {
+        for (String name : names) {
+            instance.addNode(node(name), parent);
+        }
+    }
+
+    private static TreeViewNode node(final String name) {
+        final WindowModel container = mock(WindowModel.class);
+        when(container.getName()).thenReturn(name);
+        return node(container);
+    }
+
+    private static TreeViewNode node(final WindowModel container) {
+        final TextFrame window = mock(TextFrame.class);
+        when(window.getContainer()).thenReturn(container);
+        return new TreeViewNode(null, window);
+    }
+
+    private static List<String> names(final TreeNode parent) {
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            names.add(((TreeViewNode) parent.getChildAt(i)).getWindow().getContainer().getName());
+        }
+        return names;
+    }
+
+}
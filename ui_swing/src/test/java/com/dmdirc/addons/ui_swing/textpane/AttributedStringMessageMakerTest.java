@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.ui_swing.textpane;
+
+import com.dmdirc.ui.core.util.ExtendedAttributedString;
+import com.dmdirc.ui.messages.DelegatingStyledMessageMaker;
+import com.dmdirc.ui.messages.IRCTextAttribute;
+import com.dmdirc.ui.messages.StyledMessageMaker;
+import com.dmdirc.util.colours.Colour;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.font.TextAttribute;
+import java.text.AttributedCharacterIterator;
+import java.text.AttributedCharacterIterator.Attribute;
+import java.text.AttributedString;
+import java.text.CharacterIterator;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AttributedStringMessageMakerTest {
+
+    private static final int OPERATIONS = 26;
+    private static final int RESET_ALL_STYLES = 21;
+    private static final int TOGGLE_FIXED_WIDTH = 15;
+
+    private AttributedStringMessageMaker instance;
+
+    @Before
+    public void setUp() {
+        instance = new AttributedStringMessageMaker();
+        instance.setDefaultFont("Dialog", 12);
+    }
+
+    @Test
+    public void testEmptyMessage() {
+        assertEquals("\n", text(instance.getStyledMessage()));
+    }
+
+    @Test
+    public void testAppliesStyles() {
+        instance.appendString("plain ");
+        instance.toggleBold();
+        instance.setForeground(new Colour(255, 0, 0));
+        instance.appendString("bold");
+        final List<Map<Attribute, Object>> attributes = attributes(instance.getStyledMessage());
+
+        assertNull(attributes.get(0).get(TextAttribute.WEIGHT));
+        assertEquals(TextAttribute.WEIGHT_BOLD, attributes.get(6).get(TextAttribute.WEIGHT));
+        assertEquals(new Color(255, 0, 0), attributes.get(6).get(TextAttribute.FOREGROUND));
+    }
+
+    @Test
+    public void testReusesConvertedColours() {
+        instance.setForeground(new Colour(1, 2, 3));
+        instance.appendString("a");
+        instance.setForeground(new Colour(4, 5, 6));
+        instance.appendString("b");
+        instance.setForeground(new Colour(1, 2, 3));
+        instance.appendString("c");
+        final List<Map<Attribute, Object>> attributes = attributes(instance.getStyledMessage());
+
+        assertSame(attributes.get(0).get(TextAttribute.FOREGROUND),
+                attributes.get(2).get(TextAttribute.FOREGROUND));
+    }
+
+    @Test
+    public void testMatchesStyledDocumentPipeline() {
+        final DocumentMessageMaker expected = new DocumentMessageMaker();
+        for (int line = 0; line < 2000; line++) {
+            final Random random = new Random(line);
+            final int length = random.nextInt(40);
+            final long seed = random.nextLong();
+            final List<Integer> operations = new ArrayList<>(length);
+            boolean fixedWidth = false;
+            for (int i = 0; i < length; i++) {
+                final int operation = random.nextInt(OPERATIONS);
+                if (operation == RESET_ALL_STYLES && fixedWidth) {
+                    // The old pipeline left fixed width text in a Font rather than a family when
+                    // styles were reset, so turn it off first.
+                    operations.add(TOGGLE_FIXED_WIDTH);
+                    fixedWidth = false;
+                } else if (operation == TOGGLE_FIXED_WIDTH) {
+                    fixedWidth = !fixedWidth;
+                }
+                operations.add(operation);
+            }
+            if (fixedWidth) {
+                operations.add(TOGGLE_FIXED_WIDTH);
+            }
+
+            final AttributedString expectedString = style(expected, operations, seed);
+            final AttributedString actualString = style(instance, operations, seed);
+            assertEquals("Line " + line + ' ' + operations, text(expectedString),
+                    text(actualString));
+            assertEquals("Line " + line + ' ' + operations, attributes(expectedString),
+                    attributes(actualString));
+        }
+    }
+
+    /**
+     * Styles a message by applying the given operations to a maker, then clears the maker.
+     */
+    private static AttributedString style(final StyledMessageMaker<AttributedString> maker,
+            final List<Integer> operations, final long seed) {
+        final Random random = new Random(seed);
+        maker.setDefaultFont("Dialog", 12);
+        maker.resetAllStyles();
+        for (int operation : operations) {
+            apply(maker, operation, random);
+        }
+        final AttributedString result = maker.getStyledMessage();
+        maker.clear();
+        return result;
+    }
+
+    private static void apply(final StyledMessageMaker<?> maker, final int operation,
+            final Random random) {
+        switch (operation) {
+            case 0: case 1: case 2: case 3:
+                maker.appendString("ab".substring(0, random.nextInt(3)));
+                break;
+            case 4: maker.toggleBold(); break;
+            case 5: maker.toggleUnderline(); break;
+            case 6: maker.toggleItalic(); break;
+            case 7: maker.startHyperlink("url" + random.nextInt(2)); break;
+            case 8: maker.endHyperlink(); break;
+            case 9: maker.toggleHyperlinkStyle(random.nextBoolean() ? null : colour(random)); break;
+            case 10: maker.startChannelLink("#channel"); break;
+            case 11: maker.endChannelLink(); break;
+            case 12: maker.toggleChannelLinkStyle(random.nextBoolean() ? null : colour(random));
+                break;
+            case 13: maker.startNicknameLink("nickname"); break;
+            case 14: maker.endNicknameLink(); break;
+            case TOGGLE_FIXED_WIDTH: maker.toggleFixedWidth(); break;
+            case 16: maker.setForeground(colour(random)); break;
+            case 17: maker.setBackground(colour(random)); break;
+            case 18: maker.setDefaultForeground(colour(random)); break;
+            case 19: maker.setDefaultBackground(colour(random)); break;
+            case 20: maker.resetColours(); break;
+            case RESET_ALL_STYLES: maker.resetAllStyles(); break;
+            case 22: maker.startToolTip("tooltip"); break;
+            case 23: maker.endToolTip(); break;
+            case 24: maker.startSmilie("smilie"); break;
+            default: maker.endSmilie(); break;
+        }
+    }
+
+    private static Colour colour(final Random random) {
+        return new Colour(random.nextInt(4) * 80, random.nextInt(3) * 100, 7);
+    }
+
+    private static String text(final AttributedString string) {
+        final StringBuilder builder = new StringBuilder();
+        final AttributedCharacterIterator iterator = string.getIterator();
+        for (char c = iterator.first(); c != CharacterIterator.DONE; c = iterator.next()) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static List<Map<Attribute, Object>> attributes(final AttributedString string) {
+        final List<Map<Attribute, Object>> attributes = new ArrayList<>();
+        final AttributedCharacterIterator iterator = string.getIterator();
+        for (char c = iterator.first(); c != CharacterIterator.DONE; c = iterator.next()) {
+            attributes.add(new HashMap<>(iterator.getAttributes()));
+        }
+        return attributes;
+    }
+
+    /**
+     * The previous implementation, which styled each message into a {@link StyledDocument} and
+     * then converted the document's attributes.
+     */
+    private static class DocumentMessageMaker
+            extends DelegatingStyledMessageMaker<StyledDocument, AttributedString> {
+
+        private String fontName;
+        private int fontSize;
+
+        DocumentMessageMaker() {
+            super(new StyledDocumentMaker());
+        }
+
+        @Override
+        public int getMaximumFontSize() {
+            return fontSize;
+        }
+
+        @Override
+        public void setDefaultFont(final String fontName, final int fontSize) {
+            this.fontName = fontName;
+            this.fontSize = fontSize;
+        }
+
+        @Override
+        protected AttributedString convert(final StyledDocument styledMessage) {
+            final Element line = styledMessage.getParagraphElement(0);
+            final AttributedString attString;
+            try {
+                attString = new AttributedString(line.getDocument().getText(0,
+                        line.getDocument().getLength()));
+            } catch (BadLocationException ex) {
+                throw new IllegalStateException(ex);
+            }
+
+            if (attString.getIterator().getEndIndex() != 0) {
+                final Font font = new Font(fontName, Font.PLAIN, fontSize);
+                attString.addAttribute(TextAttribute.SIZE, font.getSize());
+                attString.addAttribute(TextAttribute.FAMILY, font.getFamily());
+            }
+
+            for (int i = 0; i < line.getElementCount(); i++) {
+                final Element element = line.getElement(i);
+                final AttributeSet attributes = element.getAttributes();
+                final Enumeration<?> names = attributes.getAttributeNames();
+                while (names.hasMoreElements()) {
+                    final Object name = names.nextElement();
+                    final Attribute attribute = getAttribute(name);
+                    if (attribute != null) {
+                        attString.addAttribute(attribute, getValue(name, attributes),
+                                element.getStartOffset(), element.getEndOffset());
+                    }
+                }
+            }
+
+            final ExtendedAttributedString attributedString =
+                    attString.getIterator().getEndIndex() == 0
+                            ? new ExtendedAttributedString(new AttributedString("\n"), fontSize)
+                            : new ExtendedAttributedString(attString, fontSize);
+            fontSize = attributedString.getMaxLineHeight();
+            return attributedString.getAttributedString();
+        }
+
+        private static Attribute getAttribute(final Object name) {
+            if (name == IRCTextAttribute.HYPERLINK || name == IRCTextAttribute.NICKNAME
+                    || name == IRCTextAttribute.CHANNEL || name == IRCTextAttribute.TOOLTIP) {
+                return (Attribute) name;
+            } else if (name == StyleConstants.Foreground) {
+                return TextAttribute.FOREGROUND;
+            } else if (name == StyleConstants.Background) {
+                return TextAttribute.BACKGROUND;
+            } else if (name == StyleConstants.Bold) {
+                return TextAttribute.WEIGHT;
+            } else if (name == StyleConstants.Family) {
+                return TextAttribute.FAMILY;
+            } else if (name == StyleConstants.Italic) {
+                return TextAttribute.POSTURE;
+            } else if (name == StyleConstants.Underline) {
+                return TextAttribute.UNDERLINE;
+            }
+            return null;
+        }
+
+        private static Object getValue(final Object name, final AttributeSet attributes) {
+            if (name == StyleConstants.Bold) {
+                return TextAttribute.WEIGHT_BOLD;
+            } else if (name == StyleConstants.Italic) {
+                return TextAttribute.POSTURE_OBLIQUE;
+            } else if (name == StyleConstants.Underline) {
+                return TextAttribute.UNDERLINE_ON;
+            }
+            return attributes.getAttribute(name);
+        }
+
+    }
+
+}
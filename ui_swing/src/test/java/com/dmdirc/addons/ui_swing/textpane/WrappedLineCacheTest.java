@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.dmdirc.addons.ui_swing.textpane;
+
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.text.AttributedString;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class WrappedLineCacheTest {
+
+    private static final float WIDTH = 1000;
+
+    private FontRenderContext context;
+    private WrappedLineCache instance;
+
+    @Before
+    public void setUp() {
+        context = new FontRenderContext(null, false, false);
+        instance = new WrappedLineCache();
+    }
+
+    @Test
+    public void testReturnsCachedLayoutsForSameText() {
+        final AttributedString text = new AttributedString("line zero");
+        final List<TextLayout> first = instance.getLayouts(0, text, WIDTH, context);
+        assertSame(first, instance.getLayouts(0, text, WIDTH, context));
+    }
+
+    @Test
+    public void testDifferentTextIsAMiss() {
+        final List<TextLayout> first = instance.getLayouts(0, new AttributedString("abc"), WIDTH,
+                context);
+        final List<TextLayout> second = instance.getLayouts(0,
+                new AttributedString("a much longer line"), WIDTH, context);
+        assertNotSame(first, second);
+        assertEquals(18, second.get(0).getCharacterCount());
+    }
+
+    @Test
+    public void testWidthChangeClearsCache() {
+        final AttributedString text = new AttributedString("line zero");
+        final List<TextLayout> first = instance.getLayouts(0, text, WIDTH, context);
+        instance.getLayouts(0, text, WIDTH / 2, context);
+        assertNotSame(first, instance.getLayouts(0, text, WIDTH, context));
+    }
+
+    @Test
+    public void testTrimmedShiftsLines() {
+        final AttributedString zero = new AttributedString("line zero");
+        final AttributedString one = new AttributedString("line one");
+        final AttributedString two = new AttributedString("line two");
+        instance.getLayouts(0, zero, WIDTH, context);
+        final List<TextLayout> oneLayouts = instance.getLayouts(1, one, WIDTH, context);
+        final List<TextLayout> twoLayouts = instance.getLayouts(2, two, WIDTH, context);
+
+        instance.trimmed(1);
+
+        assertSame(oneLayouts, instance.getLayouts(0, one, WIDTH, context));
+        assertSame(twoLayouts, instance.getLayouts(1, two, WIDTH, context));
+    }
+
+    @Test
+    public void testStaleLineBeforeTrimIsAMiss() {
+        final AttributedString zero = new AttributedString("line zero");
+        final AttributedString one = new AttributedString("line one, which is longer");
+        final List<TextLayout> zeroLayouts = instance.getLayouts(0, zero, WIDTH, context);
+
+        // The document has already been trimmed, but the cache has not yet been told.
+        final List<TextLayout> oneLayouts = instance.getLayouts(0, one, WIDTH, context);
+        assertNotSame(zeroLayouts, oneLayouts);
+        assertEquals(25, oneLayouts.get(0).getCharacterCount());
+    }
+
+    @Test
+    public void testLinesAddedDiscardsLaterLines() {
+        final AttributedString zero = new AttributedString("line zero");
+        final AttributedString one = new AttributedString("line one");
+        final List<TextLayout> zeroLayouts = instance.getLayouts(0, zero, WIDTH, context);
+        final List<TextLayout> oneLayouts = instance.getLayouts(1, one, WIDTH, context);
+
+        instance.linesAdded(1);
+
+        assertSame(zeroLayouts, instance.getLayouts(0, zero, WIDTH, context));
+        assertNotSame(oneLayouts, instance.getLayouts(1, one, WIDTH, context));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        // Each short line weighs its length plus the per-layout overhead, so two fit but not three.
+        instance = new WrappedLineCache(100);
+        final AttributedString zero = new AttributedString("zero");
+        final AttributedString one = new AttributedString("one");
+        final AttributedString two = new AttributedString("two");
+        final List<TextLayout> zeroLayouts = instance.getLayouts(0, zero, WIDTH, context);
+        final List<TextLayout> oneLayouts = instance.getLayouts(1, one, WIDTH, context);
+        assertSame(zeroLayouts, instance.getLayouts(0, zero, WIDTH, context));
+
+        instance.getLayouts(2, two, WIDTH, context);
+
+        assertSame(zeroLayouts, instance.getLayouts(0, zero, WIDTH, context));
+        assertNotSame(oneLayouts, instance.getLayouts(1, one, WIDTH, context));
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.addons.windowstatus;
+
+import com.dmdirc.interfaces.Connection;
+import com.dmdirc.interfaces.GroupChat;
+import com.dmdirc.interfaces.GroupChatUser;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the users in a channel with each important mode. Counts are built once from the
+ * channel's users and then maintained incrementally as users join, leave or change modes.
+ *
+ * <p>Instances are not thread safe; callers must synchronise on the instance.
+ */
+class ChannelModeCounts {
+
+    /** The channel being counted. */
+    private final GroupChat channel;
+    /** The user modes known by the channel's connection, prefixed with a space for no mode. */
+    private final String modes;
+    /** The number of users with each mode in {@link #modes}. */
+    private final int[] counts;
+    /** The index of the mode each user was last counted under. */
+    private final Map<GroupChatUser, Integer> userModes = new HashMap<>();
+
+    ChannelModeCounts(final GroupChat channel) {
+        this.channel = channel;
+        modes = ' ' + channel.getConnection().map(Connection::getUserModes).orElse("");
+        counts = new int[modes.length()];
+        channel.getUsers().forEach(this::update);
+    }
+
+    public GroupChat getChannel() {
+        return channel;
+    }
+
+    /**
+     * Gets the user modes being counted, lowest first, with a space representing no mode.
+     *
+     * @return The modes being counted
+     */
+    public String getModes() {
+        return modes;
+    }
+
+    /**
+     * Gets the number of users with the mode at the given index of {@link #getModes()}.
+     *
+     * @param index The index of the mode
+     *
+     * @return The number of users with that mode
+     */
+    public int getCount(final int index) {
+        return counts[index];
+    }
+
+    /**
+     * Gets the number of users in the channel.
+     *
+     * @return The number of users counted
+     */
+    public int getUserCount() {
+        return userModes.size();
+    }
+
+    /**
+     * Counts the given user under their current important mode, adding them if they haven't been
+     * counted yet.
+     *
+     * @param user The user that has joined or changed modes
+     *
+     * @return True if any count changed, false otherwise
+     */
+    public boolean update(final GroupChatUser user) {
+        final int index = Math.max(0, modes.indexOf(user.getImportantMode()));
+        final Integer previous = userModes.put(user, index);
+        if (previous != null && previous == index) {
+            return false;
+        }
+        if (previous != null) {
+            counts[previous]--;
+        }
+        counts[index]++;
+        return true;
+    }
+
+    /**
+     * Stops counting the given user.
+     *
+     * @param user The user that has left the channel
+     *
+     * @return True if any count changed, false otherwise
+     */
+    public boolean remove(final GroupChatUser user) {
+        final Integer previous = userModes.remove(user);
+        if (previous == null) {
+            return false;
+        }
+        counts[previous]--;
+        return true;
+    }
+
+}
@@ -32,6 +32,11 @@ import com.dmdirc.config.prefs.PreferencesCategory;
 import com.dmdirc.config.prefs.PreferencesDialogModel;
 import com.dmdirc.config.prefs.PreferencesSetting;
 import com.dmdirc.config.prefs.PreferencesType;
+import com.dmdirc.events.ChannelGotNamesEvent;
+import com.dmdirc.events.ChannelJoinEvent;
+import com.dmdirc.events.ChannelKickEvent;
+import com.dmdirc.events.ChannelPartEvent;
+import com.dmdirc.events.ChannelQuitEvent;
 import com.dmdirc.events.ChannelUserModeChangeEvent;
 import com.dmdirc.events.ClientPrefsOpenedEvent;
 import com.dmdirc.events.StatusBarComponentAddedEvent;
@@ -44,7 +49,13 @@ import com.dmdirc.interfaces.WindowModel;
 import com.dmdirc.config.provider.AggregateConfigProvider;
 import com.dmdirc.plugins.PluginDomain;
 import com.dmdirc.plugins.PluginInfo;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
 import javax.inject.Inject;
+import javax.swing.Timer;
+
 import net.engio.mbassy.listener.Handler;
 
 /**
@@ -52,6 +63,8 @@ import net.engio.mbassy.listener.Handler;
  */
 public class WindowStatusManager {
 
+    /** Minimum time, in milliseconds, between updates caused by channel changes. */
+    private static final int UPDATE_INTERVAL = 1000 / 60;
     /** Active frame manager. */
     private final ActiveFrameManager activeFrameManager;
     private final PluginInfo pluginInfo;
@@ -69,6 +82,12 @@ public class WindowStatusManager {
     private boolean shownone;
     /** Prefix for users without modes. */
     private String nonePrefix;
+    /** Mode counts for the active channel, or null if they haven't been built. */
+    private volatile ChannelModeCounts activeCounts;
+    /** Whether an update has been scheduled. */
+    private final AtomicBoolean updateScheduled = new AtomicBoolean();
+    /** Timer used to throttle updates caused by channel changes. */
+    private Timer updateTimer;
 
     @Inject
     public WindowStatusManager(final ActiveFrameManager activeFrameManager,
@@ -89,6 +108,14 @@ public class WindowStatusManager {
      */
     public void onLoad() {
         panel = UIUtilities.invokeAndWait(WindowStatusPanel::new);
+        updateTimer = UIUtilities.invokeAndWait(() -> {
+            final Timer timer = new Timer(UPDATE_INTERVAL, e -> {
+                updateScheduled.set(false);
+                updateStatus();
+            });
+            timer.setRepeats(false);
+            return timer;
+        });
         eventBus.publishAsync(new StatusBarComponentAddedEvent(panel));
         swingEventBus.subscribe(this);
         eventBus.subscribe(this);
@@ -104,7 +131,9 @@ public class WindowStatusManager {
         eventBus.unsubscribe(this);
         eventBus.publishAsync(new StatusBarComponentRemovedEvent(panel));
         configBinder.unbind(this);
+        UIUtilities.invokeLater(updateTimer::stop);
         panel = null;
+        activeCounts = null;
     }
 
     @Handler(invocation = EdtHandlerInvocation.class)
@@ -114,7 +143,69 @@ public class WindowStatusManager {
 
     @Handler
     public void usermodeChange(final ChannelUserModeChangeEvent event) {
-        updateStatus();
+        updateCounts(event.getChannel(), counts -> counts.update(event.getVictim()));
+    }
+
+    @Handler
+    public void handleJoin(final ChannelJoinEvent event) {
+        updateCounts(event.getChannel(), counts -> counts.update(event.getClient()));
+    }
+
+    @Handler
+    public void handlePart(final ChannelPartEvent event) {
+        updateCounts(event.getChannel(), counts -> counts.remove(event.getClient()));
+    }
+
+    @Handler
+    public void handleQuit(final ChannelQuitEvent event) {
+        updateCounts(event.getChannel(), counts -> counts.remove(event.getClient()));
+    }
+
+    @Handler
+    public void handleKick(final ChannelKickEvent event) {
+        updateCounts(event.getChannel(), counts -> counts.remove(event.getVictim()));
+    }
+
+    @Handler
+    public void handleNames(final ChannelGotNamesEvent event) {
+        final ChannelModeCounts counts = activeCounts;
+        if (counts != null && counts.getChannel().equals(event.getChannel())) {
+            // The whole user list has been replaced, so count it again.
+            activeCounts = null;
+            scheduleUpdate();
+        }
+    }
+
+    /**
+     * Applies a change to the active channel's mode counts, if the given channel is active, and
+     * schedules an update if the counts changed.
+     *
+     * @param channel The channel that has changed
+     * @param change  The change to apply, returning true if any count changed
+     */
+    private void updateCounts(final GroupChat channel,
+            final Predicate<ChannelModeCounts> change) {
+        final ChannelModeCounts counts = activeCounts;
+        if (counts == null || !counts.getChannel().equals(channel)) {
+            return;
+        }
+        final boolean changed;
+        synchronized (counts) {
+            changed = change.test(counts);
+        }
+        if (changed) {
+            scheduleUpdate();
+        }
+    }
+
+    /**
+     * Schedules the status to be updated on the EDT, unless an update is already pending.
+     * Updates are delayed so that a burst of changes only updates the status once.
+     */
+    private void scheduleUpdate() {
+        if (updateScheduled.compareAndSet(false, true)) {
+            UIUtilities.invokeLater(updateTimer::start);
+        }
     }
 
     /** Update the window status using the current active window. */
@@ -136,6 +227,10 @@ public class WindowStatusManager {
         }
         final String textString;
 
+        if (!(current instanceof GroupChat)) {
+            // Stop counting modes for a channel that is no longer shown.
+            activeCounts = null;
+        }
         if (current instanceof Connection) {
             textString = updateStatusConnection((Connection) current);
         } else if (current instanceof GroupChat) {
@@ -153,25 +248,28 @@ public class WindowStatusManager {
     }
 
     private String updateStatusChannel(final GroupChat frame) {
+        ChannelModeCounts counts = activeCounts;
+        if (counts == null || !counts.getChannel().equals(frame)) {
+            counts = new ChannelModeCounts(frame);
+            activeCounts = counts;
+        }
+        synchronized (counts) {
+            return getChannelStatus(frame, counts);
+        }
+    }
+
+    private String getChannelStatus(final GroupChat frame, final ChannelModeCounts counts) {
         final StringBuilder textString = new StringBuilder();
 
         textString.append(frame.getName());
         textString.append(" - Nicks: ");
-        textString.append(frame.getUsers().size());
+        textString.append(counts.getUserCount());
         textString.append(" (");
 
-        final String channelUserModes = ' ' + frame.getConnection()
-                .map(Connection::getUserModes).orElse("");
-        final int[] usersWithMode = new int[channelUserModes.length()];
-        frame.getUsers().forEach(user -> {
-            final String mode = user.getImportantMode();
-            final int index = channelUserModes.indexOf(mode);
-            usersWithMode[index]++;
-        });
-
+        final String channelUserModes = counts.getModes();
         boolean isFirst = true;
         for (int i = channelUserModes.length() - 1; i >= 0; i--) {
-            final int count = usersWithMode[i];
+            final int count = counts.getCount(i);
             if (count > 0 && (shownone || i > 0)) {
                 if (!isFirst) {
                     textString.append(' ');
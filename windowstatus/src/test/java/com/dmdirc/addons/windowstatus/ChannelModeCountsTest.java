@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.dmdirc.addons.windowstatus;
+
+import com.dmdirc.interfaces.Connection;
+import com.dmdirc.interfaces.GroupChat;
+import com.dmdirc.interfaces.GroupChatUser;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ChannelModeCountsTest {
+
+    @Mock private GroupChat channel;
+    @Mock private Connection connection;
+    @Mock private GroupChatUser voiced;
+    @Mock private GroupChatUser opped;
+    @Mock private GroupChatUser normal;
+
+    @Before
+    public void setUp() {
+        when(channel.getConnection()).thenReturn(Optional.of(connection));
+        when(connection.getUserModes()).thenReturn("vo");
+        when(voiced.getImportantMode()).thenReturn("v");
+        when(opped.getImportantMode()).thenReturn("o");
+        when(normal.getImportantMode()).thenReturn("");
+        when(channel.getUsers()).thenReturn(Arrays.asList(voiced, opped, normal));
+    }
+
+    @Test
+    public void testInitialCounts() {
+        final ChannelModeCounts counts = new ChannelModeCounts(channel);
+        assertSame(channel, counts.getChannel());
+        assertEquals(" vo", counts.getModes());
+        assertEquals(3, counts.getUserCount());
+        assertCounts(counts, 1, 1, 1);
+    }
+
+    @Test
+    public void testNoConnection() {
+        when(channel.getConnection()).thenReturn(Optional.empty());
+        final ChannelModeCounts counts = new ChannelModeCounts(channel);
+        assertEquals(" ", counts.getModes());
+        assertEquals(3, counts.getUserCount());
+        assertEquals(3, counts.getCount(0));
+    }
+
+    @Test
+    public void testJoin() {
+        final ChannelModeCounts counts = new ChannelModeCounts(channel);
+        final GroupChatUser user = user("");
+        assertTrue(counts.update(user));
+        assertEquals(4, counts.getUserCount());
+        assertCounts(counts, 2, 1, 1);
+    }
+
+    @Test
+    public void testUpdateWithoutChange() {
+        final ChannelModeCounts counts = new ChannelModeCounts(channel);
+        assertFalse(counts.update(voiced));
+        assertEquals(3, counts.getUserCount());
+        assertCounts(counts, 1, 1, 1);
+    }
+
+    @Test
+    public void testPart() {
+        final ChannelModeCounts counts = new ChannelModeCounts(channel);
+        assertTrue(counts.remove(opped));
+        assertEquals(2, counts.getUserCount());
+        assertCounts(counts, 1, 1, 0);
+    }
+
+    @Test
+    public void testPartUnknownUser() {
+        final ChannelModeCounts counts = new ChannelModeCounts(channel);
+        assertFalse(counts.remove(user("o")));
+        assertEquals(3, counts.getUserCount());
+        assertCounts(counts, 1, 1, 1);
+    }
+
+    @Test
+    public void testModeUpgrade() {
+        final ChannelModeCounts counts = new ChannelModeCounts(channel);
+        when(voiced.getImportantMode()).thenReturn("o");
+        assertTrue(counts.update(voiced));
+        assertEquals(3, counts.getUserCount());
+        assertCounts(counts, 1, 0, 2);
+    }
+
+    @Test
+    public void testModeDowngrade() {
+        final ChannelModeCounts counts = new ChannelModeCounts(channel);
+        when(opped.getImportantMode()).thenReturn("");
+        assertTrue(counts.update(opped));
+        assertCounts(counts, 2, 1, 0);
+    }
+
+    @Test
+    public void testMultiplePrefixesCountedOnce() {
+        // A user with +ov only reports their most important mode.
+        final ChannelModeCounts counts = new ChannelModeCounts(channel);
+        final GroupChatUser user = user("o");
+        counts.update(user);
+        assertCounts(counts, 1, 1, 2);
+
+        // Losing +o leaves them voiced.
+        when(user.getImportantMode()).thenReturn("v");
+        assertTrue(counts.update(user));
+        assertEquals(4, counts.getUserCount());
+        assertCounts(counts, 1, 2, 1);
+    }
+
+    @Test
+    public void testUnknownModeCountedAsNormal() {
+        final ChannelModeCounts counts = new ChannelModeCounts(channel);
+        counts.update(user("q"));
+        assertCounts(counts, 2, 1, 1);
+    }
+
+    @Test
+    public void testResetFromNewUserList() {
+        final ChannelModeCounts counts = new ChannelModeCounts(channel);
+        counts.remove(normal);
+
+        final GroupChatUser joined = user("o");
+        when(channel.getUsers()).thenReturn(Arrays.asList(opped, joined));
+
+        final ChannelModeCounts reset = new ChannelModeCounts(channel);
+        assertEquals(2, reset.getUserCount());
+        assertCounts(reset, 0, 0, 2);
+        assertCounts(counts, 0, 1, 1);
+    }
+
+    private static GroupChatUser user(final String mode) {
+        final GroupChatUser user = mock(GroupChatUser.class);
+        when(user.getImportantMode()).thenReturn(mode);
+        return user;
+    }
+
+    private static void assertCounts(final ChannelModeCounts counts, final int none,
+            final int voice, final int op) {
+        assertEquals(none, counts.getCount(0));
+        assertEquals(voice, counts.getCount(1));
+        assertEquals(op, counts.getCount(2));
+    }
+
+}